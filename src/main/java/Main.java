@@ -1,8 +1,17 @@
+import cluster.ClusterManager;
+import db.Eviction;
+import db.ExpiryManager;
+import persistence.AppendOnlyFile;
+import persistence.SnapshotManager;
+import replication.ReplicationManager;
 import server.ClientHandler;
+import server.EventLoopServer;
+import server.ServerConfig;
 
 import java.io.IOException;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.util.concurrent.ThreadFactory;
 
 
 public class Main {
@@ -10,21 +19,45 @@ public class Main {
     // You can use print statements as follows for debugging, they'll be visible when running tests.
     System.out.println("Logs from your program will appear here!");
 
-        ServerSocket serverSocket = null;
-        Socket clientSocket = null;
-        int port = 6379;
-        try {
-          serverSocket = new ServerSocket(port);
-          serverSocket.setReuseAddress(true);
-          System.out.println("Redis server active on port "+port);
-          while(true) {
-            // Wait for connection from client.
-            clientSocket = serverSocket.accept();
-            System.out.println("New client connected: " + clientSocket.getInetAddress());
-            new Thread(new ClientHandler(clientSocket)).start();
-          }
-        } catch (IOException e) {
-          System.out.println("IOException: " + e.getMessage());
-        }
+    ServerConfig.load(args);
+    Eviction.start();
+    try {
+      ClusterManager.start();
+      if (AppendOnlyFile.isEnabled()) {
+        AppendOnlyFile.start();
+      } else {
+        SnapshotManager.load();
+      }
+    } catch (IOException e) {
+      System.out.println("Fatal error loading the DB: " + e.getMessage());
+      System.exit(1);
     }
+    ReplicationManager.start();
+    SnapshotManager.startScheduler();
+    ExpiryManager.start();
+    int port = ServerConfig.getInt("port");
+    try {
+      switch (ServerConfig.get("server-mode").toLowerCase()) {
+        case "eventloop" -> new EventLoopServer(port, ServerConfig.getInt("event-loop-threads"), 0).start();
+        case "sharded" -> new EventLoopServer(port, ServerConfig.getInt("event-loop-threads"),
+            ServerConfig.getInt("shard-threads")).start();
+        case "virtual" -> runThreadedServer(port, Thread.ofVirtual().name("client-", 0).factory());
+        default -> runThreadedServer(port, Thread.ofPlatform().factory());
+      }
+    } catch (IOException e) {
+      System.out.println("IOException: " + e.getMessage());
+    }
+  }
+
+  private static void runThreadedServer(int port, ThreadFactory threadFactory) throws IOException {
+    ServerSocket serverSocket = new ServerSocket(port);
+    serverSocket.setReuseAddress(true);
+    System.out.println("Redis server active on port "+port);
+    while(true) {
+      // Wait for connection from client.
+      Socket clientSocket = serverSocket.accept();
+      System.out.println("New client connected: " + clientSocket.getInetAddress());
+      threadFactory.newThread(new ClientHandler(clientSocket)).start();
+    }
+  }
 }
@@ -0,0 +1,526 @@
+package cluster;
+
+import db.DataStore;
+import server.ServerConfig;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Cluster mode: the keyspace is split into {@link HashSlots} and every slot is served by one node. Commands on keys
+ * of a slot this node does not serve get a MOVED redirection to the node that does.
+ * <p>
+ * Nodes are introduced with CLUSTER MEET and claim slots with CLUSTER ADDSLOTS. There is no cluster bus: once a
+ * second every node polls the CLUSTER NODES of the nodes it knows, learns the nodes they know, and takes each node's
+ * word for the slots it claims to serve, except for slots it serves itself, which change only through its own
+ * CLUSTER commands. Slots move the way they do in Redis: CLUSTER SETSLOT IMPORTING on the target and MIGRATING on
+ * the source, MIGRATE of the slot's keys, then CLUSTER SETSLOT NODE on the target and the source. While a slot is
+ * migrating, the source sends commands on keys it no longer has to the target with an ASK redirection, which the
+ * target accepts only right after ASKING.
+ * <p>
+ * The node ID and this node's view of the slots are kept in cluster-config-file in dir, written on every change.
+ */
+public final class ClusterManager {
+  private static final long GOSSIP_INTERVAL_MILLIS = 1000;
+  private static final int BUS_PORT_OFFSET = 10000;
+
+  /**
+   * An error sending the client elsewhere, e.g. MOVED with "slot host:port".
+   */
+  public record Redirect(String kind, String message) {
+  }
+
+  public record SlotRange(int start, int end, ClusterNode node) {
+  }
+
+  // Guards changes of the slot tables and the config file, reads go without it
+  private static final ReentrantLock lock = new ReentrantLock();
+  private static final Map<String, ClusterNode> nodes = new ConcurrentHashMap<>();
+  // host:port of nodes met whose ID is not known yet
+  private static final Set<String> handshakes = ConcurrentHashMap.newKeySet();
+  private static final AtomicReferenceArray<ClusterNode> owners = new AtomicReferenceArray<>(HashSlots.COUNT);
+  private static final AtomicReferenceArray<ClusterNode> migrating = new AtomicReferenceArray<>(HashSlots.COUNT);
+  private static final AtomicReferenceArray<ClusterNode> importing = new AtomicReferenceArray<>(HashSlots.COUNT);
+  private static volatile ClusterNode myself;
+
+  private ClusterManager() {
+  }
+
+  public static boolean isEnabled() {
+    return myself != null;
+  }
+
+  /**
+   * Loads or creates the cluster config when cluster-enabled is set and starts polling the other nodes. Runs before
+   * the keyspace is loaded, so the keys of every slot are indexed.
+   */
+  public static void start() throws IOException {
+    if (!"yes".equalsIgnoreCase(ServerConfig.get("cluster-enabled"))) {
+      return;
+    }
+    DataStore.enableSlotIndex();
+    Path path = configPath();
+    if (Files.exists(path)) {
+      loadConfig(Files.readAllLines(path, StandardCharsets.UTF_8));
+    } else {
+      myself = newMyself(newNodeId());
+      nodes.put(myself.getId(), myself);
+      saveConfig();
+    }
+    System.out.println("Cluster node " + myself.getId() + " at " + myself.address());
+    Thread thread = new Thread(ClusterManager::gossip, "cluster-gossip");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  public static ClusterNode myself() {
+    return myself;
+  }
+
+  public static Collection<ClusterNode> getNodes() {
+    return nodes.values();
+  }
+
+  public static ClusterNode getNode(String id) {
+    return nodes.get(id);
+  }
+
+  /**
+   * Where a command on these keys must go instead of being executed here.
+   *
+   * @param isAsking the client sent ASKING right before the command
+   * @return null when this node serves the command
+   */
+  public static Redirect route(List<String> keys, boolean isAsking) {
+    if (keys.isEmpty()) {
+      return null;
+    }
+    int slot = HashSlots.of(keys.get(0));
+    for (int i = 1; i < keys.size(); i++) {
+      if (HashSlots.of(keys.get(i)) != slot) {
+        return new Redirect("CROSSSLOT", "Keys in request don't hash to the same slot");
+      }
+    }
+    ClusterNode owner = owners.get(slot);
+    if (owner == myself) {
+      ClusterNode target = migrating.get(slot);
+      if (target == null) {
+        return null;
+      }
+      // Keys still here are served here, keys already moved, or never here, by the target
+      long missing = keys.stream().filter(key -> !DataStore.containsKey(key)).count();
+      if (missing == 0) {
+        return null;
+      }
+      if (missing < keys.size()) {
+        return new Redirect("TRYAGAIN", "Multiple keys request during rehashing of slot");
+      }
+      return new Redirect("ASK", slot + " " + target.address());
+    }
+    if (isAsking && importing.get(slot) != null) {
+      return null;
+    }
+    if (owner == null) {
+      return new Redirect("CLUSTERDOWN", "Hash slot not served");
+    }
+    return new Redirect("MOVED", slot + " " + owner.address());
+  }
+
+  /**
+   * @throws IllegalArgumentException when a slot is already served by some node
+   */
+  public static void addSlots(List<Integer> slots) throws IOException {
+    lock.lock();
+    try {
+      for (int slot : slots) {
+        if (owners.get(slot) != null) {
+          throw new IllegalArgumentException("Slot " + slot + " is already busy");
+        }
+      }
+      for (int slot : slots) {
+        owners.set(slot, myself);
+        importing.set(slot, null);
+      }
+      saveConfig();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public static void delSlots(List<Integer> slots) throws IOException {
+    lock.lock();
+    try {
+      for (int slot : slots) {
+        if (owners.get(slot) == null) {
+          throw new IllegalArgumentException("Slot " + slot + " is already unassigned");
+        }
+      }
+      for (int slot : slots) {
+        owners.set(slot, null);
+        migrating.set(slot, null);
+        importing.set(slot, null);
+      }
+      saveConfig();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * CLUSTER SETSLOT: state is MIGRATING, IMPORTING or NODE with a node ID, or STABLE without one.
+   *
+   * @throws IllegalArgumentException when the change does not apply to the slot
+   */
+  public static void setSlot(int slot, String state, String nodeId) throws IOException {
+    lock.lock();
+    try {
+      ClusterNode node = null;
+      if (!state.equals("STABLE")) {
+        node = nodes.get(nodeId);
+        if (node == null) {
+          throw new IllegalArgumentException("I don't know about node " + nodeId);
+        }
+      }
+      ClusterNode owner = owners.get(slot);
+      switch (state) {
+        case "MIGRATING" -> {
+          if (owner != myself) {
+            throw new IllegalArgumentException("I'm not the owner of hash slot " + slot);
+          }
+          if (node == myself) {
+            throw new IllegalArgumentException("Can't MIGRATE to myself");
+          }
+          migrating.set(slot, node);
+        }
+        case "IMPORTING" -> {
+          if (owner == myself) {
+            throw new IllegalArgumentException("I'm already the owner of hash slot " + slot);
+          }
+          if (node == myself) {
+            throw new IllegalArgumentException("Can't IMPORT from myself");
+          }
+          importing.set(slot, node);
+        }
+        case "STABLE" -> {
+          migrating.set(slot, null);
+          importing.set(slot, null);
+        }
+        case "NODE" -> {
+          if (owner == myself && node != myself && DataStore.countKeysInSlot(slot) > 0) {
+            throw new IllegalArgumentException("I still hold keys, can't assign the slot to a different node");
+          }
+          owners.set(slot, node);
+          if (node != myself) {
+            migrating.set(slot, null);
+          } else {
+            importing.set(slot, null);
+          }
+        }
+        default -> throw new IllegalArgumentException("Invalid CLUSTER SETSLOT action or number of arguments");
+      }
+      saveConfig();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Remembers the address, the node behind it is added once it answered with its ID.
+   */
+  public static void meet(String host, int port) {
+    String address = host + ":" + port;
+    if (nodes.values().stream().noneMatch(node -> node.address().equals(address))) {
+      handshakes.add(address);
+    }
+  }
+
+  public static ClusterNode ownerOf(int slot) {
+    return owners.get(slot);
+  }
+
+  /**
+   * Runs of consecutive slots with the same node, in slot order.
+   */
+  public static List<SlotRange> slotRanges() {
+    List<SlotRange> ranges = new ArrayList<>();
+    int start = 0;
+    ClusterNode current = owners.get(0);
+    for (int slot = 1; slot <= HashSlots.COUNT; slot++) {
+      ClusterNode owner = slot < HashSlots.COUNT ? owners.get(slot) : null;
+      if (slot == HashSlots.COUNT || owner != current) {
+        if (current != null) {
+          ranges.add(new SlotRange(start, slot - 1, current));
+        }
+        start = slot;
+        current = owner;
+      }
+    }
+    return ranges;
+  }
+
+  /**
+   * CLUSTER NODES, one line per node: ID, address, flags, master, ping and pong times, config epoch, link state and
+   * slots, with this node's migrating and importing slots in brackets.
+   */
+  public static String describeNodes() {
+    List<SlotRange> ranges = slotRanges();
+    StringBuilder description = new StringBuilder();
+    for (ClusterNode node : nodes.values()) {
+      boolean isMyself = node == myself;
+      description.append(node.getId()).append(' ')
+          .append(node.address()).append('@').append(node.getPort() + BUS_PORT_OFFSET).append(' ')
+          .append(isMyself ? "myself,master" : "master").append(" - 0 0 0 ")
+          .append(isMyself || node.isConnected() ? "connected" : "disconnected");
+      for (SlotRange range : ranges) {
+        if (range.node() == node) {
+          description.append(' ').append(range.start());
+          if (range.end() != range.start()) {
+            description.append('-').append(range.end());
+          }
+        }
+      }
+      if (isMyself) {
+        for (int slot = 0; slot < HashSlots.COUNT; slot++) {
+          ClusterNode target = migrating.get(slot);
+          if (target != null) {
+            description.append(" [").append(slot).append("->-").append(target.getId()).append(']');
+          }
+          ClusterNode source = importing.get(slot);
+          if (source != null) {
+            description.append(" [").append(slot).append("-<-").append(source.getId()).append(']');
+          }
+        }
+      }
+      description.append('\n');
+    }
+    return description.toString();
+  }
+
+  public static String info() {
+    int assigned = 0;
+    Set<ClusterNode> serving = new HashSet<>();
+    for (int slot = 0; slot < HashSlots.COUNT; slot++) {
+      ClusterNode owner = owners.get(slot);
+      if (owner != null) {
+        assigned++;
+        serving.add(owner);
+      }
+    }
+    return "cluster_state:" + (assigned == HashSlots.COUNT ? "ok" : "fail") + "\r\n"
+        + "cluster_slots_assigned:" + assigned + "\r\n"
+        + "cluster_slots_ok:" + assigned + "\r\n"
+        + "cluster_slots_pfail:0\r\n"
+        + "cluster_slots_fail:0\r\n"
+        + "cluster_known_nodes:" + nodes.size() + "\r\n"
+        + "cluster_size:" + serving.size() + "\r\n"
+        + "cluster_current_epoch:0\r\n"
+        + "cluster_my_epoch:0\r\n";
+  }
+
+  private static void gossip() {
+    while (true) {
+      try {
+        Thread.sleep(GOSSIP_INTERVAL_MILLIS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+      for (String address : handshakes) {
+        greet(address);
+      }
+      for (ClusterNode node : nodes.values()) {
+        if (node != myself) {
+          poll(node);
+        }
+      }
+    }
+  }
+
+  /**
+   * Asks a node met by address for its ID and, once it is known, introduces this node back so both poll each other.
+   */
+  private static void greet(String address) {
+    int colon = address.lastIndexOf(':');
+    ClusterNode probe = new ClusterNode(null, address.substring(0, colon),
+        Integer.parseInt(address.substring(colon + 1)));
+    try {
+      String id = probe.request("CLUSTER", "MYID");
+      handshakes.remove(address);
+      if (!id.equals(myself.getId()) && !nodes.containsKey(id)) {
+        addNode(new ClusterNode(id, probe.getHost(), probe.getPort()));
+        probe.request("CLUSTER", "MEET", myself.getHost(), String.valueOf(myself.getPort()));
+      }
+    } catch (IOException e) {
+      // Still unreachable, tried again next round
+    } finally {
+      probe.closeLink();
+    }
+  }
+
+  /**
+   * Takes the node's claims on slots and learns the nodes it knows.
+   */
+  private static void poll(ClusterNode node) {
+    String description;
+    try {
+      description = node.request("CLUSTER", "NODES");
+    } catch (IOException e) {
+      return;
+    }
+    boolean isChanged = false;
+    for (String line : description.split("\n")) {
+      String[] parts = line.trim().split(" ");
+      if (parts.length < 8) {
+        continue;
+      }
+      if (parts[2].contains("myself")) {
+        if (parts[0].equals(node.getId())) {
+          isChanged |= adoptClaims(node, parts);
+        }
+      } else if (!parts[0].equals(myself.getId()) && !nodes.containsKey(parts[0])) {
+        String address = parts[1].substring(0, parts[1].indexOf('@'));
+        int colon = address.lastIndexOf(':');
+        addNode(new ClusterNode(parts[0], address.substring(0, colon),
+            Integer.parseInt(address.substring(colon + 1))));
+      }
+    }
+    if (isChanged) {
+      saveConfigQuietly();
+    }
+  }
+
+  private static boolean adoptClaims(ClusterNode node, String[] parts) {
+    boolean isChanged = false;
+    lock.lock();
+    try {
+      for (int i = 8; i < parts.length; i++) {
+        if (parts[i].startsWith("[")) {
+          continue;
+        }
+        int[] range = parseRange(parts[i]);
+        for (int slot = range[0]; slot <= range[1]; slot++) {
+          ClusterNode owner = owners.get(slot);
+          if (owner != myself && owner != node) {
+            owners.set(slot, node);
+            isChanged = true;
+          }
+        }
+      }
+    } finally {
+      lock.unlock();
+    }
+    return isChanged;
+  }
+
+  private static void addNode(ClusterNode node) {
+    lock.lock();
+    try {
+      if (nodes.putIfAbsent(node.getId(), node) == null) {
+        System.out.println("Cluster node " + node.getId() + " at " + node.address() + " added");
+        saveConfigQuietly();
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private static void loadConfig(List<String> lines) throws IOException {
+    List<String[]> entries = new ArrayList<>();
+    for (String line : lines) {
+      String[] parts = line.trim().split(" ");
+      if (parts.length < 8 || parts[0].equals("vars")) {
+        continue;
+      }
+      entries.add(parts);
+      ClusterNode node;
+      if (parts[2].contains("myself")) {
+        // The address comes from the current options, the ID is what persists
+        node = newMyself(parts[0]);
+        myself = node;
+      } else {
+        String address = parts[1].substring(0, parts[1].indexOf('@'));
+        int colon = address.lastIndexOf(':');
+        node = new ClusterNode(parts[0], address.substring(0, colon), Integer.parseInt(address.substring(colon + 1)));
+      }
+      nodes.put(node.getId(), node);
+    }
+    if (myself == null) {
+      throw new IOException("Cluster config file " + configPath() + " has no line for this node");
+    }
+    for (String[] parts : entries) {
+      ClusterNode node = nodes.get(parts[0]);
+      for (int i = 8; i < parts.length; i++) {
+        String slots = parts[i];
+        if (slots.startsWith("[")) {
+          // [slot->-target] or [slot-<-source]
+          boolean isMigrating = slots.contains("->-");
+          String[] migration = slots.substring(1, slots.length() - 1).split(isMigrating ? "->-" : "-<-");
+          int slot = Integer.parseInt(migration[0]);
+          (isMigrating ? migrating : importing).set(slot, nodes.get(migration[1]));
+          continue;
+        }
+        int[] range = parseRange(slots);
+        for (int slot = range[0]; slot <= range[1]; slot++) {
+          owners.set(slot, node);
+        }
+      }
+    }
+  }
+
+  private static void saveConfig() throws IOException {
+    lock.lock();
+    try {
+      Path path = configPath();
+      Path temp = path.resolveSibling("temp-" + ProcessHandle.current().pid() + "-" + path.getFileName());
+      Files.writeString(temp, describeNodes() + "vars currentEpoch 0 lastVoteEpoch 0\n", StandardCharsets.UTF_8);
+      Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private static void saveConfigQuietly() {
+    try {
+      saveConfig();
+    } catch (IOException e) {
+      System.out.println("Could not save the cluster config: " + e.getMessage());
+    }
+  }
+
+  private static int[] parseRange(String slots) {
+    int dash = slots.indexOf('-');
+    if (dash < 0) {
+      int slot = Integer.parseInt(slots);
+      return new int[]{slot, slot};
+    }
+    return new int[]{Integer.parseInt(slots.substring(0, dash)), Integer.parseInt(slots.substring(dash + 1))};
+  }
+
+  private static ClusterNode newMyself(String id) {
+    return new ClusterNode(id, ServerConfig.get("cluster-announce-ip"), ServerConfig.getInt("port"));
+  }
+
+  private static String newNodeId() {
+    byte[] bytes = new byte[20];
+    new SecureRandom().nextBytes(bytes);
+    return HexFormat.of().formatHex(bytes);
+  }
+
+  private static Path configPath() {
+    return Path.of(ServerConfig.get("dir"), ServerConfig.get("cluster-config-file"));
+  }
+}
@@ -0,0 +1,96 @@
+package cluster;
+
+import utility.RespReplyReader;
+import utility.RespWriter;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.List;
+
+/**
+ * A node of the cluster as this node knows it.
+ */
+public final class ClusterNode {
+  private static final int LINK_TIMEOUT_MILLIS = 2000;
+
+  private final String id;
+  private final String host;
+  private final int port;
+  // Connection the gossip thread polls the node over, only used by that thread
+  private Socket link;
+  private InputStream linkInput;
+  private volatile boolean isConnected = false;
+
+  ClusterNode(String id, String host, int port) {
+    this.id = id;
+    this.host = host;
+    this.port = port;
+  }
+
+  public String getId() {
+    return id;
+  }
+
+  public String getHost() {
+    return host;
+  }
+
+  public int getPort() {
+    return port;
+  }
+
+  public boolean isConnected() {
+    return isConnected;
+  }
+
+  /**
+   * host:port, as MOVED and ASK redirections give it.
+   */
+  public String address() {
+    return host + ":" + port;
+  }
+
+  /**
+   * Sends a command over the link, connecting first if needed, and returns the reply. A failure of the connection
+   * closes the link.
+   */
+  String request(String... command) throws IOException {
+    try {
+      if (link == null) {
+        link = new Socket();
+        link.connect(new InetSocketAddress(host, port), LINK_TIMEOUT_MILLIS);
+        link.setSoTimeout(LINK_TIMEOUT_MILLIS);
+        link.setTcpNoDelay(true);
+        linkInput = new BufferedInputStream(link.getInputStream());
+      }
+      OutputStream output = link.getOutputStream();
+      new RespWriter(64).writeBulkArray(List.of(command)).writeTo(output);
+      output.flush();
+      String reply = RespReplyReader.read(linkInput);
+      isConnected = true;
+      return reply;
+    } catch (RespReplyReader.ErrorReply e) {
+      throw e;
+    } catch (IOException e) {
+      closeLink();
+      throw e;
+    }
+  }
+
+  void closeLink() {
+    isConnected = false;
+    if (link != null) {
+      try {
+        link.close();
+      } catch (IOException ignored) {
+        // Nothing left to release
+      }
+      link = null;
+      linkInput = null;
+    }
+  }
+}
@@ -0,0 +1,45 @@
+package cluster;
+
+/**
+ * Maps keys to the 16384 hash slots of Redis Cluster: CRC16 (XMODEM) of the key modulo 16384. A key containing a
+ * non-empty {hashtag} is hashed by the tag alone, so keys that are used together can be kept in one slot.
+ */
+public final class HashSlots {
+  public static final int COUNT = 16384;
+  private static final int[] TABLE = new int[256];
+
+  static {
+    for (int i = 0; i < 256; i++) {
+      int crc = i << 8;
+      for (int bit = 0; bit < 8; bit++) {
+        crc = (crc & 0x8000) != 0 ? (crc << 1) ^ 0x1021 : crc << 1;
+      }
+      TABLE[i] = crc & 0xFFFF;
+    }
+  }
+
+  private HashSlots() {
+  }
+
+  public static int of(String key) {
+    int open = key.indexOf('{');
+    if (open >= 0) {
+      int close = key.indexOf('}', open + 1);
+      if (close > open + 1) {
+        return crc16(key, open + 1, close) & (COUNT - 1);
+      }
+    }
+    return crc16(key, 0, key.length()) & (COUNT - 1);
+  }
+
+  /**
+   * CRC16 of the chars from start to end, exclusive, each one byte as keys are ISO-8859-1.
+   */
+  private static int crc16(String key, int start, int end) {
+    int crc = 0;
+    for (int i = start; i < end; i++) {
+      crc = ((crc << 8) ^ TABLE[((crc >>> 8) ^ key.charAt(i)) & 0xFF]) & 0xFFFF;
+    }
+    return crc;
+  }
+}
@@ -0,0 +1,236 @@
+package db;
+
+import models.DataStoreValue;
+import models.QuickList;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Clients blocked on list keys (BLPOP, BRPOP, BLMOVE), served first come first served per key.
+ * <p>
+ * Elements are handed over directly: whoever adds elements to a list calls {@link #signal(String)}, which pops on
+ * behalf of the longest waiting clients while holding the list's lock, one client per element, and only then
+ * unparks them. A woken client therefore never has to race for the element it was woken for. A client claims itself
+ * through the same path after registering, so an element pushed between its first look and its registration is never
+ * missed. A client blocked on several keys sits in the queue of each of them and is claimed by at most one.
+ * <p>
+ * Each pop on a client's behalf is propagated as an LPOP or RPOP of the key, after whatever command added the
+ * elements. A BLMOVE client has its element pushed to its destination in the same write section, propagated as one
+ * LMOVE like Redis rewrites a served BLMOVE. When another thread holds the destination's lock, the client is woken
+ * to move the element itself in a section of its own instead, ahead of everyone behind it.
+ */
+public final class BlockingRegistry {
+  private static final Map<String, Queue<BlockedClient>> waiters = new ConcurrentHashMap<>();
+
+  private BlockingRegistry() {
+  }
+
+  /**
+   * @param element null when a BLMOVE destination holds another type, nothing was popped then
+   */
+  public record Served(String key, String element) {
+  }
+
+  /**
+   * Blocks until one of the keys holds a non-empty list and this client is the next one in line for it.
+   *
+   * @param timeoutMillis 0 waits forever
+   * @param fromHead pop the element from the head of the list rather than the tail
+   * @return the key served from and the element, null on timeout or interrupt
+   */
+  public static Served await(List<String> keys, long timeoutMillis, boolean fromHead) {
+    return await(keys, keys, timeoutMillis, new BlockedClient(Thread.currentThread(), fromHead, null, false));
+  }
+
+  /**
+   * Blocks until the source holds a non-empty list and this client is the next one in line for it, then moves an
+   * element to the destination.
+   *
+   * @param timeoutMillis 0 waits forever
+   * @return the source and the moved element, null on timeout or interrupt
+   */
+  public static Served awaitMove(String source, String destination, long timeoutMillis, boolean fromHead,
+                                 boolean toHead) {
+    BlockedClient client = new BlockedClient(Thread.currentThread(), fromHead, destination, toHead);
+    return await(List.of(source), List.of(source, destination), timeoutMillis, client);
+  }
+
+  private static Served await(List<String> keys, List<String> sectionKeys, long timeoutMillis, BlockedClient client) {
+    for (String key : keys) {
+      waiters.compute(key, (k, queue) -> {
+        Queue<BlockedClient> updated = queue == null ? new ConcurrentLinkedQueue<>() : queue;
+        updated.add(client);
+        return updated;
+      });
+    }
+    try {
+      long deadline = timeoutMillis == 0 ? 0 : System.nanoTime() + timeoutMillis * 1_000_000;
+      while (client.isWaiting()) {
+        // Serve ourselves from whatever is already there, behind anyone who was waiting before us. Done again on
+        // every wake-up, for a BLMOVE client woken to move its element itself
+        Propagation.begin(sectionKeys, null);
+        try {
+          for (String key : keys) {
+            signal(key);
+            if (!client.isWaiting()) {
+              break;
+            }
+          }
+        } finally {
+          Propagation.end(true);
+        }
+        if (!client.isWaiting()) {
+          break;
+        }
+        long remaining = deadline == 0 ? Long.MAX_VALUE : deadline - System.nanoTime();
+        // A transaction holds its keys until it ends, so nothing could be pushed while waiting: like Redis in EXEC,
+        // take only what is there already
+        if (remaining <= 0 || Thread.currentThread().isInterrupted() || Propagation.isInTransaction()) {
+          if (client.cancel()) {
+            return null;
+          }
+          // Claimed meanwhile, the element is on its way
+          break;
+        }
+        if (deadline == 0) {
+          LockSupport.park(client);
+        } else {
+          LockSupport.parkNanos(client, remaining);
+        }
+      }
+      return client.awaitResult();
+    } finally {
+      for (String key : keys) {
+        waiters.computeIfPresent(key, (k, queue) -> {
+          queue.remove(client);
+          return queue.isEmpty() ? null : queue;
+        });
+      }
+    }
+  }
+
+  /**
+   * Hands elements of the list at the key to blocked clients in arrival order, one element per client, until either
+   * runs out. Call after adding elements to a list, inside the write section that added them.
+   */
+  public static void signal(String key) {
+    Queue<BlockedClient> queue = waiters.get(key);
+    if (queue == null || queue.isEmpty()) {
+      return;
+    }
+    DataStoreValue value = DataStore.get(key);
+    if (value == null || !value.isList()) {
+      return;
+    }
+    QuickList list = value.getAsList();
+    List<BlockedClient> moving = new ArrayList<>(0);
+    List<String> moved = new ArrayList<>(0);
+    synchronized (list) {
+      BlockedClient client;
+      while (!list.isEmpty() && (client = queue.peek()) != null) {
+        if (client.destination != null && client.isWaiting() && !Propagation.tryLockKey(client.destination)) {
+          // Taking the destination's lock could deadlock, the client moves the element itself and the rest wait
+          LockSupport.unpark(client.thread);
+          break;
+        }
+        // Clients served through another key or timed out are only dropped here
+        if (client.claim()) {
+          if (client.destination == null) {
+            client.complete(key, client.fromHead ? list.popFirst() : list.popLast());
+            Propagation.propagate(List.of(client.fromHead ? "LPOP" : "RPOP", key));
+          } else if (holdsOtherType(client.destination)) {
+            client.complete(key, null);
+          } else {
+            moving.add(client);
+            moved.add(client.fromHead ? list.popFirst() : list.popLast());
+          }
+        }
+        queue.remove(client);
+      }
+    }
+    // Pushed once the source's lock is released, a push may serve clients blocked on the destination in turn
+    for (int i = 0; i < moving.size(); i++) {
+      BlockedClient client = moving.get(i);
+      push(client.destination, moved.get(i), client.toHead);
+      Propagation.propagate(List.of("LMOVE", key, client.destination, client.fromHead ? "LEFT" : "RIGHT",
+          client.toHead ? "LEFT" : "RIGHT"));
+      client.complete(key, moved.get(i));
+      signal(client.destination);
+    }
+    DataStore.removeIfEmptyList(key);
+  }
+
+  private static boolean holdsOtherType(String key) {
+    DataStoreValue value = DataStore.get(key);
+    return value != null && !value.isList();
+  }
+
+  private static void push(String key, String element, boolean toHead) {
+    DataStoreValue value = DataStore.get(key);
+    QuickList list = value == null ? new QuickList() : value.getAsList();
+    if (toHead) {
+      list.pushFirst(element);
+    } else {
+      list.pushLast(element);
+    }
+    if (value == null) {
+      DataStore.put(key, new DataStoreValue(list));
+    }
+  }
+
+  private static final class BlockedClient {
+    private static final int WAITING = 0;
+    private static final int CLAIMED = 1;
+    private static final int SERVED = 2;
+    private static final int CANCELLED = 3;
+
+    private final Thread thread;
+    private final boolean fromHead;
+    // Where a BLMOVE client's element goes, null for BLPOP and BRPOP
+    private final String destination;
+    private final boolean toHead;
+    private final AtomicInteger state = new AtomicInteger(WAITING);
+    // Written before state becomes SERVED, read after seeing it
+    private Served result;
+
+    BlockedClient(Thread thread, boolean fromHead, String destination, boolean toHead) {
+      this.thread = thread;
+      this.fromHead = fromHead;
+      this.destination = destination;
+      this.toHead = toHead;
+    }
+
+    boolean isWaiting() {
+      return state.get() == WAITING;
+    }
+
+    boolean claim() {
+      return state.compareAndSet(WAITING, CLAIMED);
+    }
+
+    boolean cancel() {
+      return state.compareAndSet(WAITING, CANCELLED);
+    }
+
+    void complete(String key, String element) {
+      result = new Served(key, element);
+      state.set(SERVED);
+      LockSupport.unpark(thread);
+    }
+
+    Served awaitResult() {
+      // A claim is completed right after it is made, in the same section, so this never spins for long
+      while (state.get() == CLAIMED) {
+        Thread.onSpinWait();
+      }
+      return result;
+    }
+  }
+}
@@ -1,67 +1,343 @@
 package db;
 
+import cluster.HashSlots;
 import models.DataStoreValue;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentNavigableMap;
-import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
 
 public class DataStore {
   public static final Map<String, DataStoreValue> store = new ConcurrentHashMap<>();
-  public static final Map<String, Queue<Thread>> waiterThreads = new ConcurrentHashMap<>();
-  public static final ConcurrentNavigableMap<String, Map<String, String>>  streams = new ConcurrentSkipListMap<>();
+  // Readers blocked in XREAD, every XADD wakes all readers of its stream
+  private static final Map<String, Set<Thread>> streamWaiters = new ConcurrentHashMap<>();
 
+  // Keys with a TTL ordered by expiry time, drained by the ExpiryManager
+  private static final ConcurrentSkipListSet<ExpiryEntry> expiryIndex = new ConcurrentSkipListSet<>();
+  // Write commands executed since startup, snapshots compare it to its value at the last save
+  private static final AtomicLong dirty = new AtomicLong();
+  // Set while a snapshot is taken, sees every key before a write section changes it
+  private static volatile Consumer<String> beforeWriteHook;
+  // Keys of each hash slot, only kept in cluster mode
+  private static volatile List<Set<String>> slotKeys;
+  // Estimated bytes of all keys and values, see DataStoreValue#memoryUsage
+  private static final AtomicLong usedMemory = new AtomicLong();
+
+  /**
+   * Returns the live value of the key and records the access for eviction. Expired values are removed on access,
+   * so no caller ever sees one.
+   */
   public static DataStoreValue get(String key) {
-    return store.get(key);
+    DataStoreValue value = store.get(key);
+    if (value != null && value.isExpired()) {
+      if (store.remove(key, value)) {
+        unindex(key, value);
+        removeFromSlot(key);
+        usedMemory.addAndGet(-value.releaseFootprint());
+        WatchedKeys.touch(key);
+      }
+      return null;
+    }
+    if (value != null) {
+      value.recordAccess(System.currentTimeMillis(), Eviction.countsFrequency());
+    }
+    return value;
   }
 
   public static void put(String key, DataStoreValue value) {
-    store.put(key, value);
+    DataStoreValue previous = store.put(key, value);
+    if (previous == null) {
+      addToSlot(key);
+    }
+    if (previous != value) {
+      unindex(key, previous);
+      index(key, value);
+      if (previous != null) {
+        usedMemory.addAndGet(-previous.releaseFootprint());
+      }
+      usedMemory.addAndGet(value.trackFootprint(key));
+    } else {
+      usedMemory.addAndGet(value.updateFootprint(key));
+    }
+  }
+
+  /**
+   * Estimates the values of the keys again after a command changed them in place, e.g. pushed to a list.
+   */
+  public static void updateMemoryUsage(List<String> keys) {
+    for (String key : keys) {
+      DataStoreValue value = store.get(key);
+      if (value != null) {
+        usedMemory.addAndGet(value.updateFootprint(key));
+      }
+    }
+  }
+
+  public static long getUsedMemory() {
+    return usedMemory.get();
+  }
+
+  /**
+   * Removes every key, e.g. before loading a full copy of a master's keyspace.
+   */
+  public static void clear() {
+    store.clear();
+    expiryIndex.clear();
+    usedMemory.set(0);
+    if (slotKeys != null) {
+      slotKeys.forEach(Set::clear);
+    }
+    WatchedKeys.touchAll();
   }
 
   public static boolean containsKey(String key) {
-    return store.containsKey(key);
+    return get(key) != null;
   }
 
-  public static void remove(String key) {
-    store.remove(key);
+  /**
+   * @return false when there was no such key
+   */
+  public static boolean remove(String key) {
+    DataStoreValue removed = store.remove(key);
+    if (removed != null) {
+      unindex(key, removed);
+      removeFromSlot(key);
+      usedMemory.addAndGet(-removed.releaseFootprint());
+    }
+    return removed != null;
   }
 
-  public static void notifyWaiter(String key) {
-    Queue<Thread> queue = waiterThreads.get(key);
-    if (queue != null) {
-      Thread lock = queue.poll();
-      if (lock != null) {
-        synchronized (lock) {
-          lock.notify();
+  /**
+   * Removes the key when it holds a list with no elements left, as Redis never keeps an empty list. Call from the
+   * write section that took the elements out, which holds the key's lock.
+   */
+  public static void removeIfEmptyList(String key) {
+    DataStoreValue value = store.get(key);
+    if (value != null && value.isList() && value.getAsList().isEmpty()) {
+      remove(key);
+    }
+  }
+
+  /**
+   * Changes the expiry of an existing key, 0 removes it.
+   *
+   * @return false when the key does not exist
+   */
+  public static boolean setExpiry(String key, long expiryTimeMillis) {
+    DataStoreValue value = get(key);
+    if (value == null) {
+      return false;
+    }
+    unindex(key, value);
+    value.setExpiryTimeMillis(expiryTimeMillis);
+    index(key, value);
+    return true;
+  }
+
+  /**
+   * Takes the earliest entry of the expiry index if it is due.
+   */
+  static ExpiryEntry pollExpired(long nowMillis) {
+    Iterator<ExpiryEntry> iterator = expiryIndex.iterator();
+    while (iterator.hasNext()) {
+      ExpiryEntry first = iterator.next();
+      if (first.expiryTimeMillis() >= nowMillis) {
+        return null;
+      }
+      // Lost a race with a concurrent put or remove of this entry, look at the next one
+      if (expiryIndex.remove(first)) {
+        return first;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Removes the key of a due index entry unless it was overwritten with a different expiry meanwhile. The removal is
+   * a write section propagated as a DEL, like an eviction, so the AOF and replicas drop the key too.
+   */
+  static boolean expireIfDue(ExpiryEntry entry) {
+    String key = entry.key();
+    boolean removed = false;
+    Propagation.begin(List.of(key), List.of("DEL", key));
+    try {
+      DataStoreValue value = store.get(key);
+      if (value != null && value.getExpiryTimeMillis() == entry.expiryTimeMillis()
+          && value.isExpired() && store.remove(key, value)) {
+        removeFromSlot(key);
+        usedMemory.addAndGet(-value.releaseFootprint());
+        removed = true;
+      }
+    } finally {
+      Propagation.end(removed);
+    }
+    if (removed) {
+      markDirty();
+    }
+    return removed;
+  }
+
+  /**
+   * About count keys from random places of the keyspace, without copying or walking all of it. Splitting the key
+   * set's spliterator hands out halves of the hash table, so descending into random halves until one is expected
+   * to hold a single key lands on a random stretch of a few bins. Whole stretches are taken, so every key is about as
+   * likely to be picked and the sample may end up a few keys larger than count.
+   */
+  static List<String> sampleKeys(int count) {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    List<String> sample = new ArrayList<>(count);
+    // Many bins are empty, so it takes more tries than keys
+    for (int tries = 0; tries < 4 * count && sample.size() < count; tries++) {
+      Spliterator<String> keys = store.keySet().spliterator();
+      while (keys.estimateSize() > 1) {
+        Spliterator<String> half = keys.trySplit();
+        if (half == null) {
+          break;
+        }
+        if (random.nextBoolean()) {
+          keys = half;
         }
       }
-      if (queue.isEmpty()) {
-        waiterThreads.remove(key, queue);
+      keys.forEachRemaining(key -> {
+        if (!sample.contains(key)) {
+          sample.add(key);
+        }
+      });
+    }
+    return sample;
+  }
+
+  /**
+   * Up to count keys with a TTL, looked up at random points in time between the earliest and the latest expiry.
+   */
+  static List<String> sampleVolatileKeys(int count) {
+    if (expiryIndex.isEmpty()) {
+      return List.of();
+    }
+    long earliest;
+    long latest;
+    try {
+      earliest = expiryIndex.first().expiryTimeMillis();
+      latest = expiryIndex.last().expiryTimeMillis();
+    } catch (NoSuchElementException e) {
+      // Emptied meanwhile
+      return List.of();
+    }
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    List<String> sample = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      long time = latest > earliest ? random.nextLong(earliest, latest + 1) : earliest;
+      ExpiryEntry entry = expiryIndex.ceiling(new ExpiryEntry(time, ""));
+      if (entry != null && !sample.contains(entry.key())) {
+        sample.add(entry.key());
       }
     }
+    return sample;
+  }
+
+  /**
+   * The key that expires next, null when no key has a TTL.
+   */
+  static String nextToExpire() {
+    ExpiryEntry entry = expiryIndex.ceiling(new ExpiryEntry(Long.MIN_VALUE, ""));
+    return entry == null ? null : entry.key();
+  }
+
+  /**
+   * Starts keeping the keys of each hash slot, before any key is added.
+   */
+  public static void enableSlotIndex() {
+    List<Set<String>> index = new ArrayList<>(HashSlots.COUNT);
+    for (int i = 0; i < HashSlots.COUNT; i++) {
+      index.add(ConcurrentHashMap.newKeySet());
+    }
+    slotKeys = index;
   }
 
-  public static void addWaiter(String key, Thread thread) {
-    waiterThreads.computeIfAbsent(key, k -> new LinkedList<>()).add(thread);
+  public static int countKeysInSlot(int slot) {
+    return slotKeys.get(slot).size();
   }
 
-  public static Queue<Thread> getWaiters(String key) {
-    return waiterThreads.get(key);
+  public static List<String> getKeysInSlot(int slot, int count) {
+    return slotKeys.get(slot).stream().limit(count).toList();
   }
 
-  public static void removeWaiter(String key, Thread thread) {
-    Queue<Thread> queue = waiterThreads.get(key);
-    if (queue != null) {
-      queue.remove(thread);
-      if (queue.isEmpty()) {
-        waiterThreads.remove(key);
+  private static void addToSlot(String key) {
+    List<Set<String>> index = slotKeys;
+    if (index != null) {
+      index.get(HashSlots.of(key)).add(key);
+    }
+  }
+
+  private static void removeFromSlot(String key) {
+    List<Set<String>> index = slotKeys;
+    if (index != null) {
+      Set<String> keys = index.get(HashSlots.of(key));
+      keys.remove(key);
+      // A put since the removal from the map added the key again, and may have added it to the slot before this
+      if (store.containsKey(key)) {
+        keys.add(key);
       }
     }
   }
 
-  public static void cleanUpWaiter(String key) {
-    waiterThreads.remove(key);
+  private static void index(String key, DataStoreValue value) {
+    if (value != null && value.hasExpiry()) {
+      expiryIndex.add(new ExpiryEntry(value.getExpiryTimeMillis(), key));
+    }
+  }
+
+  private static void unindex(String key, DataStoreValue value) {
+    if (value != null && value.hasExpiry()) {
+      expiryIndex.remove(new ExpiryEntry(value.getExpiryTimeMillis(), key));
+    }
+  }
+
+  /**
+   * Installs the hook called with each key about to be changed, null removes it.
+   */
+  public static void setBeforeWriteHook(Consumer<String> hook) {
+    beforeWriteHook = hook;
+  }
+
+  static void beforeWrite(String key) {
+    Consumer<String> hook = beforeWriteHook;
+    if (hook != null) {
+      hook.accept(key);
+    }
+  }
+
+  public static void markDirty() {
+    dirty.incrementAndGet();
+  }
+
+  public static long getDirty() {
+    return dirty.get();
+  }
+
+  public static void addStreamWaiter(String key, Thread thread) {
+    streamWaiters.compute(key, (k, waiters) -> {
+      Set<Thread> updated = waiters == null ? ConcurrentHashMap.newKeySet() : waiters;
+      updated.add(thread);
+      return updated;
+    });
+  }
+
+  public static void removeStreamWaiter(String key, Thread thread) {
+    streamWaiters.computeIfPresent(key, (k, waiters) -> {
+      waiters.remove(thread);
+      return waiters.isEmpty() ? null : waiters;
+    });
+  }
+
+  public static void notifyStreamWaiters(String key) {
+    Set<Thread> waiters = streamWaiters.get(key);
+    if (waiters != null) {
+      waiters.forEach(LockSupport::unpark);
+    }
   }
 
   public static void printDataStore() {
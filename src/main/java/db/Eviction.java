@@ -0,0 +1,142 @@
+package db;
+
+import models.DataStoreValue;
+import server.ServerConfig;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the estimated memory of the keyspace under maxmemory by evicting keys before write commands.
+ * <p>
+ * Like Redis it does not keep the keys in access order, which every read would have to update under a shared lock.
+ * Each value records its last access and a logarithmic access counter instead, and eviction samples
+ * maxmemory-samples keys and removes the best candidate of the sample: the one idle the longest (lru), the one
+ * accessed least often (lfu), or for volatile-ttl simply the key that expires next. The allkeys policies sample the
+ * whole keyspace, the volatile ones only keys with a TTL. An evicted key is propagated as a DEL, so replicas and
+ * the AOF drop it too.
+ */
+public final class Eviction {
+
+  public enum Policy {
+    NOEVICTION, ALLKEYS_LRU, ALLKEYS_LFU, VOLATILE_LRU, VOLATILE_LFU, VOLATILE_TTL;
+
+    static Policy parse(String name) {
+      try {
+        return valueOf(name.toUpperCase().replace('-', '_'));
+      } catch (IllegalArgumentException e) {
+        throw new IllegalArgumentException("Invalid maxmemory-policy: " + name);
+      }
+    }
+
+    boolean isVolatile() {
+      return this == VOLATILE_LRU || this == VOLATILE_LFU || this == VOLATILE_TTL;
+    }
+
+    boolean isLfu() {
+      return this == ALLKEYS_LFU || this == VOLATILE_LFU;
+    }
+  }
+
+  // Samples in a row that found nothing to evict before giving up
+  private static final int MAX_EMPTY_SAMPLES = 16;
+
+  private static volatile long maxMemory = 0;
+  private static volatile Policy policy = Policy.NOEVICTION;
+  private static volatile int samples = 5;
+  private static final AtomicLong evictedKeys = new AtomicLong();
+
+  private Eviction() {
+  }
+
+  /**
+   * Reads maxmemory, maxmemory-policy and maxmemory-samples, before any key is loaded.
+   */
+  public static void start() {
+    maxMemory = ServerConfig.getLong("maxmemory");
+    policy = Policy.parse(ServerConfig.get("maxmemory-policy"));
+    samples = Math.max(1, ServerConfig.getInt("maxmemory-samples"));
+  }
+
+  /**
+   * Tells whether reads have to count accesses towards the LFU counters.
+   */
+  static boolean countsFrequency() {
+    return policy.isLfu();
+  }
+
+  public static boolean isOverLimit() {
+    return maxMemory > 0 && DataStore.getUsedMemory() > maxMemory;
+  }
+
+  /**
+   * Evicts keys until the used memory is under maxmemory.
+   *
+   * @return false when it is still over, because the policy is noeviction or there is nothing left to evict
+   */
+  public static boolean freeMemory() {
+    if (policy == Policy.NOEVICTION) {
+      return !isOverLimit();
+    }
+    int emptySamples = 0;
+    while (isOverLimit()) {
+      String key = pickKey();
+      if (key != null && evict(key)) {
+        emptySamples = 0;
+      } else if (++emptySamples == MAX_EMPTY_SAMPLES) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  public static long getMaxMemory() {
+    return maxMemory;
+  }
+
+  public static String getPolicyName() {
+    return policy.name().toLowerCase().replace('_', '-');
+  }
+
+  public static long getEvictedKeys() {
+    return evictedKeys.get();
+  }
+
+  private static String pickKey() {
+    if (policy == Policy.VOLATILE_TTL) {
+      return DataStore.nextToExpire();
+    }
+    List<String> sample = policy.isVolatile() ? DataStore.sampleVolatileKeys(samples) : DataStore.sampleKeys(samples);
+    long now = System.currentTimeMillis();
+    String best = null;
+    long bestScore = -1;
+    for (String key : sample) {
+      // Read from the map directly, a lookup through DataStore would count as an access
+      DataStoreValue value = DataStore.store.get(key);
+      if (value == null) {
+        continue;
+      }
+      long score = policy.isLfu() ? 255 - value.getFrequency(now) : value.getIdleMillis(now);
+      if (score > bestScore) {
+        best = key;
+        bestScore = score;
+      }
+    }
+    return best;
+  }
+
+  private static boolean evict(String key) {
+    boolean removed = false;
+    Propagation.begin(List.of(key), List.of("DEL", key));
+    try {
+      removed = DataStore.remove(key);
+    } finally {
+      Propagation.end(removed);
+    }
+    if (removed) {
+      evictedKeys.incrementAndGet();
+      DataStore.markDirty();
+    }
+    return removed;
+  }
+}
@@ -0,0 +1,13 @@
+package db;
+
+/**
+ * Position of a key in the expiry index, ordered by expiry time and then by key.
+ */
+record ExpiryEntry(long expiryTimeMillis, String key) implements Comparable<ExpiryEntry> {
+
+  @Override
+  public int compareTo(ExpiryEntry other) {
+    int byTime = Long.compare(expiryTimeMillis, other.expiryTimeMillis);
+    return byTime != 0 ? byTime : key.compareTo(other.key);
+  }
+}
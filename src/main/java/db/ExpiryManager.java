@@ -0,0 +1,67 @@
+package db;
+
+import server.ServerConfig;
+
+/**
+ * Background thread that actively removes expired keys, so keys nobody reads again do not stay in memory.
+ * <p>
+ * It wakes up hz times per second and pops due keys off the expiry index in expiry order. A cycle stops once it
+ * has used its share of the period (active-expire-cpu-percent), the remaining keys are picked up by the next
+ * cycle and are still hidden from readers by the lazy check in {@link DataStore#get(String)}.
+ */
+public class ExpiryManager implements Runnable {
+  private static final int KEYS_PER_TIME_CHECK = 16;
+
+  private final long periodMillis;
+  private final long budgetNanos;
+
+  public ExpiryManager(int hz, int cpuPercent) {
+    this.periodMillis = Math.max(1, 1000 / hz);
+    this.budgetNanos = periodMillis * 1_000_000 * cpuPercent / 100;
+  }
+
+  public static void start() {
+    ExpiryManager manager = new ExpiryManager(ServerConfig.getInt("hz"),
+        ServerConfig.getInt("active-expire-cpu-percent"));
+    Thread thread = new Thread(manager, "active-expiry");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  @Override
+  public void run() {
+    while (true) {
+      try {
+        Thread.sleep(periodMillis);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+      runCycle();
+    }
+  }
+
+  /**
+   * Expires due keys until none are left or the cycle budget is spent.
+   *
+   * @return number of keys removed
+   */
+  int runCycle() {
+    long deadline = System.nanoTime() + budgetNanos;
+    int removed = 0;
+    int checked = 0;
+    while (true) {
+      ExpiryEntry entry = DataStore.pollExpired(System.currentTimeMillis());
+      if (entry == null) {
+        break;
+      }
+      if (DataStore.expireIfDue(entry)) {
+        removed++;
+      }
+      if (++checked % KEYS_PER_TIME_CHECK == 0 && System.nanoTime() > deadline) {
+        break;
+      }
+    }
+    return removed;
+  }
+}
@@ -0,0 +1,303 @@
+package db;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * Hands the effects of write commands to listeners such as the AOF, as commands that replay to the same keyspace.
+ * <p>
+ * Every change to the keyspace runs inside a write section opened with {@link #begin(List, List)} and closed with
+ * {@link #end(boolean)}. A section first reports its keys to {@link DataStore#beforeWrite(String)}, so a snapshot
+ * in progress can copy them before they change, and collects what to propagate: by default the command itself,
+ * which executors replace with deterministic forms (an XADD with * becomes one with the generated ID), followed by
+ * effects on other clients' behalf (elements popped for blocked BLPOP clients). Listeners get the collected
+ * commands when the section ends.
+ * <p>
+ * Sections hold the read side of a barrier, so {@link #atomically(Runnable)} can start a snapshot at a point where
+ * no change is half done: every change either is in the snapshot and was propagated before, or comes after. They
+ * also lock their keys, taken in stripe order so sections on different keys never deadlock, so the changes to one
+ * key reach the listeners in the order they were made.
+ * <p>
+ * A transaction ({@link #beginTransaction(List)}) takes the locks of every key its commands touch up front, in the
+ * same stripe order, and holds them until it ends. Its commands' sections run under those locks, so no other write
+ * to its keys lands in between, and their commands reach the listeners together, wrapped in MULTI and EXEC.
+ */
+public final class Propagation {
+  public static final int KEY_LOCK_STRIPES = 1024;
+
+  private static final ReentrantReadWriteLock barrier = new ReentrantReadWriteLock();
+  private static final ReentrantLock[] keyLocks = new ReentrantLock[KEY_LOCK_STRIPES];
+  private static final List<Listener> listeners = new CopyOnWriteArrayList<>();
+  private static final ThreadLocal<Section> current = new ThreadLocal<>();
+  private static final ThreadLocal<Section> transaction = new ThreadLocal<>();
+
+  static {
+    for (int i = 0; i < KEY_LOCK_STRIPES; i++) {
+      keyLocks[i] = new ReentrantLock();
+    }
+  }
+
+  private Propagation() {
+  }
+
+  public interface Listener {
+    /**
+     * Called with the commands of one section, in order, while the section still holds the barrier.
+     */
+    void propagate(List<List<String>> commands);
+  }
+
+  public static void addListener(Listener listener) {
+    listeners.add(listener);
+  }
+
+  /**
+   * Opens a write section on the calling thread. Sections do not nest.
+   *
+   * @param keys every key the section may change
+   * @param command name and arguments to propagate for the section, null when the section propagates only what is
+   *                added through {@link #propagate(List)}
+   */
+  public static void begin(List<String> keys, List<String> command) {
+    // The transaction already holds the barrier and the locks of every key its commands write
+    Section section = new Section(keys, transaction.get() == null ? lock(keys) : new int[0]);
+    if (command != null) {
+      section.commands.add(command);
+    }
+    current.set(section);
+    for (String key : keys) {
+      DataStore.beforeWrite(key);
+    }
+  }
+
+  /**
+   * Propagates these commands for the section's command instead of the command itself, none to propagate nothing.
+   */
+  public static void replaceCommand(List<List<String>> commands) {
+    Section section = current.get();
+    if (section != null) {
+      section.commands = new ArrayList<>(commands);
+    }
+  }
+
+  /**
+   * Adds a command to propagate after the section's own. Outside of a section it is handed to the listeners at once.
+   */
+  public static void propagate(List<String> command) {
+    Section section = current.get();
+    if (section != null) {
+      section.followUps.add(command);
+    } else if (transaction.get() != null) {
+      transaction.get().commands.add(command);
+    } else {
+      notifyListeners(List.of(command));
+    }
+  }
+
+  /**
+   * Closes the section of the calling thread.
+   *
+   * @param succeeded false when the command failed, only its follow-ups are propagated then
+   */
+  public static void end(boolean succeeded) {
+    Section section = current.get();
+    current.remove();
+    try {
+      List<List<String>> commands = new ArrayList<>();
+      if (succeeded) {
+        commands.addAll(section.commands);
+      }
+      commands.addAll(section.followUps);
+      // A section that propagates nothing changed nothing, e.g. a SET NX on an existing key
+      if (!commands.isEmpty()) {
+        for (String key : section.keys) {
+          WatchedKeys.touch(key);
+        }
+      }
+      Section enclosing = transaction.get();
+      if (enclosing != null) {
+        enclosing.commands.addAll(commands);
+      } else if (!commands.isEmpty()) {
+        notifyListeners(commands);
+      }
+    } finally {
+      if (transaction.get() == null) {
+        unlockExtra(section);
+        unlock(section.stripes);
+      }
+    }
+  }
+
+  /**
+   * Adds a key to those the calling thread's section changes, when its lock can be had without waiting: it is taken
+   * out of stripe order, which could deadlock with another section otherwise. The lock is released with the
+   * section's, or the transaction's when inside one.
+   *
+   * @return false when another thread holds the key's lock
+   */
+  public static boolean tryLockKey(String key) {
+    Section section = current.get();
+    Section holder = transaction.get() == null ? section : transaction.get();
+    int stripe = stripeOf(key);
+    if (!keyLocks[stripe].isHeldByCurrentThread()) {
+      if (!keyLocks[stripe].tryLock()) {
+        return false;
+      }
+      holder.extraStripes.add(stripe);
+    }
+    if (!section.keys.contains(key)) {
+      section.keys = new ArrayList<>(section.keys);
+      section.keys.add(key);
+      DataStore.beforeWrite(key);
+    }
+    return true;
+  }
+
+  /**
+   * Locks the keys of a transaction on the calling thread until {@link #endTransaction()}. Sections opened meanwhile
+   * must only change these keys.
+   */
+  public static void beginTransaction(List<String> keys) {
+    transaction.set(new Section(keys, lock(keys)));
+  }
+
+  public static boolean isInTransaction() {
+    return transaction.get() != null;
+  }
+
+  /**
+   * Hands what the transaction's sections collected to the listeners, as one MULTI ... EXEC block when there is
+   * more than one command, and releases its keys.
+   */
+  public static void endTransaction() {
+    Section section = transaction.get();
+    transaction.remove();
+    try {
+      List<List<String>> commands = section.commands;
+      if (commands.size() > 1) {
+        commands.add(0, List.of("MULTI"));
+        commands.add(List.of("EXEC"));
+      }
+      if (!commands.isEmpty()) {
+        notifyListeners(commands);
+      }
+    } finally {
+      unlockExtra(section);
+      unlock(section.stripes);
+    }
+  }
+
+  /**
+   * Runs the read while holding the key's lock, so no write section changes the key meanwhile.
+   */
+  public static <T> T readLocked(String key, Supplier<T> read) {
+    ReentrantLock lock = keyLocks[stripeOf(key)];
+    lock.lock();
+    try {
+      return read.get();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Runs the read while holding the locks of all the keys, taken in stripe order like write sections take them, so
+   * it sees every write section on them either whole or not at all.
+   */
+  public static void readLocked(List<String> keys, Runnable read) {
+    int[] stripes = stripesOf(keys);
+    for (int stripe : stripes) {
+      keyLocks[stripe].lock();
+    }
+    try {
+      read.run();
+    } finally {
+      for (int i = stripes.length - 1; i >= 0; i--) {
+        keyLocks[stripes[i]].unlock();
+      }
+    }
+  }
+
+  /**
+   * Runs the action while no write section is open.
+   */
+  public static void atomically(Runnable action) {
+    barrier.writeLock().lock();
+    try {
+      action.run();
+    } finally {
+      barrier.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Takes the barrier and the locks of the keys.
+   *
+   * @return the locked stripes
+   */
+  private static int[] lock(List<String> keys) {
+    barrier.readLock().lock();
+    int[] stripes = stripesOf(keys);
+    for (int stripe : stripes) {
+      keyLocks[stripe].lock();
+    }
+    return stripes;
+  }
+
+  private static void unlock(int[] stripes) {
+    for (int i = stripes.length - 1; i >= 0; i--) {
+      keyLocks[stripes[i]].unlock();
+    }
+    barrier.readLock().unlock();
+  }
+
+  private static void unlockExtra(Section section) {
+    for (int stripe : section.extraStripes) {
+      keyLocks[stripe].unlock();
+    }
+  }
+
+  /**
+   * Distinct lock stripes of the keys in ascending order.
+   */
+  private static int[] stripesOf(List<String> keys) {
+    int[] stripes = new int[keys.size()];
+    for (int i = 0; i < stripes.length; i++) {
+      stripes[i] = stripeOf(keys.get(i));
+    }
+    return Arrays.stream(stripes).sorted().distinct().toArray();
+  }
+
+  /**
+   * Lock stripe of the key, sharded execution gives each worker whole stripes so they never contend for a lock.
+   */
+  public static int stripeOf(String key) {
+    int hash = key.hashCode() * 0x9E3779B9;
+    return (hash ^ (hash >>> 16)) & (KEY_LOCK_STRIPES - 1);
+  }
+
+  private static void notifyListeners(List<List<String>> commands) {
+    for (Listener listener : listeners) {
+      listener.propagate(commands);
+    }
+  }
+
+  private static final class Section {
+    private List<String> keys;
+    private final int[] stripes;
+    // Taken later through tryLockKey
+    private final List<Integer> extraStripes = new ArrayList<>(0);
+    private List<List<String>> commands = new ArrayList<>(1);
+    private final List<List<String>> followUps = new ArrayList<>(0);
+
+    Section(List<String> keys, int[] stripes) {
+      this.keys = keys;
+      this.stripes = stripes;
+    }
+  }
+}
@@ -0,0 +1,69 @@
+package db;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Modification versions of the keys clients WATCH, like Redis' watched_keys.
+ * <p>
+ * Only watched keys have an entry, so a write to any other key costs one look at an empty or small map. Every change
+ * to a watched key bumps its version: writes when their section propagates something (a section that propagates
+ * nothing changed nothing, e.g. a SET NX on an existing key), and removal on expiry. A transaction compares the
+ * versions it saw at WATCH with the current ones while holding the keys' locks, so no write can slip in between the
+ * check and its commands. Entries go away with their last watcher.
+ */
+public final class WatchedKeys {
+  private static final Map<String, Watched> watched = new ConcurrentHashMap<>();
+
+  private WatchedKeys() {
+  }
+
+  private static final class Watched {
+    private long version = 0;
+    private int watchers = 0;
+  }
+
+  /**
+   * Adds a watcher of the key.
+   *
+   * @return the key's current version
+   */
+  public static long watch(String key) {
+    long[] version = new long[1];
+    watched.compute(key, (k, entry) -> {
+      Watched updated = entry == null ? new Watched() : entry;
+      updated.watchers++;
+      version[0] = updated.version;
+      return updated;
+    });
+    return version[0];
+  }
+
+  public static void unwatch(String key) {
+    watched.computeIfPresent(key, (k, entry) -> --entry.watchers == 0 ? null : entry);
+  }
+
+  /**
+   * Version of a key the caller watches.
+   */
+  public static long versionOf(String key) {
+    Watched entry = watched.get(key);
+    return entry == null ? -1 : entry.version;
+  }
+
+  static void touch(String key) {
+    if (!watched.isEmpty()) {
+      watched.computeIfPresent(key, (k, entry) -> {
+        entry.version++;
+        return entry;
+      });
+    }
+  }
+
+  static void touchAll() {
+    watched.replaceAll((key, entry) -> {
+      entry.version++;
+      return entry;
+    });
+  }
+}
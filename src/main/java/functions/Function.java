@@ -0,0 +1,87 @@
+package functions;
+
+import models.RespCommand;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A compiled function: its commands with every argument resolved at load time to a literal or to a position in the
+ * KEYS or ARGV of the call, so a call only fills in the positions.
+ */
+public final class Function {
+  private final String name;
+  private final String libraryName;
+  private final List<Step> steps;
+  private final int keyCount;
+  private final int argCount;
+
+  enum Source { LITERAL, KEYS, ARGV }
+
+  /**
+   * @param index 0-based position in KEYS or ARGV, unused for literals
+   */
+  record Arg(Source source, String literal, int index) {
+  }
+
+  record Step(String command, List<Arg> args) {
+  }
+
+  Function(String name, String libraryName, List<Step> steps) {
+    this.name = name;
+    this.libraryName = libraryName;
+    this.steps = List.copyOf(steps);
+    int keys = 0;
+    int args = 0;
+    for (Step step : steps) {
+      for (Arg arg : step.args()) {
+        if (arg.source() == Source.KEYS) {
+          keys = Math.max(keys, arg.index() + 1);
+        } else if (arg.source() == Source.ARGV) {
+          args = Math.max(args, arg.index() + 1);
+        }
+      }
+    }
+    this.keyCount = keys;
+    this.argCount = args;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public String getLibraryName() {
+    return libraryName;
+  }
+
+  /**
+   * Number of keys a call has to pass, the highest KEYS position the commands use.
+   */
+  public int getKeyCount() {
+    return keyCount;
+  }
+
+  public int getArgCount() {
+    return argCount;
+  }
+
+  /**
+   * The commands of a call with these keys and arguments, which must cover {@link #getKeyCount()} and
+   * {@link #getArgCount()}.
+   */
+  public List<RespCommand> bind(List<String> keys, List<String> args) {
+    List<RespCommand> commands = new ArrayList<>(steps.size());
+    for (Step step : steps) {
+      List<String> bound = new ArrayList<>(step.args().size());
+      for (Arg arg : step.args()) {
+        bound.add(switch (arg.source()) {
+          case LITERAL -> arg.literal();
+          case KEYS -> keys.get(arg.index());
+          case ARGV -> args.get(arg.index());
+        });
+      }
+      commands.add(new RespCommand(step.command(), bound));
+    }
+    return commands;
+  }
+}
@@ -0,0 +1,220 @@
+package functions;
+
+import models.RespCommand;
+import processors.CommandKeys;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A library of functions as FUNCTION LOAD takes it, compiled once when loaded.
+ * <p>
+ * Instead of Lua the code is a list of commands per function, with KEYS[n] and ARGV[n] (1-based, as in Redis
+ * scripts) standing for the keys and arguments of the call:
+ * <pre>
+ * #!commands name=counters
+ * -- Counts a hit and returns the count of the window
+ * function hit
+ *   INCR KEYS[1]
+ *   EXPIRE KEYS[1] ARGV[1] NX
+ *   GET KEYS[1]
+ * end
+ * </pre>
+ * Arguments are separated by spaces, double quotes make a literal of anything, e.g. "a b" or "KEYS[1]". Every key a
+ * command touches has to come from KEYS, so the keys of a call are known from the call alone, the way cluster
+ * routing and the transaction's locks need them.
+ */
+public final class FunctionLibrary {
+  public static final String ENGINE = "COMMANDS";
+
+  private static final Pattern HEADER = Pattern.compile("#!(\\S+)\\s+name=(\\S*)\\s*");
+  private static final Pattern NAME = Pattern.compile("[A-Za-z0-9_]+");
+  private static final Pattern REFERENCE = Pattern.compile("(KEYS|ARGV)\\[(\\d+)]");
+  // Commands that manage the connection or the server, or may park, which have no place inside an atomic call
+  private static final Set<String> DISALLOWED_COMMANDS = Set.of(
+      "MULTI", "EXEC", "DISCARD", "WATCH", "UNWATCH", "FCALL", "FUNCTION", "PSYNC", "REPLCONF", "WAIT", "MIGRATE",
+      "ASKING", "CLUSTER", "SAVE", "BGSAVE", "BGREWRITEAOF");
+  // Stands for a KEYS position while checking which arguments are keys
+  private static final String KEY_MARK = "\0KEYS";
+
+  private final String name;
+  private final String code;
+  private final Map<String, Function> functions;
+
+  private FunctionLibrary(String name, String code, Map<String, Function> functions) {
+    this.name = name;
+    this.code = code;
+    this.functions = functions;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public String getCode() {
+    return code;
+  }
+
+  public Map<String, Function> getFunctions() {
+    return functions;
+  }
+
+  /**
+   * @throws IllegalArgumentException with the message to reply when the code does not compile
+   */
+  public static FunctionLibrary compile(String code) {
+    String[] lines = code.split("\r?\n", -1);
+    Matcher header = HEADER.matcher(lines[0]);
+    if (!header.matches()) {
+      throw new IllegalArgumentException("Missing library metadata");
+    }
+    if (!header.group(1).equalsIgnoreCase(ENGINE)) {
+      throw new IllegalArgumentException("Engine '" + header.group(1) + "' not found");
+    }
+    String libraryName = header.group(2);
+    if (!NAME.matcher(libraryName).matches()) {
+      throw new IllegalArgumentException("Library names can only contain letters, numbers, or underscores(_)");
+    }
+    Map<String, Function> functions = new LinkedHashMap<>();
+    String functionName = null;
+    List<Function.Step> steps = new ArrayList<>();
+    for (int i = 1; i < lines.length; i++) {
+      String line = lines[i].strip();
+      if (line.isEmpty() || line.startsWith("--") || line.startsWith("#")) {
+        continue;
+      }
+      List<String> tokens;
+      try {
+        tokens = tokenize(line);
+      } catch (IllegalArgumentException e) {
+        throw atLine(i, e.getMessage());
+      }
+      String first = tokens.get(0);
+      if (functionName == null) {
+        if (!first.equals("function") || tokens.size() != 2) {
+          throw atLine(i, "expected 'function <name>'");
+        }
+        functionName = tokens.get(1);
+        if (!NAME.matcher(functionName).matches()) {
+          throw atLine(i, "function names can only contain letters, numbers, or underscores(_)");
+        }
+        if (functions.containsKey(functionName)) {
+          throw new IllegalArgumentException("Function " + functionName + " already exists in the library");
+        }
+      } else if (first.equals("end") && tokens.size() == 1) {
+        if (steps.isEmpty()) {
+          throw atLine(i, "function " + functionName + " has no commands");
+        }
+        functions.put(functionName, new Function(functionName, libraryName, steps));
+        functionName = null;
+        steps = new ArrayList<>();
+      } else {
+        try {
+          steps.add(compileStep(tokens));
+        } catch (IllegalArgumentException e) {
+          throw atLine(i, e.getMessage());
+        }
+      }
+    }
+    if (functionName != null) {
+      throw new IllegalArgumentException("Error compiling function " + functionName + ": missing 'end'");
+    }
+    if (functions.isEmpty()) {
+      throw new IllegalArgumentException("No functions registered");
+    }
+    return new FunctionLibrary(libraryName, code, Collections.unmodifiableMap(functions));
+  }
+
+  private static Function.Step compileStep(List<String> tokens) {
+    String command = tokens.get(0);
+    if (command.startsWith("\"")) {
+      throw new IllegalArgumentException("a command name can not be quoted");
+    }
+    command = command.toUpperCase();
+    if (DISALLOWED_COMMANDS.contains(command)) {
+      throw new IllegalArgumentException("command " + command + " is not allowed in functions");
+    }
+    List<Function.Arg> args = new ArrayList<>(tokens.size() - 1);
+    List<String> marked = new ArrayList<>(tokens.size() - 1);
+    for (String token : tokens.subList(1, tokens.size())) {
+      Function.Arg arg = compileArg(token);
+      args.add(arg);
+      marked.add(switch (arg.source()) {
+        case LITERAL -> arg.literal();
+        case KEYS -> KEY_MARK + arg.index();
+        case ARGV -> "";
+      });
+    }
+    for (String key : CommandKeys.of(new RespCommand(command, marked))) {
+      if (!key.startsWith(KEY_MARK)) {
+        throw new IllegalArgumentException("command " + command + " uses a key not taken from KEYS");
+      }
+    }
+    return new Function.Step(command, args);
+  }
+
+  private static Function.Arg compileArg(String token) {
+    if (token.startsWith("\"")) {
+      return new Function.Arg(Function.Source.LITERAL, token.substring(1), -1);
+    }
+    Matcher reference = REFERENCE.matcher(token);
+    if (!reference.matches()) {
+      return new Function.Arg(Function.Source.LITERAL, token, -1);
+    }
+    int position = Integer.parseInt(reference.group(2));
+    if (position < 1) {
+      throw new IllegalArgumentException(token + " is out of range, positions start at 1");
+    }
+    Function.Source source = reference.group(1).equals("KEYS") ? Function.Source.KEYS : Function.Source.ARGV;
+    return new Function.Arg(source, null, position - 1);
+  }
+
+  /**
+   * Splits a line at spaces. A quoted token keeps its opening quote, which marks it as a literal, and loses the
+   * closing one.
+   */
+  private static List<String> tokenize(String line) {
+    List<String> tokens = new ArrayList<>();
+    int i = 0;
+    while (i < line.length()) {
+      char c = line.charAt(i);
+      if (Character.isWhitespace(c)) {
+        i++;
+      } else if (c == '"') {
+        StringBuilder token = new StringBuilder("\"");
+        i++;
+        while (true) {
+          if (i == line.length()) {
+            throw new IllegalArgumentException("unbalanced quotes");
+          }
+          c = line.charAt(i++);
+          if (c == '"') {
+            break;
+          }
+          if (c == '\\' && i < line.length()) {
+            c = line.charAt(i++);
+          }
+          token.append(c);
+        }
+        tokens.add(token.toString());
+      } else {
+        int start = i;
+        while (i < line.length() && !Character.isWhitespace(line.charAt(i))) {
+          i++;
+        }
+        tokens.add(line.substring(start, i));
+      }
+    }
+    return tokens;
+  }
+
+  private static IllegalArgumentException atLine(int index, String message) {
+    return new IllegalArgumentException("Error compiling function at line " + (index + 1) + ": " + message);
+  }
+}
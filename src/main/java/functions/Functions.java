@@ -0,0 +1,79 @@
+package functions;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The loaded function libraries.
+ * <p>
+ * Calls look functions up in an immutable map that every change replaces, so FCALL takes no lock. Changes run in
+ * write sections, and libraries are saved with the keyspace in the RDB file and AOF preamble, so they survive
+ * restarts and reach replicas with a full resync.
+ */
+public final class Functions {
+  private static volatile Map<String, FunctionLibrary> libraries = Map.of();
+  private static volatile Map<String, Function> functions = Map.of();
+
+  private Functions() {
+  }
+
+  /**
+   * Compiles and loads the library.
+   *
+   * @param replace whether a library of the same name is replaced, otherwise it is an error
+   * @return the library's name
+   * @throws IllegalArgumentException with the message to reply when it does not compile or clashes
+   */
+  public static synchronized String load(String code, boolean replace) {
+    FunctionLibrary library = FunctionLibrary.compile(code);
+    if (!replace && libraries.containsKey(library.getName())) {
+      throw new IllegalArgumentException("Library '" + library.getName() + "' already exists");
+    }
+    for (Function function : library.getFunctions().values()) {
+      Function existing = functions.get(function.getName());
+      if (existing != null && !existing.getLibraryName().equals(library.getName())) {
+        throw new IllegalArgumentException("Function " + function.getName() + " already exists");
+      }
+    }
+    Map<String, FunctionLibrary> updated = new HashMap<>(libraries);
+    updated.put(library.getName(), library);
+    publish(updated);
+    return library.getName();
+  }
+
+  /**
+   * @return false when there is no such library
+   */
+  public static synchronized boolean delete(String libraryName) {
+    if (!libraries.containsKey(libraryName)) {
+      return false;
+    }
+    Map<String, FunctionLibrary> updated = new HashMap<>(libraries);
+    updated.remove(libraryName);
+    publish(updated);
+    return true;
+  }
+
+  public static synchronized void flush() {
+    publish(Map.of());
+  }
+
+  public static Function get(String name) {
+    return functions.get(name);
+  }
+
+  public static Collection<FunctionLibrary> libraries() {
+    return List.copyOf(libraries.values());
+  }
+
+  private static void publish(Map<String, FunctionLibrary> updated) {
+    Map<String, Function> byName = new HashMap<>();
+    for (FunctionLibrary library : updated.values()) {
+      byName.putAll(library.getFunctions());
+    }
+    functions = Map.copyOf(byName);
+    libraries = Map.copyOf(updated);
+  }
+}
@@ -0,0 +1,277 @@
+package models;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Consumer group of a stream: the last ID handed out to the group and the pending entries list (PEL).
+ * <p>
+ * The PEL is indexed twice, by ID for the whole group and by ID per consumer, so acknowledging, claiming and
+ * scanning from a cursor are all O(log n) seeks and rebalancing only walks the entries it returns.
+ * All methods synchronize on the group.
+ */
+public class ConsumerGroup {
+  private final String name;
+  private StreamId lastDeliveredId;
+  private final TreeMap<StreamId, PendingEntry> pending = new TreeMap<>();
+  private final Map<String, TreeMap<StreamId, PendingEntry>> consumers = new LinkedHashMap<>();
+
+  public ConsumerGroup(String name, StreamId lastDeliveredId) {
+    this.name = name;
+    this.lastDeliveredId = lastDeliveredId;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public synchronized StreamId getLastDeliveredId() {
+    return lastDeliveredId;
+  }
+
+  public synchronized void setLastDeliveredId(StreamId lastDeliveredId) {
+    this.lastDeliveredId = lastDeliveredId;
+  }
+
+  /**
+   * @return false when the consumer already exists
+   */
+  public synchronized boolean createConsumer(String consumer) {
+    if (consumers.containsKey(consumer)) {
+      return false;
+    }
+    consumers.put(consumer, new TreeMap<>());
+    return true;
+  }
+
+  /**
+   * Deletes the consumer together with its pending entries.
+   *
+   * @return number of pending entries the consumer had, -1 when it did not exist
+   */
+  public synchronized long deleteConsumer(String consumer) {
+    TreeMap<StreamId, PendingEntry> owned = consumers.remove(consumer);
+    if (owned == null) {
+      return -1;
+    }
+    owned.keySet().forEach(pending::remove);
+    return owned.size();
+  }
+
+  /**
+   * Names of all consumers, including those with nothing pending.
+   */
+  public synchronized List<String> getConsumers() {
+    return new ArrayList<>(consumers.keySet());
+  }
+
+  /**
+   * Puts back a pending entry read from a snapshot, creating its consumer when missing.
+   */
+  public synchronized void restorePending(StreamId id, String consumer, long deliveryTimeMillis, long deliveryCount) {
+    PendingEntry pendingEntry = new PendingEntry(id, consumer, deliveryTimeMillis);
+    pendingEntry.setDeliveryCount(deliveryCount);
+    pending.put(id, pendingEntry);
+    consumers.computeIfAbsent(consumer, c -> new TreeMap<>()).put(id, pendingEntry);
+  }
+
+  /**
+   * Delivers entries never delivered to the group (the > ID) to the consumer.
+   */
+  public synchronized List<StreamEntry> readNew(StreamLog stream, String consumer, int count, boolean noAck) {
+    List<StreamEntry> entries = stream.range(lastDeliveredId.next(), StreamId.MAX, count);
+    if (entries.isEmpty()) {
+      consumers.computeIfAbsent(consumer, c -> new TreeMap<>());
+      return entries;
+    }
+    long now = System.currentTimeMillis();
+    TreeMap<StreamId, PendingEntry> owned = consumers.computeIfAbsent(consumer, c -> new TreeMap<>());
+    for (StreamEntry entry : entries) {
+      if (!noAck) {
+        PendingEntry pendingEntry = new PendingEntry(entry.id(), consumer, now);
+        pending.put(entry.id(), pendingEntry);
+        owned.put(entry.id(), pendingEntry);
+      }
+    }
+    lastDeliveredId = entries.get(entries.size() - 1).id();
+    return entries;
+  }
+
+  /**
+   * Re-delivers entries already pending for the consumer with an ID greater than after.
+   * Entries no longer in the stream are returned with null fields.
+   */
+  public synchronized List<StreamEntry> readHistory(StreamLog stream, String consumer, StreamId after, int count) {
+    TreeMap<StreamId, PendingEntry> owned = consumers.computeIfAbsent(consumer, c -> new TreeMap<>());
+    List<StreamEntry> entries = new ArrayList<>();
+    long now = System.currentTimeMillis();
+    for (PendingEntry pendingEntry : owned.tailMap(after, false).values()) {
+      if (count > 0 && entries.size() == count) {
+        break;
+      }
+      StreamEntry entry = stream.get(pendingEntry.getId());
+      entries.add(entry != null ? entry : new StreamEntry(pendingEntry.getId(), null, null));
+      pendingEntry.redeliver(consumer, now, true);
+    }
+    return entries;
+  }
+
+  /**
+   * @return number of IDs that were pending and are now acknowledged
+   */
+  public synchronized int acknowledge(List<StreamId> ids) {
+    int acknowledged = 0;
+    for (StreamId id : ids) {
+      PendingEntry pendingEntry = pending.remove(id);
+      if (pendingEntry != null) {
+        consumers.get(pendingEntry.getConsumer()).remove(id);
+        acknowledged++;
+      }
+    }
+    return acknowledged;
+  }
+
+  public synchronized long getPendingCount() {
+    return pending.size();
+  }
+
+  public synchronized StreamId getFirstPendingId() {
+    return pending.isEmpty() ? null : pending.firstKey();
+  }
+
+  public synchronized StreamId getLastPendingId() {
+    return pending.isEmpty() ? null : pending.lastKey();
+  }
+
+  /**
+   * Number of pending entries per consumer, consumers without pending entries are left out.
+   */
+  public synchronized Map<String, Long> getPendingPerConsumer() {
+    Map<String, Long> perConsumer = new LinkedHashMap<>();
+    consumers.forEach((consumer, owned) -> {
+      if (!owned.isEmpty()) {
+        perConsumer.put(consumer, (long) owned.size());
+      }
+    });
+    return perConsumer;
+  }
+
+  /**
+   * Copy of the pending entry with the ID, null when it is not pending.
+   */
+  public synchronized PendingEntry getPending(StreamId id) {
+    PendingEntry pendingEntry = pending.get(id);
+    if (pendingEntry == null) {
+      return null;
+    }
+    PendingEntry copy = new PendingEntry(id, pendingEntry.getConsumer(), pendingEntry.getDeliveryTimeMillis());
+    copy.setDeliveryCount(pendingEntry.getDeliveryCount());
+    return copy;
+  }
+
+  /**
+   * Copies of the pending entries with start <= id <= end, optionally of one consumer and idle for at least minIdle.
+   */
+  public synchronized List<PendingEntry> getPendingRange(StreamId start, StreamId end, int count, String consumer,
+                                                         long minIdleMillis) {
+    List<PendingEntry> result = new ArrayList<>();
+    TreeMap<StreamId, PendingEntry> source = consumer == null ? pending : consumers.get(consumer);
+    if (source == null || start.compareTo(end) > 0) {
+      return result;
+    }
+    long now = System.currentTimeMillis();
+    for (PendingEntry pendingEntry : source.subMap(start, true, end, true).values()) {
+      if (result.size() == count) {
+        break;
+      }
+      if (pendingEntry.getIdleMillis(now) >= minIdleMillis) {
+        PendingEntry copy = new PendingEntry(pendingEntry.getId(), pendingEntry.getConsumer(), 0);
+        copy.setDeliveryTimeMillis(now - pendingEntry.getIdleMillis(now));
+        copy.setDeliveryCount(pendingEntry.getDeliveryCount());
+        result.add(copy);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Transfers ownership of the given pending entries idle for at least minIdle to the consumer, as XCLAIM does.
+   *
+   * @param deliveryTimeMillis new delivery time of the claimed entries
+   * @param retryCount delivery count to set, or -1 to increment it (unless justId)
+   * @param force create pending entries for IDs that exist in the stream but are not pending
+   * @return IDs of the claimed entries
+   */
+  public synchronized List<StreamId> claim(StreamLog stream, String consumer, long minIdleMillis, List<StreamId> ids,
+                                           long deliveryTimeMillis, long retryCount, boolean force, boolean justId) {
+    List<StreamId> claimed = new ArrayList<>();
+    long now = System.currentTimeMillis();
+    TreeMap<StreamId, PendingEntry> owned = consumers.computeIfAbsent(consumer, c -> new TreeMap<>());
+    for (StreamId id : ids) {
+      PendingEntry pendingEntry = pending.get(id);
+      if (pendingEntry == null) {
+        if (!force || stream.get(id) == null) {
+          continue;
+        }
+        pendingEntry = new PendingEntry(id, consumer, deliveryTimeMillis);
+        pendingEntry.setDeliveryCount(0);
+        pending.put(id, pendingEntry);
+      } else {
+        if (pendingEntry.getIdleMillis(now) < minIdleMillis) {
+          continue;
+        }
+        if (stream.get(id) == null) {
+          // Deleted from the stream meanwhile, nothing left to claim
+          pending.remove(id);
+          consumers.get(pendingEntry.getConsumer()).remove(id);
+          continue;
+        }
+        consumers.get(pendingEntry.getConsumer()).remove(id);
+      }
+      pendingEntry.redeliver(consumer, deliveryTimeMillis, !justId && retryCount < 0);
+      if (retryCount >= 0) {
+        pendingEntry.setDeliveryCount(retryCount);
+      }
+      owned.put(id, pendingEntry);
+      claimed.add(id);
+    }
+    return claimed;
+  }
+
+  /**
+   * Scans the PEL from start and claims up to count entries idle for at least minIdle, as XAUTOCLAIM does.
+   * At most count * 10 pending entries are looked at per call.
+   *
+   * @param claimed receives the claimed IDs
+   * @param deleted receives IDs that were pending but are gone from the stream, they are dropped from the PEL
+   * @return cursor to continue the scan from, 0-0 when the scan is complete
+   */
+  public synchronized StreamId autoClaim(StreamLog stream, String consumer, long minIdleMillis, StreamId start,
+                                         int count, boolean justId, List<StreamId> claimed, List<StreamId> deleted) {
+    long now = System.currentTimeMillis();
+    TreeMap<StreamId, PendingEntry> owned = consumers.computeIfAbsent(consumer, c -> new TreeMap<>());
+    long attempts = (long) count * 10;
+    Iterator<PendingEntry> iterator = pending.tailMap(start, true).values().iterator();
+    while (iterator.hasNext() && claimed.size() < count && attempts-- > 0) {
+      PendingEntry pendingEntry = iterator.next();
+      if (pendingEntry.getIdleMillis(now) < minIdleMillis) {
+        continue;
+      }
+      StreamId id = pendingEntry.getId();
+      consumers.get(pendingEntry.getConsumer()).remove(id);
+      if (stream.get(id) == null) {
+        iterator.remove();
+        deleted.add(id);
+        continue;
+      }
+      pendingEntry.redeliver(consumer, now, !justId);
+      owned.put(id, pendingEntry);
+      claimed.add(id);
+    }
+    return iterator.hasNext() ? iterator.next().getId() : StreamId.MIN;
+  }
+}
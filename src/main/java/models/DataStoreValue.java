@@ -1,11 +1,22 @@
 package models;
 
-import java.util.*;
-import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ThreadLocalRandom;
 
 public class DataStoreValue {
+  // Logarithmic access counter like Redis' LFU: new keys start at 5 so they are not evicted before a second access,
+  // the counter saturates at 255 after about a million accesses and loses one per minute without access
+  private static final int LFU_INIT_VALUE = 5;
+  private static final int LFU_MAX_VALUE = 255;
+  private static final int LFU_LOG_FACTOR = 10;
+  private static final long LFU_DECAY_MILLIS = 60_000;
+
   private Object value;
   long expiryTimeMillis;
+  // Written without synchronization by every reader, a lost update only makes eviction a bit less precise
+  private long accessTimeMillis = System.currentTimeMillis();
+  private int frequency = LFU_INIT_VALUE;
+  // Bytes counted for the key in the used memory, 0 while it is not in the keyspace
+  private long footprint = 0;
 
   public DataStoreValue(Object value, long expiryTimeMillis) {
     this.value = value;
@@ -17,6 +28,107 @@ public class DataStoreValue {
     this.expiryTimeMillis = 0;
   }
 
+  /**
+   * Records a read or write of the key for eviction.
+   *
+   * @param countsFrequency also bumps the LFU counter, only needed when keys are evicted by frequency
+   */
+  public void recordAccess(long nowMillis, boolean countsFrequency) {
+    if (countsFrequency) {
+      int counter = getFrequency(nowMillis);
+      // The more accesses are counted already, the less likely another one increments the counter
+      if (counter < LFU_MAX_VALUE) {
+        int counted = Math.max(0, counter - LFU_INIT_VALUE);
+        if (ThreadLocalRandom.current().nextDouble() < 1.0 / (counted * LFU_LOG_FACTOR + 1)) {
+          counter++;
+        }
+      }
+      frequency = counter;
+    }
+    accessTimeMillis = nowMillis;
+  }
+
+  public long getIdleMillis(long nowMillis) {
+    return Math.max(0, nowMillis - accessTimeMillis);
+  }
+
+  /**
+   * LFU counter decayed by the time since the last access.
+   */
+  public int getFrequency(long nowMillis) {
+    long decay = getIdleMillis(nowMillis) / LFU_DECAY_MILLIS;
+    return (int) Math.max(0, frequency - decay);
+  }
+
+  /**
+   * Estimated bytes the key and its value take in memory.
+   */
+  public long memoryUsage(String key) {
+    long bytes = MemoryUsage.KEY_OVERHEAD + key.length();
+    if (value instanceof String string) {
+      return bytes + MemoryUsage.of(string);
+    } else if (value instanceof QuickList list) {
+      return bytes + list.memoryUsage();
+    } else if (value instanceof HashValue hash) {
+      return bytes + hash.memoryUsage();
+    } else if (value instanceof SortedSetValue set) {
+      return bytes + set.memoryUsage();
+    } else if (value instanceof SetValue set) {
+      return bytes + set.memoryUsage();
+    } else if (value instanceof StreamLog stream) {
+      return bytes + stream.memoryUsage();
+    }
+    return bytes + MemoryUsage.STRING_OVERHEAD;
+  }
+
+  /**
+   * Starts counting the value as the key's, when it is added to the keyspace.
+   *
+   * @return bytes counted
+   */
+  public synchronized long trackFootprint(String key) {
+    footprint = memoryUsage(key);
+    return footprint;
+  }
+
+  /**
+   * Estimates the value again after it was changed in place.
+   *
+   * @return bytes added to its footprint, negative when it shrank, 0 when the value is not counted
+   */
+  public synchronized long updateFootprint(String key) {
+    if (footprint == 0) {
+      return 0;
+    }
+    long updated = memoryUsage(key);
+    long added = updated - footprint;
+    footprint = updated;
+    return added;
+  }
+
+  /**
+   * Stops counting the value, when it leaves the keyspace.
+   *
+   * @return bytes it was counted with
+   */
+  public synchronized long releaseFootprint() {
+    long released = footprint;
+    footprint = 0;
+    return released;
+  }
+
+  public long getExpiryTimeMillis() {
+    return expiryTimeMillis;
+  }
+
+  public void setExpiryTimeMillis(long expiryTimeMillis) {
+    this.expiryTimeMillis = expiryTimeMillis;
+  }
+
+  public boolean hasExpiry() {
+    return expiryTimeMillis > 0;
+  }
+
   public boolean isExpired() {
     return expiryTimeMillis > 0 && System.currentTimeMillis() > expiryTimeMillis;
   }
@@ -30,29 +142,43 @@ public class DataStoreValue {
   }
 
   public boolean isList() {
-    return value instanceof List;
+    return value instanceof QuickList;
   }
 
   public String getAsString() {
     return isString() ? (String) value : null;
   }
 
-  @SuppressWarnings("unchecked")
-  public List<String> getAsList() {
-    return isList() ? (List<String>) value : null;
+  public QuickList getAsList() {
+    return isList() ? (QuickList) value : null;
   }
 
-  @SuppressWarnings("unchecked")
-  public LinkedList<String> getAsLinkedList() {
-    return isList() ? (LinkedList<String>) value : null;
+  public boolean isHash() {
+    return value instanceof HashValue;
   }
 
-  @SuppressWarnings("unchecked")
-  public ConcurrentNavigableMap<String, Map<String, String>> getAsStream() {
-    if(value instanceof ConcurrentNavigableMap<?,?>) {
-      return (ConcurrentNavigableMap<String, Map<String, String>>) value;
-    }
-    return null;
+  public HashValue getAsHash() {
+    return isHash() ? (HashValue) value : null;
+  }
+
+  public boolean isSortedSet() {
+    return value instanceof SortedSetValue;
+  }
+
+  public SortedSetValue getAsSortedSet() {
+    return isSortedSet() ? (SortedSetValue) value : null;
+  }
+
+  public boolean isSet() {
+    return value instanceof SetValue;
+  }
+
+  public SetValue getAsSet() {
+    return isSet() ? (SetValue) value : null;
+  }
+
+  public StreamLog getAsStream() {
+    return value instanceof StreamLog ? (StreamLog) value : null;
   }
 
   public Long getAsLong() {
@@ -62,11 +188,15 @@ public class DataStoreValue {
   public String getValueType() {
     if (value instanceof String || value instanceof Number) {
       return "string";
-    } else if (value instanceof List) {
+    } else if (value instanceof QuickList) {
       return "list";
-    } else if (value instanceof Set) {
+    } else if (value instanceof HashValue) {
+      return "hash";
+    } else if (value instanceof SortedSetValue) {
+      return "zset";
+    } else if (value instanceof SetValue) {
       return "set";
-    } else if(value instanceof ConcurrentNavigableMap<?,?>){
+    } else if(value instanceof StreamLog){
       return "stream";
     }
     return "undefined";
@@ -0,0 +1,237 @@
+package models;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Hash value with two encodings, like Redis' listpack and hashtable hashes.
+ * <p>
+ * Small hashes are a packed array of field, value, field, value ... searched linearly, which for a handful of
+ * fields is both smaller and faster than hashing. Once the hash has more than maxPackedEntries fields, or a field or
+ * value longer than maxPackedLength, it is converted to an open addressing table with linear probing. It never
+ * converts back.
+ * <p>
+ * All methods synchronize on the hash.
+ */
+public class HashValue {
+  private static final int MIN_TABLE_CAPACITY = 16;
+
+  private final int maxPackedEntries;
+  private final int maxPackedLength;
+
+  // Packed encoding, null once converted
+  private String[] packed = new String[8];
+  // Table encoding, slots are null when empty
+  private String[] fields;
+  private String[] values;
+  private int size = 0;
+  // Estimated bytes of the field and value strings
+  private long stringBytes = 0;
+
+  public HashValue(int maxPackedEntries, int maxPackedLength) {
+    this.maxPackedEntries = maxPackedEntries;
+    this.maxPackedLength = maxPackedLength;
+  }
+
+  public synchronized int size() {
+    return size;
+  }
+
+  public synchronized boolean isPacked() {
+    return packed != null;
+  }
+
+  /**
+   * Estimated bytes the hash takes in memory.
+   */
+  public synchronized long memoryUsage() {
+    return 32 + stringBytes + MemoryUsage.ofArray(packed) + MemoryUsage.ofArray(fields)
+        + MemoryUsage.ofArray(values);
+  }
+
+  public synchronized String get(String field) {
+    if (packed != null) {
+      int index = packedIndexOf(field);
+      return index < 0 ? null : packed[index + 1];
+    }
+    int slot = slotOf(field);
+    return fields[slot] == null ? null : values[slot];
+  }
+
+  /**
+   * @return true when the field is new, false when an existing value was overwritten
+   */
+  public synchronized boolean put(String field, String value) {
+    if (packed != null && (field.length() > maxPackedLength || value.length() > maxPackedLength)) {
+      convertToTable();
+    }
+    if (packed != null) {
+      int index = packedIndexOf(field);
+      if (index >= 0) {
+        stringBytes += value.length() - packed[index + 1].length();
+        packed[index + 1] = value;
+        return false;
+      }
+      if (size + 1 > maxPackedEntries) {
+        convertToTable();
+      } else {
+        if (2 * size == packed.length) {
+          packed = Arrays.copyOf(packed, packed.length * 2);
+        }
+        packed[2 * size] = field;
+        packed[2 * size + 1] = value;
+        size++;
+        stringBytes += MemoryUsage.of(field) + MemoryUsage.of(value);
+        return true;
+      }
+    }
+    int slot = slotOf(field);
+    if (fields[slot] != null) {
+      stringBytes += value.length() - values[slot].length();
+      values[slot] = value;
+      return false;
+    }
+    fields[slot] = field;
+    values[slot] = value;
+    size++;
+    stringBytes += MemoryUsage.of(field) + MemoryUsage.of(value);
+    // Keep the load factor at most 3/4 so probe sequences stay short
+    if (size * 4 > fields.length * 3) {
+      resize(fields.length * 2);
+    }
+    return true;
+  }
+
+  /**
+   * Adds increment to the integer stored in the field, a missing field counts as 0.
+   *
+   * @return the new value
+   * @throws NumberFormatException when the value is not an integer
+   * @throws ArithmeticException when the result overflows
+   */
+  public synchronized long increment(String field, long increment) {
+    String current = get(field);
+    long value = current == null ? 0 : Long.parseLong(current);
+    long updated = Math.addExact(value, increment);
+    put(field, String.valueOf(updated));
+    return updated;
+  }
+
+  /**
+   * Copy of all fields and values as field, value, field, value ...
+   */
+  public synchronized List<String> entries() {
+    List<String> result = new ArrayList<>(2 * size);
+    if (packed != null) {
+      for (int i = 0; i < 2 * size; i++) {
+        result.add(packed[i]);
+      }
+      return result;
+    }
+    for (int slot = 0; slot < fields.length; slot++) {
+      if (fields[slot] != null) {
+        result.add(fields[slot]);
+        result.add(values[slot]);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * One step of an HSCAN. A packed hash is returned whole. A table is walked by home slot in reverse binary order,
+   * as Redis' dictScan does, so every field present for the whole scan is returned at least once even when the
+   * table grows in between.
+   *
+   * @param fieldsAndValues receives field, value pairs whose field matches
+   * @return the cursor for the next call, 0 when the scan is complete
+   */
+  public synchronized long scan(long cursor, int count, Predicate<String> match, List<String> fieldsAndValues) {
+    if (packed != null) {
+      for (int i = 0; i < 2 * size; i += 2) {
+        if (match.test(packed[i])) {
+          fieldsAndValues.add(packed[i]);
+          fieldsAndValues.add(packed[i + 1]);
+        }
+      }
+      return 0;
+    }
+    long mask = fields.length - 1;
+    long visited = 0;
+    do {
+      int home = (int) (cursor & mask);
+      // Everything whose home slot this is lies in the run of occupied slots starting here
+      for (int slot = home; fields[slot] != null; slot = (slot + 1) & (int) mask) {
+        if (homeSlot(fields[slot]) == home && match.test(fields[slot])) {
+          fieldsAndValues.add(fields[slot]);
+          fieldsAndValues.add(values[slot]);
+        }
+      }
+      // Increment the cursor from its most significant unmasked bit down
+      cursor |= ~mask;
+      cursor = Long.reverse(cursor);
+      cursor++;
+      cursor = Long.reverse(cursor);
+    } while (cursor != 0 && ++visited < count);
+    return cursor;
+  }
+
+  private int packedIndexOf(String field) {
+    for (int i = 0; i < 2 * size; i += 2) {
+      if (packed[i].equals(field)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private void convertToTable() {
+    String[] entries = packed;
+    int entryCount = size;
+    packed = null;
+    int capacity = MIN_TABLE_CAPACITY;
+    while (capacity * 3 < (entryCount + 1) * 4) {
+      capacity *= 2;
+    }
+    fields = new String[capacity];
+    values = new String[capacity];
+    for (int i = 0; i < 2 * entryCount; i += 2) {
+      int slot = slotOf(entries[i]);
+      fields[slot] = entries[i];
+      values[slot] = entries[i + 1];
+    }
+  }
+
+  private void resize(int capacity) {
+    String[] oldFields = fields;
+    String[] oldValues = values;
+    fields = new String[capacity];
+    values = new String[capacity];
+    for (int i = 0; i < oldFields.length; i++) {
+      if (oldFields[i] != null) {
+        int slot = slotOf(oldFields[i]);
+        fields[slot] = oldFields[i];
+        values[slot] = oldValues[i];
+      }
+    }
+  }
+
+  /**
+   * Slot holding the field, or the empty slot where it would be inserted.
+   */
+  private int slotOf(String field) {
+    int mask = fields.length - 1;
+    int slot = homeSlot(field);
+    while (fields[slot] != null && !fields[slot].equals(field)) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  private int homeSlot(String field) {
+    // Spread the hash so that fields differing only in their high bits do not share a probe run
+    int hash = field.hashCode() * 0x9E3779B9;
+    return (hash ^ (hash >>> 16)) & (fields.length - 1);
+  }
+}
@@ -0,0 +1,28 @@
+package models;
+
+/**
+ * Sizes used to estimate how many bytes a value takes on a 64 bit JVM with compressed class pointers. They are
+ * rough by design: eviction only needs the footprint of a value relative to the others and to maxmemory, not the
+ * exact heap usage.
+ */
+public final class MemoryUsage {
+  // String object plus the header of its byte array, strings are Latin-1 so every char is one byte
+  public static final int STRING_OVERHEAD = 40;
+  public static final int REFERENCE = 8;
+  public static final int ARRAY_OVERHEAD = 16;
+  // Entry of a HashMap or HashSet with its table slot
+  public static final int HASH_ENTRY = 40;
+  // Key, DataStoreValue and map entry of every key in the keyspace
+  public static final int KEY_OVERHEAD = 96;
+
+  private MemoryUsage() {
+  }
+
+  public static long of(String value) {
+    return STRING_OVERHEAD + value.length();
+  }
+
+  public static long ofArray(Object[] array) {
+    return array == null ? 0 : ARRAY_OVERHEAD + (long) REFERENCE * array.length;
+  }
+}
@@ -0,0 +1,54 @@
+package models;
+
+/**
+ * Entry delivered to a consumer of a group and not acknowledged yet.
+ */
+public class PendingEntry {
+  private final StreamId id;
+  private String consumer;
+  private long deliveryTimeMillis;
+  private long deliveryCount;
+
+  PendingEntry(StreamId id, String consumer, long deliveryTimeMillis) {
+    this.id = id;
+    this.consumer = consumer;
+    this.deliveryTimeMillis = deliveryTimeMillis;
+    this.deliveryCount = 1;
+  }
+
+  public StreamId getId() {
+    return id;
+  }
+
+  public String getConsumer() {
+    return consumer;
+  }
+
+  public long getDeliveryCount() {
+    return deliveryCount;
+  }
+
+  public long getDeliveryTimeMillis() {
+    return deliveryTimeMillis;
+  }
+
+  public long getIdleMillis(long nowMillis) {
+    return Math.max(0, nowMillis - deliveryTimeMillis);
+  }
+
+  void redeliver(String consumer, long deliveryTimeMillis, boolean incrementCount) {
+    this.consumer = consumer;
+    this.deliveryTimeMillis = deliveryTimeMillis;
+    if (incrementCount) {
+      this.deliveryCount++;
+    }
+  }
+
+  void setDeliveryTimeMillis(long deliveryTimeMillis) {
+    this.deliveryTimeMillis = deliveryTimeMillis;
+  }
+
+  void setDeliveryCount(long deliveryCount) {
+    this.deliveryCount = deliveryCount;
+  }
+}
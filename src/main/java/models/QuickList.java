@@ -0,0 +1,586 @@
+package models;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * List value stored like Redis' quicklist: a doubly linked chain of nodes, each a packed byte array of entries.
+ * <p>
+ * An entry is laid out as [length varint][bytes][backlen], where backlen is the size of the first two parts written
+ * back to front, so a node can be walked in both directions without per-entry objects. Nodes are filled up to
+ * MAX_NODE_BYTES (a bigger entry gets a node of its own) and keep free space on the side they grow on, which makes
+ * pushes and pops at both ends O(1). Index lookups skip whole nodes by their entry count, starting from the
+ * nearer end. Strings are stored as ISO-8859-1, one byte per char, like the rest of the server.
+ * <p>
+ * The list keeps the bytes it has allocated, node arrays plus a fixed overhead per node, so its memory usage is
+ * known without walking the nodes.
+ * <p>
+ * All methods synchronize on the list.
+ */
+public final class QuickList {
+  private static final int MAX_NODE_BYTES = 8 * 1024;
+  private static final int MIN_NODE_CAPACITY = 64;
+  // Node object, its links and the array header
+  private static final int NODE_OVERHEAD = 56;
+  private static final int LIST_OVERHEAD = 48;
+
+  private Node head;
+  private Node tail;
+  private long size = 0;
+  private long allocatedBytes = 0;
+
+  public QuickList() {
+  }
+
+  public QuickList(List<String> elements) {
+    elements.forEach(this::pushLast);
+  }
+
+  public synchronized long size() {
+    return size;
+  }
+
+  public synchronized boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * Estimated bytes the list takes in memory.
+   */
+  public synchronized long memoryUsage() {
+    return LIST_OVERHEAD + allocatedBytes;
+  }
+
+  public synchronized void pushFirst(String element) {
+    int entrySize = entrySize(element.length());
+    if (head == null || !head.fits(entrySize)) {
+      linkFirst(new Node());
+    }
+    allocatedBytes += head.reserveFront(entrySize);
+    head.start -= entrySize;
+    writeEntry(head.data, head.start, element);
+    head.count++;
+    size++;
+  }
+
+  public synchronized void pushLast(String element) {
+    int entrySize = entrySize(element.length());
+    if (tail == null || !tail.fits(entrySize)) {
+      linkLast(new Node());
+    }
+    allocatedBytes += tail.reserveBack(entrySize);
+    writeEntry(tail.data, tail.end, element);
+    tail.end += entrySize;
+    tail.count++;
+    size++;
+  }
+
+  /**
+   * @return the removed first element, null when the list is empty
+   */
+  public synchronized String popFirst() {
+    if (head == null) {
+      return null;
+    }
+    String element = readEntry(head.data, head.start);
+    head.start = entryEnd(head.data, head.start);
+    removedFrom(head);
+    return element;
+  }
+
+  /**
+   * @return the removed last element, null when the list is empty
+   */
+  public synchronized String popLast() {
+    if (tail == null) {
+      return null;
+    }
+    int entryStart = entryStart(tail.data, tail.end);
+    String element = readEntry(tail.data, entryStart);
+    tail.end = entryStart;
+    removedFrom(tail);
+    return element;
+  }
+
+  /**
+   * @param index 0 based, negative counts from the tail
+   * @return the element, null when the index is out of range
+   */
+  public synchronized String get(long index) {
+    if (index < 0) {
+      index += size;
+    }
+    if (index < 0 || index >= size) {
+      return null;
+    }
+    Cursor cursor = seek(index);
+    return readEntry(cursor.node.data, cursor.offset);
+  }
+
+  /**
+   * Elements from start to end inclusive, both 0 based and already clamped to the list by the caller.
+   */
+  public synchronized List<String> range(long start, long end) {
+    List<String> result = new ArrayList<>((int) Math.min(Math.max(0, end - start + 1), 1024));
+    if (start > end || start >= size) {
+      return result;
+    }
+    Cursor cursor = seek(start);
+    Node node = cursor.node;
+    int offset = cursor.offset;
+    for (long i = start; i <= end; i++) {
+      if (offset == node.end) {
+        node = node.next;
+        offset = node.start;
+      }
+      result.add(readEntry(node.data, offset));
+      offset = entryEnd(node.data, offset);
+    }
+    return result;
+  }
+
+  /**
+   * Replaces the element at the index, negative counts from the tail.
+   *
+   * @return false when the index is out of range
+   */
+  public synchronized boolean set(long index, String element) {
+    if (index < 0) {
+      index += size;
+    }
+    if (index < 0 || index >= size) {
+      return false;
+    }
+    Cursor cursor = seek(index);
+    Node node = cursor.node;
+    allocatedBytes += splice(node, cursor.offset, entryEnd(node.data, cursor.offset) - cursor.offset, element);
+    splitIfOversized(node);
+    return true;
+  }
+
+  /**
+   * Inserts the element before or after the first occurrence of pivot.
+   *
+   * @return the new size, -1 when pivot was not found
+   */
+  public synchronized long insert(String pivot, boolean before, String element) {
+    for (Node node = head; node != null; node = node.next) {
+      for (int offset = node.start; offset < node.end; offset = entryEnd(node.data, offset)) {
+        if (entryEquals(node.data, offset, pivot)) {
+          allocatedBytes += splice(node, before ? offset : entryEnd(node.data, offset), 0, element);
+          node.count++;
+          size++;
+          splitIfOversized(node);
+          return size;
+        }
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Removes occurrences of the element, as LREM does.
+   *
+   * @param count removes up to count from the head when positive, from the tail when negative, all when 0
+   * @return number of removed elements
+   */
+  public synchronized long remove(long count, String element) {
+    long limit = count == 0 ? Long.MAX_VALUE : Math.abs(count);
+    boolean fromTail = count < 0;
+    long removed = 0;
+    Node node = fromTail ? tail : head;
+    while (node != null && removed < limit) {
+      Node following = fromTail ? node.prev : node.next;
+      removed += removeFromNode(node, element, limit - removed, fromTail);
+      node = following;
+    }
+    if (removed > 0) {
+      mergeSmallNodes();
+    }
+    return removed;
+  }
+
+  /**
+   * Keeps only the elements from start to end inclusive, both 0 based and already clamped to the list by the caller.
+   * An empty range empties the list.
+   */
+  public synchronized void trim(long start, long end) {
+    if (start > end || start >= size) {
+      head = null;
+      tail = null;
+      size = 0;
+      allocatedBytes = 0;
+      return;
+    }
+    long dropLast = size - 1 - end;
+    dropFirst(start);
+    dropLast(dropLast);
+  }
+
+  /**
+   * Node and byte offset of the entry at the index, walking from whichever end is nearer.
+   */
+  private Cursor seek(long index) {
+    if (index < size / 2) {
+      Node node = head;
+      while (index >= node.count) {
+        index -= node.count;
+        node = node.next;
+      }
+      return new Cursor(node, node.offsetOf((int) index));
+    }
+    long fromTail = size - 1 - index;
+    Node node = tail;
+    while (fromTail >= node.count) {
+      fromTail -= node.count;
+      node = node.prev;
+    }
+    return new Cursor(node, node.offsetOf(node.count - 1 - (int) fromTail));
+  }
+
+  private void dropFirst(long count) {
+    while (count > 0) {
+      if (head.count <= count) {
+        count -= head.count;
+        size -= head.count;
+        unlink(head);
+      } else {
+        head.start = head.offsetOf((int) count);
+        head.count -= (int) count;
+        size -= count;
+        count = 0;
+      }
+    }
+  }
+
+  private void dropLast(long count) {
+    while (count > 0) {
+      if (tail.count <= count) {
+        count -= tail.count;
+        size -= tail.count;
+        unlink(tail);
+      } else {
+        tail.end = tail.offsetOf(tail.count - (int) count);
+        tail.count -= (int) count;
+        size -= count;
+        count = 0;
+      }
+    }
+  }
+
+  /**
+   * Removes up to limit entries equal to element from one node, compacting it in place.
+   */
+  private long removeFromNode(Node node, String element, long limit, boolean fromTail) {
+    int[] matches = new int[(int) Math.min(node.count, limit)];
+    int found = 0;
+    if (fromTail) {
+      for (int offset = node.end; offset > node.start && found < matches.length; ) {
+        offset = entryStart(node.data, offset);
+        if (entryEquals(node.data, offset, element)) {
+          matches[found++] = offset;
+        }
+      }
+      // Compaction below walks the matches in ascending order
+      for (int i = 0; i < found / 2; i++) {
+        int swap = matches[i];
+        matches[i] = matches[found - 1 - i];
+        matches[found - 1 - i] = swap;
+      }
+    } else {
+      for (int offset = node.start; offset < node.end && found < matches.length; offset = entryEnd(node.data, offset)) {
+        if (entryEquals(node.data, offset, element)) {
+          matches[found++] = offset;
+        }
+      }
+    }
+    if (found == 0) {
+      return 0;
+    }
+    int write = matches[0];
+    int read = entryEnd(node.data, matches[0]);
+    for (int i = 1; i < found; i++) {
+      int kept = matches[i] - read;
+      System.arraycopy(node.data, read, node.data, write, kept);
+      write += kept;
+      read = entryEnd(node.data, matches[i]);
+    }
+    System.arraycopy(node.data, read, node.data, write, node.end - read);
+    node.end = write + node.end - read;
+    node.count -= found;
+    size -= found;
+    if (node.count == 0) {
+      unlink(node);
+    }
+    return found;
+  }
+
+  /**
+   * Rewrites the node with removedBytes at offset replaced by the element.
+   *
+   * @return bytes the node's array grew by, negative when it shrank
+   */
+  private static int splice(Node node, int offset, int removedBytes, String element) {
+    int addedBytes = entrySize(element.length());
+    int used = node.end - node.start - removedBytes + addedBytes;
+    int capacity = Math.max(MIN_NODE_CAPACITY, used + used / 4);
+    int newStart = (capacity - used) / 2;
+    int before = offset - node.start;
+    byte[] data = new byte[capacity];
+    System.arraycopy(node.data, node.start, data, newStart, before);
+    writeEntry(data, newStart + before, element);
+    System.arraycopy(node.data, offset + removedBytes, data, newStart + before + addedBytes,
+        node.end - offset - removedBytes);
+    int grown = data.length - node.data.length;
+    node.data = data;
+    node.start = newStart;
+    node.end = newStart + used;
+    return grown;
+  }
+
+  /**
+   * Splits a node that grew past MAX_NODE_BYTES by a middle insert into two halves.
+   */
+  private void splitIfOversized(Node node) {
+    if (node.end - node.start <= MAX_NODE_BYTES || node.count < 2) {
+      return;
+    }
+    int half = node.count / 2;
+    int splitAt = node.offsetOf(half);
+    Node right = new Node();
+    right.reserveBack(node.end - splitAt);
+    System.arraycopy(node.data, splitAt, right.data, right.end, node.end - splitAt);
+    right.end += node.end - splitAt;
+    right.count = node.count - half;
+    node.end = splitAt;
+    node.count = half;
+    linkAfter(node, right);
+  }
+
+  /**
+   * Merges neighbouring nodes that together stay well under MAX_NODE_BYTES, after removals thinned them out.
+   */
+  private void mergeSmallNodes() {
+    Node node = head;
+    while (node != null && node.next != null) {
+      Node next = node.next;
+      int bytes = next.end - next.start;
+      if ((node.end - node.start) + bytes > MAX_NODE_BYTES / 2) {
+        node = next;
+        continue;
+      }
+      allocatedBytes += node.reserveBack(bytes);
+      System.arraycopy(next.data, next.start, node.data, node.end, bytes);
+      node.end += bytes;
+      node.count += next.count;
+      unlink(next);
+    }
+  }
+
+  private void removedFrom(Node node) {
+    node.count--;
+    size--;
+    if (node.count == 0) {
+      unlink(node);
+    }
+  }
+
+  private void linkFirst(Node node) {
+    allocatedBytes += NODE_OVERHEAD + node.data.length;
+    node.next = head;
+    if (head != null) {
+      head.prev = node;
+    } else {
+      tail = node;
+    }
+    head = node;
+  }
+
+  private void linkLast(Node node) {
+    allocatedBytes += NODE_OVERHEAD + node.data.length;
+    node.prev = tail;
+    if (tail != null) {
+      tail.next = node;
+    } else {
+      head = node;
+    }
+    tail = node;
+  }
+
+  private void linkAfter(Node node, Node added) {
+    allocatedBytes += NODE_OVERHEAD + added.data.length;
+    added.prev = node;
+    added.next = node.next;
+    if (node.next != null) {
+      node.next.prev = added;
+    } else {
+      tail = added;
+    }
+    node.next = added;
+  }
+
+  private void unlink(Node node) {
+    allocatedBytes -= NODE_OVERHEAD + node.data.length;
+    if (node.prev != null) {
+      node.prev.next = node.next;
+    } else {
+      head = node.next;
+    }
+    if (node.next != null) {
+      node.next.prev = node.prev;
+    } else {
+      tail = node.prev;
+    }
+    node.prev = null;
+    node.next = null;
+  }
+
+  private static int varintSize(int value) {
+    int bytes = 1;
+    while ((value >>>= 7) != 0) {
+      bytes++;
+    }
+    return bytes;
+  }
+
+  private static int entrySize(int length) {
+    int withHeader = varintSize(length) + length;
+    return withHeader + varintSize(withHeader);
+  }
+
+  @SuppressWarnings("deprecation")
+  private static void writeEntry(byte[] data, int offset, String element) {
+    int length = element.length();
+    int position = offset;
+    for (int value = length; ; value >>>= 7) {
+      if ((value >>> 7) == 0) {
+        data[position++] = (byte) value;
+        break;
+      }
+      data[position++] = (byte) ((value & 0x7F) | 0x80);
+    }
+    // Copies the low byte of every char, which is exactly ISO-8859-1
+    element.getBytes(0, length, data, position);
+    position += length;
+    // backlen, least significant group last so it can be read starting from the end of the entry
+    int backlen = position - offset;
+    int backlenSize = varintSize(backlen);
+    for (int i = 0; i < backlenSize; i++, backlen >>>= 7) {
+      data[position + backlenSize - 1 - i] = (byte) ((backlen & 0x7F) | (i < backlenSize - 1 ? 0x80 : 0));
+    }
+  }
+
+  private static int payloadLength(byte[] data, int offset) {
+    int length = 0;
+    int shift = 0;
+    byte current;
+    do {
+      current = data[offset++];
+      length |= (current & 0x7F) << shift;
+      shift += 7;
+    } while ((current & 0x80) != 0);
+    return length;
+  }
+
+  @SuppressWarnings("deprecation")
+  private static String readEntry(byte[] data, int offset) {
+    int length = payloadLength(data, offset);
+    return new String(data, 0, offset + varintSize(length), length);
+  }
+
+  private static boolean entryEquals(byte[] data, int offset, String element) {
+    int length = payloadLength(data, offset);
+    if (length != element.length()) {
+      return false;
+    }
+    int payload = offset + varintSize(length);
+    for (int i = 0; i < length; i++) {
+      if (data[payload + i] != (byte) element.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static int entryEnd(byte[] data, int offset) {
+    return offset + entrySize(payloadLength(data, offset));
+  }
+
+  /**
+   * Start of the entry that ends right before offset, read through its backlen.
+   */
+  private static int entryStart(byte[] data, int offset) {
+    int backlen = 0;
+    int shift = 0;
+    int position = offset;
+    byte current;
+    do {
+      current = data[--position];
+      backlen |= (current & 0x7F) << shift;
+      shift += 7;
+    } while ((current & 0x80) != 0);
+    return position - backlen;
+  }
+
+  private record Cursor(Node node, int offset) {
+  }
+
+  private static final class Node {
+    private Node prev;
+    private Node next;
+    private byte[] data = new byte[MIN_NODE_CAPACITY];
+    // Entries occupy data[start, end), free space is kept on both sides
+    private int start = MIN_NODE_CAPACITY / 2;
+    private int end = MIN_NODE_CAPACITY / 2;
+    private int count = 0;
+
+    boolean fits(int entrySize) {
+      return count == 0 || end - start + entrySize <= MAX_NODE_BYTES;
+    }
+
+    int offsetOf(int index) {
+      int offset;
+      if (index < count / 2) {
+        offset = start;
+        for (int i = 0; i < index; i++) {
+          offset = entryEnd(data, offset);
+        }
+      } else {
+        offset = end;
+        for (int i = count; i > index; i--) {
+          offset = entryStart(data, offset);
+        }
+      }
+      return offset;
+    }
+
+    /**
+     * @return bytes the array grew by
+     */
+    int reserveFront(int bytes) {
+      return start < bytes ? resize(bytes, true) : 0;
+    }
+
+    int reserveBack(int bytes) {
+      return data.length - end < bytes ? resize(bytes, false) : 0;
+    }
+
+    /**
+     * Moves the entries into a bigger array, with the spare room mostly on the side that is growing.
+     */
+    private int resize(int bytes, boolean front) {
+      int used = end - start;
+      int capacity = Math.max(used + bytes, Math.min(2 * (used + bytes), MAX_NODE_BYTES));
+      capacity = Math.max(capacity, MIN_NODE_CAPACITY);
+      int spare = capacity - used - bytes;
+      int newStart = front ? bytes + spare - spare / 4 : spare / 4;
+      byte[] grown = new byte[capacity];
+      System.arraycopy(data, start, grown, newStart, used);
+      int growth = capacity - data.length;
+      data = grown;
+      start = newStart;
+      end = newStart + used;
+      return growth;
+    }
+  }
+}
@@ -0,0 +1,66 @@
+package models;
+
+/**
+ * Score interval of ZRANGEBYSCORE and friends, each end inclusive unless prefixed with ( on the command line.
+ */
+public record ScoreRange(double min, boolean minExclusive, double max, boolean maxExclusive) {
+
+  /**
+   * Parses bounds like 1, (1.5, -inf and +inf.
+   *
+   * @throws NumberFormatException when a bound is not a float
+   */
+  public static ScoreRange parse(String min, String max) {
+    boolean minExclusive = min.startsWith("(");
+    boolean maxExclusive = max.startsWith("(");
+    return new ScoreRange(parseBound(minExclusive ? min.substring(1) : min), minExclusive,
+        parseBound(maxExclusive ? max.substring(1) : max), maxExclusive);
+  }
+
+  public boolean aboveMin(double score) {
+    return minExclusive ? score > min : score >= min;
+  }
+
+  public boolean belowMax(double score) {
+    return maxExclusive ? score < max : score <= max;
+  }
+
+  /**
+   * False when no score at all can be in the range, e.g. (1 1.
+   */
+  public boolean isSatisfiable() {
+    return min < max || (min == max && !minExclusive && !maxExclusive);
+  }
+
+  private static double parseBound(String text) {
+    double value = parseScore(text);
+    if (Double.isNaN(value)) {
+      throw new NumberFormatException(text);
+    }
+    return value;
+  }
+
+  /**
+   * Parses a score the way Redis does, accepting inf, +inf and -inf in any case.
+   *
+   * @throws NumberFormatException when it is not a float
+   */
+  public static double parseScore(String text) {
+    return switch (text.toLowerCase()) {
+      case "inf", "+inf", "infinity", "+infinity" -> Double.POSITIVE_INFINITY;
+      case "-inf", "-infinity" -> Double.NEGATIVE_INFINITY;
+      default -> {
+        // Java would also accept suffixes like 1d or hex floats, Redis does not
+        if (text.isEmpty() || Character.isLetter(text.charAt(text.length() - 1)) || text.contains("x")
+            || text.contains("X")) {
+          throw new NumberFormatException(text);
+        }
+        double value = Double.parseDouble(text);
+        if (Double.isNaN(value)) {
+          throw new NumberFormatException(text);
+        }
+        yield value;
+      }
+    };
+  }
+}
@@ -0,0 +1,192 @@
+package models;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Skip list ordered by (score, member), ported from Redis' zskiplist. Every forward link stores its span, the number
+ * of level 0 steps it skips, so rank lookups and lookups by rank are O(log n) like searches.
+ */
+final class ScoreSkipList {
+  private static final int MAX_LEVEL = 32;
+
+  static final class Node {
+    final String member;
+    final double score;
+    Node backward;
+    final Node[] forward;
+    final long[] span;
+
+    Node(String member, double score, int level) {
+      this.member = member;
+      this.score = score;
+      this.forward = new Node[level];
+      this.span = new long[level];
+    }
+
+    Node next() {
+      return forward[0];
+    }
+  }
+
+  private final Node header = new Node(null, 0, MAX_LEVEL);
+  private Node tail;
+  private long length = 0;
+  private int level = 1;
+
+  long length() {
+    return length;
+  }
+
+  Node first() {
+    return header.forward[0];
+  }
+
+  Node last() {
+    return tail;
+  }
+
+  void insert(double score, String member) {
+    Node[] update = new Node[MAX_LEVEL];
+    long[] rank = new long[MAX_LEVEL];
+    Node x = header;
+    for (int i = level - 1; i >= 0; i--) {
+      rank[i] = i == level - 1 ? 0 : rank[i + 1];
+      while (x.forward[i] != null && precedes(x.forward[i], score, member)) {
+        rank[i] += x.span[i];
+        x = x.forward[i];
+      }
+      update[i] = x;
+    }
+    int nodeLevel = randomLevel();
+    if (nodeLevel > level) {
+      for (int i = level; i < nodeLevel; i++) {
+        rank[i] = 0;
+        update[i] = header;
+        header.span[i] = length;
+      }
+      level = nodeLevel;
+    }
+    x = new Node(member, score, nodeLevel);
+    for (int i = 0; i < nodeLevel; i++) {
+      x.forward[i] = update[i].forward[i];
+      update[i].forward[i] = x;
+      x.span[i] = update[i].span[i] - (rank[0] - rank[i]);
+      update[i].span[i] = (rank[0] - rank[i]) + 1;
+    }
+    // Links above the new node now skip one more node
+    for (int i = nodeLevel; i < level; i++) {
+      update[i].span[i]++;
+    }
+    x.backward = update[0] == header ? null : update[0];
+    if (x.forward[0] != null) {
+      x.forward[0].backward = x;
+    } else {
+      tail = x;
+    }
+    length++;
+  }
+
+  boolean delete(double score, String member) {
+    Node[] update = new Node[MAX_LEVEL];
+    Node x = header;
+    for (int i = level - 1; i >= 0; i--) {
+      while (x.forward[i] != null && precedes(x.forward[i], score, member)) {
+        x = x.forward[i];
+      }
+      update[i] = x;
+    }
+    x = x.forward[0];
+    if (x == null || x.score != score || !x.member.equals(member)) {
+      return false;
+    }
+    for (int i = 0; i < level; i++) {
+      if (update[i].forward[i] == x) {
+        update[i].span[i] += x.span[i] - 1;
+        update[i].forward[i] = x.forward[i];
+      } else {
+        update[i].span[i]--;
+      }
+    }
+    if (x.forward[0] != null) {
+      x.forward[0].backward = x.backward;
+    } else {
+      tail = x.backward;
+    }
+    while (level > 1 && header.forward[level - 1] == null) {
+      level--;
+    }
+    length--;
+    return true;
+  }
+
+  /**
+   * 1 based rank of the element, 0 when it is not in the list.
+   */
+  long rankOf(double score, String member) {
+    long rank = 0;
+    Node x = header;
+    for (int i = level - 1; i >= 0; i--) {
+      while (x.forward[i] != null && (precedes(x.forward[i], score, member)
+          || (x.forward[i].score == score && x.forward[i].member.equals(member)))) {
+        rank += x.span[i];
+        x = x.forward[i];
+      }
+      if (x != header && x.member.equals(member)) {
+        return rank;
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * Node at the 1 based rank, null when out of range.
+   */
+  Node byRank(long rank) {
+    long traversed = 0;
+    Node x = header;
+    for (int i = level - 1; i >= 0; i--) {
+      while (x.forward[i] != null && traversed + x.span[i] <= rank) {
+        traversed += x.span[i];
+        x = x.forward[i];
+      }
+      if (traversed == rank) {
+        return x == header ? null : x;
+      }
+    }
+    return null;
+  }
+
+  Node firstInRange(ScoreRange range) {
+    Node x = header;
+    for (int i = level - 1; i >= 0; i--) {
+      while (x.forward[i] != null && !range.aboveMin(x.forward[i].score)) {
+        x = x.forward[i];
+      }
+    }
+    x = x.forward[0];
+    return x != null && range.belowMax(x.score) ? x : null;
+  }
+
+  Node lastInRange(ScoreRange range) {
+    Node x = header;
+    for (int i = level - 1; i >= 0; i--) {
+      while (x.forward[i] != null && range.belowMax(x.forward[i].score)) {
+        x = x.forward[i];
+      }
+    }
+    return x != header && range.aboveMin(x.score) ? x : null;
+  }
+
+  private static boolean precedes(Node node, double score, String member) {
+    return node.score < score || (node.score == score && node.member.compareTo(member) < 0);
+  }
+
+  private static int randomLevel() {
+    int nodeLevel = 1;
+    // Each level is kept with probability 1/4, as in Redis
+    while (nodeLevel < MAX_LEVEL && ThreadLocalRandom.current().nextInt(4) == 0) {
+      nodeLevel++;
+    }
+    return nodeLevel;
+  }
+}
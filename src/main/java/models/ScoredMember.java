@@ -0,0 +1,4 @@
+package models;
+
+public record ScoredMember(String member, double score) {
+}
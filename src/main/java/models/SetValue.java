@@ -0,0 +1,141 @@
+package models;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Set value with two encodings, like Redis' intset and hashtable sets.
+ * <p>
+ * A set whose members are all integers is kept as a sorted long[], 8 bytes per member and binary searched, instead
+ * of a boxed String per member plus a hash node. Adding a member that is not an integer in canonical form (no sign
+ * other than -, no leading zeros), or growing past maxIntsetEntries, converts it to a HashSet. It never converts
+ * back.
+ * <p>
+ * All methods synchronize on the set.
+ */
+public class SetValue {
+  private final int maxIntsetEntries;
+
+  // Intset encoding, null once converted
+  private long[] intset = new long[4];
+  private Set<String> members;
+  private int size = 0;
+  // Estimated bytes of the member strings, once converted
+  private long stringBytes = 0;
+
+  public SetValue(int maxIntsetEntries) {
+    this.maxIntsetEntries = maxIntsetEntries;
+  }
+
+  public synchronized int size() {
+    return size;
+  }
+
+  public synchronized boolean isIntset() {
+    return intset != null;
+  }
+
+  /**
+   * Estimated bytes the set takes in memory.
+   */
+  public synchronized long memoryUsage() {
+    if (intset != null) {
+      return 32 + MemoryUsage.ARRAY_OVERHEAD + 8L * intset.length;
+    }
+    return 80 + stringBytes + (long) MemoryUsage.HASH_ENTRY * size;
+  }
+
+  public synchronized boolean contains(String member) {
+    if (intset != null) {
+      Long value = parseCanonicalLong(member);
+      return value != null && Arrays.binarySearch(intset, 0, size, value) >= 0;
+    }
+    return members.contains(member);
+  }
+
+  /**
+   * @return true when the member is new
+   */
+  public synchronized boolean add(String member) {
+    if (intset != null) {
+      Long value = parseCanonicalLong(member);
+      if (value != null) {
+        int index = Arrays.binarySearch(intset, 0, size, value);
+        if (index >= 0) {
+          return false;
+        }
+        if (size < maxIntsetEntries) {
+          int insertAt = -index - 1;
+          if (size == intset.length) {
+            intset = Arrays.copyOf(intset, size * 2);
+          }
+          System.arraycopy(intset, insertAt, intset, insertAt + 1, size - insertAt);
+          intset[insertAt] = value;
+          size++;
+          return true;
+        }
+      }
+      convertToHashSet();
+    }
+    if (members.add(member)) {
+      size++;
+      stringBytes += MemoryUsage.of(member);
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Copy of the members, in ascending numeric order for an intset.
+   */
+  public synchronized List<String> members() {
+    List<String> result = new ArrayList<>(size);
+    if (intset != null) {
+      for (int i = 0; i < size; i++) {
+        result.add(Long.toString(intset[i]));
+      }
+      return result;
+    }
+    result.addAll(members);
+    return result;
+  }
+
+  private void convertToHashSet() {
+    members = new HashSet<>(Math.max(16, size * 2));
+    for (int i = 0; i < size; i++) {
+      String member = Long.toString(intset[i]);
+      members.add(member);
+      stringBytes += MemoryUsage.of(member);
+    }
+    intset = null;
+  }
+
+  /**
+   * The value when the member is exactly the decimal form Long.toString would produce, otherwise null, so that
+   * members like 007 or +7 keep their spelling.
+   */
+  private static Long parseCanonicalLong(String member) {
+    int length = member.length();
+    if (length == 0 || length > 20) {
+      return null;
+    }
+    int first = member.charAt(0) == '-' ? 1 : 0;
+    if (first == length || (member.charAt(first) == '0' && (length > first + 1 || first == 1))) {
+      return null;
+    }
+    for (int i = first; i < length; i++) {
+      char c = member.charAt(i);
+      if (c < '0' || c > '9') {
+        return null;
+      }
+    }
+    try {
+      return Long.parseLong(member);
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+}
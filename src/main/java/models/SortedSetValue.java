@@ -0,0 +1,245 @@
+package models;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sorted set value with two encodings, like Redis' listpack and skiplist sorted sets.
+ * <p>
+ * Small sets keep their members in parallel score and member arrays sorted by (score, member), which is compact
+ * and, for a few dozen members, as fast as anything else. Once the set has more than maxPackedEntries members, or a
+ * member longer than maxPackedLength, it is converted to a {@link ScoreSkipList} for ordered access and ranks plus a
+ * member to score map for O(1) score lookups. It never converts back.
+ * <p>
+ * All methods synchronize on the set.
+ */
+public class SortedSetValue {
+  private final int maxPackedEntries;
+  private final int maxPackedLength;
+
+  // Packed encoding, null once converted
+  private double[] packedScores = new double[8];
+  private String[] packedMembers = new String[8];
+  // Skip list encoding
+  private ScoreSkipList skipList;
+  private Map<String, Double> scores;
+  private int size = 0;
+  // Estimated bytes of the member strings
+  private long stringBytes = 0;
+
+  public SortedSetValue(int maxPackedEntries, int maxPackedLength) {
+    this.maxPackedEntries = maxPackedEntries;
+    this.maxPackedLength = maxPackedLength;
+  }
+
+  public synchronized int size() {
+    return size;
+  }
+
+  public synchronized boolean isPacked() {
+    return packedMembers != null;
+  }
+
+  /**
+   * Estimated bytes the sorted set takes in memory.
+   */
+  public synchronized long memoryUsage() {
+    if (packedMembers != null) {
+      return 48 + stringBytes + MemoryUsage.ofArray(packedMembers) + MemoryUsage.ARRAY_OVERHEAD
+          + 8L * packedScores.length;
+    }
+    // A skip list node with its level arrays, a map entry and the boxed score per member
+    return 128 + stringBytes + (64L + MemoryUsage.HASH_ENTRY + 16) * size;
+  }
+
+  /**
+   * @return the member's score, null when it is not in the set
+   */
+  public synchronized Double score(String member) {
+    if (packedMembers != null) {
+      int index = packedIndexOf(member);
+      return index < 0 ? null : packedScores[index];
+    }
+    return scores.get(member);
+  }
+
+  /**
+   * Adds the member or moves it to its new score.
+   *
+   * @return true when the member is new
+   */
+  public synchronized boolean put(String member, double score) {
+    if (packedMembers != null && (member.length() > maxPackedLength
+        || (size + 1 > maxPackedEntries && packedIndexOf(member) < 0))) {
+      convertToSkipList();
+    }
+    if (packedMembers != null) {
+      int index = packedIndexOf(member);
+      if (index >= 0) {
+        if (packedScores[index] == score) {
+          return false;
+        }
+        removePackedAt(index);
+      }
+      insertPacked(member, score);
+      if (index < 0) {
+        stringBytes += MemoryUsage.of(member);
+      }
+      return index < 0;
+    }
+    Double current = scores.put(member, score);
+    if (current != null) {
+      if (current == score) {
+        return false;
+      }
+      skipList.delete(current, member);
+    }
+    skipList.insert(score, member);
+    if (current == null) {
+      size++;
+      stringBytes += MemoryUsage.of(member);
+    }
+    return current == null;
+  }
+
+  /**
+   * @param reverse rank from the highest score down
+   * @return 0 based rank, -1 when the member is not in the set
+   */
+  public synchronized long rank(String member, boolean reverse) {
+    long rank;
+    if (packedMembers != null) {
+      rank = packedIndexOf(member);
+      if (rank < 0) {
+        return -1;
+      }
+    } else {
+      Double score = scores.get(member);
+      if (score == null) {
+        return -1;
+      }
+      rank = skipList.rankOf(score, member) - 1;
+    }
+    return reverse ? size - 1 - rank : rank;
+  }
+
+  /**
+   * Members with rank start to stop inclusive, negative ranks count from the end, as ZRANGE does.
+   *
+   * @param reverse ranks count from the highest score down and members are returned in that order
+   */
+  public synchronized List<ScoredMember> rangeByRank(long start, long stop, boolean reverse) {
+    if (start < 0) start = size + start;
+    if (stop < 0) stop = size + stop;
+    start = Math.max(0, start);
+    stop = Math.min(stop, size - 1);
+    List<ScoredMember> result = new ArrayList<>();
+    if (start > stop) {
+      return result;
+    }
+    if (packedMembers != null) {
+      for (long rank = start; rank <= stop; rank++) {
+        int index = (int) (reverse ? size - 1 - rank : rank);
+        result.add(new ScoredMember(packedMembers[index], packedScores[index]));
+      }
+      return result;
+    }
+    // Seek the first node by rank through the spans, then walk the bottom level
+    ScoreSkipList.Node node = skipList.byRank(reverse ? size - start : start + 1);
+    for (long rank = start; rank <= stop && node != null; rank++) {
+      result.add(new ScoredMember(node.member, node.score));
+      node = reverse ? node.backward : node.next();
+    }
+    return result;
+  }
+
+  /**
+   * Members with a score in the range, in score order or reversed.
+   *
+   * @param offset members in the range to skip first
+   * @param count maximum number of members, negative for all
+   */
+  public synchronized List<ScoredMember> rangeByScore(ScoreRange range, boolean reverse, long offset, long count) {
+    List<ScoredMember> result = new ArrayList<>();
+    if (!range.isSatisfiable() || offset < 0 || count == 0) {
+      return result;
+    }
+    long limit = count < 0 ? Long.MAX_VALUE : count;
+    if (packedMembers != null) {
+      for (int i = 0; i < size && result.size() < limit; i++) {
+        int index = reverse ? size - 1 - i : i;
+        double score = packedScores[index];
+        if (range.aboveMin(score) && range.belowMax(score) && offset-- <= 0) {
+          result.add(new ScoredMember(packedMembers[index], score));
+        }
+      }
+      return result;
+    }
+    ScoreSkipList.Node node = reverse ? skipList.lastInRange(range) : skipList.firstInRange(range);
+    if (node != null && offset > 0) {
+      // Skip the offset through the spans instead of walking it
+      long rank = skipList.rankOf(node.score, node.member);
+      node = skipList.byRank(reverse ? rank - offset : rank + offset);
+    }
+    while (node != null && result.size() < limit
+        && (reverse ? range.aboveMin(node.score) : range.belowMax(node.score))) {
+      result.add(new ScoredMember(node.member, node.score));
+      node = reverse ? node.backward : node.next();
+    }
+    return result;
+  }
+
+  private int packedIndexOf(String member) {
+    for (int i = 0; i < size; i++) {
+      if (packedMembers[i].equals(member)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private void insertPacked(String member, double score) {
+    // Binary search for the first element ordered after (score, member)
+    int low = 0;
+    int high = size - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      int compared = Double.compare(packedScores[mid], score);
+      if (compared < 0 || (compared == 0 && packedMembers[mid].compareTo(member) < 0)) {
+        low = mid + 1;
+      } else {
+        high = mid - 1;
+      }
+    }
+    if (size == packedMembers.length) {
+      packedScores = Arrays.copyOf(packedScores, size * 2);
+      packedMembers = Arrays.copyOf(packedMembers, size * 2);
+    }
+    System.arraycopy(packedScores, low, packedScores, low + 1, size - low);
+    System.arraycopy(packedMembers, low, packedMembers, low + 1, size - low);
+    packedScores[low] = score;
+    packedMembers[low] = member;
+    size++;
+  }
+
+  private void removePackedAt(int index) {
+    System.arraycopy(packedScores, index + 1, packedScores, index, size - index - 1);
+    System.arraycopy(packedMembers, index + 1, packedMembers, index, size - index - 1);
+    size--;
+    packedMembers[size] = null;
+  }
+
+  private void convertToSkipList() {
+    skipList = new ScoreSkipList();
+    scores = new HashMap<>(Math.max(16, size * 2));
+    for (int i = 0; i < size; i++) {
+      skipList.insert(packedScores[i], packedMembers[i]);
+      scores.put(packedMembers[i], packedScores[i]);
+    }
+    packedScores = null;
+    packedMembers = null;
+  }
+}
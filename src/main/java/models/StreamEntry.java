@@ -0,0 +1,7 @@
+package models;
+
+/**
+ * One stream entry as handed out to readers. The arrays are shared with the stream and must not be modified.
+ */
+public record StreamEntry(StreamId id, String[] fields, String[] values) {
+}
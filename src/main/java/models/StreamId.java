@@ -0,0 +1,75 @@
+package models;
+
+/**
+ * Stream entry ID made of a millisecond time and a sequence number, ordered numerically.
+ */
+public record StreamId(long ms, long seq) implements Comparable<StreamId> {
+  public static final StreamId MIN = new StreamId(0, 0);
+  public static final StreamId MAX = new StreamId(Long.MAX_VALUE, Long.MAX_VALUE);
+
+  /**
+   * Parses a complete ID of the form ms-seq.
+   *
+   * @throws IllegalArgumentException when the text is not a valid ID
+   */
+  public static StreamId parse(String text) {
+    int dash = text.indexOf('-');
+    if (dash <= 0 || dash == text.length() - 1) {
+      throw new IllegalArgumentException("Invalid stream ID specified as stream command argument");
+    }
+    return new StreamId(parsePart(text, 0, dash), parsePart(text, dash + 1, text.length()));
+  }
+
+  /**
+   * Parses a range bound as accepted by XRANGE: - and + for the extremes, and ms alone meaning the first or last
+   * sequence of that millisecond.
+   */
+  public static StreamId parseBound(String text, boolean isEnd) {
+    if (text.equals("-")) {
+      return MIN;
+    }
+    if (text.equals("+")) {
+      return MAX;
+    }
+    if (text.indexOf('-') == -1) {
+      return new StreamId(parsePart(text, 0, text.length()), isEnd ? Long.MAX_VALUE : 0);
+    }
+    return parse(text);
+  }
+
+  private static long parsePart(String text, int start, int end) {
+    long value = 0;
+    if (start == end) {
+      throw new IllegalArgumentException("Invalid stream ID specified as stream command argument");
+    }
+    for (int i = start; i < end; i++) {
+      char digit = text.charAt(i);
+      if (digit < '0' || digit > '9' || value > (Long.MAX_VALUE - (digit - '0')) / 10) {
+        throw new IllegalArgumentException("Invalid stream ID specified as stream command argument");
+      }
+      value = value * 10 + (digit - '0');
+    }
+    return value;
+  }
+
+  /**
+   * Smallest ID greater than this one.
+   */
+  public StreamId next() {
+    if (seq == Long.MAX_VALUE) {
+      return ms == Long.MAX_VALUE ? this : new StreamId(ms + 1, 0);
+    }
+    return new StreamId(ms, seq + 1);
+  }
+
+  @Override
+  public int compareTo(StreamId other) {
+    int byMs = Long.compare(ms, other.ms);
+    return byMs != 0 ? byMs : Long.compare(seq, other.seq);
+  }
+
+  @Override
+  public String toString() {
+    return ms + "-" + seq;
+  }
+}
@@ -0,0 +1,284 @@
+package models;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.UnaryOperator;
+
+/**
+ * Append-only log of stream entries, laid out like Redis' chunked listpacks.
+ * <p>
+ * Entries live in chunks of up to CHUNK_SIZE entries. IDs are packed as (ms, seq) pairs in a long[], so no ID object
+ * exists per entry. Every chunk remembers the field names of its first entry and later entries with the same field
+ * names only keep a reference to that shared array plus their values. Since IDs only grow and every chunk but the
+ * last is full, a seek is a binary search over the chunks followed by one inside the chunk.
+ * <p>
+ * Entries only ever get added, so the bytes they take are summed up as they are appended.
+ */
+public class StreamLog {
+  private static final int CHUNK_SIZE = 256;
+  private static final int INITIAL_CHUNK_CAPACITY = 4;
+  private static final int STREAM_OVERHEAD = 160;
+  // Chunk object with its three arrays
+  private static final int CHUNK_OVERHEAD = 96;
+  // Pending entry with its nodes in the group's and the consumer's maps
+  private static final int PENDING_ENTRY_OVERHEAD = 120;
+
+  private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+  private final List<Chunk> chunks = new ArrayList<>();
+  private StreamId lastId = StreamId.MIN;
+  private long size = 0;
+  private long entryBytes = 0;
+  private final Map<String, ConsumerGroup> groups = new ConcurrentHashMap<>();
+
+  public StreamId getLastId() {
+    lock.readLock().lock();
+    try {
+      return lastId;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  public long size() {
+    lock.readLock().lock();
+    try {
+      return size;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  public boolean isEmpty() {
+    return size() == 0;
+  }
+
+  /**
+   * Estimated bytes the stream takes in memory, its entries and the entries pending in its consumer groups.
+   */
+  public long memoryUsage() {
+    long pendingBytes = 0;
+    for (ConsumerGroup group : groups.values()) {
+      pendingBytes += PENDING_ENTRY_OVERHEAD * group.getPendingCount();
+    }
+    lock.readLock().lock();
+    try {
+      return STREAM_OVERHEAD + entryBytes + pendingBytes;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Raises the last ID without adding an entry, for streams whose newest entries were deleted before a snapshot.
+   */
+  public void advanceLastId(StreamId id) {
+    lock.writeLock().lock();
+    try {
+      if (id.compareTo(lastId) > 0) {
+        lastId = id;
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Appends an entry. The ID is chosen by idGenerator from the current last ID while the stream is locked,
+   * so concurrent appends can not pick the same ID.
+   *
+   * @param idGenerator maps the last ID (0-0 when empty) to the new ID, throws IllegalArgumentException to refuse
+   * @param fieldsAndValues field1, value1, field2, value2, ...
+   * @return the ID of the new entry
+   */
+  public StreamId append(UnaryOperator<StreamId> idGenerator, List<String> fieldsAndValues) {
+    String[] fields = new String[fieldsAndValues.size() / 2];
+    String[] values = new String[fields.length];
+    for (int i = 0; i < fields.length; i++) {
+      fields[i] = fieldsAndValues.get(2 * i);
+      values[i] = fieldsAndValues.get(2 * i + 1);
+    }
+    lock.writeLock().lock();
+    try {
+      StreamId id = idGenerator.apply(lastId);
+      if (id.compareTo(lastId) <= 0) {
+        throw new IllegalArgumentException("The ID specified in XADD is equal or smaller than the target stream top item");
+      }
+      Chunk last = chunks.isEmpty() ? null : chunks.get(chunks.size() - 1);
+      if (last == null || last.count == CHUNK_SIZE) {
+        last = new Chunk(fields);
+        chunks.add(last);
+        entryBytes += CHUNK_OVERHEAD + arrayUsage(fields);
+      }
+      entryBytes += last.add(id, fields, values);
+      lastId = id;
+      size++;
+      return id;
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Entries with start <= id <= end in ID order.
+   *
+   * @param count maximum number of entries, 0 or less for no limit
+   */
+  public List<StreamEntry> range(StreamId start, StreamId end, int count) {
+    lock.readLock().lock();
+    try {
+      List<StreamEntry> result = new ArrayList<>();
+      if (start.compareTo(end) > 0) {
+        return result;
+      }
+      long limit = count > 0 ? count : Long.MAX_VALUE;
+      long position = seek(start);
+      while (position < size && result.size() < limit) {
+        Chunk chunk = chunks.get((int) (position / CHUNK_SIZE));
+        int index = (int) (position % CHUNK_SIZE);
+        if (chunk.compareAt(index, end) > 0) {
+          break;
+        }
+        result.add(chunk.entryAt(index));
+        position++;
+      }
+      return result;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * The entry with exactly this ID, or null.
+   */
+  public StreamEntry get(StreamId id) {
+    lock.readLock().lock();
+    try {
+      long position = seek(id);
+      if (position == size) {
+        return null;
+      }
+      Chunk chunk = chunks.get((int) (position / CHUNK_SIZE));
+      int index = (int) (position % CHUNK_SIZE);
+      return chunk.compareAt(index, id) == 0 ? chunk.entryAt(index) : null;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  public ConsumerGroup getGroup(String name) {
+    return groups.get(name);
+  }
+
+  public Collection<ConsumerGroup> getGroups() {
+    return groups.values();
+  }
+
+  /**
+   * @return false when a group with this name already exists
+   */
+  public boolean createGroup(String name, StreamId lastDeliveredId) {
+    return groups.putIfAbsent(name, new ConsumerGroup(name, lastDeliveredId)) == null;
+  }
+
+  /**
+   * @return false when there was no such group
+   */
+  public boolean destroyGroup(String name) {
+    return groups.remove(name) != null;
+  }
+
+  /**
+   * Position of the first entry with an ID greater than or equal to id, size when there is none.
+   */
+  private long seek(StreamId id) {
+    int low = 0;
+    int high = chunks.size() - 1;
+    // Last chunk whose first ID is <= id
+    int chunkIndex = -1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      if (chunks.get(mid).compareAt(0, id) <= 0) {
+        chunkIndex = mid;
+        low = mid + 1;
+      } else {
+        high = mid - 1;
+      }
+    }
+    if (chunkIndex == -1) {
+      return 0;
+    }
+    Chunk chunk = chunks.get(chunkIndex);
+    low = 0;
+    high = chunk.count - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      if (chunk.compareAt(mid, id) < 0) {
+        low = mid + 1;
+      } else {
+        high = mid - 1;
+      }
+    }
+    return (long) chunkIndex * CHUNK_SIZE + low;
+  }
+
+  private static long arrayUsage(String[] strings) {
+    long bytes = MemoryUsage.ofArray(strings);
+    for (String string : strings) {
+      bytes += MemoryUsage.of(string);
+    }
+    return bytes;
+  }
+
+  private static class Chunk {
+    // Field names of the first entry, shared by every later entry with the same fields
+    private final String[] masterFields;
+    // ms and seq of entry i at 2 * i and 2 * i + 1
+    private long[] ids = new long[2 * INITIAL_CHUNK_CAPACITY];
+    private String[][] fields = new String[INITIAL_CHUNK_CAPACITY][];
+    private String[][] values = new String[INITIAL_CHUNK_CAPACITY][];
+    private int count = 0;
+
+    Chunk(String[] masterFields) {
+      this.masterFields = masterFields;
+    }
+
+    /**
+     * @return estimated bytes the entry takes
+     */
+    long add(StreamId id, String[] entryFields, String[] entryValues) {
+      if (count == fields.length) {
+        int capacity = Math.min(CHUNK_SIZE, count * 2);
+        ids = Arrays.copyOf(ids, 2 * capacity);
+        fields = Arrays.copyOf(fields, capacity);
+        values = Arrays.copyOf(values, capacity);
+      }
+      ids[2 * count] = id.ms();
+      ids[2 * count + 1] = id.seq();
+      boolean isShared = Arrays.equals(entryFields, masterFields);
+      fields[count] = isShared ? masterFields : entryFields;
+      values[count] = entryValues;
+      count++;
+      // Two longs of the ID and two array slots
+      long bytes = 16 + 2 * MemoryUsage.REFERENCE + arrayUsage(entryValues);
+      return isShared ? bytes : bytes + arrayUsage(entryFields);
+    }
+
+    int compareAt(int index, StreamId id) {
+      int byMs = Long.compare(ids[2 * index], id.ms());
+      return byMs != 0 ? byMs : Long.compare(ids[2 * index + 1], id.seq());
+    }
+
+    StreamId idAt(int index) {
+      return new StreamId(ids[2 * index], ids[2 * index + 1]);
+    }
+
+    StreamEntry entryAt(int index) {
+      return new StreamEntry(idAt(index), fields[index], values[index]);
+    }
+  }
+}
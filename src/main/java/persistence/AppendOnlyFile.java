@@ -0,0 +1,493 @@
+package persistence;
+
+import db.Propagation;
+import models.RespCommand;
+import processors.CommandProcessor;
+import server.ServerConfig;
+import utility.RespParser;
+import utility.RespWriter;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Append only file: every change to the keyspace, as the commands {@link Propagation} hands out, appended to
+ * dir/appendfilename and replayed at startup.
+ * <p>
+ * Client threads only encode their commands and copy them into a shared batch under a short lock. A single writer
+ * thread swaps the batch out and writes it with one system call, so concurrent clients share writes. With
+ * appendfsync always they also share the fsync that follows: a client's replies wait in {@link #awaitDurable()}
+ * until the batch holding its changes is synced, which is group commit. everysec syncs at most once a second from
+ * the writer thread, no leaves syncing to the OS.
+ * <p>
+ * BGREWRITEAOF, and the automatic rewrite once the file grew by auto-aof-rewrite-percentage since the last one,
+ * compact the file from the keyspace: a point in time RDB snapshot is written as the new file's preamble, as with
+ * Redis' aof-use-rdb-preamble, followed by the commands that ran while it was written, which are buffered in memory
+ * meanwhile. The writer thread appends the last of them and renames the new file over the old one.
+ */
+public final class AppendOnlyFile {
+  private static final long EVERYSEC_INTERVAL_MILLIS = 1000;
+  private static final long RETRY_DELAY_MILLIS = 1000;
+  private static final int REPLAY_CHUNK_SIZE = 64 * 1024;
+  // A rewrite stops catching up with the commands buffered meanwhile and switches over once this few are left
+  private static final int REWRITE_SWITCH_BYTES = 64 * 1024;
+  private static final int REWRITE_MAX_CATCH_UP_ROUNDS = 10;
+
+  public enum RewriteStart { STARTED, SCHEDULED, IN_PROGRESS, DISABLED }
+
+  private static final ReentrantLock lock = new ReentrantLock();
+  private static final Condition hasWork = lock.newCondition();
+  private static final Condition synced = lock.newCondition();
+  private static final ThreadLocal<RespWriter> encoders = ThreadLocal.withInitial(RespWriter::new);
+  // Sequence number of the last append made by each thread
+  private static final ThreadLocal<long[]> lastAppended = ThreadLocal.withInitial(() -> new long[1]);
+
+  // Guarded by lock
+  private static RespWriter batch = new RespWriter();
+  private static RespWriter rewriteBuffer;
+  private static long appendedSeq = 0;
+  private static Path rewrittenFile;
+  private static FileChannel rewrittenChannel;
+  // Appends up to this one are synced, under appendfsync always
+  private static volatile long syncedSeq = 0;
+
+  private static final AtomicBoolean rewriting = new AtomicBoolean();
+  private static volatile boolean rewriteScheduled = false;
+  private static volatile boolean fsyncAlways = false;
+
+  // Writer thread only, after start
+  private static FileChannel channel;
+  private static long size;
+  private static long sizeAfterRewrite;
+
+  private AppendOnlyFile() {
+  }
+
+  public static boolean isEnabled() {
+    return "yes".equalsIgnoreCase(ServerConfig.get("appendonly"));
+  }
+
+  /**
+   * Loads the keyspace from the AOF, or from the RDB file and writes it as a new AOF if there is none yet, then
+   * starts appending.
+   */
+  public static void start() throws IOException {
+    String fsync = ServerConfig.get("appendfsync").toLowerCase();
+    if (!fsync.equals("always") && !fsync.equals("everysec") && !fsync.equals("no")) {
+      throw new IOException("Invalid appendfsync option: " + fsync);
+    }
+    fsyncAlways = fsync.equals("always");
+    Path path = aofPath();
+    if (Files.exists(path)) {
+      load(path);
+    } else {
+      SnapshotManager.load();
+      Path temp = path.resolveSibling("temp-rewriteaof-" + ProcessHandle.current().pid() + ".aof");
+      try (FileChannel file = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+          StandardOpenOption.TRUNCATE_EXISTING)) {
+        new RdbWriter(Channels.newOutputStream(file)).write(() -> {
+        });
+        file.force(true);
+      }
+      Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    size = channel.size();
+    sizeAfterRewrite = size;
+    Propagation.addListener(AppendOnlyFile::append);
+    Thread thread = new Thread(() -> runWriter(fsync), "aof-writer");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /**
+   * Waits until everything the calling thread appended is on disk, when appendfsync is always. Call before sending
+   * the replies of write commands.
+   */
+  public static void awaitDurable() {
+    if (!fsyncAlways) {
+      return;
+    }
+    long seq = lastAppended.get()[0];
+    if (seq <= syncedSeq) {
+      return;
+    }
+    lock.lock();
+    try {
+      while (syncedSeq < seq) {
+        synced.awaitUninterruptibly();
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Starts a rewrite in a background thread, or schedules it while a snapshot is being saved.
+   */
+  public static RewriteStart backgroundRewrite() {
+    if (!isEnabled()) {
+      return RewriteStart.DISABLED;
+    }
+    if (rewriting.get()) {
+      return RewriteStart.IN_PROGRESS;
+    }
+    if (startRewrite()) {
+      return RewriteStart.STARTED;
+    }
+    rewriteScheduled = true;
+    return RewriteStart.SCHEDULED;
+  }
+
+  private static void append(List<List<String>> commands) {
+    // Encoded before taking the lock, so the lock is only held for a copy
+    RespWriter encoded = encoders.get();
+    for (List<String> command : commands) {
+      encoded.writeBulkArray(command);
+    }
+    long seq;
+    lock.lock();
+    try {
+      if (batch.isEmpty()) {
+        hasWork.signal();
+      }
+      batch.writeRaw(encoded);
+      if (rewriteBuffer != null) {
+        rewriteBuffer.writeRaw(encoded);
+      }
+      seq = ++appendedSeq;
+    } finally {
+      lock.unlock();
+    }
+    encoded.reset();
+    lastAppended.get()[0] = seq;
+  }
+
+  private static void runWriter(String fsync) {
+    RespWriter writing = new RespWriter();
+    long lastFsyncMillis = System.currentTimeMillis();
+    boolean unsynced = false;
+    while (true) {
+      long seq;
+      Path rewritten;
+      FileChannel rewrittenOut;
+      RespWriter tail = null;
+      lock.lock();
+      try {
+        while (batch.isEmpty() && rewrittenFile == null) {
+          // Wakes up at least once a second, to sync under everysec and to start rewrites
+          if (!hasWork.await(EVERYSEC_INTERVAL_MILLIS, TimeUnit.MILLISECONDS)) {
+            break;
+          }
+        }
+        RespWriter swapped = batch;
+        batch = writing;
+        writing = swapped;
+        seq = appendedSeq;
+        rewritten = rewrittenFile;
+        rewrittenOut = rewrittenChannel;
+        if (rewritten != null) {
+          // Everything from here on goes to the new file only
+          tail = rewriteBuffer;
+          rewriteBuffer = null;
+          rewrittenFile = null;
+          rewrittenChannel = null;
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      } finally {
+        lock.unlock();
+      }
+
+      if (!writing.isEmpty()) {
+        writeFully(channel, writing);
+        size += writing.size();
+        writing.reset();
+        unsynced = true;
+      }
+      long now = System.currentTimeMillis();
+      boolean isSyncDue = fsyncAlways
+          || (fsync.equals("everysec") && now - lastFsyncMillis >= EVERYSEC_INTERVAL_MILLIS);
+      if (unsynced && isSyncDue) {
+        forceFully(channel);
+        lastFsyncMillis = now;
+        unsynced = false;
+      }
+      if (rewritten != null) {
+        finishRewrite(rewritten, rewrittenOut, tail);
+      }
+      if (fsyncAlways) {
+        lock.lock();
+        try {
+          syncedSeq = seq;
+          synced.signalAll();
+        } finally {
+          lock.unlock();
+        }
+      }
+      maybeStartRewrite();
+    }
+  }
+
+  private static void maybeStartRewrite() {
+    if (rewriting.get()) {
+      return;
+    }
+    if (rewriteScheduled) {
+      if (startRewrite()) {
+        rewriteScheduled = false;
+      }
+      return;
+    }
+    long percentage = ServerConfig.getLong("auto-aof-rewrite-percentage");
+    if (percentage > 0 && size >= ServerConfig.getLong("auto-aof-rewrite-min-size")
+        && (size - sizeAfterRewrite) * 100 >= sizeAfterRewrite * percentage) {
+      System.out.println("Starting automatic rewriting of AOF on " + (size - sizeAfterRewrite) * 100 / Math.max(1,
+          sizeAfterRewrite) + "% growth");
+      startRewrite();
+    }
+  }
+
+  /**
+   * @return false when a snapshot is already being taken, the rewrite has to wait for it
+   */
+  private static boolean startRewrite() {
+    if (!rewriting.compareAndSet(false, true)) {
+      return true;
+    }
+    if (!SnapshotManager.tryStartSnapshot()) {
+      rewriting.set(false);
+      return false;
+    }
+    Thread thread = new Thread(AppendOnlyFile::rewrite, "aof-rewrite");
+    thread.setDaemon(true);
+    thread.start();
+    return true;
+  }
+
+  /**
+   * Writes the snapshot and the commands buffered meanwhile to a temporary file, then hands it to the writer
+   * thread to append the rest and switch over.
+   */
+  private static void rewrite() {
+    Path temp = aofPath().resolveSibling("temp-rewriteaof-bg-" + ProcessHandle.current().pid() + ".aof");
+    FileChannel out = null;
+    try {
+      out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+          StandardOpenOption.TRUNCATE_EXISTING);
+      long started = System.currentTimeMillis();
+      try {
+        long keys = new RdbWriter(Channels.newOutputStream(out)).write(() -> {
+          lock.lock();
+          try {
+            rewriteBuffer = new RespWriter();
+          } finally {
+            lock.unlock();
+          }
+        });
+        System.out.println("AOF rewrite: " + keys + " keys written in " + (System.currentTimeMillis() - started)
+            + " ms");
+      } finally {
+        SnapshotManager.finishSnapshot();
+      }
+      RespWriter chunk = new RespWriter();
+      for (int round = 0; round < REWRITE_MAX_CATCH_UP_ROUNDS; round++) {
+        lock.lock();
+        try {
+          RespWriter buffered = rewriteBuffer;
+          rewriteBuffer = chunk;
+          chunk = buffered;
+        } finally {
+          lock.unlock();
+        }
+        int written = chunk.size();
+        out.write(chunk.view(0));
+        chunk.reset();
+        if (written < REWRITE_SWITCH_BYTES) {
+          break;
+        }
+      }
+      lock.lock();
+      try {
+        rewrittenFile = temp;
+        rewrittenChannel = out;
+        hasWork.signal();
+      } finally {
+        lock.unlock();
+      }
+    } catch (IOException | RuntimeException e) {
+      System.out.println("Background AOF rewrite failed: " + e.getMessage());
+      lock.lock();
+      try {
+        rewriteBuffer = null;
+      } finally {
+        lock.unlock();
+      }
+      closeQuietly(out);
+      try {
+        Files.deleteIfExists(temp);
+      } catch (IOException ignored) {
+        // Overwritten by the next rewrite
+      }
+      rewriting.set(false);
+    }
+  }
+
+  /**
+   * Runs on the writer thread once the old file holds every append made before the switch.
+   */
+  private static void finishRewrite(Path temp, FileChannel out, RespWriter tail) {
+    try {
+      out.write(tail.view(0));
+      out.force(true);
+      out.close();
+      Path path = aofPath();
+      Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      FileChannel reopened = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+      closeQuietly(channel);
+      channel = reopened;
+      size = channel.size();
+      sizeAfterRewrite = size;
+      System.out.println("Background AOF rewrite finished successfully");
+    } catch (IOException e) {
+      // The old file is still complete, keep appending to it
+      System.out.println("Background AOF rewrite failed: " + e.getMessage());
+      closeQuietly(out);
+      try {
+        Files.deleteIfExists(temp);
+      } catch (IOException ignored) {
+        // Overwritten by the next rewrite
+      }
+    } finally {
+      rewriting.set(false);
+    }
+  }
+
+  /**
+   * Replays the file: the RDB preamble if it starts with one, then the commands. A command cut off at the end, as
+   * left by a crash mid-write, is dropped and the file truncated before it, and so is a MULTI block missing its EXEC,
+   * whose commands would otherwise swallow the ones appended after it.
+   */
+  static void load(Path path) throws IOException {
+    long started = System.currentTimeMillis();
+    long keys = 0;
+    long offset = 0;
+    try (InputStream in = new BufferedInputStream(Files.newInputStream(path))) {
+      in.mark(Rdb.MAGIC.length());
+      byte[] magic = in.readNBytes(Rdb.MAGIC.length());
+      in.reset();
+      if (new String(magic, StandardCharsets.US_ASCII).equals(Rdb.MAGIC)) {
+        RdbLoader loader = new RdbLoader(in);
+        keys = loader.load();
+        offset = loader.offset();
+      }
+    }
+
+    long commands = 0;
+    long validEnd = offset;
+    long fileSize;
+    try (FileChannel file = FileChannel.open(path, StandardOpenOption.READ)) {
+      fileSize = file.size();
+      file.position(offset);
+      RespParser parser = new RespParser();
+      CommandProcessor processor = new CommandProcessor(true);
+      RespWriter reply = new RespWriter();
+      ByteBuffer buffer = ByteBuffer.allocate(REPLAY_CHUNK_SIZE);
+      long consumed = offset;
+      while (true) {
+        buffer = parser.ensureWritable(buffer);
+        if (file.read(buffer) == -1) {
+          break;
+        }
+        buffer.flip();
+        while (true) {
+          int before = buffer.position();
+          RespCommand cmd = parser.parse(buffer);
+          consumed += buffer.position() - before;
+          if (cmd == null) {
+            break;
+          }
+          processor.processCommand(cmd, reply);
+          reply.reset();
+          commands++;
+          if (!processor.isInTransaction()) {
+            validEnd = consumed;
+          }
+        }
+        buffer.compact();
+      }
+    }
+    if (validEnd < fileSize) {
+      System.out.println("!!! Warning: short read while loading the AOF file " + path + ", truncating "
+          + (fileSize - validEnd) + " bytes at the end !!!");
+      try (FileChannel file = FileChannel.open(path, StandardOpenOption.WRITE)) {
+        file.truncate(validEnd);
+        file.force(true);
+      }
+    }
+    System.out.println("DB loaded from append only file: " + keys + " keys and " + commands + " commands in "
+        + (System.currentTimeMillis() - started) + " ms");
+  }
+
+  private static void writeFully(FileChannel target, RespWriter data) {
+    ByteBuffer buffer = data.view(0);
+    while (buffer.hasRemaining()) {
+      try {
+        target.write(buffer);
+      } catch (IOException e) {
+        System.out.println("Error writing to the AOF file, retrying: " + e.getMessage());
+        sleepBeforeRetry();
+      }
+    }
+  }
+
+  private static void forceFully(FileChannel target) {
+    while (true) {
+      try {
+        target.force(false);
+        return;
+      } catch (IOException e) {
+        System.out.println("Error syncing the AOF file, retrying: " + e.getMessage());
+        sleepBeforeRetry();
+      }
+    }
+  }
+
+  private static void sleepBeforeRetry() {
+    try {
+      Thread.sleep(RETRY_DELAY_MILLIS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static void closeQuietly(FileChannel file) {
+    if (file == null) {
+      return;
+    }
+    try {
+      file.close();
+    } catch (IOException ignored) {
+      // Nothing left to do with it
+    }
+  }
+
+  private static Path aofPath() {
+    return Path.of(ServerConfig.get("dir"), ServerConfig.get("appendfilename"));
+  }
+}
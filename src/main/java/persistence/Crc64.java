@@ -0,0 +1,30 @@
+package persistence;
+
+/**
+ * CRC-64/Jones as used for the RDB checksum: reflected polynomial 0xad93d23594c935a9, initial value 0, no final xor.
+ */
+final class Crc64 {
+  private static final long[] TABLE = new long[256];
+
+  static {
+    // Bit reversed 0xad93d23594c935a9
+    long polynomial = Long.reverse(0xad93d23594c935a9L);
+    for (int i = 0; i < 256; i++) {
+      long crc = i;
+      for (int bit = 0; bit < 8; bit++) {
+        crc = (crc & 1) != 0 ? (crc >>> 1) ^ polynomial : crc >>> 1;
+      }
+      TABLE[i] = crc;
+    }
+  }
+
+  private Crc64() {
+  }
+
+  static long update(long crc, byte[] bytes, int offset, int length) {
+    for (int i = offset; i < offset + length; i++) {
+      crc = TABLE[(int) ((crc ^ bytes[i]) & 0xFF)] ^ (crc >>> 8);
+    }
+    return crc;
+  }
+}
@@ -0,0 +1,28 @@
+package persistence;
+
+import java.io.IOException;
+
+/**
+ * Serializes single values the way DUMP and RESTORE do, which is how MIGRATE moves keys between nodes: the value in
+ * its RDB encoding followed by the RDB version and a CRC64.
+ */
+public final class KeyDump {
+
+  private KeyDump() {
+  }
+
+  /**
+   * @return the serialized value, null when the key does not exist
+   */
+  public static byte[] dump(String key) throws IOException {
+    return RdbWriter.dump(key);
+  }
+
+  /**
+   * @return the value in its model type, null for an empty collection
+   * @throws IOException when the payload is corrupt or from a newer RDB version
+   */
+  public static Object restore(byte[] payload) throws IOException {
+    return RdbLoader.restore(payload);
+  }
+}
@@ -0,0 +1,175 @@
+package persistence;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Encoder and decoder for Redis' listpack format, which RDB files use for stream nodes and small collections.
+ * <p>
+ * A listpack is a 4 byte total length, a 2 byte element count and the elements followed by 0xFF. Each element is
+ * an encoding byte with its data, then the length of those two written backwards so the list can be walked from
+ * either end.
+ */
+final class Listpack {
+  private static final int HEADER_SIZE = 6;
+  private static final int END = 0xFF;
+
+  private byte[] bytes = new byte[256];
+  private int length = HEADER_SIZE;
+  private int count = 0;
+
+  void appendString(String value) {
+    byte[] data = value.getBytes(StandardCharsets.ISO_8859_1);
+    int start = length;
+    if (data.length < 64) {
+      put(0x80 | data.length);
+    } else if (data.length < 4096) {
+      put(0xE0 | (data.length >> 8));
+      put(data.length);
+    } else {
+      put(0xF0);
+      putLittleEndian(data.length, 4);
+    }
+    ensureCapacity(data.length);
+    System.arraycopy(data, 0, bytes, length, data.length);
+    length += data.length;
+    putBacklen(length - start);
+    count++;
+  }
+
+  void appendInteger(long value) {
+    int start = length;
+    if (value >= 0 && value <= 127) {
+      put((int) value);
+    } else if (value >= -4096 && value <= 4095) {
+      long unsigned = value < 0 ? (1 << 13) + value : value;
+      put(0xC0 | (int) (unsigned >> 8));
+      put((int) unsigned);
+    } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+      put(0xF1);
+      putLittleEndian(value, 2);
+    } else if (value >= -(1 << 23) && value < (1 << 23)) {
+      put(0xF2);
+      putLittleEndian(value, 3);
+    } else if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+      put(0xF3);
+      putLittleEndian(value, 4);
+    } else {
+      put(0xF4);
+      putLittleEndian(value, 8);
+    }
+    putBacklen(length - start);
+    count++;
+  }
+
+  byte[] toByteArray() {
+    byte[] result = Arrays.copyOf(bytes, length + 1);
+    result[length] = (byte) END;
+    int total = result.length;
+    for (int i = 0; i < 4; i++) {
+      result[i] = (byte) (total >>> (8 * i));
+    }
+    // Counts that do not fit are stored as 65535, meaning unknown
+    int storedCount = Math.min(count, 0xFFFF);
+    result[4] = (byte) storedCount;
+    result[5] = (byte) (storedCount >>> 8);
+    return result;
+  }
+
+  /**
+   * Elements of a listpack in order, integers as their decimal strings.
+   */
+  static List<String> decode(byte[] listpack) throws IOException {
+    List<String> elements = new ArrayList<>();
+    int p = HEADER_SIZE;
+    try {
+      while ((listpack[p] & 0xFF) != END) {
+        int start = p;
+        int encoding = listpack[p++] & 0xFF;
+        String element;
+        if ((encoding & 0x80) == 0) {
+          element = Integer.toString(encoding);
+        } else if ((encoding & 0xC0) == 0x80) {
+          int size = encoding & 0x3F;
+          element = new String(listpack, p, size, StandardCharsets.ISO_8859_1);
+          p += size;
+        } else if ((encoding & 0xE0) == 0xC0) {
+          int unsigned = ((encoding & 0x1F) << 8) | (listpack[p++] & 0xFF);
+          element = Integer.toString(unsigned >= (1 << 12) ? unsigned - (1 << 13) : unsigned);
+        } else if ((encoding & 0xF0) == 0xE0) {
+          int size = ((encoding & 0x0F) << 8) | (listpack[p++] & 0xFF);
+          element = new String(listpack, p, size, StandardCharsets.ISO_8859_1);
+          p += size;
+        } else {
+          int width = switch (encoding) {
+            case 0xF1 -> 2;
+            case 0xF2 -> 3;
+            case 0xF3, 0xF0 -> 4;
+            case 0xF4 -> 8;
+            default -> throw new IOException("Unknown listpack encoding " + encoding);
+          };
+          long value = 0;
+          for (int i = 0; i < width; i++) {
+            value |= (long) (listpack[p++] & 0xFF) << (8 * i);
+          }
+          if (encoding == 0xF0) {
+            element = new String(listpack, p, (int) value, StandardCharsets.ISO_8859_1);
+            p += (int) value;
+          } else {
+            // Sign extend from the stored width
+            int shift = 64 - 8 * width;
+            element = Long.toString((value << shift) >> shift);
+          }
+        }
+        p += backlenSize(p - start);
+        elements.add(element);
+      }
+    } catch (IndexOutOfBoundsException e) {
+      throw new IOException("Corrupt listpack", e);
+    }
+    return elements;
+  }
+
+  private void putBacklen(int entryLength) {
+    int size = backlenSize(entryLength);
+    // Most significant 7 bits first, every byte but the first flagged, so it can be read from its last byte back
+    for (int i = size - 1; i >= 0; i--) {
+      int bits = (entryLength >>> (7 * i)) & 0x7F;
+      put(i == size - 1 ? bits : bits | 0x80);
+    }
+  }
+
+  private static int backlenSize(int entryLength) {
+    if (entryLength <= 127) {
+      return 1;
+    } else if (entryLength < 16383) {
+      return 2;
+    } else if (entryLength < 2097151) {
+      return 3;
+    } else if (entryLength < 268435455) {
+      return 4;
+    }
+    return 5;
+  }
+
+  private void put(int b) {
+    ensureCapacity(1);
+    bytes[length++] = (byte) b;
+  }
+
+  private void putLittleEndian(long value, int size) {
+    for (int i = 0; i < size; i++) {
+      put((int) (value >>> (8 * i)));
+    }
+  }
+
+  private void ensureCapacity(int extra) {
+    // One spare byte for the terminator
+    if (length + extra + 1 > bytes.length) {
+      bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + extra + 1));
+    }
+  }
+}
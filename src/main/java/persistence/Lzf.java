@@ -0,0 +1,48 @@
+package persistence;
+
+import java.io.IOException;
+
+/**
+ * Decompressor for the LZF format Redis compresses RDB strings with.
+ */
+final class Lzf {
+  private Lzf() {
+  }
+
+  static byte[] decompress(byte[] in, int length) throws IOException {
+    byte[] out = new byte[length];
+    int ip = 0;
+    int op = 0;
+    try {
+      while (ip < in.length) {
+        int control = in[ip++] & 0xFF;
+        if (control < 32) {
+          // Literal run of control + 1 bytes
+          int run = control + 1;
+          System.arraycopy(in, ip, out, op, run);
+          ip += run;
+          op += run;
+        } else {
+          // Back reference, copied byte by byte since it may overlap what it produces
+          int run = control >> 5;
+          if (run == 7) {
+            run += in[ip++] & 0xFF;
+          }
+          int reference = op - ((control & 0x1F) << 8) - 1 - (in[ip++] & 0xFF);
+          if (reference < 0) {
+            throw new IOException("Corrupt LZF data");
+          }
+          for (int i = 0; i < run + 2; i++) {
+            out[op++] = out[reference++];
+          }
+        }
+      }
+    } catch (IndexOutOfBoundsException e) {
+      throw new IOException("Corrupt LZF data", e);
+    }
+    if (op != length) {
+      throw new IOException("Corrupt LZF data");
+    }
+    return out;
+  }
+}
@@ -0,0 +1,67 @@
+package persistence;
+
+/**
+ * Constants of the RDB file format.
+ */
+final class Rdb {
+  static final String MAGIC = "REDIS";
+  // Version written, as Redis 7.2 does. Files up to MAX_VERSION are read.
+  static final int VERSION = 11;
+  static final int MAX_VERSION = 12;
+
+  // Value types
+  static final int TYPE_STRING = 0;
+  static final int TYPE_LIST = 1;
+  static final int TYPE_SET = 2;
+  static final int TYPE_ZSET = 3;
+  static final int TYPE_HASH = 4;
+  static final int TYPE_ZSET_2 = 5;
+  static final int TYPE_SET_INTSET = 11;
+  static final int TYPE_LIST_QUICKLIST = 14;
+  static final int TYPE_STREAM_LISTPACKS = 15;
+  static final int TYPE_HASH_LISTPACK = 16;
+  static final int TYPE_ZSET_LISTPACK = 17;
+  static final int TYPE_LIST_QUICKLIST_2 = 18;
+  static final int TYPE_STREAM_LISTPACKS_2 = 19;
+  static final int TYPE_SET_LISTPACK = 20;
+  static final int TYPE_STREAM_LISTPACKS_3 = 21;
+
+  // Opcodes
+  static final int OPCODE_SLOT_INFO = 244;
+  static final int OPCODE_FUNCTION2 = 245;
+  static final int OPCODE_MODULE_AUX = 247;
+  static final int OPCODE_IDLE = 248;
+  static final int OPCODE_FREQ = 249;
+  static final int OPCODE_AUX = 250;
+  static final int OPCODE_RESIZEDB = 251;
+  static final int OPCODE_EXPIRETIME_MS = 252;
+  static final int OPCODE_EXPIRETIME = 253;
+  static final int OPCODE_SELECTDB = 254;
+  static final int OPCODE_EOF = 255;
+
+  // Length prefixes, the top two bits of the first byte
+  static final int LEN_6BIT = 0;
+  static final int LEN_14BIT = 1;
+  static final int LEN_32BIT = 0x80;
+  static final int LEN_64BIT = 0x81;
+  static final int LEN_ENCODED = 3;
+
+  // Special string encodings after an encoded length prefix
+  static final int ENC_INT8 = 0;
+  static final int ENC_INT16 = 1;
+  static final int ENC_INT32 = 2;
+  static final int ENC_LZF = 3;
+
+  // Quicklist 2 node containers
+  static final int QUICKLIST_NODE_PLAIN = 1;
+  static final int QUICKLIST_NODE_PACKED = 2;
+
+  // Stream listpack entry flags
+  static final int STREAM_ITEM_DELETED = 1;
+  static final int STREAM_ITEM_SAME_FIELDS = 2;
+  // Entries per stream node, Redis' stream-node-max-entries default
+  static final int STREAM_NODE_MAX_ENTRIES = 100;
+
+  private Rdb() {
+  }
+}
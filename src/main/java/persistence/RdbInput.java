@@ -0,0 +1,182 @@
+package persistence;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Buffered reader of RDB primitives that keeps the running CRC64 of everything read.
+ * <p>
+ * The file is consumed as a stream through one fixed buffer, so loading needs memory for the dataset but not for
+ * the file.
+ */
+final class RdbInput {
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final InputStream in;
+  private final byte[] buffer = new byte[BUFFER_SIZE];
+  private int position = 0;
+  private int limit = 0;
+  // Bytes of the stream before the start of the buffer
+  private long bufferOffset = 0;
+  // Bytes of the buffer before this index are already part of crc
+  private int crcStart = 0;
+  private long crc = 0;
+
+  RdbInput(InputStream in) {
+    this.in = in;
+  }
+
+  int readByte() throws IOException {
+    if (position == limit) {
+      fill();
+    }
+    return buffer[position++] & 0xFF;
+  }
+
+  byte[] readBytes(int length) throws IOException {
+    byte[] bytes = new byte[length];
+    int copied = Math.min(length, limit - position);
+    System.arraycopy(buffer, position, bytes, 0, copied);
+    position += copied;
+    while (copied < length) {
+      if (length - copied >= buffer.length) {
+        // Large payloads are read straight into place
+        updateCrc();
+        int read = in.read(bytes, copied, length - copied);
+        if (read < 0) {
+          throw new EOFException("Unexpected end of RDB file");
+        }
+        crc = Crc64.update(crc, bytes, copied, read);
+        bufferOffset += read;
+        copied += read;
+      } else {
+        fill();
+        int chunk = Math.min(length - copied, limit - position);
+        System.arraycopy(buffer, position, bytes, copied, chunk);
+        position += chunk;
+        copied += chunk;
+      }
+    }
+    return bytes;
+  }
+
+  long readLittleEndian(int bytes) throws IOException {
+    long value = 0;
+    for (int i = 0; i < bytes; i++) {
+      value |= (long) readByte() << (8 * i);
+    }
+    return value;
+  }
+
+  long readBigEndian(int bytes) throws IOException {
+    long value = 0;
+    for (int i = 0; i < bytes; i++) {
+      value = (value << 8) | readByte();
+    }
+    return value;
+  }
+
+  double readDouble() throws IOException {
+    return Double.longBitsToDouble(readLittleEndian(8));
+  }
+
+  long readLength() throws IOException {
+    return readLength(readByte());
+  }
+
+  private long readLength(int first) throws IOException {
+    return switch (first >> 6) {
+      case Rdb.LEN_6BIT -> first & 0x3F;
+      case Rdb.LEN_14BIT -> ((first & 0x3F) << 8) | readByte();
+      case Rdb.LEN_ENCODED -> throw new IOException("Unexpected string encoding in place of a length");
+      default -> switch (first) {
+        case Rdb.LEN_32BIT -> readBigEndian(4);
+        case Rdb.LEN_64BIT -> readBigEndian(8);
+        default -> throw new IOException("Unknown length encoding " + first);
+      };
+    };
+  }
+
+  String readString() throws IOException {
+    return new String(readStringBytes(), StandardCharsets.ISO_8859_1);
+  }
+
+  /**
+   * Raw bytes of a string, decoding integer and LZF compressed encodings.
+   */
+  byte[] readStringBytes() throws IOException {
+    int first = readByte();
+    if (first >> 6 != Rdb.LEN_ENCODED) {
+      return readBytes(toIntLength(readLength(first)));
+    }
+    return switch (first & 0x3F) {
+      case Rdb.ENC_INT8 -> asciiBytes((byte) readByte());
+      case Rdb.ENC_INT16 -> asciiBytes((short) readLittleEndian(2));
+      case Rdb.ENC_INT32 -> asciiBytes((int) readLittleEndian(4));
+      case Rdb.ENC_LZF -> {
+        int compressedLength = toIntLength(readLength());
+        int length = toIntLength(readLength());
+        yield Lzf.decompress(readBytes(compressedLength), length);
+      }
+      default -> throw new IOException("Unknown string encoding " + (first & 0x3F));
+    };
+  }
+
+  /**
+   * Score of the original sorted set type, a length prefixed decimal string with special lengths for nan and inf.
+   */
+  double readStringDouble() throws IOException {
+    int length = readByte();
+    return switch (length) {
+      case 253 -> Double.NaN;
+      case 254 -> Double.POSITIVE_INFINITY;
+      case 255 -> Double.NEGATIVE_INFINITY;
+      default -> Double.parseDouble(new String(readBytes(length), StandardCharsets.ISO_8859_1));
+    };
+  }
+
+  /**
+   * CRC64 of everything read so far.
+   */
+  long checksum() {
+    updateCrc();
+    return crc;
+  }
+
+  /**
+   * Number of bytes read from the stream so far.
+   */
+  long offset() {
+    return bufferOffset + position;
+  }
+
+  private void fill() throws IOException {
+    updateCrc();
+    bufferOffset += limit;
+    limit = in.read(buffer, 0, buffer.length);
+    position = 0;
+    crcStart = 0;
+    if (limit <= 0) {
+      limit = 0;
+      throw new EOFException("Unexpected end of RDB file");
+    }
+  }
+
+  private void updateCrc() {
+    crc = Crc64.update(crc, buffer, crcStart, position - crcStart);
+    crcStart = position;
+  }
+
+  private static int toIntLength(long length) throws IOException {
+    if (length < 0 || length > Integer.MAX_VALUE - 8) {
+      throw new IOException("String too long: " + length);
+    }
+    return (int) length;
+  }
+
+  private static byte[] asciiBytes(long value) {
+    return Long.toString(value).getBytes(StandardCharsets.ISO_8859_1);
+  }
+}
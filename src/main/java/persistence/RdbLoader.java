@@ -0,0 +1,377 @@
+package persistence;
+
+import db.DataStore;
+import functions.Functions;
+import models.ConsumerGroup;
+import models.DataStoreValue;
+import models.HashValue;
+import models.QuickList;
+import models.ScoreRange;
+import models.SetValue;
+import models.SortedSetValue;
+import models.StreamId;
+import models.StreamLog;
+import server.ServerConfig;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads an RDB file into the keyspace.
+ * <p>
+ * Besides what {@link RdbWriter} writes, this reads the compact encodings Redis 7 uses (integer and LZF strings,
+ * listpacks, intsets and quicklists), so a dump.rdb from Redis can be loaded. Only database 0 is loaded, since there
+ * is a single keyspace, and keys already expired are dropped. Ziplist based encodings from before Redis 7, module
+ * values and module aux data are not supported and fail the load.
+ */
+final class RdbLoader {
+  private final RdbInput in;
+  private final long now = System.currentTimeMillis();
+
+  RdbLoader(InputStream stream) {
+    this.in = new RdbInput(stream);
+  }
+
+  /**
+   * @return number of keys loaded
+   */
+  long load() throws IOException {
+    String header = new String(in.readBytes(9), StandardCharsets.US_ASCII);
+    if (!header.startsWith(Rdb.MAGIC)) {
+      throw new IOException("Wrong signature trying to load DB from file");
+    }
+    int version;
+    try {
+      version = Integer.parseInt(header.substring(Rdb.MAGIC.length()));
+    } catch (NumberFormatException e) {
+      throw new IOException("Wrong signature trying to load DB from file");
+    }
+    if (version < 1 || version > Rdb.MAX_VERSION) {
+      throw new IOException("Can't handle RDB format version " + version);
+    }
+    long database = 0;
+    long expiryTimeMillis = 0;
+    long loaded = 0;
+    while (true) {
+      int type = in.readByte();
+      switch (type) {
+        case Rdb.OPCODE_EOF -> {
+          verifyChecksum(version);
+          return loaded;
+        }
+        case Rdb.OPCODE_SELECTDB -> database = in.readLength();
+        case Rdb.OPCODE_RESIZEDB -> {
+          in.readLength();
+          in.readLength();
+        }
+        case Rdb.OPCODE_AUX -> {
+          in.readStringBytes();
+          in.readStringBytes();
+        }
+        case Rdb.OPCODE_EXPIRETIME_MS -> expiryTimeMillis = in.readLittleEndian(8);
+        case Rdb.OPCODE_EXPIRETIME -> expiryTimeMillis = in.readLittleEndian(4) * 1000;
+        case Rdb.OPCODE_IDLE -> in.readLength();
+        case Rdb.OPCODE_FREQ -> in.readByte();
+        case Rdb.OPCODE_SLOT_INFO -> {
+          in.readLength();
+          in.readLength();
+          in.readLength();
+        }
+        case Rdb.OPCODE_FUNCTION2 -> loadFunctions(in.readString());
+        case Rdb.OPCODE_MODULE_AUX -> throw new IOException("Module aux data is not supported");
+        default -> {
+          String key = in.readString();
+          Object value = readValue(type);
+          boolean expired = expiryTimeMillis > 0 && expiryTimeMillis <= now;
+          if (database == 0 && value != null && !expired) {
+            DataStore.put(key, new DataStoreValue(value, expiryTimeMillis));
+            loaded++;
+          }
+          expiryTimeMillis = 0;
+        }
+      }
+    }
+  }
+
+  /**
+   * Loads a function library, skipping those of other engines, e.g. the Lua libraries of a Redis server.
+   */
+  private static void loadFunctions(String code) {
+    try {
+      Functions.load(code, true);
+    } catch (IllegalArgumentException e) {
+      System.out.println("Skipping function library: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Bytes read from the stream so far, after {@link #load()} where the RDB data ends. The stream itself may have
+   * been read further ahead.
+   */
+  long offset() {
+    return in.offset();
+  }
+
+  /**
+   * Reads a value in the DUMP format, see {@link RdbWriter#dump(String)}.
+   *
+   * @return the value in its model type, null for an empty collection
+   */
+  static Object restore(byte[] payload) throws IOException {
+    int footer = payload.length - 10;
+    if (footer < 1) {
+      throw new IOException("DUMP payload version or checksum are wrong");
+    }
+    long version = littleEndian(payload, footer, 2);
+    long checksum = littleEndian(payload, footer + 2, 8);
+    if (version > Rdb.MAX_VERSION || checksum != Crc64.update(0, payload, 0, footer + 2)) {
+      throw new IOException("DUMP payload version or checksum are wrong");
+    }
+    RdbLoader loader = new RdbLoader(new ByteArrayInputStream(payload, 0, footer));
+    return loader.readValue(loader.in.readByte());
+  }
+
+  private void verifyChecksum(int version) throws IOException {
+    if (version < 5) {
+      return;
+    }
+    long expected = in.checksum();
+    long stored = in.readLittleEndian(8);
+    // A zero checksum means the writer had checksums turned off
+    if (stored != 0 && stored != expected) {
+      throw new IOException("Wrong RDB checksum");
+    }
+  }
+
+  /**
+   * @return the value in its model type, null for an empty collection
+   */
+  private Object readValue(int type) throws IOException {
+    return switch (type) {
+      case Rdb.TYPE_STRING -> in.readString();
+      case Rdb.TYPE_LIST -> {
+        QuickList list = new QuickList();
+        for (long i = in.readLength(); i > 0; i--) {
+          list.pushLast(in.readString());
+        }
+        yield list.isEmpty() ? null : list;
+      }
+      case Rdb.TYPE_LIST_QUICKLIST_2 -> readQuickList();
+      case Rdb.TYPE_SET -> {
+        long size = in.readLength();
+        List<String> members = new ArrayList<>();
+        for (long i = 0; i < size; i++) {
+          members.add(in.readString());
+        }
+        yield toSet(members);
+      }
+      case Rdb.TYPE_SET_INTSET -> toSet(decodeIntset(in.readStringBytes()));
+      case Rdb.TYPE_SET_LISTPACK -> toSet(Listpack.decode(in.readStringBytes()));
+      case Rdb.TYPE_ZSET, Rdb.TYPE_ZSET_2 -> {
+        SortedSetValue set = newSortedSet();
+        for (long i = in.readLength(); i > 0; i--) {
+          String member = in.readString();
+          set.put(member, type == Rdb.TYPE_ZSET ? in.readStringDouble() : in.readDouble());
+        }
+        yield set.size() == 0 ? null : set;
+      }
+      case Rdb.TYPE_ZSET_LISTPACK -> {
+        List<String> elements = Listpack.decode(in.readStringBytes());
+        SortedSetValue set = newSortedSet();
+        for (int i = 0; i + 1 < elements.size(); i += 2) {
+          set.put(elements.get(i), parseScore(elements.get(i + 1)));
+        }
+        yield set.size() == 0 ? null : set;
+      }
+      case Rdb.TYPE_HASH -> {
+        HashValue hash = newHash();
+        for (long i = in.readLength(); i > 0; i--) {
+          hash.put(in.readString(), in.readString());
+        }
+        yield hash.size() == 0 ? null : hash;
+      }
+      case Rdb.TYPE_HASH_LISTPACK -> {
+        List<String> elements = Listpack.decode(in.readStringBytes());
+        HashValue hash = newHash();
+        for (int i = 0; i + 1 < elements.size(); i += 2) {
+          hash.put(elements.get(i), elements.get(i + 1));
+        }
+        yield hash.size() == 0 ? null : hash;
+      }
+      case Rdb.TYPE_STREAM_LISTPACKS, Rdb.TYPE_STREAM_LISTPACKS_2, Rdb.TYPE_STREAM_LISTPACKS_3 -> readStream(type);
+      default -> throw new IOException("Unsupported RDB value type " + type);
+    };
+  }
+
+  private QuickList readQuickList() throws IOException {
+    QuickList list = new QuickList();
+    for (long nodes = in.readLength(); nodes > 0; nodes--) {
+      long container = in.readLength();
+      byte[] data = in.readStringBytes();
+      if (container == Rdb.QUICKLIST_NODE_PLAIN) {
+        list.pushLast(new String(data, StandardCharsets.ISO_8859_1));
+      } else if (container == Rdb.QUICKLIST_NODE_PACKED) {
+        for (String element : Listpack.decode(data)) {
+          list.pushLast(element);
+        }
+      } else {
+        throw new IOException("Unknown quicklist node container " + container);
+      }
+    }
+    return list.isEmpty() ? null : list;
+  }
+
+  private StreamLog readStream(int type) throws IOException {
+    StreamLog stream = new StreamLog();
+    for (long nodes = in.readLength(); nodes > 0; nodes--) {
+      byte[] masterKey = in.readStringBytes();
+      if (masterKey.length != 16) {
+        throw new IOException("Stream node key is not a stream ID");
+      }
+      readStreamNode(stream, readStreamId(masterKey), Listpack.decode(in.readStringBytes()));
+    }
+    in.readLength();
+    stream.advanceLastId(readLengthStreamId());
+    if (type >= Rdb.TYPE_STREAM_LISTPACKS_2) {
+      // First ID, largest deleted ID and number of entries ever added are derived from the entries here
+      readLengthStreamId();
+      readLengthStreamId();
+      in.readLength();
+    }
+    for (long groups = in.readLength(); groups > 0; groups--) {
+      String name = in.readString();
+      StreamId lastDeliveredId = readLengthStreamId();
+      if (type >= Rdb.TYPE_STREAM_LISTPACKS_2) {
+        in.readLength();
+      }
+      stream.createGroup(name, lastDeliveredId);
+      ConsumerGroup group = stream.getGroup(name);
+      // Delivery time and count of each pending ID, the owning consumer follows in the consumer list
+      Map<StreamId, long[]> deliveries = new HashMap<>();
+      for (long pending = in.readLength(); pending > 0; pending--) {
+        StreamId id = readStreamId(in.readBytes(16));
+        long deliveryTimeMillis = in.readLittleEndian(8);
+        deliveries.put(id, new long[]{deliveryTimeMillis, in.readLength()});
+      }
+      for (long consumers = in.readLength(); consumers > 0; consumers--) {
+        String consumer = in.readString();
+        in.readLittleEndian(8);
+        if (type >= Rdb.TYPE_STREAM_LISTPACKS_3) {
+          in.readLittleEndian(8);
+        }
+        group.createConsumer(consumer);
+        for (long owned = in.readLength(); owned > 0; owned--) {
+          StreamId id = readStreamId(in.readBytes(16));
+          long[] delivery = deliveries.get(id);
+          if (delivery == null) {
+            throw new IOException("Consumer pending entry missing from the group PEL");
+          }
+          group.restorePending(id, consumer, delivery[0], delivery[1]);
+        }
+      }
+    }
+    return stream;
+  }
+
+  /**
+   * Appends the live entries of one stream listpack node, see {@link RdbWriter} for its layout.
+   */
+  private static void readStreamNode(StreamLog stream, StreamId masterId, List<String> elements) throws IOException {
+    try {
+      int p = 0;
+      long live = Long.parseLong(elements.get(p++));
+      long deleted = Long.parseLong(elements.get(p++));
+      int masterFieldCount = Integer.parseInt(elements.get(p++));
+      List<String> masterFields = elements.subList(p, p + masterFieldCount);
+      p += masterFieldCount + 1;
+      for (long i = 0; i < live + deleted; i++) {
+        int flags = Integer.parseInt(elements.get(p++));
+        StreamId id = new StreamId(masterId.ms() + Long.parseLong(elements.get(p++)),
+            masterId.seq() + Long.parseLong(elements.get(p++)));
+        boolean sameFields = (flags & Rdb.STREAM_ITEM_SAME_FIELDS) != 0;
+        int fieldCount = sameFields ? masterFieldCount : Integer.parseInt(elements.get(p++));
+        List<String> fieldsAndValues = new ArrayList<>(2 * fieldCount);
+        for (int field = 0; field < fieldCount; field++) {
+          fieldsAndValues.add(sameFields ? masterFields.get(field) : elements.get(p++));
+          fieldsAndValues.add(elements.get(p++));
+        }
+        // Skip the element count kept for walking backwards
+        p++;
+        if ((flags & Rdb.STREAM_ITEM_DELETED) == 0) {
+          stream.append(last -> id, fieldsAndValues);
+        }
+      }
+    } catch (IndexOutOfBoundsException | IllegalArgumentException e) {
+      throw new IOException("Corrupt stream node", e);
+    }
+  }
+
+  private StreamId readLengthStreamId() throws IOException {
+    return new StreamId(in.readLength(), in.readLength());
+  }
+
+  private static StreamId readStreamId(byte[] bytes) {
+    long ms = 0;
+    long seq = 0;
+    for (int i = 0; i < 8; i++) {
+      ms = (ms << 8) | (bytes[i] & 0xFF);
+      seq = (seq << 8) | (bytes[8 + i] & 0xFF);
+    }
+    return new StreamId(ms, seq);
+  }
+
+  private static List<String> decodeIntset(byte[] intset) throws IOException {
+    if (intset.length < 8) {
+      throw new IOException("Corrupt intset");
+    }
+    int width = (int) littleEndian(intset, 0, 4);
+    long length = littleEndian(intset, 4, 4);
+    if ((width != 2 && width != 4 && width != 8) || 8 + length * width != intset.length) {
+      throw new IOException("Corrupt intset");
+    }
+    List<String> members = new ArrayList<>((int) length);
+    int shift = 64 - 8 * width;
+    for (int i = 0; i < length; i++) {
+      members.add(Long.toString((littleEndian(intset, 8 + i * width, width) << shift) >> shift));
+    }
+    return members;
+  }
+
+  private static long littleEndian(byte[] bytes, int offset, int width) {
+    long value = 0;
+    for (int i = 0; i < width; i++) {
+      value |= (long) (bytes[offset + i] & 0xFF) << (8 * i);
+    }
+    return value;
+  }
+
+  private static double parseScore(String text) throws IOException {
+    try {
+      return ScoreRange.parseScore(text);
+    } catch (NumberFormatException e) {
+      throw new IOException("Invalid sorted set score " + text);
+    }
+  }
+
+  private static SetValue toSet(List<String> members) {
+    SetValue set = new SetValue(ServerConfig.getInt("set-max-intset-entries"));
+    members.forEach(set::add);
+    return set.size() == 0 ? null : set;
+  }
+
+  private static SortedSetValue newSortedSet() {
+    return new SortedSetValue(ServerConfig.getInt("zset-max-listpack-entries"),
+        ServerConfig.getInt("zset-max-listpack-value"));
+  }
+
+  private static HashValue newHash() {
+    return new HashValue(ServerConfig.getInt("hash-max-listpack-entries"),
+        ServerConfig.getInt("hash-max-listpack-value"));
+  }
+}
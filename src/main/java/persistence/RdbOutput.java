@@ -0,0 +1,169 @@
+package persistence;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Buffered writer of RDB primitives that keeps the running CRC64 of everything written.
+ */
+final class RdbOutput {
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final OutputStream out;
+  private final byte[] buffer;
+  private int position = 0;
+  private long crc = 0;
+
+  RdbOutput(OutputStream out) {
+    this(out, BUFFER_SIZE);
+  }
+
+  RdbOutput(OutputStream out, int bufferSize) {
+    this.out = out;
+    this.buffer = new byte[bufferSize];
+  }
+
+  void writeByte(int b) throws IOException {
+    if (position == buffer.length) {
+      drain();
+    }
+    buffer[position++] = (byte) b;
+  }
+
+  void write(byte[] bytes, int offset, int length) throws IOException {
+    if (length > buffer.length - position) {
+      drain();
+      if (length > buffer.length) {
+        // Large payloads skip the buffer
+        crc = Crc64.update(crc, bytes, offset, length);
+        out.write(bytes, offset, length);
+        return;
+      }
+    }
+    System.arraycopy(bytes, offset, buffer, position, length);
+    position += length;
+  }
+
+  void write(byte[] bytes) throws IOException {
+    write(bytes, 0, bytes.length);
+  }
+
+  /**
+   * Length in the 6, 14, 32 or 64 bit form. Negative values are written as their unsigned 64 bit form.
+   */
+  void writeLength(long length) throws IOException {
+    if (length >= 0 && length < (1 << 6)) {
+      writeByte((int) length);
+    } else if (length >= 0 && length < (1 << 14)) {
+      writeByte((Rdb.LEN_14BIT << 6) | (int) (length >> 8));
+      writeByte((int) length);
+    } else if (length >= 0 && length <= 0xFFFFFFFFL) {
+      writeByte(Rdb.LEN_32BIT);
+      writeBigEndian(length, 4);
+    } else {
+      writeByte(Rdb.LEN_64BIT);
+      writeBigEndian(length, 8);
+    }
+  }
+
+  /**
+   * String that is stored as an integer when it is one in canonical form and fits in 32 bits, like Redis does.
+   */
+  void writeString(String value) throws IOException {
+    if (value.length() <= 11) {
+      Long number = parseCanonicalInt(value);
+      if (number != null) {
+        long n = number;
+        if (n >= Byte.MIN_VALUE && n <= Byte.MAX_VALUE) {
+          writeByte((Rdb.LEN_ENCODED << 6) | Rdb.ENC_INT8);
+          writeLittleEndian(n, 1);
+        } else if (n >= Short.MIN_VALUE && n <= Short.MAX_VALUE) {
+          writeByte((Rdb.LEN_ENCODED << 6) | Rdb.ENC_INT16);
+          writeLittleEndian(n, 2);
+        } else {
+          writeByte((Rdb.LEN_ENCODED << 6) | Rdb.ENC_INT32);
+          writeLittleEndian(n, 4);
+        }
+        return;
+      }
+    }
+    writeRawString(value.getBytes(StandardCharsets.ISO_8859_1));
+  }
+
+  void writeRawString(byte[] bytes) throws IOException {
+    writeLength(bytes.length);
+    write(bytes);
+  }
+
+  void writeLittleEndian(long value, int bytes) throws IOException {
+    for (int i = 0; i < bytes; i++) {
+      writeByte((int) (value >>> (8 * i)));
+    }
+  }
+
+  void writeBigEndian(long value, int bytes) throws IOException {
+    for (int i = bytes - 1; i >= 0; i--) {
+      writeByte((int) (value >>> (8 * i)));
+    }
+  }
+
+  void writeDouble(double value) throws IOException {
+    writeLittleEndian(Double.doubleToLongBits(value), 8);
+  }
+
+  /**
+   * Writes out everything buffered.
+   */
+  void flush() throws IOException {
+    drain();
+    out.flush();
+  }
+
+  /**
+   * Writes the EOF opcode and the checksum of everything before it, then flushes.
+   */
+  void finish() throws IOException {
+    writeByte(Rdb.OPCODE_EOF);
+    writeChecksum();
+  }
+
+  /**
+   * Writes the checksum of everything before it, then flushes.
+   */
+  void writeChecksum() throws IOException {
+    drain();
+    long checksum = crc;
+    writeLittleEndian(checksum, 8);
+    drain();
+    out.flush();
+  }
+
+  private void drain() throws IOException {
+    crc = Crc64.update(crc, buffer, 0, position);
+    out.write(buffer, 0, position);
+    position = 0;
+  }
+
+  private static Long parseCanonicalInt(String value) {
+    // Most strings are not numbers, rule them out without the cost of an exception
+    if (value.isEmpty() || value.length() > 11) {
+      return null;
+    }
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if ((c < '0' || c > '9') && !(i == 0 && c == '-')) {
+        return null;
+      }
+    }
+    try {
+      long number = Long.parseLong(value);
+      if (number < Integer.MIN_VALUE || number > Integer.MAX_VALUE || !Long.toString(number).equals(value)) {
+        return null;
+      }
+      return number;
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+}
@@ -0,0 +1,420 @@
+package persistence;
+
+import db.DataStore;
+import db.Propagation;
+import functions.FunctionLibrary;
+import functions.Functions;
+import models.ConsumerGroup;
+import models.DataStoreValue;
+import models.PendingEntry;
+import models.QuickList;
+import models.ScoredMember;
+import models.StreamEntry;
+import models.StreamId;
+import models.StreamLog;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Writes the keyspace as an RDB file that Redis 7 can load.
+ * <p>
+ * Lists, sets, sorted sets and hashes are written in the plain RDB types, one string per element, and streams as
+ * listpack nodes like Redis does. The file holds the keyspace as it was at one instant while commands keep running,
+ * copying on write at key level the way Redis' fork does at page level: the snapshot starts between two write
+ * sections (see {@link Propagation}) and from then on sees every key before a write section changes it. A key is
+ * copied by whoever gets to it first, the thread walking the map or the first write section after the start, and
+ * is written once. Locks are only ever held for one key's copy.
+ */
+final class RdbWriter {
+  // Most keys are small, the copy of a big one grows its byte array instead
+  private static final int KEY_BUFFER_SIZE = 256;
+
+  private final RdbOutput out;
+  // Keys copied already, whether by the walk or by a write section
+  private final Set<String> taken = ConcurrentHashMap.newKeySet();
+  // Copies made by write sections, waiting to be written by the walking thread
+  private final Queue<KeyImage> captured = new ConcurrentLinkedQueue<>();
+
+  RdbWriter(OutputStream stream) {
+    this.out = new RdbOutput(stream);
+  }
+
+  /**
+   * A key as it was at the start of the snapshot: encoded whole, or for streams, which only ever grow, the last ID
+   * and the consumer groups so the entries can be read later.
+   */
+  private record KeyImage(String key, long expiryTimeMillis, byte[] encoded, StreamLog stream, StreamId lastId,
+                          List<GroupImage> groups) {
+  }
+
+  private record GroupImage(String name, StreamId lastDeliveredId, List<PendingEntry> pending,
+                            List<String> consumers) {
+  }
+
+  /**
+   * @param onStart runs at the instant the snapshot is taken, while no write section is open
+   * @return number of keys written
+   */
+  long write(Runnable onStart) throws IOException {
+    out.write((Rdb.MAGIC + String.format("%04d", Rdb.VERSION)).getBytes(StandardCharsets.US_ASCII));
+    writeAux("redis-ver", "7.2.0");
+    writeAux("redis-bits", "64");
+    writeAux("ctime", String.valueOf(System.currentTimeMillis() / 1000));
+    writeAux("used-mem", String.valueOf(Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory()));
+    writeAux("aof-base", "0");
+    out.writeByte(Rdb.OPCODE_SELECTDB);
+    out.writeLength(0);
+    long keys = 0;
+    List<FunctionLibrary> libraries = new ArrayList<>();
+    Propagation.atomically(() -> {
+      DataStore.setBeforeWriteHook(this::capture);
+      libraries.addAll(Functions.libraries());
+      onStart.run();
+    });
+    try {
+      for (FunctionLibrary library : libraries) {
+        out.writeByte(Rdb.OPCODE_FUNCTION2);
+        out.writeString(library.getCode());
+      }
+      for (String key : DataStore.store.keySet()) {
+        KeyImage image = Propagation.readLocked(key, () -> taken.add(key) ? imageOf(key) : null);
+        if (image != null && writeImage(image)) {
+          keys++;
+        }
+        keys += writeCaptured();
+      }
+    } finally {
+      Propagation.atomically(() -> DataStore.setBeforeWriteHook(null));
+    }
+    keys += writeCaptured();
+    out.finish();
+    return keys;
+  }
+
+  /**
+   * Called by write sections before they change the key.
+   */
+  private void capture(String key) {
+    if (taken.add(key)) {
+      KeyImage image = imageOf(key);
+      if (image != null) {
+        captured.add(image);
+      }
+    }
+  }
+
+  private long writeCaptured() throws IOException {
+    long keys = 0;
+    KeyImage image;
+    while ((image = captured.poll()) != null) {
+      if (writeImage(image)) {
+        keys++;
+      }
+    }
+    return keys;
+  }
+
+  private void writeAux(String name, String value) throws IOException {
+    out.writeByte(Rdb.OPCODE_AUX);
+    out.writeString(name);
+    out.writeString(value);
+  }
+
+  /**
+   * Copies the key's current value, null when it has none or nothing to write, e.g. an empty list.
+   */
+  private static KeyImage imageOf(String key) {
+    DataStoreValue value = DataStore.store.get(key);
+    if (value == null || value.isExpired()) {
+      return null;
+    }
+    return imageOf(key, value.getExpiryTimeMillis(), value);
+  }
+
+  /**
+   * @param key null for an image of the value alone, as DUMP encodes it
+   */
+  private static KeyImage imageOf(String key, long expiryTimeMillis, DataStoreValue value) {
+    StreamLog stream = value.getAsStream();
+    if (stream != null) {
+      List<GroupImage> groups = new ArrayList<>();
+      for (ConsumerGroup group : stream.getGroups()) {
+        synchronized (group) {
+          groups.add(new GroupImage(group.getName(), group.getLastDeliveredId(),
+              group.getPendingRange(StreamId.MIN, StreamId.MAX, -1, null, 0), group.getConsumers()));
+        }
+      }
+      return new KeyImage(key, expiryTimeMillis, null, stream, stream.getLastId(), groups);
+    }
+    try {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      RdbOutput keyOut = new RdbOutput(bytes, KEY_BUFFER_SIZE);
+      if (!writeKey(keyOut, key, expiryTimeMillis, value)) {
+        return null;
+      }
+      keyOut.flush();
+      return new KeyImage(key, expiryTimeMillis, bytes.toByteArray(), null, null, null);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * @return false when the value was skipped
+   */
+  private boolean writeImage(KeyImage image) throws IOException {
+    writeImage(out, image);
+    return true;
+  }
+
+  private static void writeImage(RdbOutput out, KeyImage image) throws IOException {
+    if (image.encoded() != null) {
+      out.write(image.encoded());
+    } else {
+      writeStream(out, image);
+    }
+  }
+
+  /**
+   * The key's value in the DUMP format: its RDB type and encoding, then the RDB version and a CRC64 of everything
+   * before it, both little endian.
+   *
+   * @return null when the key does not exist
+   */
+  static byte[] dump(String key) throws IOException {
+    KeyImage image = Propagation.readLocked(key, () -> {
+      DataStoreValue value = DataStore.get(key);
+      return value == null ? null : imageOf(null, 0, value);
+    });
+    if (image == null) {
+      return null;
+    }
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    RdbOutput dumpOut = new RdbOutput(bytes, KEY_BUFFER_SIZE);
+    writeImage(dumpOut, image);
+    dumpOut.writeLittleEndian(Rdb.VERSION, 2);
+    dumpOut.writeChecksum();
+    return bytes.toByteArray();
+  }
+
+  /**
+   * @return false when the value was skipped, e.g. an empty list
+   */
+  private static boolean writeKey(RdbOutput out, String key, long expiryTimeMillis, DataStoreValue value)
+      throws IOException {
+    switch (value.getValueType()) {
+      case "string" -> {
+        writeKeyHeader(out, key, expiryTimeMillis, Rdb.TYPE_STRING);
+        out.writeString(value.isString() ? value.getAsString() : String.valueOf(value.getAsLong()));
+      }
+      case "list" -> {
+        QuickList list = value.getAsList();
+        List<String> elements;
+        synchronized (list) {
+          elements = list.range(0, list.size() - 1);
+        }
+        return writeCollection(out, key, expiryTimeMillis, Rdb.TYPE_LIST, elements);
+      }
+      case "set" -> {
+        return writeCollection(out, key, expiryTimeMillis, Rdb.TYPE_SET, value.getAsSet().members());
+      }
+      case "hash" -> {
+        List<String> fieldsAndValues = value.getAsHash().entries();
+        if (fieldsAndValues.isEmpty()) {
+          return false;
+        }
+        writeKeyHeader(out, key, expiryTimeMillis, Rdb.TYPE_HASH);
+        out.writeLength(fieldsAndValues.size() / 2);
+        for (String element : fieldsAndValues) {
+          out.writeString(element);
+        }
+      }
+      case "zset" -> {
+        List<ScoredMember> members = value.getAsSortedSet().rangeByRank(0, -1, false);
+        if (members.isEmpty()) {
+          return false;
+        }
+        writeKeyHeader(out, key, expiryTimeMillis, Rdb.TYPE_ZSET_2);
+        out.writeLength(members.size());
+        for (ScoredMember member : members) {
+          out.writeString(member.member());
+          out.writeDouble(member.score());
+        }
+      }
+      default -> {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean writeCollection(RdbOutput out, String key, long expiryTimeMillis, int type,
+                                         List<String> elements) throws IOException {
+    if (elements.isEmpty()) {
+      return false;
+    }
+    writeKeyHeader(out, key, expiryTimeMillis, type);
+    out.writeLength(elements.size());
+    for (String element : elements) {
+      out.writeString(element);
+    }
+    return true;
+  }
+
+  /**
+   * @param key null to write the type alone, as DUMP does
+   */
+  private static void writeKeyHeader(RdbOutput out, String key, long expiryTimeMillis, int type) throws IOException {
+    if (expiryTimeMillis > 0) {
+      out.writeByte(Rdb.OPCODE_EXPIRETIME_MS);
+      out.writeLittleEndian(expiryTimeMillis, 8);
+    }
+    out.writeByte(type);
+    if (key != null) {
+      out.writeString(key);
+    }
+  }
+
+  private static void writeStream(RdbOutput out, KeyImage image) throws IOException {
+    StreamLog stream = image.stream();
+    // Entries are only ever appended, so reading in node sized batches up to the last ID of the image reads the
+    // stream as it was then without holding its lock for the whole stream
+    StreamId lastId = image.lastId();
+    List<byte[]> nodeKeys = new ArrayList<>();
+    List<byte[]> nodes = new ArrayList<>();
+    StreamId firstId = null;
+    long length = 0;
+    StreamId from = StreamId.MIN;
+    while (true) {
+      List<StreamEntry> batch = stream.range(from, lastId, Rdb.STREAM_NODE_MAX_ENTRIES);
+      if (batch.isEmpty()) {
+        break;
+      }
+      if (firstId == null) {
+        firstId = batch.get(0).id();
+      }
+      nodeKeys.add(streamIdBytes(batch.get(0).id()));
+      nodes.add(encodeStreamNode(batch));
+      length += batch.size();
+      StreamId batchLast = batch.get(batch.size() - 1).id();
+      if (batch.size() < Rdb.STREAM_NODE_MAX_ENTRIES || batchLast.equals(lastId)) {
+        break;
+      }
+      from = batchLast.next();
+    }
+
+    writeKeyHeader(out, image.key(), image.expiryTimeMillis(), Rdb.TYPE_STREAM_LISTPACKS_3);
+    out.writeLength(nodes.size());
+    for (int i = 0; i < nodes.size(); i++) {
+      out.writeRawString(nodeKeys.get(i));
+      out.writeRawString(nodes.get(i));
+    }
+    out.writeLength(length);
+    writeStreamId(out, lastId);
+    writeStreamId(out, firstId == null ? StreamId.MIN : firstId);
+    // Nothing is ever deleted, so there is no tombstone and every entry ever added is still there
+    writeStreamId(out, StreamId.MIN);
+    out.writeLength(length);
+
+    out.writeLength(image.groups().size());
+    for (GroupImage group : image.groups()) {
+      writeConsumerGroup(out, group);
+    }
+  }
+
+  private static void writeConsumerGroup(RdbOutput out, GroupImage group) throws IOException {
+    List<PendingEntry> pending = group.pending();
+    out.writeString(group.name());
+    writeStreamId(out, group.lastDeliveredId());
+    // Entries read is not tracked, -1 tells Redis it is unknown
+    out.writeLength(-1);
+    out.writeLength(pending.size());
+    for (PendingEntry entry : pending) {
+      out.write(streamIdBytes(entry.getId()));
+      out.writeLittleEndian(entry.getDeliveryTimeMillis(), 8);
+      out.writeLength(entry.getDeliveryCount());
+    }
+    Map<String, List<StreamId>> owned = new HashMap<>();
+    for (PendingEntry entry : pending) {
+      owned.computeIfAbsent(entry.getConsumer(), c -> new ArrayList<>()).add(entry.getId());
+    }
+    long now = System.currentTimeMillis();
+    out.writeLength(group.consumers().size());
+    for (String consumer : group.consumers()) {
+      List<StreamId> ids = owned.getOrDefault(consumer, List.of());
+      out.writeString(consumer);
+      // Seen and active times are not tracked
+      out.writeLittleEndian(now, 8);
+      out.writeLittleEndian(-1, 8);
+      out.writeLength(ids.size());
+      for (StreamId id : ids) {
+        out.write(streamIdBytes(id));
+      }
+    }
+  }
+
+  private static void writeStreamId(RdbOutput out, StreamId id) throws IOException {
+    out.writeLength(id.ms());
+    out.writeLength(id.seq());
+  }
+
+  /**
+   * One stream node: a master entry with the first entry's field names, then every entry as a delta from the first
+   * ID, with only its values when its fields are the master fields.
+   */
+  private static byte[] encodeStreamNode(List<StreamEntry> entries) {
+    StreamId masterId = entries.get(0).id();
+    String[] masterFields = entries.get(0).fields();
+    Listpack listpack = new Listpack();
+    listpack.appendInteger(entries.size());
+    listpack.appendInteger(0);
+    listpack.appendInteger(masterFields.length);
+    for (String field : masterFields) {
+      listpack.appendString(field);
+    }
+    listpack.appendInteger(0);
+    for (StreamEntry entry : entries) {
+      boolean sameFields = Arrays.equals(entry.fields(), masterFields);
+      int fieldCount = entry.fields().length;
+      listpack.appendInteger(sameFields ? Rdb.STREAM_ITEM_SAME_FIELDS : 0);
+      listpack.appendInteger(entry.id().ms() - masterId.ms());
+      listpack.appendInteger(entry.id().seq() - masterId.seq());
+      if (sameFields) {
+        for (String value : entry.values()) {
+          listpack.appendString(value);
+        }
+      } else {
+        listpack.appendInteger(fieldCount);
+        for (int i = 0; i < fieldCount; i++) {
+          listpack.appendString(entry.fields()[i]);
+          listpack.appendString(entry.values()[i]);
+        }
+      }
+      // Number of elements of the entry before this one, so the node can be walked backwards
+      listpack.appendInteger(sameFields ? fieldCount + 3 : 2L * fieldCount + 4);
+    }
+    return listpack.toByteArray();
+  }
+
+  private static byte[] streamIdBytes(StreamId id) {
+    byte[] bytes = new byte[16];
+    for (int i = 0; i < 8; i++) {
+      bytes[i] = (byte) (id.ms() >>> (56 - 8 * i));
+      bytes[8 + i] = (byte) (id.seq() >>> (56 - 8 * i));
+    }
+    return bytes;
+  }
+}
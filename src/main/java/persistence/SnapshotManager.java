@@ -0,0 +1,228 @@
+package persistence;
+
+import db.DataStore;
+import server.ServerConfig;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Saves the keyspace to dir/dbfilename as an RDB file and loads it back at startup.
+ * <p>
+ * SAVE writes from the calling thread, BGSAVE and the save schedule from a background thread while commands keep
+ * running. Either way the file is written next to the target under a temporary name, synced and then renamed over
+ * it, so a crash mid-save never leaves a truncated dump behind. The schedule follows Redis' save option: pairs of
+ * seconds and changes, a save starts once at least that many write commands ran and that many seconds passed since
+ * the last save.
+ */
+public final class SnapshotManager {
+  private static final long RETRY_DELAY_MILLIS = 5000;
+  private static final long SNAPSHOT_WAIT_MILLIS = 100;
+
+  private static final AtomicBoolean saving = new AtomicBoolean();
+  private static volatile long lastSaveMillis = System.currentTimeMillis();
+  private static volatile long lastAttemptMillis = 0;
+  private static volatile boolean lastSaveFailed = false;
+  private static volatile long dirtyAtLastSave = 0;
+
+  private SnapshotManager() {
+  }
+
+  /**
+   * Loads the configured RDB file if there is one.
+   *
+   * @return number of keys loaded
+   */
+  public static long load() throws IOException {
+    Path path = snapshotPath();
+    long started = System.currentTimeMillis();
+    try (InputStream stream = Files.newInputStream(path)) {
+      long keys = new RdbLoader(stream).load();
+      System.out.println("DB loaded from disk: " + keys + " keys in " + (System.currentTimeMillis() - started)
+          + " ms");
+      return keys;
+    } catch (NoSuchFileException e) {
+      return 0;
+    }
+  }
+
+  /**
+   * Loads RDB data from the stream into the keyspace, e.g. a full copy sent by a master.
+   *
+   * @return number of keys loaded
+   */
+  public static long load(InputStream stream) throws IOException {
+    return new RdbLoader(stream).load();
+  }
+
+  /**
+   * Writes a snapshot to the stream, e.g. for a replica's full resync, once no other snapshot is being taken.
+   *
+   * @param onStart runs at the point in time the snapshot captures, while no write is in progress
+   * @return number of keys written
+   */
+  public static long writeTo(OutputStream stream, Runnable onStart) throws IOException, InterruptedException {
+    while (!tryStartSnapshot()) {
+      Thread.sleep(SNAPSHOT_WAIT_MILLIS);
+    }
+    try {
+      return new RdbWriter(stream).write(onStart);
+    } finally {
+      finishSnapshot();
+    }
+  }
+
+  /**
+   * Saves from the calling thread.
+   *
+   * @throws IllegalStateException when a save is already in progress
+   */
+  public static void save() throws IOException {
+    if (!saving.compareAndSet(false, true)) {
+      throw new IllegalStateException("Background save already in progress");
+    }
+    try {
+      writeSnapshot();
+    } finally {
+      saving.set(false);
+    }
+  }
+
+  /**
+   * Starts a save in a background thread.
+   *
+   * @return false when a save is already in progress
+   */
+  public static boolean backgroundSave() {
+    if (!saving.compareAndSet(false, true)) {
+      return false;
+    }
+    Thread thread = new Thread(() -> {
+      try {
+        writeSnapshot();
+      } catch (IOException e) {
+        System.out.println("Background saving error: " + e.getMessage());
+      } finally {
+        saving.set(false);
+      }
+    }, "rdb-bgsave");
+    thread.setDaemon(true);
+    thread.start();
+    return true;
+  }
+
+  /**
+   * Claims the right to take a snapshot for another kind of snapshot than a save, only one runs at a time.
+   *
+   * @return false when a snapshot is already being taken
+   */
+  static boolean tryStartSnapshot() {
+    return saving.compareAndSet(false, true);
+  }
+
+  static void finishSnapshot() {
+    saving.set(false);
+  }
+
+  /**
+   * Unix time in seconds of the last successful save, or of startup before the first one.
+   */
+  public static long getLastSaveSeconds() {
+    return lastSaveMillis / 1000;
+  }
+
+  /**
+   * Starts the thread that runs background saves according to the save option, unless it is empty.
+   */
+  public static void startScheduler() {
+    List<long[]> rules = parseSaveRules(ServerConfig.get("save"));
+    if (rules.isEmpty()) {
+      return;
+    }
+    Thread thread = new Thread(() -> {
+      while (true) {
+        try {
+          Thread.sleep(1000);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          return;
+        }
+        if (isSaveDue(rules, System.currentTimeMillis())) {
+          backgroundSave();
+        }
+      }
+    }, "rdb-scheduler");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  private static boolean isSaveDue(List<long[]> rules, long now) {
+    // After a failure wait a little instead of retrying every second
+    if (lastSaveFailed && now - lastAttemptMillis < RETRY_DELAY_MILLIS) {
+      return false;
+    }
+    long changes = DataStore.getDirty() - dirtyAtLastSave;
+    for (long[] rule : rules) {
+      if (changes >= rule[1] && now - lastSaveMillis >= rule[0] * 1000) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Parses "seconds changes seconds changes ...".
+   */
+  static List<long[]> parseSaveRules(String option) {
+    List<long[]> rules = new ArrayList<>();
+    String[] parts = option == null ? new String[0] : option.trim().split("\\s+");
+    if (parts.length == 1 && parts[0].isEmpty()) {
+      return rules;
+    }
+    if (parts.length % 2 != 0) {
+      throw new IllegalArgumentException("Invalid save parameters: " + option);
+    }
+    for (int i = 0; i < parts.length; i += 2) {
+      rules.add(new long[]{Long.parseLong(parts[i]), Long.parseLong(parts[i + 1])});
+    }
+    return rules;
+  }
+
+  private static void writeSnapshot() throws IOException {
+    Path target = snapshotPath();
+    Path temp = target.resolveSibling("temp-" + ProcessHandle.current().pid() + ".rdb");
+    long started = System.currentTimeMillis();
+    long[] dirty = new long[1];
+    lastAttemptMillis = started;
+    try {
+      long keys;
+      try (FileOutputStream file = new FileOutputStream(temp.toFile())) {
+        keys = new RdbWriter(file).write(() -> dirty[0] = DataStore.getDirty());
+        // On disk before the rename makes it the dump
+        file.getChannel().force(true);
+      }
+      Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      dirtyAtLastSave = dirty[0];
+      lastSaveMillis = System.currentTimeMillis();
+      lastSaveFailed = false;
+      System.out.println("DB saved on disk: " + keys + " keys in " + (lastSaveMillis - started) + " ms");
+    } catch (IOException e) {
+      lastSaveFailed = true;
+      Files.deleteIfExists(temp);
+      throw e;
+    }
+  }
+
+  private static Path snapshotPath() {
+    return Path.of(ServerConfig.get("dir"), ServerConfig.get("dbfilename"));
+  }
+}
@@ -1,13 +1,14 @@
 package processors;
 
 import models.RespCommand;
+import utility.RespWriter;
 
 public interface CommandExecutor {
   /**
    * Executes the Redis command.
    *
    * @param cmd Parsed RESP command object containing command name and arguments.
-   * @return RESP-formatted response string.
+   * @param writer Connection reply buffer the RESP-formatted response is written to.
    */
-  String execute(RespCommand cmd);
+  void execute(RespCommand cmd, RespWriter writer);
 }
@@ -0,0 +1,92 @@
+package processors;
+
+import models.RespCommand;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Which arguments of a command are keys.
+ */
+public final class CommandKeys {
+
+  private CommandKeys() {
+  }
+
+  /**
+   * Keys the command reads or writes, empty for commands without keys or with too few arguments to have them.
+   */
+  public static List<String> of(RespCommand cmd) {
+    List<String> args = cmd.getArgs();
+    if (args.isEmpty()) {
+      return List.of();
+    }
+    return switch (cmd.getName()) {
+      case "PING", "ECHO", "MULTI", "EXEC", "DISCARD", "UNWATCH", "SAVE", "BGSAVE", "LASTSAVE", "BGREWRITEAOF", "INFO",
+           "REPLCONF", "WAIT", "PSYNC", "CLUSTER", "ASKING", "FUNCTION" -> List.of();
+      case "LMOVE", "BLMOVE" -> args.subList(0, Math.min(2, args.size()));
+      case "SINTER", "SUNION", "DEL", "MGET", "WATCH" -> args;
+      // MSET key value [key value ...]
+      case "MSET" -> everyOther(args);
+      // The last argument is the timeout
+      case "BLPOP", "BRPOP" -> args.subList(0, args.size() - 1);
+      // XGROUP subcommand key ...
+      case "XGROUP" -> args.size() > 1 ? List.of(args.get(1)) : List.of();
+      case "XREAD", "XREADGROUP" -> streamKeys(args);
+      case "MIGRATE" -> migrateKeys(args);
+      case "FCALL" -> fcallKeys(args);
+      default -> List.of(args.get(0));
+    };
+  }
+
+  private static List<String> everyOther(List<String> args) {
+    List<String> keys = new ArrayList<>(args.size() / 2 + 1);
+    for (int i = 0; i < args.size(); i += 2) {
+      keys.add(args.get(i));
+    }
+    return keys;
+  }
+
+  /**
+   * MIGRATE host port key|"" db timeout [options] [KEYS key ...], the key or with "" the keys after KEYS.
+   */
+  private static List<String> migrateKeys(List<String> args) {
+    if (args.size() < 3) {
+      return List.of();
+    }
+    if (!args.get(2).isEmpty()) {
+      return List.of(args.get(2));
+    }
+    for (int i = 5; i < args.size(); i++) {
+      if (args.get(i).equalsIgnoreCase("KEYS")) {
+        return args.subList(i + 1, args.size());
+      }
+    }
+    return List.of();
+  }
+
+  /**
+   * FCALL function numkeys [key ...] [arg ...]
+   */
+  private static List<String> fcallKeys(List<String> args) {
+    try {
+      int numKeys = Integer.parseInt(args.size() > 1 ? args.get(1) : "");
+      return numKeys < 0 || numKeys > args.size() - 2 ? List.of() : args.subList(2, 2 + numKeys);
+    } catch (NumberFormatException e) {
+      return List.of();
+    }
+  }
+
+  /**
+   * The first half of the arguments after STREAMS, the second half are IDs.
+   */
+  private static List<String> streamKeys(List<String> args) {
+    for (int i = 0; i < args.size(); i++) {
+      if (args.get(i).equalsIgnoreCase("STREAMS")) {
+        int count = (args.size() - i - 1) / 2;
+        return args.subList(i + 1, i + 1 + count);
+      }
+    }
+    return List.of();
+  }
+}
@@ -1,127 +1,404 @@
 package processors;
 
+import cluster.ClusterManager;
 import db.DataStore;
+import db.Eviction;
+import db.Propagation;
+import db.WatchedKeys;
+import functions.Function;
+import functions.Functions;
 import models.DataStoreValue;
+import models.QuickList;
 import models.RespCommand;
+import processors.cluster.CLUSTERExecutor;
+import processors.functions.FUNCTIONExecutor;
+import processors.hashes.HGETALLExecutor;
+import processors.hashes.HGETExecutor;
+import processors.hashes.HINCRBYExecutor;
+import processors.hashes.HMGETExecutor;
+import processors.hashes.HSCANExecutor;
+import processors.hashes.HSETExecutor;
+import processors.keys.DELExecutor;
+import processors.keys.DUMPExecutor;
+import processors.keys.EXPIREExecutor;
+import processors.keys.MIGRATEExecutor;
+import processors.keys.PERSISTExecutor;
+import processors.keys.RESTOREExecutor;
+import processors.keys.TTLExecutor;
+import processors.lists.BLMOVEExecutor;
 import processors.lists.BLPOPExecutor;
+import processors.lists.BRPOPExecutor;
+import processors.lists.LINDEXExecutor;
+import processors.lists.LINSERTExecutor;
+import processors.lists.LMOVEExecutor;
 import processors.lists.LPUSHExecutor;
+import processors.lists.LREMExecutor;
+import processors.lists.LSETExecutor;
+import processors.lists.LTRIMExecutor;
+import processors.lists.RPOPExecutor;
 import processors.lists.RPUSHExecutor;
+import processors.server.BGREWRITEAOFExecutor;
+import processors.server.BGSAVEExecutor;
+import processors.server.INFOExecutor;
+import processors.server.LASTSAVEExecutor;
+import processors.server.REPLCONFExecutor;
+import processors.server.SAVEExecutor;
+import processors.server.WAITExecutor;
+import processors.sets.SADDExecutor;
+import processors.sets.SCARDExecutor;
+import processors.sets.SINTERExecutor;
+import processors.sets.SISMEMBERExecutor;
+import processors.sets.SUNIONExecutor;
+import processors.sortedsets.ZADDExecutor;
+import processors.sortedsets.ZINCRBYExecutor;
+import processors.sortedsets.ZRANGEExecutor;
+import processors.sortedsets.ZRANKExecutor;
+import processors.streams.XACKExecutor;
 import processors.streams.XADDExecutor;
+import processors.streams.XAUTOCLAIMExecutor;
+import processors.streams.XCLAIMExecutor;
+import processors.streams.XGROUPExecutor;
+import processors.streams.XPENDINGExecutor;
 import processors.streams.XRANGEExecutor;
 import processors.streams.XREADExecutor;
-import utility.RespUtility;
+import processors.streams.XREADGROUPExecutor;
+import processors.strings.MGETExecutor;
+import processors.strings.MSETExecutor;
+import replication.ReplicationManager;
+import utility.RespWriter;
 
 import java.util.*;
-import java.util.stream.Collectors;
 
 public class CommandProcessor {
+  // Commands that may change the keyspace, each successful one counts as one change towards the save schedule
+  private static final Set<String> WRITE_COMMANDS = Set.of(
+      "SET", "MSET", "INCR", "DEL", "RESTORE", "MIGRATE", "EXPIRE", "PEXPIRE", "EXPIREAT", "PEXPIREAT", "PERSIST",
+      "LPUSH", "RPUSH", "LPOP", "RPOP", "LSET", "LINSERT", "LREM", "LTRIM", "LMOVE", "BLPOP", "BRPOP", "BLMOVE",
+      "HSET", "HINCRBY", "SADD", "ZADD", "ZINCRBY",
+      "XADD", "XGROUP", "XREADGROUP", "XACK", "XCLAIM", "XAUTOCLAIM");
+  // Write commands that may add data, refused while the used memory stays over maxmemory
+  private static final Set<String> DENY_OOM_COMMANDS = Set.of(
+      "SET", "MSET", "INCR", "RESTORE", "LPUSH", "RPUSH", "LSET", "LINSERT", "LMOVE", "BLMOVE",
+      "HSET", "HINCRBY", "SADD", "ZADD", "ZINCRBY", "XADD", "XGROUP");
+  // Commands that lock their keys themselves, after the barrier, so they must not run holding key locks already
+  private static final Set<String> SELF_LOCKING_COMMANDS = Set.of("EXEC", "FCALL");
+  // Write commands that may park, they open write sections themselves around each change
+  private static final Set<String> SELF_PROPAGATING_COMMANDS = Set.of("BLPOP", "BRPOP", "BLMOVE", "XREADGROUP");
+
   private boolean isTransactionEnabled = false;
   private final List<RespCommand> queuedCommands = new ArrayList<>();
+  // Keys of WATCH with the version each had then, EXEC aborts if any changed since
+  private final Map<String, Long> watchedKeys = new HashMap<>();
+  // Set by ASKING for the next command only
+  private boolean isAsking = false;
+  // Applies commands that already ran, from the master's replication stream or the AOF, which skip the checks
+  // made for clients
+  private final boolean isReplaying;
+
+  public CommandProcessor(){
+    this(false);
+  }
 
-  public CommandProcessor(){}
+  public CommandProcessor(boolean isReplaying) {
+    this.isReplaying = isReplaying;
+  }
 
-  public String processCommand(RespCommand cmd) {
+  /**
+   * Executes the command and writes its RESP reply to the writer.
+   */
+  public void processCommand(RespCommand cmd, RespWriter writer) {
+    if (ClusterManager.isEnabled() && !isReplaying) {
+      boolean wasAsking = isAsking;
+      isAsking = false;
+      ClusterManager.Redirect redirect = ClusterManager.route(CommandKeys.of(cmd), wasAsking);
+      if (redirect != null) {
+        writer.writeError(redirect.kind(), redirect.message());
+        return;
+      }
+    }
     // Handle transaction mode first
+    if (isTransactionEnabled && cmd.getName().equalsIgnoreCase("WATCH")) {
+      writer.writeError("WATCH inside MULTI is not allowed");
+      return;
+    }
     if (isTransactionEnabled && !cmd.getName().equalsIgnoreCase("DISCARD")
         && !cmd.getName().equalsIgnoreCase("EXEC")) {
-      return queueCommands(cmd);
-    }
-
-    return switch (cmd.getName().toUpperCase()) {
-      case "PING" -> RespUtility.buildSimpleResponse("PONG");
-      case "ECHO" -> processEcho(cmd);
-      case "SET" -> processSet(cmd);
-      case "GET" -> processCommandGet(cmd);
-      case "INCR" -> processCommandIncr(cmd);
-      case "MULTI" -> processCommandMulti();
-      case "EXEC" -> processCommandExec();
-      case "DISCARD" -> processCommandDiscard();
-      case "TYPE" -> processType(cmd);
-      case "LLEN" -> processCommandLlen(cmd);
-      case "LPOP" -> processCommandLpop(cmd);
-      case "LRANGE" -> processCommandLrange(cmd);
-      case "RPUSH" -> new RPUSHExecutor().execute(cmd);
-      case "LPUSH" -> new LPUSHExecutor().execute(cmd);
-      case "BLPOP" -> new BLPOPExecutor().execute(cmd);
-      case "XADD" -> new XADDExecutor().execute(cmd);
-      case "XRANGE" -> new XRANGEExecutor().execute(cmd);
-      case "XREAD" -> new XREADExecutor().execute(cmd);
-      default -> RespUtility.buildErrorResponse("Invalid Command: " + cmd);
+      queueCommands(cmd, writer);
+      return;
+    }
+
+    String name = cmd.getName().toUpperCase();
+    boolean isWrite = isWrite(cmd);
+    if (isWrite && !isReplaying && ReplicationManager.isReplica()) {
+      writer.writeError("READONLY", "You can't write against a read only replica.");
+      return;
+    }
+    // Replicas and replays leave eviction to the master, whose evictions arrive as DELs. EXEC evicts before its
+    // commands, which then run holding the transaction's keys
+    if (isWrite && !isReplaying && !Propagation.isInTransaction() && isOutOfMemory(List.of(name))) {
+      writer.writeError("OOM", "command not allowed when used memory > 'maxmemory'.");
+      return;
+    }
+    // A write runs in a write section, so its effect reaches the AOF exactly once and in keyspace order
+    boolean isSection = isWrite && !SELF_PROPAGATING_COMMANDS.contains(name);
+    int replyStart = writer.size();
+    boolean succeeded = false;
+    if (isSection) {
+      Propagation.begin(CommandKeys.of(cmd), propagatedForm(cmd));
+    }
+    // A read holds its keys' locks, so it sees every write section and transaction on them whole or not at all. Reads
+    // that may park take none, as they would hold off the very writes they wait for
+    boolean isReadLocked = !isWrite && !mayBlock(cmd) && !SELF_LOCKING_COMMANDS.contains(name);
+    try {
+      if (isReadLocked) {
+        Propagation.readLocked(CommandKeys.of(cmd), () -> execute(name, cmd, writer));
+      } else {
+        execute(name, cmd, writer);
+      }
+      succeeded = !writer.isErrorAt(replyStart);
+      if (isWrite) {
+        DataStore.updateMemoryUsage(CommandKeys.of(cmd));
+      }
+    } finally {
+      if (isSection) {
+        Propagation.end(succeeded);
+      }
+    }
+    if (isWrite && succeeded) {
+      DataStore.markDirty();
+    }
+  }
+
+  private static boolean isWrite(RespCommand cmd) {
+    String name = cmd.getName();
+    // FUNCTION LIST is the only read of the function libraries
+    return WRITE_COMMANDS.contains(name) || name.equals("FUNCTION")
+        && !(cmd.getArgsSize() > 0 && cmd.getArgs().get(0).equalsIgnoreCase("LIST"));
+  }
+
+  /**
+   * Evicts keys if the used memory is over maxmemory, and tells whether it stayed over although one of the commands
+   * needs memory.
+   */
+  private static boolean isOutOfMemory(Collection<String> names) {
+    return Eviction.isOverLimit() && !Eviction.freeMemory() && names.stream().anyMatch(DENY_OOM_COMMANDS::contains);
+  }
+
+  private static List<String> propagatedForm(RespCommand cmd) {
+    List<String> command = new ArrayList<>(cmd.getArgsSize() + 1);
+    command.add(cmd.getName());
+    command.addAll(cmd.getArgs());
+    return command;
+  }
+
+  private void execute(String name, RespCommand cmd, RespWriter writer) {
+    switch (name) {
+      case "PING" -> writer.writeSimple("PONG");
+      case "ECHO" -> processEcho(cmd, writer);
+      case "SET" -> processSet(cmd, writer);
+      case "GET" -> processCommandGet(cmd, writer);
+      case "MSET" -> new MSETExecutor().execute(cmd, writer);
+      case "MGET" -> new MGETExecutor().execute(cmd, writer);
+      case "INCR" -> processCommandIncr(cmd, writer);
+      case "MULTI" -> processCommandMulti(writer);
+      case "EXEC" -> processCommandExec(writer);
+      case "DISCARD" -> processCommandDiscard(writer);
+      case "WATCH" -> processCommandWatch(cmd, writer);
+      case "FUNCTION" -> new FUNCTIONExecutor().execute(cmd, writer);
+      case "FCALL" -> processCommandFcall(cmd, writer);
+      case "UNWATCH" -> processCommandUnwatch(writer);
+      case "TYPE" -> processType(cmd, writer);
+      case "EXPIRE" -> new EXPIREExecutor(1000, false).execute(cmd, writer);
+      case "PEXPIRE" -> new EXPIREExecutor(1, false).execute(cmd, writer);
+      case "EXPIREAT" -> new EXPIREExecutor(1000, true).execute(cmd, writer);
+      case "PEXPIREAT" -> new EXPIREExecutor(1, true).execute(cmd, writer);
+      case "TTL" -> new TTLExecutor(1000).execute(cmd, writer);
+      case "PTTL" -> new TTLExecutor(1).execute(cmd, writer);
+      case "PERSIST" -> new PERSISTExecutor().execute(cmd, writer);
+      case "DEL" -> new DELExecutor().execute(cmd, writer);
+      case "DUMP" -> new DUMPExecutor().execute(cmd, writer);
+      case "RESTORE" -> new RESTOREExecutor().execute(cmd, writer);
+      case "MIGRATE" -> new MIGRATEExecutor().execute(cmd, writer);
+      case "LLEN" -> processCommandLlen(cmd, writer);
+      case "LPOP" -> processCommandLpop(cmd, writer);
+      case "LRANGE" -> processCommandLrange(cmd, writer);
+      case "RPUSH" -> new RPUSHExecutor().execute(cmd, writer);
+      case "LPUSH" -> new LPUSHExecutor().execute(cmd, writer);
+      case "RPOP" -> new RPOPExecutor().execute(cmd, writer);
+      case "LINDEX" -> new LINDEXExecutor().execute(cmd, writer);
+      case "LSET" -> new LSETExecutor().execute(cmd, writer);
+      case "LINSERT" -> new LINSERTExecutor().execute(cmd, writer);
+      case "LREM" -> new LREMExecutor().execute(cmd, writer);
+      case "LTRIM" -> new LTRIMExecutor().execute(cmd, writer);
+      case "LMOVE" -> new LMOVEExecutor().execute(cmd, writer);
+      case "BLPOP" -> new BLPOPExecutor().execute(cmd, writer);
+      case "BRPOP" -> new BRPOPExecutor().execute(cmd, writer);
+      case "BLMOVE" -> new BLMOVEExecutor().execute(cmd, writer);
+      case "HSET" -> new HSETExecutor().execute(cmd, writer);
+      case "HGET" -> new HGETExecutor().execute(cmd, writer);
+      case "HMGET" -> new HMGETExecutor().execute(cmd, writer);
+      case "HINCRBY" -> new HINCRBYExecutor().execute(cmd, writer);
+      case "HGETALL" -> new HGETALLExecutor().execute(cmd, writer);
+      case "HSCAN" -> new HSCANExecutor().execute(cmd, writer);
+      case "SADD" -> new SADDExecutor().execute(cmd, writer);
+      case "SISMEMBER" -> new SISMEMBERExecutor().execute(cmd, writer);
+      case "SINTER" -> new SINTERExecutor().execute(cmd, writer);
+      case "SUNION" -> new SUNIONExecutor().execute(cmd, writer);
+      case "SCARD" -> new SCARDExecutor().execute(cmd, writer);
+      case "ZADD" -> new ZADDExecutor().execute(cmd, writer);
+      case "ZRANGE" -> new ZRANGEExecutor(false).execute(cmd, writer);
+      case "ZRANGEBYSCORE" -> new ZRANGEExecutor(true).execute(cmd, writer);
+      case "ZRANK" -> new ZRANKExecutor().execute(cmd, writer);
+      case "ZINCRBY" -> new ZINCRBYExecutor().execute(cmd, writer);
+      case "XADD" -> new XADDExecutor().execute(cmd, writer);
+      case "XRANGE" -> new XRANGEExecutor().execute(cmd, writer);
+      case "XREAD" -> new XREADExecutor().execute(cmd, writer);
+      case "XGROUP" -> new XGROUPExecutor().execute(cmd, writer);
+      case "XREADGROUP" -> new XREADGROUPExecutor().execute(cmd, writer);
+      case "XACK" -> new XACKExecutor().execute(cmd, writer);
+      case "XPENDING" -> new XPENDINGExecutor().execute(cmd, writer);
+      case "XCLAIM" -> new XCLAIMExecutor().execute(cmd, writer);
+      case "XAUTOCLAIM" -> new XAUTOCLAIMExecutor().execute(cmd, writer);
+      case "SAVE" -> new SAVEExecutor().execute(cmd, writer);
+      case "BGSAVE" -> new BGSAVEExecutor().execute(cmd, writer);
+      case "LASTSAVE" -> new LASTSAVEExecutor().execute(cmd, writer);
+      case "BGREWRITEAOF" -> new BGREWRITEAOFExecutor().execute(cmd, writer);
+      case "INFO" -> new INFOExecutor().execute(cmd, writer);
+      case "REPLCONF" -> new REPLCONFExecutor().execute(cmd, writer);
+      case "WAIT" -> new WAITExecutor().execute(cmd, writer);
+      case "CLUSTER" -> new CLUSTERExecutor().execute(cmd, writer);
+      case "ASKING" -> processCommandAsking(writer);
+      // Turns the connection into a replication link before it gets here, unless sent inside MULTI
+      case "PSYNC" -> writer.writeError("PSYNC is not allowed in this context");
+      default -> writer.writeError("Invalid Command: " + cmd);
+    }
+  }
+
+  public boolean isInTransaction() {
+    return isTransactionEnabled;
+  }
+
+  /**
+   * Releases what the connection holds beyond its own state, to be called once it is closed.
+   */
+  public void close() {
+    unwatchAll();
+  }
+
+  /**
+   * Tells whether ASKING was sent, so the next command has to run on its own before any later one.
+   */
+  public boolean isAsking() {
+    return isAsking;
+  }
+
+  /**
+   * Tells whether executing the command may park the calling thread, e.g. BLPOP or XREAD BLOCK waiting for data.
+   * Commands queued inside MULTI never block.
+   */
+  public boolean mayBlock(RespCommand cmd) {
+    if (isTransactionEnabled) {
+      return false;
+    }
+    return switch (cmd.getName()) {
+      case "BLPOP", "BRPOP", "BLMOVE", "WAIT", "MIGRATE" -> true;
+      case "XREAD", "XREADGROUP" -> cmd.getArgs().stream().anyMatch("BLOCK"::equalsIgnoreCase);
+      default -> false;
     };
   }
 
-  private String processType(RespCommand cmd) {
+  private void processType(RespCommand cmd, RespWriter writer) {
     if(cmd.getArgsSize() != 1) {
-      return RespUtility.buildErrorResponse("Invalid arguments");
+      writer.writeError("Invalid arguments");
+      return;
     }
     String key = cmd.getArgs().get(0);
     DataStoreValue data = DataStore.get(key);
-    return RespUtility.buildSimpleResponse(data == null ? "none" : data.getValueType());
+    writer.writeSimple(data == null ? "none" : data.getValueType());
   }
 
-  private String processCommandLpop(RespCommand cmd) {
+  private void processCommandLpop(RespCommand cmd, RespWriter writer) {
     List<String> args = cmd.getArgs();
     if(cmd.getArgsSize() < 1 || cmd.getArgsSize() >=3) {
-      return RespUtility.buildErrorResponse("Invalid arguments to LPOP");
+      writer.writeError("Invalid arguments to LPOP");
+      return;
     }
     DataStoreValue data = DataStore.get(args.get(0));
     if(data == null) {
-      return RespUtility.serializeResponse(null);
+      writer.writeNull();
+      return;
     }
+    QuickList list = data.getAsList();
+    if (list == null) {
+      writer.writeError("WRONGTYPE Operation against a key holding the wrong kind of value");
+      return;
+    }
+    //Pop Single element
+    if(args.size() == 1) {
+      writer.writeBulk(list.popFirst());
+      DataStore.removeIfEmptyList(args.get(0));
+      return;
+    }
+    //Pop multiple elements
+    int count;
     try {
-      //Pop Single element
-      if(args.size() == 1) {
-        return RespUtility.serializeResponse(data.getAsLinkedList().pollFirst());
-      }
-      //Pop multiple elements
-      if(args.size() == 2) {
-        List<String> responses = new ArrayList();
-        for (int i = 0; i < Integer.parseInt(args.get(1)) && !data.getAsLinkedList().isEmpty(); i++) {
-          responses.add(data.getAsLinkedList().pollFirst());
-        }
-        return RespUtility.serializeResponse(responses);
+      count = Integer.parseInt(args.get(1));
+    } catch (NumberFormatException e) {
+      writer.writeError("value is out of range, must be positive");
+      return;
+    }
+    List<String> responses = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      String element = list.popFirst();
+      if (element == null) {
+        break;
       }
-
-      //Fallback
-      return RespUtility.buildErrorResponse("Unexpected error in LPOP");
-    } catch (Exception e) {
-      return RespUtility.buildErrorResponse("WRONGTYPE Operation against a key holding the wrong kind of value");
+      responses.add(element);
     }
+    DataStore.removeIfEmptyList(args.get(0));
+    writer.writeBulkArray(responses);
   }
 
-  private String processCommandLlen(RespCommand cmd) {
+  private void processCommandLlen(RespCommand cmd, RespWriter writer) {
     if (cmd.getArgsSize() != 1) {
-      return RespUtility.buildErrorResponse("ERR wrong number of arguments for 'LLEN' command");
+      writer.writeError("ERR wrong number of arguments for 'LLEN' command");
+      return;
     }
 
     DataStoreValue data = DataStore.get(cmd.getArgs().get(0));
     if(data == null) {
-      return RespUtility.serializeResponse(0);
+      writer.writeInteger(0);
+      return;
     }
-    try {
-      return RespUtility.serializeResponse(data.getAsList().size());
-    } catch (Exception e) {
-      return RespUtility.buildErrorResponse("WRONGTYPE Operation against a key holding the wrong kind of value");
+    if (!data.isList()) {
+      writer.writeError("WRONGTYPE Operation against a key holding the wrong kind of value");
+      return;
     }
+    writer.writeInteger(data.getAsList().size());
   }
 
-
-
-
-
-  private String processCommandLrange(RespCommand cmd) {
+  private void processCommandLrange(RespCommand cmd, RespWriter writer) {
+    if (cmd.getArgsSize() != 3) {
+      writer.writeError("wrong number of arguments for 'lrange' command");
+      return;
+    }
     String key = cmd.getArgs().get(0);
     List<String> args = cmd.getArgs().subList(1, cmd.getArgsSize());
     DataStoreValue data = DataStore.get(key);
 
     if(data == null) {
-      return RespUtility.serializeResponse(Collections.emptyList());
+      writer.writeArrayHeader(0);
+      return;
+    }
+    if (!data.isList()) {
+      writer.writeError("WRONGTYPE Operation against a key holding the wrong kind of value");
+      return;
     }
     try {
-      List<String> element = data.getAsList();
-      int size = element.size();
-      int start = Integer.parseInt(args.get(0));
-      int end = Integer.parseInt(args.get(1));
+      QuickList list = data.getAsList();
+      long size = list.size();
+      long start = Long.parseLong(args.get(0));
+      long end = Long.parseLong(args.get(1));
       // Normalize negative indexes
       if (start < 0) start = size + start;
       if (end < 0) end = size + end;
@@ -129,38 +406,42 @@ public class CommandProcessor {
       start = Math.max(0, start);
       end = Math.min(end, size - 1);
       if (start > end || start >= size) {
-        return RespUtility.serializeResponse(Collections.emptyList());
+        writer.writeArrayHeader(0);
+        return;
       }
-      List<String> response = element.subList(start, end + 1);
-      return RespUtility.serializeResponse(response);
-    } catch (Exception e) {
-      return RespUtility.buildErrorResponse("WRONGTYPE Operation against a key holding the wrong kind of value");
+      writer.writeBulkArray(list.range(start, end));
+    } catch (NumberFormatException e) {
+      writer.writeError("value is not an integer or out of range");
     }
   }
 
-  private String processEcho(RespCommand cmd) {
+  private void processEcho(RespCommand cmd, RespWriter writer) {
     if (cmd.getArgsSize() !=1 ) {
-      return RespUtility.buildErrorResponse("invalid command ECHO - wrong number of arguments");
+      writer.writeError("invalid command ECHO - wrong number of arguments");
+      return;
     }
-    return RespUtility.serializeResponse(cmd.getArgs().get(0));
+    writer.writeBulk(cmd.getArgs().get(0));
   }
 
-  private String processCommandGet(RespCommand cmd) {
+  private void processCommandGet(RespCommand cmd, RespWriter writer) {
     if (cmd.getArgsSize() != 1) {
-      return RespUtility.buildErrorResponse("invalid command get - wrong number of arguments");
+      writer.writeError("invalid command get - wrong number of arguments");
+      return;
     }
     DataStoreValue data = DataStore.get(cmd.getArgs().get(0));
     if(data!=null && !data.isExpired()) {
-      return RespUtility.serializeResponse(data.getAsString());
+      writer.writeBulk(data.getAsString());
+      return;
     }
-    return RespUtility.serializeResponse(null);
+    writer.writeNull();
   }
 
-  private String processSet(RespCommand cmd) {
+  private void processSet(RespCommand cmd, RespWriter writer) {
     List<String> args = cmd.getArgs();
 
     if (args.size() < 2 || args.size() > 4) {
-      return RespUtility.buildErrorResponse("wrong number of arguments for 'SET' command");
+      writer.writeError("wrong number of arguments for 'SET' command");
+      return;
     }
 
     String key = args.get(0);
@@ -171,7 +452,8 @@ public class CommandProcessor {
 
     if ("EX".equals(option) || "PX".equals(option)) {
       if (expiryArg == null) {
-        return RespUtility.buildErrorResponse("missing expiry time for EX/PX option");
+        writer.writeError("missing expiry time for EX/PX option");
+        return;
       }
 
       try {
@@ -180,29 +462,43 @@ public class CommandProcessor {
             "EX".equals(option) ? expiryTime * 1000 : expiryTime
         );
       } catch (NumberFormatException e) {
-        return RespUtility.buildErrorResponse("invalid expiry time - must be a number");
+        writer.writeError("invalid expiry time - must be a number");
+        return;
       }
     }
 
     if ("NX".equals(option)) {
       if (DataStore.containsKey(key)) {
-        return RespUtility.serializeResponse(null); // don't overwrite existing
+        Propagation.replaceCommand(List.of());
+        writer.writeNull(); // don't overwrite existing
+        return;
       }
     } else if ("XX".equals(option)) {
       if (!DataStore.containsKey(key)) {
-        return RespUtility.serializeResponse(null); // don't set if absent
+        Propagation.replaceCommand(List.of());
+        writer.writeNull(); // don't set if absent
+        return;
       }
     } else if (option != null && !"EX".equals(option) && !"PX".equals(option)) {
-      return RespUtility.buildErrorResponse("unknown option: " + option);
+      writer.writeError("unknown option: " + option);
+      return;
     }
 
     DataStore.put(key, new DataStoreValue(value, expiryMillis));
-    return RespUtility.buildSimpleResponse("OK");
+    // A relative expiry would restart on replay, so the AOF gets the absolute time instead
+    if (expiryMillis > 0) {
+      Propagation.replaceCommand(List.of(List.of("SET", key, value),
+          List.of("PEXPIREAT", key, String.valueOf(expiryMillis))));
+    } else {
+      Propagation.replaceCommand(List.of(List.of("SET", key, value)));
+    }
+    writer.writeSimple("OK");
   }
 
-  private String processCommandIncr(RespCommand cmd) {
+  private void processCommandIncr(RespCommand cmd, RespWriter writer) {
     if (cmd.getArgsSize() != 1) {
-      return RespUtility.buildErrorResponse("wrong number of arguments for 'INCR' command");
+      writer.writeError("wrong number of arguments for 'INCR' command");
+      return;
     }
 
     String key = cmd.getArgs().get(0);
@@ -210,54 +506,192 @@ public class CommandProcessor {
 
     if (data == null || data.isExpired()) {
       DataStore.put(key, new DataStoreValue(String.valueOf(1)));
-      return RespUtility.serializeResponse(1);
+      writer.writeInteger(1);
+      return;
     }
 
     try {
       long existingValue = data.getAsLong();
       data.updateValue(String.valueOf(existingValue + 1));
       DataStore.put(key, data);
-      return RespUtility.serializeResponse(existingValue + 1);
+      writer.writeInteger(existingValue + 1);
     } catch (NumberFormatException e) {
-      return RespUtility.buildErrorResponse("value is not an integer or out of range");
+      writer.writeError("value is not an integer or out of range");
     }
   }
 
 
-  private String processCommandMulti() {
+  private void processCommandMulti(RespWriter writer) {
     isTransactionEnabled = true;
-    return RespUtility.buildSimpleResponse("OK");
+    writer.writeSimple("OK");
   }
 
-  private String processCommandExec() {
+  private void processCommandExec(RespWriter writer) {
     if(!isTransactionEnabled) {
-      return RespUtility.buildErrorResponse("EXEC without MULTI");
+      writer.writeError("EXEC without MULTI");
+      return;
     }
     isTransactionEnabled = false;
-    if(queuedCommands.isEmpty()) {
-      return RespUtility.serializeResponse(List.of());
-    }
-    List<String> responses = queuedCommands.stream()
-        .map(this::processCommand)
-        .collect(Collectors.toList());
+    List<RespCommand> commands = new ArrayList<>(queuedCommands);
     queuedCommands.clear();
-    return RespUtility.serializeResponse(responses);
+    List<String> names = commands.stream().map(queued -> queued.getName().toUpperCase()).toList();
+    if (!isReplaying && isOutOfMemory(names)) {
+      unwatchAll();
+      writer.writeError("OOM", "command not allowed when used memory > 'maxmemory'.");
+      return;
+    }
+    // The keys of every queued command stay locked until the last one ran, so no other client's write to them lands
+    // in between and no read of them sees the transaction half done
+    Set<String> keys = new LinkedHashSet<>();
+    for (RespCommand queued : commands) {
+      keys.addAll(CommandKeys.of(queued));
+    }
+    // Holding the watched keys' locks too, none of them can change between the check and the commands
+    keys.addAll(watchedKeys.keySet());
+    Propagation.beginTransaction(new ArrayList<>(keys));
+    try {
+      boolean isWatchedChanged = watchedKeys.entrySet().stream()
+          .anyMatch(watched -> WatchedKeys.versionOf(watched.getKey()) != watched.getValue());
+      unwatchAll();
+      if (isWatchedChanged) {
+        writer.writeNullArray();
+        return;
+      }
+      // Every queued command appends its own reply as one element of the array
+      writer.writeArrayHeader(commands.size());
+      for (RespCommand queued : commands) {
+        processCommand(queued, writer);
+      }
+    } finally {
+      Propagation.endTransaction();
+    }
   }
 
-  private String queueCommands(RespCommand cmd) {
+  /**
+   * FCALL function numkeys [key ...] [arg ...]
+   * <p>
+   * Runs the function's commands like a transaction, holding the locks of its keys, which all come from the call,
+   * and replies with the array of their replies. Inside MULTI the transaction holds the locks already.
+   */
+  private void processCommandFcall(RespCommand cmd, RespWriter writer) {
+    List<String> args = cmd.getArgs();
+    if (args.size() < 2) {
+      writer.writeError("wrong number of arguments for 'fcall' command");
+      return;
+    }
+    Function function = Functions.get(args.get(0));
+    if (function == null) {
+      writer.writeError("Function not found");
+      return;
+    }
+    int numKeys;
+    try {
+      numKeys = Integer.parseInt(args.get(1));
+    } catch (NumberFormatException e) {
+      writer.writeError("value is not an integer or out of range");
+      return;
+    }
+    if (numKeys < 0) {
+      writer.writeError("Number of keys can't be negative");
+      return;
+    }
+    if (numKeys > args.size() - 2) {
+      writer.writeError("Number of keys can't be greater than number of args");
+      return;
+    }
+    List<String> keys = args.subList(2, 2 + numKeys);
+    List<String> callArgs = args.subList(2 + numKeys, args.size());
+    if (keys.size() < function.getKeyCount() || callArgs.size() < function.getArgCount()) {
+      writer.writeError("Function " + function.getName() + " needs " + function.getKeyCount() + " keys and "
+          + function.getArgCount() + " arguments");
+      return;
+    }
+    List<RespCommand> commands = function.bind(keys, callArgs);
+    // Checked again once bound, as an argument from ARGV can change which arguments are keys, e.g. STREAMS for XREAD
+    for (RespCommand command : commands) {
+      if (!keys.containsAll(CommandKeys.of(command))) {
+        writer.writeError("Function " + function.getName() + " accessed a key not passed in KEYS with "
+            + command.getName());
+        return;
+      }
+    }
+    boolean isInTransaction = Propagation.isInTransaction();
+    if (!isInTransaction && !isReplaying) {
+      if (ReplicationManager.isReplica() && commands.stream().anyMatch(CommandProcessor::isWrite)) {
+        writer.writeError("READONLY", "You can't write against a read only replica.");
+        return;
+      }
+      if (isOutOfMemory(commands.stream().map(RespCommand::getName).toList())) {
+        writer.writeError("OOM", "command not allowed when used memory > 'maxmemory'.");
+        return;
+      }
+    }
+    if (!isInTransaction) {
+      Propagation.beginTransaction(new ArrayList<>(new LinkedHashSet<>(keys)));
+    }
+    try {
+      writer.writeArrayHeader(commands.size());
+      for (RespCommand command : commands) {
+        processCommand(command, writer);
+      }
+    } finally {
+      if (!isInTransaction) {
+        Propagation.endTransaction();
+      }
+    }
+  }
+
+  private void queueCommands(RespCommand cmd, RespWriter writer) {
     if (!cmd.getName().equalsIgnoreCase("EXEC")) {
       queuedCommands.add(cmd);
-      return RespUtility.buildSimpleResponse("QUEUED");
+      writer.writeSimple("QUEUED");
+      return;
+    }
+    processCommandExec(writer);
+  }
+
+  private void processCommandAsking(RespWriter writer) {
+    if (!ClusterManager.isEnabled()) {
+      writer.writeError("This instance has cluster support disabled");
+      return;
     }
-    return processCommandExec();
+    isAsking = true;
+    writer.writeSimple("OK");
   }
 
-  private String processCommandDiscard() {
+  private void processCommandDiscard(RespWriter writer) {
     if(isTransactionEnabled){
       queuedCommands.clear();
       isTransactionEnabled=false;
-      return RespUtility.buildSimpleResponse("OK");
+      unwatchAll();
+      writer.writeSimple("OK");
+      return;
+    }
+    writer.writeError("DISCARD without MULTI");
+  }
+
+  private void processCommandWatch(RespCommand cmd, RespWriter writer) {
+    if (cmd.getArgsSize() == 0) {
+      writer.writeError("wrong number of arguments for 'watch' command");
+      return;
+    }
+    for (String key : cmd.getArgs()) {
+      if (!watchedKeys.containsKey(key)) {
+        watchedKeys.put(key, WatchedKeys.watch(key));
+      }
+    }
+    writer.writeSimple("OK");
+  }
+
+  private void processCommandUnwatch(RespWriter writer) {
+    unwatchAll();
+    writer.writeSimple("OK");
+  }
+
+  private void unwatchAll() {
+    for (String key : watchedKeys.keySet()) {
+      WatchedKeys.unwatch(key);
     }
-    return RespUtility.buildErrorResponse("DISCARD without MULTI");
+    watchedKeys.clear();
   }
 }
@@ -0,0 +1,189 @@
+package processors.cluster;
+
+import cluster.ClusterManager;
+import cluster.ClusterNode;
+import cluster.HashSlots;
+import db.DataStore;
+import models.RespCommand;
+import processors.CommandExecutor;
+import utility.RespWriter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class CLUSTERExecutor implements CommandExecutor {
+
+  @Override
+  public void execute(RespCommand cmd, RespWriter writer) {
+    if (cmd.areArgsEmpty()) {
+      writer.writeError("wrong number of arguments for 'cluster' command");
+      return;
+    }
+    if (!ClusterManager.isEnabled()) {
+      writer.writeError("This instance has cluster support disabled");
+      return;
+    }
+    List<String> args = cmd.getArgs().subList(1, cmd.getArgsSize());
+    String subcommand = cmd.getArgs().get(0).toUpperCase();
+    try {
+      switch (subcommand) {
+        case "MYID" -> writer.writeBulk(ClusterManager.myself().getId());
+        case "INFO" -> writer.writeBulk(ClusterManager.info());
+        case "NODES" -> writer.writeBulk(ClusterManager.describeNodes());
+        case "SLOTS" -> writeSlots(writer);
+        case "SHARDS" -> writeShards(writer);
+        case "KEYSLOT" -> {
+          requireArgs(args, 1, subcommand);
+          writer.writeInteger(HashSlots.of(args.get(0)));
+        }
+        case "COUNTKEYSINSLOT" -> {
+          requireArgs(args, 1, subcommand);
+          writer.writeInteger(DataStore.countKeysInSlot(parseSlot(args.get(0))));
+        }
+        case "GETKEYSINSLOT" -> {
+          requireArgs(args, 2, subcommand);
+          int count = Integer.parseInt(args.get(1));
+          if (count < 0) {
+            throw new IllegalArgumentException("Invalid number of keys");
+          }
+          writer.writeBulkArray(DataStore.getKeysInSlot(parseSlot(args.get(0)), count));
+        }
+        case "ADDSLOTS", "DELSLOTS" -> {
+          if (args.isEmpty()) {
+            throw new IllegalArgumentException("wrong number of arguments for 'cluster|" + subcommand.toLowerCase()
+                + "' command");
+          }
+          List<Integer> slots = new ArrayList<>();
+          for (String slot : args) {
+            slots.add(parseSlot(slot));
+          }
+          updateSlots(subcommand.equals("ADDSLOTS"), slots);
+          writer.writeSimple("OK");
+        }
+        case "ADDSLOTSRANGE", "DELSLOTSRANGE" -> {
+          if (args.isEmpty() || args.size() % 2 != 0) {
+            throw new IllegalArgumentException("wrong number of arguments for 'cluster|" + subcommand.toLowerCase()
+                + "' command");
+          }
+          List<Integer> slots = new ArrayList<>();
+          for (int i = 0; i < args.size(); i += 2) {
+            int start = parseSlot(args.get(i));
+            int end = parseSlot(args.get(i + 1));
+            if (start > end) {
+              throw new IllegalArgumentException("start slot number " + start
+                  + " is greater than end slot number " + end);
+            }
+            for (int slot = start; slot <= end; slot++) {
+              slots.add(slot);
+            }
+          }
+          updateSlots(subcommand.equals("ADDSLOTSRANGE"), slots);
+          writer.writeSimple("OK");
+        }
+        case "SETSLOT" -> {
+          if (args.size() < 2) {
+            throw new IllegalArgumentException("wrong number of arguments for 'cluster|setslot' command");
+          }
+          String state = args.get(1).toUpperCase();
+          if (state.equals("STABLE") != (args.size() == 2)) {
+            throw new IllegalArgumentException("Invalid CLUSTER SETSLOT action or number of arguments");
+          }
+          ClusterManager.setSlot(parseSlot(args.get(0)), state, args.size() > 2 ? args.get(2) : null);
+          writer.writeSimple("OK");
+        }
+        case "MEET" -> {
+          requireArgs(args, 2, subcommand);
+          int port = Integer.parseInt(args.get(1));
+          if (port <= 0 || port > 65535) {
+            throw new IllegalArgumentException("Invalid node address specified: " + args.get(0) + ":" + port);
+          }
+          ClusterManager.meet(args.get(0), port);
+          writer.writeSimple("OK");
+        }
+        default -> writer.writeError("unknown subcommand '" + cmd.getArgs().get(0) + "'");
+      }
+    } catch (NumberFormatException e) {
+      writer.writeError("value is not an integer or out of range");
+    } catch (IllegalArgumentException e) {
+      writer.writeError(e.getMessage());
+    } catch (IOException e) {
+      writer.writeError("Could not save the cluster config: " + e.getMessage());
+    }
+  }
+
+  private static void updateSlots(boolean isAdd, List<Integer> slots) throws IOException {
+    if (isAdd) {
+      ClusterManager.addSlots(slots);
+    } else {
+      ClusterManager.delSlots(slots);
+    }
+  }
+
+  /**
+   * Each range of slots with the node serving it: start, end, then the node as ip, port and ID.
+   */
+  private static void writeSlots(RespWriter writer) {
+    List<ClusterManager.SlotRange> ranges = ClusterManager.slotRanges();
+    writer.writeArrayHeader(ranges.size());
+    for (ClusterManager.SlotRange range : ranges) {
+      writer.writeArrayHeader(3);
+      writer.writeInteger(range.start());
+      writer.writeInteger(range.end());
+      writer.writeArrayHeader(3);
+      writer.writeBulk(range.node().getHost());
+      writer.writeInteger(range.node().getPort());
+      writer.writeBulk(range.node().getId());
+    }
+  }
+
+  /**
+   * Each node as a shard of its own, since there are no replicas in the cluster: its slot ranges and its details.
+   */
+  private static void writeShards(RespWriter writer) {
+    List<ClusterManager.SlotRange> ranges = ClusterManager.slotRanges();
+    List<ClusterNode> nodes = new ArrayList<>(ClusterManager.getNodes());
+    writer.writeArrayHeader(nodes.size());
+    for (ClusterNode node : nodes) {
+      List<ClusterManager.SlotRange> served = ranges.stream().filter(range -> range.node() == node).toList();
+      writer.writeArrayHeader(4);
+      writer.writeBulk("slots");
+      writer.writeArrayHeader(served.size() * 2);
+      for (ClusterManager.SlotRange range : served) {
+        writer.writeInteger(range.start());
+        writer.writeInteger(range.end());
+      }
+      boolean isOnline = node == ClusterManager.myself() || node.isConnected();
+      writer.writeBulk("nodes");
+      writer.writeArrayHeader(1);
+      writer.writeArrayHeader(14);
+      writer.writeBulk("id").writeBulk(node.getId());
+      writer.writeBulk("port").writeInteger(node.getPort());
+      writer.writeBulk("ip").writeBulk(node.getHost());
+      writer.writeBulk("endpoint").writeBulk(node.getHost());
+      writer.writeBulk("role").writeBulk("master");
+      writer.writeBulk("replication-offset").writeInteger(0);
+      writer.writeBulk("health").writeBulk(isOnline ? "online" : "fail");
+    }
+  }
+
+  private static void requireArgs(List<String> args, int count, String subcommand) {
+    if (args.size() != count) {
+      throw new IllegalArgumentException("wrong number of arguments for 'cluster|" + subcommand.toLowerCase()
+          + "' command");
+    }
+  }
+
+  private static int parseSlot(String value) {
+    int slot;
+    try {
+      slot = Integer.parseInt(value);
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Invalid or out of range slot");
+    }
+    if (slot < 0 || slot >= HashSlots.COUNT) {
+      throw new IllegalArgumentException("Invalid or out of range slot");
+    }
+    return slot;
+  }
+}
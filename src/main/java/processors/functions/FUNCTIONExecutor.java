@@ -0,0 +1,90 @@
+package processors.functions;
+
+import db.Propagation;
+import functions.Function;
+import functions.FunctionLibrary;
+import functions.Functions;
+import models.RespCommand;
+import processors.CommandExecutor;
+import utility.RespWriter;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * FUNCTION LOAD [REPLACE] code | DELETE library | FLUSH [ASYNC | SYNC] | LIST [WITHCODE]
+ * <p>
+ * See {@link FunctionLibrary} for the code. A load is propagated with REPLACE, so replaying it on top of a snapshot
+ * that already has the library does not fail.
+ */
+public class FUNCTIONExecutor implements CommandExecutor {
+
+  @Override
+  public void execute(RespCommand cmd, RespWriter writer) {
+    if (cmd.areArgsEmpty()) {
+      writer.writeError("wrong number of arguments for 'function' command");
+      return;
+    }
+    List<String> args = cmd.getArgs().subList(1, cmd.getArgsSize());
+    String subcommand = cmd.getArgs().get(0).toUpperCase();
+    try {
+      switch (subcommand) {
+        case "LOAD" -> {
+          boolean replace = args.size() == 2 && args.get(0).equalsIgnoreCase("REPLACE");
+          if (args.size() != 1 && !replace) {
+            throw new IllegalArgumentException("wrong number of arguments for 'function|load' command");
+          }
+          String code = args.get(args.size() - 1);
+          writer.writeBulk(Functions.load(code, replace));
+          Propagation.replaceCommand(List.of(List.of("FUNCTION", "LOAD", "REPLACE", code)));
+        }
+        case "DELETE" -> {
+          if (args.size() != 1) {
+            throw new IllegalArgumentException("wrong number of arguments for 'function|delete' command");
+          }
+          if (!Functions.delete(args.get(0))) {
+            throw new IllegalArgumentException("Library not found");
+          }
+          writer.writeSimple("OK");
+        }
+        case "FLUSH" -> {
+          if (args.size() > 1 || (args.size() == 1 && !args.get(0).equalsIgnoreCase("ASYNC")
+              && !args.get(0).equalsIgnoreCase("SYNC"))) {
+            throw new IllegalArgumentException("syntax error");
+          }
+          Functions.flush();
+          writer.writeSimple("OK");
+        }
+        case "LIST" -> {
+          boolean withCode = args.size() == 1 && args.get(0).equalsIgnoreCase("WITHCODE");
+          if (!args.isEmpty() && !withCode) {
+            throw new IllegalArgumentException("syntax error");
+          }
+          writeLibraries(Functions.libraries(), withCode, writer);
+        }
+        default -> writer.writeError("unknown subcommand '" + cmd.getArgs().get(0) + "'");
+      }
+    } catch (IllegalArgumentException e) {
+      writer.writeError(e.getMessage());
+    }
+  }
+
+  private static void writeLibraries(Collection<FunctionLibrary> libraries, boolean withCode, RespWriter writer) {
+    writer.writeArrayHeader(libraries.size());
+    for (FunctionLibrary library : libraries) {
+      writer.writeArrayHeader(withCode ? 8 : 6);
+      writer.writeBulk("library_name").writeBulk(library.getName());
+      writer.writeBulk("engine").writeBulk(FunctionLibrary.ENGINE);
+      writer.writeBulk("functions").writeArrayHeader(library.getFunctions().size());
+      for (Function function : library.getFunctions().values()) {
+        writer.writeArrayHeader(6);
+        writer.writeBulk("name").writeBulk(function.getName());
+        writer.writeBulk("keys").writeInteger(function.getKeyCount());
+        writer.writeBulk("args").writeInteger(function.getArgCount());
+      }
+      if (withCode) {
+        writer.writeBulk("library_code").writeBulk(library.getCode());
+      }
+    }
+  }
+}
@@ -0,0 +1,30 @@
+package processors.hashes;
+
+import models.HashValue;
+import models.RespCommand;
+import processors.CommandExecutor;
+import utility.RespWriter;
+
+import java.util.List;
+
+/**
+ * HGETALL key
+ */
+public class HGETALLExecutor implements CommandExecutor {
+
+  @Override
+  public void execute(RespCommand cmd, RespWriter writer) {
+    if (cmd.getArgsSize() != 1) {
+      writer.writeError("wrong number of arguments for 'hgetall' command");
+      return;
+    }
+    HashValue hash;
+    try {
+      hash = HashLookup.find(cmd.getKey());
+    } catch (ClassCastException e) {
+      writer.writeError("WRONGTYPE Operation against a key holding the wrong kind of value");
+      return;
+    }
+    writer.writeBulkArray(hash == null ? List.of() : hash.entries());
+  }
+}
@@ -0,0 +1,28 @@
+package processors.hashes;
+
+import models.HashValue;
+import models.RespCommand;
+import processors.CommandExecutor;
+import utility.RespWriter;
+
+/**
+ * HGET key field
+ */
+public class HGETExecutor implements CommandExecutor {
+
+  @Override
+  public void execute(RespCommand cmd, RespWriter writer) {
+    if (cmd.getArgsSize() != 2) {
+      writer.writeError("wrong number of arguments for 'hget' command");
+      return;
+    }
+    HashValue hash;
+    try {
+      hash = HashLookup.find(cmd.getKey());
+    } catch (ClassCastException e) {
+      writer.writeError("WRONGTYPE Operation against a key holding the wrong kind of value");
+      return;
+    }
+    writer.writeBulk(hash == null ? null : hash.get(cmd.getArgs().get(1)));
+  }
+}
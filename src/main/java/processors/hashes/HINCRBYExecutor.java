@@ -0,0 +1,41 @@
+package processors.hashes;
+
+import models.HashValue;
+import models.RespCommand;
+import processors.CommandExecutor;
+import utility.RespWriter;
+
+/**
+ * HINCRBY key field increment
+ */
+public class HINCRBYExecutor implements CommandExecutor {
+
+  @Override
+  public void execute(RespCommand cmd, RespWriter writer) {
+    if (cmd.getArgsSize() != 3) {
+      writer.writeError("wrong number of arguments for 'hincrby' command");
+      return;
+    }
+    long increment;
+    try {
+      increment = Long.parseLong(cmd.getArgs().get(2));
+    } catch (NumberFormatException e) {
+      writer.writeError("value is not an integer or out of range");
+      return;
+    }
+    HashValue hash;
+    try {
+      hash = HashLookup.findOrCreate(cmd.getKey());
+    } catch (ClassCastException e) {
+      writer.writeError("WRONGTYPE Operation against a key holding the wrong kind of value");
+      return;
+    }
+    try {
+      writer.writeInteger(hash.increment(cmd.getArgs().get(1), increment));
+    } catch (NumberFormatException e) {
+      writer.writeError("hash value is not an integer");
+    } catch (ArithmeticException e) {
+      writer.writeError("increment or decrement would overflow");
+    }
+  }
+}
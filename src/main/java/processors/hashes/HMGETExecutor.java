@@ -0,0 +1,34 @@
+package processors.hashes;
+
+import models.HashValue;
+import models.RespCommand;
+import processors.CommandExecutor;
+import utility.RespWriter;
+
+import java.util.List;
+
+/**
+ * HMGET key field [field ...]
+ */
+public class HMGETExecutor implements CommandExecutor {
+
+  @Override
+  public void execute(RespCommand cmd, RespWriter writer) {
+    List<String> args = cmd.getArgs();
+    if (args.size() < 2) {
+      writer.writeError("wrong number of arguments for 'hmget' command");
+      return;
+    }
+    HashValue hash;
+    try {
+      hash = HashLookup.find(cmd.getKey());
+    } catch (ClassCastException e) {
+      writer.writeError("WRONGTYPE Operation against a key holding the wrong kind of value");
+      return;
+    }
+    writer.writeArrayHeader(args.size() - 1);
+    for (String field : args.subList(1, args.size())) {
+      writer.writeBulk(hash == null ? null : hash.get(field));
+    }
+  }
+}
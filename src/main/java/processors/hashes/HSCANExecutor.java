@@ -0,0 +1,81 @@
+package processors.hashes;
+
+import models.HashValue;
+import models.RespCommand;
+import processors.CommandExecutor;
+import utility.GlobPattern;
+import utility.RespWriter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * HSCAN key cursor [MATCH pattern] [COUNT count] [NOVALUES]
+ */
+public class HSCANExecutor implements CommandExecutor {
+  private static final int DEFAULT_COUNT = 10;
+
+  @Override
+  public void execute(RespCommand cmd, RespWriter writer) {
+    List<String> args = cmd.getArgs();
+    if (args.size() < 2) {
+      writer.writeError("wrong number of arguments for 'hscan' command");
+      return;
+    }
+    long cursor;
+    try {
+      cursor = Long.parseUnsignedLong(args.get(1));
+    } catch (NumberFormatException e) {
+      writer.writeError("invalid cursor");
+      return;
+    }
+    String pattern = null;
+    int count = DEFAULT_COUNT;
+    boolean noValues = false;
+    for (int i = 2; i < args.size(); i++) {
+      String option = args.get(i).toUpperCase();
+      if (option.equals("NOVALUES")) {
+        noValues = true;
+      } else if (option.equals("MATCH") && i + 1 < args.size()) {
+        pattern = args.get(++i);
+      } else if (option.equals("COUNT") && i + 1 < args.size()) {
+        try {
+          count = Integer.parseInt(args.get(++i));
+        } catch (NumberFormatException e) {
+          writer.writeError("value is not an integer or out of range");
+          return;
+        }
+        if (count < 1) {
+          writer.writeError("syntax error");
+          return;
+        }
+      } else {
+        writer.writeError("syntax error");
+        return;
+      }
+    }
+
+    HashValue hash;
+    try {
+      hash = HashLookup.find(cmd.getKey());
+    } catch (ClassCastException e) {
+      writer.writeError("WRONGTYPE Operation against a key holding the wrong kind of value");
+      return;
+    }
+    List<String> fieldsAndValues = new ArrayList<>();
+    long next = 0;
+    if (hash != null) {
+      String glob = pattern;
+      Predicate<String> match = glob == null || glob.equals("*") ? field -> true : field -> GlobPattern.matches(glob, field);
+      next = hash.scan(cursor, count, match, fieldsAndValues);
+    }
+
+    writer.writeArrayHeader(2);
+    writer.writeBulk(Long.toUnsignedString(next));
+    writer.writeArrayHeader(noValues ? fieldsAndValues.size() / 2 : fieldsAndValues.size());
+    for (int i = 0; i < fieldsAndValues.size(); i += noValues ? 2 : 1) {
+      writer.writeBulk(fieldsAndValues.get(i));
+    }
+  }
+}
@@ -0,0 +1,39 @@
+package processors.hashes;
+
+import models.HashValue;
+import models.RespCommand;
+import processors.CommandExecutor;
+import utility.RespWriter;
+
+import java.util.List;
+
+/**
+ * HSET key field value [field value ...]
+ */
+public class HSETExecutor implements CommandExecutor {
+
+  @Override
+  public void execute(RespCommand cmd, RespWriter writer) {
+    List<String> args = cmd.getArgs();
+    if (args.size() < 3 || args.size() % 2 == 0) {
+      writer.writeError("wrong number of arguments for 'hset' command");
+      return;
+    }
+    HashValue hash;
+    try {
+      hash = HashLookup.findOrCreate(cmd.getKey());
+    } catch (ClassCastException e) {
+      writer.writeError("WRONGTYPE Operation against a key holding the wrong kind of value");
+      return;
+    }
+    int added = 0;
+    synchronized (hash) {
+      for (int i = 1; i < args.size(); i += 2) {
+        if (hash.put(args.get(i), args.get(i + 1))) {
+          added++;
+        }
+      }
+    }
+    writer.writeInteger(added);
+  }
+}
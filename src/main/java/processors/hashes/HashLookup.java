@@ -0,0 +1,44 @@
+package processors.hashes;
+
+import db.DataStore;
+import models.DataStoreValue;
+import models.HashValue;
+import server.ServerConfig;
+
+/**
+ * Key lookups shared by the hash commands.
+ */
+final class HashLookup {
+
+  private HashLookup() {
+  }
+
+  /**
+   * @throws ClassCastException when the key holds another type
+   * @return the hash at the key, null when there is none
+   */
+  static HashValue find(String key) {
+    DataStoreValue data = DataStore.get(key);
+    if (data == null) {
+      return null;
+    }
+    if (!data.isHash()) {
+      throw new ClassCastException();
+    }
+    return data.getAsHash();
+  }
+
+  /**
+   * @throws ClassCastException when the key holds another type
+   * @return the hash at the key, created empty when missing
+   */
+  static HashValue findOrCreate(String key) {
+    HashValue hash = find(key);
+    if (hash == null) {
+      hash = new HashValue(ServerConfig.getInt("hash-max-listpack-entries"),
+          ServerConfig.getInt("hash-max-listpack-value"));
+      DataStore.put(key, new DataStoreValue(hash));
+    }
+    return hash;
+  }
+}
@@ -0,0 +1,25 @@
+package processors.keys;
+
+import db.DataStore;
+import models.RespCommand;
+import processors.CommandExecutor;
+import utility.RespWriter;
+
+public class DELExecutor implements CommandExecutor {
+
+  @Override
+  public void execute(RespCommand cmd, RespWriter writer) {
+    if (cmd.areArgsEmpty()) {
+      writer.writeError("wrong number of arguments for 'del' command");
+      return;
+    }
+    int deleted = 0;
+    for (String key : cmd.getArgs()) {
+      if (DataStore.containsKey(key)) {
+        DataStore.remove(key);
+        deleted++;
+      }
+    }
+    writer.writeInteger(deleted);
+  }
+}
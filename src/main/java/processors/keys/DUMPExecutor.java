@@ -0,0 +1,26 @@
+package processors.keys;
+
+import models.RespCommand;
+import persistence.KeyDump;
+import processors.CommandExecutor;
+import utility.RespWriter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+public class DUMPExecutor implements CommandExecutor {
+
+  @Override
+  public void execute(RespCommand cmd, RespWriter writer) {
+    if (cmd.getArgsSize() != 1) {
+      writer.writeError("wrong number of arguments for 'dump' command");
+      return;
+    }
+    try {
+      byte[] payload = KeyDump.dump(cmd.getKey());
+      writer.writeBulk(payload == null ? null : new String(payload, StandardCharsets.ISO_8859_1));
+    } catch (IOException e) {
+      writer.writeError(e.getMessage());
+    }
+  }
+}
@@ -0,0 +1,79 @@
+package processors.keys;
+
+import db.DataStore;
+import db.Propagation;
+import models.DataStoreValue;
+import models.RespCommand;
+import processors.CommandExecutor;
+import utility.RespWriter;
+
+import java.util.List;
+
+/**
+ * Handles EXPIRE, PEXPIRE, EXPIREAT and PEXPIREAT, which only differ in the unit of the time argument and in
+ * whether it is relative to now or an absolute unix time.
+ */
+public class EXPIREExecutor implements CommandExecutor {
+  private final long unitMillis;
+  private final boolean isAbsolute;
+
+  public EXPIREExecutor(long unitMillis, boolean isAbsolute) {
+    this.unitMillis = unitMillis;
+    this.isAbsolute = isAbsolute;
+  }
+
+  @Override
+  public void execute(RespCommand cmd, RespWriter writer) {
+    if (cmd.getArgsSize() < 2 || cmd.getArgsSize() > 3) {
+      writer.writeError("wrong number of arguments for '" + cmd.getName().toLowerCase() + "' command");
+      return;
+    }
+    String key = cmd.getKey();
+    long expiryTimeMillis;
+    try {
+      long time = Long.parseLong(cmd.getArgs().get(1));
+      expiryTimeMillis = Math.multiplyExact(time, unitMillis);
+      if (!isAbsolute) {
+        expiryTimeMillis = Math.addExact(expiryTimeMillis, System.currentTimeMillis());
+      }
+    } catch (NumberFormatException | ArithmeticException e) {
+      writer.writeError("value is not an integer or out of range");
+      return;
+    }
+    String option = cmd.getArgsSize() == 3 ? cmd.getArgs().get(2).toUpperCase() : null;
+    if (option != null && !option.equals("NX") && !option.equals("XX")
+        && !option.equals("GT") && !option.equals("LT")) {
+      writer.writeError("Unsupported option " + cmd.getArgs().get(2));
+      return;
+    }
+
+    DataStoreValue data = DataStore.get(key);
+    if (data == null || !isAllowed(option, data, expiryTimeMillis)) {
+      Propagation.replaceCommand(List.of());
+      writer.writeInteger(0);
+      return;
+    }
+    // Every form replays as the absolute time it resolved to
+    Propagation.replaceCommand(List.of(List.of("PEXPIREAT", key, String.valueOf(expiryTimeMillis))));
+    if (expiryTimeMillis <= System.currentTimeMillis()) {
+      // A time in the past deletes the key right away
+      DataStore.remove(key);
+    } else {
+      DataStore.setExpiry(key, expiryTimeMillis);
+    }
+    writer.writeInteger(1);
+  }
+
+  private boolean isAllowed(String option, DataStoreValue data, long expiryTimeMillis) {
+    if (option == null) {
+      return true;
+    }
+    // A key without TTL counts as an infinite TTL for GT and LT
+    return switch (option) {
+      case "NX" -> !data.hasExpiry();
+      case "XX" -> data.hasExpiry();
+      case "GT" -> data.hasExpiry() && expiryTimeMillis > data.getExpiryTimeMillis();
+      default -> !data.hasExpiry() || expiryTimeMillis < data.getExpiryTimeMillis();
+    };
+  }
+}
@@ -0,0 +1,140 @@
+package processors.keys;
+
+import db.DataStore;
+import db.Propagation;
+import models.DataStoreValue;
+import models.RespCommand;
+import persistence.KeyDump;
+import processors.CommandExecutor;
+import utility.RespReplyReader;
+import utility.RespWriter;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * MIGRATE host port key|"" destination-db timeout [COPY] [REPLACE] [KEYS key ...]
+ * <p>
+ * Sends the keys to the target as ASKING plus RESTORE, so it takes them for a slot it is importing, and removes them
+ * here once the target took every one of them, unless COPY. Runs while holding the keys, so nothing changes them
+ * between the DUMP and the removal.
+ */
+public class MIGRATEExecutor implements CommandExecutor {
+
+  @Override
+  public void execute(RespCommand cmd, RespWriter writer) {
+    List<String> args = cmd.getArgs();
+    if (args.size() < 5) {
+      writer.writeError("wrong number of arguments for 'migrate' command");
+      return;
+    }
+    int port;
+    long database;
+    int timeoutMillis;
+    try {
+      port = Integer.parseInt(args.get(1));
+      database = Long.parseLong(args.get(3));
+      timeoutMillis = Integer.parseInt(args.get(4));
+    } catch (NumberFormatException e) {
+      writer.writeError("value is not an integer or out of range");
+      return;
+    }
+    boolean isCopy = false;
+    boolean isReplace = false;
+    List<String> keys = args.get(2).isEmpty() ? List.of() : List.of(args.get(2));
+    for (int i = 5; i < args.size(); i++) {
+      String option = args.get(i).toUpperCase();
+      if (option.equals("COPY")) {
+        isCopy = true;
+      } else if (option.equals("REPLACE")) {
+        isReplace = true;
+      } else if (option.equals("KEYS") && args.get(2).isEmpty()) {
+        keys = args.subList(i + 1, args.size());
+        break;
+      } else {
+        writer.writeError("syntax error");
+        return;
+      }
+    }
+    if (database != 0) {
+      writer.writeError("Target database " + database + " does not exist, there is only database 0");
+      return;
+    }
+
+    List<String> found = new ArrayList<>();
+    RespWriter request = new RespWriter();
+    long now = System.currentTimeMillis();
+    try {
+      for (String key : keys) {
+        DataStoreValue value = DataStore.get(key);
+        byte[] payload = value == null ? null : KeyDump.dump(key);
+        if (payload == null) {
+          continue;
+        }
+        long ttl = value.hasExpiry() ? Math.max(1, value.getExpiryTimeMillis() - now) : 0;
+        List<String> restore = new ArrayList<>(List.of("RESTORE", key, String.valueOf(ttl),
+            new String(payload, StandardCharsets.ISO_8859_1)));
+        if (isReplace) {
+          restore.add("REPLACE");
+        }
+        request.writeBulkArray(List.of("ASKING"));
+        request.writeBulkArray(restore);
+        found.add(key);
+      }
+    } catch (IOException e) {
+      writer.writeError(e.getMessage());
+      return;
+    }
+    if (found.isEmpty()) {
+      Propagation.replaceCommand(List.of());
+      writer.writeSimple("NOKEY");
+      return;
+    }
+
+    String targetError = null;
+    try (Socket socket = new Socket()) {
+      socket.connect(new InetSocketAddress(args.get(0), port), timeoutMillis);
+      socket.setSoTimeout(timeoutMillis);
+      OutputStream output = socket.getOutputStream();
+      request.writeTo(output);
+      output.flush();
+      InputStream input = new BufferedInputStream(socket.getInputStream());
+      // A reply for each ASKING and each RESTORE
+      for (int i = 0; i < found.size() * 2; i++) {
+        try {
+          RespReplyReader.read(input);
+        } catch (RespReplyReader.ErrorReply e) {
+          if (targetError == null) {
+            targetError = e.getMessage();
+          }
+        }
+      }
+    } catch (IOException e) {
+      writer.writeError("IOERR", "error or timeout writing to target instance: " + e.getMessage());
+      return;
+    }
+    if (targetError != null) {
+      writer.writeError("Target instance replied with error: " + targetError);
+      return;
+    }
+    if (isCopy) {
+      Propagation.replaceCommand(List.of());
+    } else {
+      List<String> delete = new ArrayList<>(found.size() + 1);
+      delete.add("DEL");
+      for (String key : found) {
+        DataStore.remove(key);
+        delete.add(key);
+      }
+      Propagation.replaceCommand(List.of(delete));
+    }
+    writer.writeSimple("OK");
+  }
+}
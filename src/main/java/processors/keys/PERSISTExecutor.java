@@ -0,0 +1,25 @@
+package processors.keys;
+
+import db.DataStore;
+import models.DataStoreValue;
+import models.RespCommand;
+import processors.CommandExecutor;
+import utility.RespWriter;
+
+public class PERSISTExecutor implements CommandExecutor {
+
+  @Override
+  public void execute(RespCommand cmd, RespWriter writer) {
+    if (cmd.getArgsSize() != 1) {
+      writer.writeError("wrong number of arguments for 'persist' command");
+      return;
+    }
+    DataStoreValue data = DataStore.get(cmd.getKey());
+    if (data == null || !data.hasExpiry()) {
+      writer.writeInteger(0);
+      return;
+    }
+    DataStore.setExpiry(cmd.getKey(), 0);
+    writer.writeInteger(1);
+  }
+}
@@ -0,0 +1,82 @@
+package processors.keys;
+
+import db.DataStore;
+import db.Propagation;
+import models.DataStoreValue;
+import models.RespCommand;
+import persistence.KeyDump;
+import processors.CommandExecutor;
+import utility.RespWriter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * RESTORE key ttl serialized-value [REPLACE] [ABSTTL], with a payload from DUMP. Propagated with an absolute TTL so
+ * replaying it later does not extend the key's life.
+ */
+public class RESTOREExecutor implements CommandExecutor {
+
+  @Override
+  public void execute(RespCommand cmd, RespWriter writer) {
+    List<String> args = cmd.getArgs();
+    if (args.size() < 3) {
+      writer.writeError("wrong number of arguments for 'restore' command");
+      return;
+    }
+    boolean isReplace = false;
+    boolean isAbsoluteTtl = false;
+    for (int i = 3; i < args.size(); i++) {
+      switch (args.get(i).toUpperCase()) {
+        case "REPLACE" -> isReplace = true;
+        case "ABSTTL" -> isAbsoluteTtl = true;
+        default -> {
+          writer.writeError("syntax error");
+          return;
+        }
+      }
+    }
+    long ttl;
+    try {
+      ttl = Long.parseLong(args.get(1));
+    } catch (NumberFormatException e) {
+      writer.writeError("value is not an integer or out of range");
+      return;
+    }
+    if (ttl < 0) {
+      writer.writeError("Invalid TTL value, must be >= 0");
+      return;
+    }
+    String key = args.get(0);
+    if (!isReplace && DataStore.containsKey(key)) {
+      writer.writeError("BUSYKEY", "Target key name already exists.");
+      return;
+    }
+    Object value;
+    try {
+      value = KeyDump.restore(args.get(2).getBytes(StandardCharsets.ISO_8859_1));
+    } catch (IOException e) {
+      writer.writeError("DUMP payload version or checksum are wrong");
+      return;
+    }
+    long now = System.currentTimeMillis();
+    long expiryTimeMillis = ttl == 0 ? 0 : isAbsoluteTtl ? ttl : now + ttl;
+    if (value == null || (expiryTimeMillis > 0 && expiryTimeMillis <= now)) {
+      // Nothing to keep, though REPLACE still removes what was there
+      DataStore.remove(key);
+      Propagation.replaceCommand(List.of(List.of("DEL", key)));
+      writer.writeSimple("OK");
+      return;
+    }
+    DataStore.put(key, new DataStoreValue(value, expiryTimeMillis));
+    List<String> propagated = new ArrayList<>(List.of("RESTORE", key, String.valueOf(expiryTimeMillis), args.get(2),
+        "REPLACE"));
+    if (expiryTimeMillis > 0) {
+      propagated.add("ABSTTL");
+    }
+    Propagation.replaceCommand(List.of(propagated));
+    writer.writeSimple("OK");
+  }
+}
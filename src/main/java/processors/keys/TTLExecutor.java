@@ -0,0 +1,38 @@
+package processors.keys;
+
+import db.DataStore;
+import models.DataStoreValue;
+import models.RespCommand;
+import processors.CommandExecutor;
+import utility.RespWriter;
+
+/**
+ * Handles TTL and PTTL: remaining time to live, -1 when the key has no expiry and -2 when it does not exist.
+ */
+public class TTLExecutor implements CommandExecutor {
+  private final long unitMillis;
+
+  public TTLExecutor(long unitMillis) {
+    this.unitMillis = unitMillis;
+  }
+
+  @Override
+  public void execute(RespCommand cmd, RespWriter writer) {
+    if (cmd.getArgsSize() != 1) {
+      writer.writeError("wrong number of arguments for '" + cmd.getName().toLowerCase() + "' command");
+      return;
+    }
+    DataStoreValue data = DataStore.get(cmd.getKey());
+    if (data == null) {
+      writer.writeInteger(-2);
+      return;
+    }
+    if (!data.hasExpiry()) {
+      writer.writeInteger(-1);
+      return;
+    }
+    long remainingMillis = Math.max(0, data.getExpiryTimeMillis() - System.currentTimeMillis());
+    // Rounded to the nearest unit like Redis
+    writer.writeInteger((remainingMillis + unitMillis / 2) / unitMillis);
+  }
+}
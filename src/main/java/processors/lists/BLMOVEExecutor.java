@@ -0,0 +1,69 @@
+package processors.lists;
+
+import db.BlockingRegistry;
+import db.Propagation;
+import models.RespCommand;
+import processors.CommandExecutor;
+import utility.RespWriter;
+
+import java.util.List;
+
+/**
+ * BLMOVE source destination LEFT|RIGHT LEFT|RIGHT timeout
+ */
+public class BLMOVEExecutor implements CommandExecutor {
+
+  @Override
+  public void execute(RespCommand cmd, RespWriter writer) {
+    List<String> args = cmd.getArgs();
+    if (args.size() != 5) {
+      writer.writeError("wrong number of arguments for 'blmove' command");
+      return;
+    }
+    Boolean fromLeft = LMOVEExecutor.parseDirection(args.get(2));
+    Boolean toLeft = LMOVEExecutor.parseDirection(args.get(3));
+    if (fromLeft == null || toLeft == null) {
+      writer.writeError("syntax error");
+      return;
+    }
+    long timeoutMillis;
+    try {
+      timeoutMillis = ListBlocking.parseTimeoutMillis(args.get(4));
+    } catch (NumberFormatException e) {
+      writer.writeError("Invalid timeout argument");
+      return;
+    }
+    String source = args.get(0);
+    String destination = args.get(1);
+    if (!LMOVEExecutor.holdsListOrNothing(source) || !LMOVEExecutor.holdsListOrNothing(destination)) {
+      writer.writeError("WRONGTYPE Operation against a key holding the wrong kind of value");
+      return;
+    }
+
+    // Each change is a write section of its own, the client parks outside of them. The section's command goes
+    // before the pops it caused for other blocked clients.
+    String moved;
+    Propagation.begin(List.of(source, destination), null);
+    try {
+      moved = LMOVEExecutor.move(source, destination, fromLeft, toLeft);
+      if (moved != null) {
+        Propagation.replaceCommand(List.of(List.of("LMOVE", source, destination, args.get(2), args.get(3))));
+      }
+    } finally {
+      Propagation.end(true);
+    }
+    if (moved != null) {
+      writer.writeBulk(moved);
+      return;
+    }
+    // The element is moved for us in turn, in the write section of whoever pushed it
+    BlockingRegistry.Served served = BlockingRegistry.awaitMove(source, destination, timeoutMillis, fromLeft, toLeft);
+    if (served == null) {
+      writer.writeNullArray();
+    } else if (served.element() == null) {
+      writer.writeError("WRONGTYPE Operation against a key holding the wrong kind of value");
+    } else {
+      writer.writeBulk(served.element());
+    }
+  }
+}
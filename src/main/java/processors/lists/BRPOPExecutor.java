@@ -0,0 +1,16 @@
+package processors.lists;
+
+import models.RespCommand;
+import processors.CommandExecutor;
+import utility.RespWriter;
+
+/**
+ * BRPOP key [key ...] timeout
+ */
+public class BRPOPExecutor implements CommandExecutor {
+
+  @Override
+  public void execute(RespCommand cmd, RespWriter writer) {
+    ListBlocking.blockingPop(cmd, writer, false);
+  }
+}
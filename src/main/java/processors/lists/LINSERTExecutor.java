@@ -0,0 +1,39 @@
+package processors.lists;
+
+import db.DataStore;
+import models.DataStoreValue;
+import models.RespCommand;
+import processors.CommandExecutor;
+import utility.RespWriter;
+
+import java.util.List;
+
+/**
+ * LINSERT key BEFORE|AFTER pivot element
+ */
+public class LINSERTExecutor implements CommandExecutor {
+
+  @Override
+  public void execute(RespCommand cmd, RespWriter writer) {
+    List<String> args = cmd.getArgs();
+    if (args.size() != 4) {
+      writer.writeError("wrong number of arguments for 'linsert' command");
+      return;
+    }
+    String where = args.get(1).toUpperCase();
+    if (!where.equals("BEFORE") && !where.equals("AFTER")) {
+      writer.writeError("syntax error");
+      return;
+    }
+    DataStoreValue data = DataStore.get(cmd.getKey());
+    if (data == null) {
+      writer.writeInteger(0);
+      return;
+    }
+    if (!data.isList()) {
+      writer.writeError("WRONGTYPE Operation against a key holding the wrong kind of value");
+      return;
+    }
+    writer.writeInteger(data.getAsList().insert(args.get(2), where.equals("BEFORE"), args.get(3)));
+  }
+}
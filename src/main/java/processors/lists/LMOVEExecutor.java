@@ -0,0 +1,101 @@
+package processors.lists;
+
+import db.BlockingRegistry;
+import db.DataStore;
+import models.DataStoreValue;
+import models.QuickList;
+import models.RespCommand;
+import processors.CommandExecutor;
+import utility.RespWriter;
+
+import java.util.List;
+
+/**
+ * LMOVE source destination LEFT|RIGHT LEFT|RIGHT
+ */
+public class LMOVEExecutor implements CommandExecutor {
+  // Taken first when two different lists happen to have the same identity hash, so the lock order stays total
+  private static final Object TIE_LOCK = new Object();
+
+  @Override
+  public void execute(RespCommand cmd, RespWriter writer) {
+    List<String> args = cmd.getArgs();
+    if (args.size() != 4) {
+      writer.writeError("wrong number of arguments for 'lmove' command");
+      return;
+    }
+    Boolean fromLeft = parseDirection(args.get(2));
+    Boolean toLeft = parseDirection(args.get(3));
+    if (fromLeft == null || toLeft == null) {
+      writer.writeError("syntax error");
+      return;
+    }
+    if (!holdsListOrNothing(args.get(0)) || !holdsListOrNothing(args.get(1))) {
+      writer.writeError("WRONGTYPE Operation against a key holding the wrong kind of value");
+      return;
+    }
+    writer.writeBulk(move(args.get(0), args.get(1), fromLeft, toLeft));
+  }
+
+  /**
+   * @return true for LEFT, false for RIGHT, null for anything else
+   */
+  static Boolean parseDirection(String direction) {
+    return switch (direction.toUpperCase()) {
+      case "LEFT" -> true;
+      case "RIGHT" -> false;
+      default -> null;
+    };
+  }
+
+  static boolean holdsListOrNothing(String key) {
+    DataStoreValue data = DataStore.get(key);
+    return data == null || data.isList();
+  }
+
+  /**
+   * Pops an element from one end of source and pushes it to one end of destination, creating it when missing.
+   * Both lists are locked for the move, so no reader sees the element in neither or in both lists.
+   *
+   * @return the moved element, null when source has no elements or a key holds another type
+   */
+  static String move(String source, String destination, boolean fromLeft, boolean toLeft) {
+    DataStoreValue sourceData = DataStore.get(source);
+    if (sourceData == null || !sourceData.isList()) {
+      return null;
+    }
+    DataStoreValue destinationData = DataStore.get(destination);
+    if (destinationData != null && !destinationData.isList()) {
+      return null;
+    }
+    QuickList from = sourceData.getAsList();
+    QuickList to = destinationData == null ? new QuickList() : destinationData.getAsList();
+
+    String element;
+    int fromHash = System.identityHashCode(from);
+    int toHash = System.identityHashCode(to);
+    QuickList first = fromHash <= toHash ? from : to;
+    QuickList second = first == from ? to : from;
+    synchronized (fromHash == toHash && from != to ? TIE_LOCK : first) {
+      synchronized (first) {
+        synchronized (second) {
+          element = fromLeft ? from.popFirst() : from.popLast();
+          if (element == null) {
+            return null;
+          }
+          if (toLeft) {
+            to.pushFirst(element);
+          } else {
+            to.pushLast(element);
+          }
+        }
+      }
+    }
+    DataStore.removeIfEmptyList(source);
+    if (destinationData == null) {
+      DataStore.put(destination, new DataStoreValue(to));
+    }
+    BlockingRegistry.signal(destination);
+    return element;
+  }
+}
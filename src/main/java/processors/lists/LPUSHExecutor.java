@@ -1,31 +1,42 @@
 package processors.lists;
 
+import db.BlockingRegistry;
 import db.DataStore;
 import models.DataStoreValue;
+import models.QuickList;
 import models.RespCommand;
 import processors.CommandExecutor;
-import utility.RespUtility;
+import utility.RespWriter;
 
-import java.util.LinkedList;
 import java.util.List;
 
 public class LPUSHExecutor implements CommandExecutor {
 
   @Override
-  public String execute(RespCommand cmd) {
+  public void execute(RespCommand cmd, RespWriter writer) {
+    if (cmd.getArgsSize() < 2) {
+      writer.writeError("wrong number of arguments for 'lpush' command");
+      return;
+    }
     String key = cmd.getKey();
     DataStoreValue data = DataStore.get(key);
     List<String> elementsToPush = cmd.getArgs().subList(1, cmd.getArgsSize());
     if(data == null) {
-      DataStore.put(key, new DataStoreValue(elementsToPush));
-      DataStore.notifyWaiter(key);
-      return RespUtility.serializeResponse(cmd.getArgsSize()-1);
+      QuickList list = new QuickList();
+      elementsToPush.forEach(list::pushFirst);
+      DataStore.put(key, new DataStoreValue(list));
+      BlockingRegistry.signal(key);
+      writer.writeInteger(cmd.getArgsSize()-1);
+      return;
     }
 
-    LinkedList<String> existingList = new LinkedList<>(data.getAsList());
-    elementsToPush.forEach(existingList::addFirst);
-    data.updateValue(existingList);
-    DataStore.notifyWaiter(key);
-    return RespUtility.serializeResponse(data.getAsList().size());
+    QuickList existingList = data.getAsList();
+    if (existingList == null) {
+      writer.writeError("WRONGTYPE Operation against a key holding the wrong kind of value");
+      return;
+    }
+    elementsToPush.forEach(existingList::pushFirst);
+    BlockingRegistry.signal(key);
+    writer.writeInteger(existingList.size());
   }
 }
@@ -0,0 +1,40 @@
+package processors.lists;
+
+import db.DataStore;
+import models.DataStoreValue;
+import models.RespCommand;
+import processors.CommandExecutor;
+import utility.RespWriter;
+
+/**
+ * LREM key count element
+ */
+public class LREMExecutor implements CommandExecutor {
+
+  @Override
+  public void execute(RespCommand cmd, RespWriter writer) {
+    if (cmd.getArgsSize() != 3) {
+      writer.writeError("wrong number of arguments for 'lrem' command");
+      return;
+    }
+    long count;
+    try {
+      count = Long.parseLong(cmd.getArgs().get(1));
+    } catch (NumberFormatException e) {
+      writer.writeError("value is not an integer or out of range");
+      return;
+    }
+    DataStoreValue data = DataStore.get(cmd.getKey());
+    if (data == null) {
+      writer.writeInteger(0);
+      return;
+    }
+    if (!data.isList()) {
+      writer.writeError("WRONGTYPE Operation against a key holding the wrong kind of value");
+      return;
+    }
+    long removed = data.getAsList().remove(count, cmd.getArgs().get(2));
+    DataStore.removeIfEmptyList(cmd.getKey());
+    writer.writeInteger(removed);
+  }
+}
@@ -0,0 +1,39 @@
+package processors.lists;
+
+import db.DataStore;
+import models.DataStoreValue;
+import models.RespCommand;
+import processors.CommandExecutor;
+import utility.RespWriter;
+
+public class LSETExecutor implements CommandExecutor {
+
+  @Override
+  public void execute(RespCommand cmd, RespWriter writer) {
+    if (cmd.getArgsSize() != 3) {
+      writer.writeError("wrong number of arguments for 'lset' command");
+      return;
+    }
+    long index;
+    try {
+      index = Long.parseLong(cmd.getArgs().get(1));
+    } catch (NumberFormatException e) {
+      writer.writeError("value is not an integer or out of range");
+      return;
+    }
+    DataStoreValue data = DataStore.get(cmd.getKey());
+    if (data == null) {
+      writer.writeError("no such key");
+      return;
+    }
+    if (!data.isList()) {
+      writer.writeError("WRONGTYPE Operation against a key holding the wrong kind of value");
+      return;
+    }
+    if (!data.getAsList().set(index, cmd.getArgs().get(2))) {
+      writer.writeError("index out of range");
+      return;
+    }
+    writer.writeSimple("OK");
+  }
+}
@@ -0,0 +1,53 @@
+package processors.lists;
+
+import db.DataStore;
+import models.DataStoreValue;
+import models.QuickList;
+import models.RespCommand;
+import processors.CommandExecutor;
+import utility.RespWriter;
+
+/**
+ * LTRIM key start stop
+ */
+public class LTRIMExecutor implements CommandExecutor {
+
+  @Override
+  public void execute(RespCommand cmd, RespWriter writer) {
+    if (cmd.getArgsSize() != 3) {
+      writer.writeError("wrong number of arguments for 'ltrim' command");
+      return;
+    }
+    long start;
+    long end;
+    try {
+      start = Long.parseLong(cmd.getArgs().get(1));
+      end = Long.parseLong(cmd.getArgs().get(2));
+    } catch (NumberFormatException e) {
+      writer.writeError("value is not an integer or out of range");
+      return;
+    }
+    DataStoreValue data = DataStore.get(cmd.getKey());
+    if (data == null) {
+      writer.writeSimple("OK");
+      return;
+    }
+    if (!data.isList()) {
+      writer.writeError("WRONGTYPE Operation against a key holding the wrong kind of value");
+      return;
+    }
+    QuickList list = data.getAsList();
+    // Both indexes are read and the list trimmed under one lock, so concurrent pushes can not shift the range
+    synchronized (list) {
+      long size = list.size();
+      // Normalize negative indexes
+      if (start < 0) start = size + start;
+      if (end < 0) end = size + end;
+      start = Math.max(0, start);
+      end = Math.min(end, size - 1);
+      list.trim(start, end);
+    }
+    DataStore.removeIfEmptyList(cmd.getKey());
+    writer.writeSimple("OK");
+  }
+}
@@ -0,0 +1,64 @@
+package processors.lists;
+
+import db.BlockingRegistry;
+import db.DataStore;
+import models.DataStoreValue;
+import models.RespCommand;
+import utility.RespWriter;
+
+import java.util.List;
+
+/**
+ * Argument handling shared by the blocking list commands, the waiting itself is done by {@link BlockingRegistry}.
+ */
+final class ListBlocking {
+
+  private ListBlocking() {
+  }
+
+  /**
+   * Parses a timeout given in seconds, fractions allowed, into milliseconds.
+   *
+   * @throws NumberFormatException when it is not a number or negative
+   */
+  static long parseTimeoutMillis(String timeout) {
+    double timeoutSeconds = Double.parseDouble(timeout);
+    if (timeoutSeconds < 0 || Double.isNaN(timeoutSeconds)) {
+      throw new NumberFormatException("timeout is negative");
+    }
+    return (long) (timeoutSeconds * 1000);
+  }
+
+  /**
+   * BLPOP and BRPOP: key [key ...] timeout, served from the first key in order that has elements.
+   */
+  static void blockingPop(RespCommand cmd, RespWriter writer, boolean fromHead) {
+    List<String> args = cmd.getArgs();
+    if (args.size() < 2) {
+      writer.writeError("wrong number of arguments for '" + cmd.getName().toLowerCase() + "' command");
+      return;
+    }
+    long timeoutMillis;
+    try {
+      timeoutMillis = parseTimeoutMillis(args.get(args.size() - 1));
+    } catch (NumberFormatException e) {
+      writer.writeError("Invalid timeout argument");
+      return;
+    }
+    List<String> keys = args.subList(0, args.size() - 1);
+    for (String key : keys) {
+      DataStoreValue data = DataStore.get(key);
+      if (data != null && !data.isList()) {
+        writer.writeError("WRONGTYPE Operation against a key holding the wrong kind of value");
+        return;
+      }
+    }
+
+    BlockingRegistry.Served served = BlockingRegistry.await(keys, timeoutMillis, fromHead);
+    if (served == null) {
+      writer.writeNullArray();
+      return;
+    }
+    writer.writeBulkArray(List.of(served.key(), served.element()));
+  }
+}
@@ -0,0 +1,65 @@
+package processors.lists;
+
+import db.DataStore;
+import models.DataStoreValue;
+import models.QuickList;
+import models.RespCommand;
+import processors.CommandExecutor;
+import utility.RespWriter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class RPOPExecutor implements CommandExecutor {
+
+  @Override
+  public void execute(RespCommand cmd, RespWriter writer) {
+    List<String> args = cmd.getArgs();
+    if (args.isEmpty() || args.size() > 2) {
+      writer.writeError("wrong number of arguments for 'rpop' command");
+      return;
+    }
+    long count = -1;
+    if (args.size() == 2) {
+      try {
+        count = Long.parseLong(args.get(1));
+      } catch (NumberFormatException e) {
+        count = -1;
+      }
+      if (count < 0) {
+        writer.writeError("value is out of range, must be positive");
+        return;
+      }
+    }
+
+    DataStoreValue data = DataStore.get(cmd.getKey());
+    if (data == null) {
+      if (count == -1) {
+        writer.writeNull();
+      } else {
+        writer.writeNullArray();
+      }
+      return;
+    }
+    QuickList list = data.getAsList();
+    if (list == null) {
+      writer.writeError("WRONGTYPE Operation against a key holding the wrong kind of value");
+      return;
+    }
+    if (count == -1) {
+      writer.writeBulk(list.popLast());
+      DataStore.removeIfEmptyList(cmd.getKey());
+      return;
+    }
+    List<String> responses = new ArrayList<>();
+    for (long i = 0; i < count; i++) {
+      String element = list.popLast();
+      if (element == null) {
+        break;
+      }
+      responses.add(element);
+    }
+    DataStore.removeIfEmptyList(cmd.getKey());
+    writer.writeBulkArray(responses);
+  }
+}
@@ -1,29 +1,39 @@
 package processors.lists;
 
+import db.BlockingRegistry;
 import db.DataStore;
 import models.DataStoreValue;
+import models.QuickList;
 import models.RespCommand;
 import processors.CommandExecutor;
-import utility.RespUtility;
+import utility.RespWriter;
 
-import java.util.LinkedList;
 import java.util.List;
 
 public class RPUSHExecutor implements CommandExecutor {
 
   @Override
-  public String execute(RespCommand cmd) {
+  public void execute(RespCommand cmd, RespWriter writer) {
+    if (cmd.getArgsSize() < 2) {
+      writer.writeError("wrong number of arguments for 'rpush' command");
+      return;
+    }
     String key = cmd.getKey();
     List<String> elementsToPush = cmd.getArgs().subList(1, cmd.getArgsSize());
     DataStoreValue data = DataStore.get(key);
     if(data == null) {
-      DataStore.put(key, new DataStoreValue(new LinkedList<>(elementsToPush)));
-      DataStore.notifyWaiter(key);
-      return RespUtility.serializeResponse(cmd.getArgsSize()-1);
+      DataStore.put(key, new DataStoreValue(new QuickList(elementsToPush)));
+      BlockingRegistry.signal(key);
+      writer.writeInteger(cmd.getArgsSize()-1);
+      return;
+    }
+    QuickList existingList = data.getAsList();
+    if (existingList == null) {
+      writer.writeError("WRONGTYPE Operation against a key holding the wrong kind of value");
+      return;
     }
-    LinkedList<String> existingList = data.getAsLinkedList();
-    existingList.addAll(elementsToPush);
-    DataStore.notifyWaiter(key);
-    return RespUtility.serializeResponse(data.getAsList().size());
+    elementsToPush.forEach(existingList::pushLast);
+    BlockingRegistry.signal(key);
+    writer.writeInteger(existingList.size());
   }
 }
@@ -0,0 +1,23 @@
+package processors.server;
+
+import models.RespCommand;
+import persistence.AppendOnlyFile;
+import processors.CommandExecutor;
+import utility.RespWriter;
+
+public class BGREWRITEAOFExecutor implements CommandExecutor {
+
+  @Override
+  public void execute(RespCommand cmd, RespWriter writer) {
+    if (cmd.getArgsSize() != 0) {
+      writer.writeError("wrong number of arguments for 'bgrewriteaof' command");
+      return;
+    }
+    switch (AppendOnlyFile.backgroundRewrite()) {
+      case STARTED -> writer.writeSimple("Background append only file rewriting started");
+      case SCHEDULED -> writer.writeSimple("Background append only file rewriting scheduled");
+      case IN_PROGRESS -> writer.writeError("Background append only file rewriting already in progress");
+      case DISABLED -> writer.writeError("Append only file is disabled, set appendonly yes to use it");
+    }
+  }
+}
@@ -0,0 +1,22 @@
+package processors.server;
+
+import models.RespCommand;
+import persistence.SnapshotManager;
+import processors.CommandExecutor;
+import utility.RespWriter;
+
+public class BGSAVEExecutor implements CommandExecutor {
+
+  @Override
+  public void execute(RespCommand cmd, RespWriter writer) {
+    if (cmd.getArgsSize() != 0) {
+      writer.writeError("wrong number of arguments for 'bgsave' command");
+      return;
+    }
+    if (!SnapshotManager.backgroundSave()) {
+      writer.writeError("Background save already in progress");
+      return;
+    }
+    writer.writeSimple("Background saving started");
+  }
+}
@@ -0,0 +1,46 @@
+package processors.server;
+
+import db.DataStore;
+import db.Eviction;
+import models.RespCommand;
+import processors.CommandExecutor;
+import replication.ReplicationManager;
+import utility.RespWriter;
+
+/**
+ * INFO with the memory, stats and replication sections, separated by blank lines like Redis does.
+ */
+public class INFOExecutor implements CommandExecutor {
+
+  @Override
+  public void execute(RespCommand cmd, RespWriter writer) {
+    if (cmd.getArgsSize() > 1) {
+      writer.writeError("wrong number of arguments for 'info' command");
+      return;
+    }
+    String section = cmd.getArgsSize() == 0 ? "default" : cmd.getArgs().get(0).toLowerCase();
+    boolean isAll = section.equals("default") || section.equals("all") || section.equals("everything");
+    StringBuilder info = new StringBuilder();
+    if (isAll || section.equals("memory")) {
+      appendSection(info, "# Memory\r\n"
+          + "used_memory:" + DataStore.getUsedMemory() + "\r\n"
+          + "maxmemory:" + Eviction.getMaxMemory() + "\r\n"
+          + "maxmemory_policy:" + Eviction.getPolicyName() + "\r\n");
+    }
+    if (isAll || section.equals("stats")) {
+      appendSection(info, "# Stats\r\n"
+          + "evicted_keys:" + Eviction.getEvictedKeys() + "\r\n");
+    }
+    if (isAll || section.equals("replication")) {
+      appendSection(info, ReplicationManager.info());
+    }
+    writer.writeBulk(info.toString());
+  }
+
+  private static void appendSection(StringBuilder info, String section) {
+    if (!info.isEmpty()) {
+      info.append("\r\n");
+    }
+    info.append(section);
+  }
+}
@@ -0,0 +1,18 @@
+package processors.server;
+
+import models.RespCommand;
+import persistence.SnapshotManager;
+import processors.CommandExecutor;
+import utility.RespWriter;
+
+public class LASTSAVEExecutor implements CommandExecutor {
+
+  @Override
+  public void execute(RespCommand cmd, RespWriter writer) {
+    if (cmd.getArgsSize() != 0) {
+      writer.writeError("wrong number of arguments for 'lastsave' command");
+      return;
+    }
+    writer.writeInteger(SnapshotManager.getLastSaveSeconds());
+  }
+}
@@ -0,0 +1,28 @@
+package processors.server;
+
+import models.RespCommand;
+import processors.CommandExecutor;
+import utility.RespWriter;
+
+/**
+ * Handshake options a replica sends before PSYNC. Acknowledgements arrive on the replication link itself and never
+ * get here.
+ */
+public class REPLCONFExecutor implements CommandExecutor {
+
+  @Override
+  public void execute(RespCommand cmd, RespWriter writer) {
+    if (cmd.getArgsSize() < 2 || cmd.getArgsSize() % 2 != 0) {
+      writer.writeError("wrong number of arguments for 'replconf' command");
+      return;
+    }
+    for (int i = 0; i < cmd.getArgsSize(); i += 2) {
+      String option = cmd.getArgs().get(i).toLowerCase();
+      if (!option.equals("listening-port") && !option.equals("capa") && !option.equals("ip-address")) {
+        writer.writeError("Unrecognized REPLCONF option: " + cmd.getArgs().get(i));
+        return;
+      }
+    }
+    writer.writeSimple("OK");
+  }
+}
@@ -0,0 +1,27 @@
+package processors.server;
+
+import models.RespCommand;
+import persistence.SnapshotManager;
+import processors.CommandExecutor;
+import utility.RespWriter;
+
+import java.io.IOException;
+
+public class SAVEExecutor implements CommandExecutor {
+
+  @Override
+  public void execute(RespCommand cmd, RespWriter writer) {
+    if (cmd.getArgsSize() != 0) {
+      writer.writeError("wrong number of arguments for 'save' command");
+      return;
+    }
+    try {
+      SnapshotManager.save();
+      writer.writeSimple("OK");
+    } catch (IllegalStateException e) {
+      writer.writeError(e.getMessage());
+    } catch (IOException e) {
+      writer.writeError("Error saving DB on disk: " + e.getMessage());
+    }
+  }
+}
@@ -0,0 +1,40 @@
+package processors.server;
+
+import models.RespCommand;
+import processors.CommandExecutor;
+import replication.ReplicationManager;
+import utility.RespWriter;
+
+public class WAITExecutor implements CommandExecutor {
+
+  @Override
+  public void execute(RespCommand cmd, RespWriter writer) {
+    if (cmd.getArgsSize() != 2) {
+      writer.writeError("wrong number of arguments for 'wait' command");
+      return;
+    }
+    if (ReplicationManager.isReplica()) {
+      writer.writeError("WAIT cannot be used with replica instances");
+      return;
+    }
+    int replicas;
+    long timeoutMillis;
+    try {
+      replicas = Integer.parseInt(cmd.getArgs().get(0));
+      timeoutMillis = Long.parseLong(cmd.getArgs().get(1));
+    } catch (NumberFormatException e) {
+      writer.writeError("value is not an integer or out of range");
+      return;
+    }
+    if (timeoutMillis < 0) {
+      writer.writeError("timeout is negative");
+      return;
+    }
+    try {
+      writer.writeInteger(ReplicationManager.waitForReplicas(replicas, timeoutMillis));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      writer.writeError("interrupted while waiting for replicas");
+    }
+  }
+}
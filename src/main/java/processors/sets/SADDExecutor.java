@@ -0,0 +1,39 @@
+package processors.sets;
+
+import models.RespCommand;
+import models.SetValue;
+import processors.CommandExecutor;
+import utility.RespWriter;
+
+import java.util.List;
+
+/**
+ * SADD key member [member ...]
+ */
+public class SADDExecutor implements CommandExecutor {
+
+  @Override
+  public void execute(RespCommand cmd, RespWriter writer) {
+    List<String> args = cmd.getArgs();
+    if (args.size() < 2) {
+      writer.writeError("wrong number of arguments for 'sadd' command");
+      return;
+    }
+    SetValue set;
+    try {
+      set = SetLookup.findOrCreate(cmd.getKey());
+    } catch (ClassCastException e) {
+      writer.writeError("WRONGTYPE Operation against a key holding the wrong kind of value");
+      return;
+    }
+    int added = 0;
+    synchronized (set) {
+      for (String member : args.subList(1, args.size())) {
+        if (set.add(member)) {
+          added++;
+        }
+      }
+    }
+    writer.writeInteger(added);
+  }
+}
@@ -0,0 +1,28 @@
+package processors.sets;
+
+import models.RespCommand;
+import models.SetValue;
+import processors.CommandExecutor;
+import utility.RespWriter;
+
+/**
+ * SCARD key
+ */
+public class SCARDExecutor implements CommandExecutor {
+
+  @Override
+  public void execute(RespCommand cmd, RespWriter writer) {
+    if (cmd.getArgsSize() != 1) {
+      writer.writeError("wrong number of arguments for 'scard' command");
+      return;
+    }
+    SetValue set;
+    try {
+      set = SetLookup.find(cmd.getKey());
+    } catch (ClassCastException e) {
+      writer.writeError("WRONGTYPE Operation against a key holding the wrong kind of value");
+      return;
+    }
+    writer.writeInteger(set == null ? 0 : set.size());
+  }
+}
@@ -0,0 +1,61 @@
+package processors.sets;
+
+import models.RespCommand;
+import models.SetValue;
+import processors.CommandExecutor;
+import utility.RespWriter;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * SINTER key [key ...]
+ * <p>
+ * Walks the smallest set and probes the others from the next smallest up, so the work is bounded by the smallest
+ * set and a member is usually rejected by the set most likely to miss it.
+ */
+public class SINTERExecutor implements CommandExecutor {
+
+  @Override
+  public void execute(RespCommand cmd, RespWriter writer) {
+    List<String> args = cmd.getArgs();
+    if (args.isEmpty()) {
+      writer.writeError("wrong number of arguments for 'sinter' command");
+      return;
+    }
+    List<SetValue> sets = new ArrayList<>(args.size());
+    boolean anyMissing = false;
+    try {
+      for (String key : args) {
+        SetValue set = SetLookup.find(key);
+        if (set == null) {
+          anyMissing = true;
+        } else {
+          sets.add(set);
+        }
+      }
+    } catch (ClassCastException e) {
+      writer.writeError("WRONGTYPE Operation against a key holding the wrong kind of value");
+      return;
+    }
+    // A missing key is an empty set, which empties the intersection
+    if (anyMissing) {
+      writer.writeArrayHeader(0);
+      return;
+    }
+
+    sets.sort(Comparator.comparingInt(SetValue::size));
+    List<String> result = new ArrayList<>();
+    for (String member : sets.get(0).members()) {
+      boolean inAll = true;
+      for (int i = 1; i < sets.size() && inAll; i++) {
+        inAll = sets.get(i).contains(member);
+      }
+      if (inAll) {
+        result.add(member);
+      }
+    }
+    writer.writeBulkArray(result);
+  }
+}
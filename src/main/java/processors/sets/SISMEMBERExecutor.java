@@ -0,0 +1,28 @@
+package processors.sets;
+
+import models.RespCommand;
+import models.SetValue;
+import processors.CommandExecutor;
+import utility.RespWriter;
+
+/**
+ * SISMEMBER key member
+ */
+public class SISMEMBERExecutor implements CommandExecutor {
+
+  @Override
+  public void execute(RespCommand cmd, RespWriter writer) {
+    if (cmd.getArgsSize() != 2) {
+      writer.writeError("wrong number of arguments for 'sismember' command");
+      return;
+    }
+    SetValue set;
+    try {
+      set = SetLookup.find(cmd.getKey());
+    } catch (ClassCastException e) {
+      writer.writeError("WRONGTYPE Operation against a key holding the wrong kind of value");
+      return;
+    }
+    writer.writeInteger(set != null && set.contains(cmd.getArgs().get(1)) ? 1 : 0);
+  }
+}
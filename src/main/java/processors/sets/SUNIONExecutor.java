@@ -0,0 +1,43 @@
+package processors.sets;
+
+import models.RespCommand;
+import models.SetValue;
+import processors.CommandExecutor;
+import utility.RespWriter;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * SUNION key [key ...]
+ */
+public class SUNIONExecutor implements CommandExecutor {
+
+  @Override
+  public void execute(RespCommand cmd, RespWriter writer) {
+    List<String> args = cmd.getArgs();
+    if (args.isEmpty()) {
+      writer.writeError("wrong number of arguments for 'sunion' command");
+      return;
+    }
+    List<SetValue> sets = new ArrayList<>(args.size());
+    try {
+      for (String key : args) {
+        SetValue set = SetLookup.find(key);
+        if (set != null) {
+          sets.add(set);
+        }
+      }
+    } catch (ClassCastException e) {
+      writer.writeError("WRONGTYPE Operation against a key holding the wrong kind of value");
+      return;
+    }
+    Set<String> union = new LinkedHashSet<>();
+    for (SetValue set : sets) {
+      union.addAll(set.members());
+    }
+    writer.writeBulkArray(union);
+  }
+}
@@ -0,0 +1,43 @@
+package processors.sets;
+
+import db.DataStore;
+import models.DataStoreValue;
+import models.SetValue;
+import server.ServerConfig;
+
+/**
+ * Key lookups shared by the set commands.
+ */
+final class SetLookup {
+
+  private SetLookup() {
+  }
+
+  /**
+   * @throws ClassCastException when the key holds another type
+   * @return the set at the key, null when there is none
+   */
+  static SetValue find(String key) {
+    DataStoreValue data = DataStore.get(key);
+    if (data == null) {
+      return null;
+    }
+    if (!data.isSet()) {
+      throw new ClassCastException();
+    }
+    return data.getAsSet();
+  }
+
+  /**
+   * @throws ClassCastException when the key holds another type
+   * @return the set at the key, created empty when missing
+   */
+  static SetValue findOrCreate(String key) {
+    SetValue set = find(key);
+    if (set == null) {
+      set = new SetValue(ServerConfig.getInt("set-max-intset-entries"));
+      DataStore.put(key, new DataStoreValue(set));
+    }
+    return set;
+  }
+}
@@ -0,0 +1,44 @@
+package processors.sortedsets;
+
+import db.DataStore;
+import models.DataStoreValue;
+import models.SortedSetValue;
+import server.ServerConfig;
+
+/**
+ * Key lookups shared by the sorted set commands.
+ */
+final class SortedSetLookup {
+
+  private SortedSetLookup() {
+  }
+
+  /**
+   * @throws ClassCastException when the key holds another type
+   * @return the sorted set at the key, null when there is none
+   */
+  static SortedSetValue find(String key) {
+    DataStoreValue data = DataStore.get(key);
+    if (data == null) {
+      return null;
+    }
+    if (!data.isSortedSet()) {
+      throw new ClassCastException();
+    }
+    return data.getAsSortedSet();
+  }
+
+  /**
+   * @throws ClassCastException when the key holds another type
+   * @return the sorted set at the key, created empty when missing
+   */
+  static SortedSetValue findOrCreate(String key) {
+    SortedSetValue set = find(key);
+    if (set == null) {
+      set = new SortedSetValue(ServerConfig.getInt("zset-max-listpack-entries"),
+          ServerConfig.getInt("zset-max-listpack-value"));
+      DataStore.put(key, new DataStoreValue(set));
+    }
+    return set;
+  }
+}
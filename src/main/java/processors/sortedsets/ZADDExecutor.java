@@ -0,0 +1,125 @@
+package processors.sortedsets;
+
+import models.RespCommand;
+import models.ScoreRange;
+import models.SortedSetValue;
+import processors.CommandExecutor;
+import utility.RespUtility;
+import utility.RespWriter;
+
+import java.util.List;
+
+/**
+ * ZADD key [NX | XX] [GT | LT] [CH] [INCR] score member [score member ...]
+ */
+public class ZADDExecutor implements CommandExecutor {
+
+  @Override
+  public void execute(RespCommand cmd, RespWriter writer) {
+    List<String> args = cmd.getArgs();
+    boolean nx = false;
+    boolean xx = false;
+    boolean gt = false;
+    boolean lt = false;
+    boolean ch = false;
+    boolean incr = false;
+    int index = 1;
+    for (; index < args.size() && isOption(args.get(index)); index++) {
+      switch (args.get(index).toUpperCase()) {
+        case "NX" -> nx = true;
+        case "XX" -> xx = true;
+        case "GT" -> gt = true;
+        case "LT" -> lt = true;
+        case "CH" -> ch = true;
+        default -> incr = true;
+      }
+    }
+    int pairs = args.size() - index;
+    if (args.size() < 3 || pairs <= 0 || pairs % 2 != 0) {
+      writer.writeError("syntax error");
+      return;
+    }
+    if (nx && xx) {
+      writer.writeError("XX and NX options at the same time are not compatible");
+      return;
+    }
+    if ((gt && lt) || (nx && (gt || lt))) {
+      writer.writeError("GT, LT, and/or NX options at the same time are not compatible");
+      return;
+    }
+    if (incr && pairs != 2) {
+      writer.writeError("INCR option supports a single increment-element pair");
+      return;
+    }
+    double[] scores = new double[pairs / 2];
+    try {
+      for (int i = 0; i < scores.length; i++) {
+        scores[i] = ScoreRange.parseScore(args.get(index + 2 * i));
+      }
+    } catch (NumberFormatException e) {
+      writer.writeError("value is not a valid float");
+      return;
+    }
+
+    SortedSetValue set;
+    try {
+      set = SortedSetLookup.find(cmd.getKey());
+      if (set == null && xx) {
+        // Nothing to update, and no empty set is created
+        if (incr) {
+          writer.writeNull();
+        } else {
+          writer.writeInteger(0);
+        }
+        return;
+      }
+      if (set == null) {
+        set = SortedSetLookup.findOrCreate(cmd.getKey());
+      }
+    } catch (ClassCastException e) {
+      writer.writeError("WRONGTYPE Operation against a key holding the wrong kind of value");
+      return;
+    }
+    long added = 0;
+    long changed = 0;
+    synchronized (set) {
+      for (int i = 0; i < scores.length; i++) {
+        String member = args.get(index + 2 * i + 1);
+        Double current = set.score(member);
+        double score = scores[i];
+        if (incr && current != null) {
+          score += current;
+          if (Double.isNaN(score)) {
+            writer.writeError("resulting score is not a number (NaN)");
+            return;
+          }
+        }
+        if ((nx && current != null) || (xx && current == null)
+            || (current != null && ((gt && score <= current) || (lt && score >= current)))) {
+          if (incr) {
+            writer.writeNull();
+            return;
+          }
+          continue;
+        }
+        if (set.put(member, score)) {
+          added++;
+        } else if (current != score) {
+          changed++;
+        }
+        if (incr) {
+          writer.writeBulk(RespUtility.formatDouble(score));
+          return;
+        }
+      }
+    }
+    writer.writeInteger(ch ? added + changed : added);
+  }
+
+  private static boolean isOption(String arg) {
+    return switch (arg.toUpperCase()) {
+      case "NX", "XX", "GT", "LT", "CH", "INCR" -> true;
+      default -> false;
+    };
+  }
+}
@@ -0,0 +1,48 @@
+package processors.sortedsets;
+
+import models.RespCommand;
+import models.ScoreRange;
+import models.SortedSetValue;
+import processors.CommandExecutor;
+import utility.RespUtility;
+import utility.RespWriter;
+
+/**
+ * ZINCRBY key increment member
+ */
+public class ZINCRBYExecutor implements CommandExecutor {
+
+  @Override
+  public void execute(RespCommand cmd, RespWriter writer) {
+    if (cmd.getArgsSize() != 3) {
+      writer.writeError("wrong number of arguments for 'zincrby' command");
+      return;
+    }
+    double increment;
+    try {
+      increment = ScoreRange.parseScore(cmd.getArgs().get(1));
+    } catch (NumberFormatException e) {
+      writer.writeError("value is not a valid float");
+      return;
+    }
+    SortedSetValue set;
+    try {
+      set = SortedSetLookup.findOrCreate(cmd.getKey());
+    } catch (ClassCastException e) {
+      writer.writeError("WRONGTYPE Operation against a key holding the wrong kind of value");
+      return;
+    }
+    String member = cmd.getArgs().get(2);
+    double score;
+    synchronized (set) {
+      Double current = set.score(member);
+      score = current == null ? increment : current + increment;
+      if (Double.isNaN(score)) {
+        writer.writeError("resulting score is not a number (NaN)");
+        return;
+      }
+      set.put(member, score);
+    }
+    writer.writeBulk(RespUtility.formatDouble(score));
+  }
+}
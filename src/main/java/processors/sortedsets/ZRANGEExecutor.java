@@ -0,0 +1,97 @@
+package processors.sortedsets;
+
+import models.RespCommand;
+import models.ScoreRange;
+import models.ScoredMember;
+import models.SortedSetValue;
+import processors.CommandExecutor;
+import utility.RespUtility;
+import utility.RespWriter;
+
+import java.util.List;
+
+/**
+ * ZRANGE key start stop [BYSCORE] [REV] [LIMIT offset count] [WITHSCORES]
+ * <p>
+ * With byScoreOnly set this is ZRANGEBYSCORE key min max [WITHSCORES] [LIMIT offset count].
+ */
+public class ZRANGEExecutor implements CommandExecutor {
+  private final boolean byScoreOnly;
+
+  public ZRANGEExecutor(boolean byScoreOnly) {
+    this.byScoreOnly = byScoreOnly;
+  }
+
+  @Override
+  public void execute(RespCommand cmd, RespWriter writer) {
+    List<String> args = cmd.getArgs();
+    if (args.size() < 3) {
+      writer.writeError("wrong number of arguments for '" + cmd.getName().toLowerCase() + "' command");
+      return;
+    }
+    boolean byScore = byScoreOnly;
+    boolean reverse = false;
+    boolean withScores = false;
+    boolean hasLimit = false;
+    long offset = 0;
+    long count = -1;
+    try {
+      for (int i = 3; i < args.size(); i++) {
+        String option = args.get(i).toUpperCase();
+        if (option.equals("WITHSCORES")) {
+          withScores = true;
+        } else if (option.equals("BYSCORE") && !byScoreOnly) {
+          byScore = true;
+        } else if (option.equals("REV") && !byScoreOnly) {
+          reverse = true;
+        } else if (option.equals("LIMIT") && i + 2 < args.size()) {
+          hasLimit = true;
+          offset = Long.parseLong(args.get(++i));
+          count = Long.parseLong(args.get(++i));
+        } else {
+          writer.writeError("syntax error");
+          return;
+        }
+      }
+    } catch (NumberFormatException e) {
+      writer.writeError("value is not an integer or out of range");
+      return;
+    }
+    if (hasLimit && !byScore) {
+      writer.writeError("syntax error, LIMIT is only supported in combination with either BYSCORE or BYLEX");
+      return;
+    }
+
+    ScoreRange range = null;
+    long start = 0;
+    long stop = 0;
+    try {
+      if (byScore) {
+        // REV takes the bounds as max min
+        range = reverse ? ScoreRange.parse(args.get(2), args.get(1)) : ScoreRange.parse(args.get(1), args.get(2));
+      } else {
+        start = Long.parseLong(args.get(1));
+        stop = Long.parseLong(args.get(2));
+      }
+    } catch (NumberFormatException e) {
+      writer.writeError(byScore ? "min or max is not a float" : "value is not an integer or out of range");
+      return;
+    }
+
+    SortedSetValue set;
+    try {
+      set = SortedSetLookup.find(cmd.getKey());
+    } catch (ClassCastException e) {
+      writer.writeError("WRONGTYPE Operation against a key holding the wrong kind of value");
+      return;
+    }
+    if (set == null) {
+      writer.writeArrayHeader(0);
+      return;
+    }
+    List<ScoredMember> members = byScore
+        ? set.rangeByScore(range, reverse, offset, count)
+        : set.rangeByRank(start, stop, reverse);
+    RespUtility.writeScoredMembers(members, withScores, writer);
+  }
+}
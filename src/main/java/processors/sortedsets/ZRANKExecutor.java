@@ -0,0 +1,60 @@
+package processors.sortedsets;
+
+import models.RespCommand;
+import models.SortedSetValue;
+import processors.CommandExecutor;
+import utility.RespUtility;
+import utility.RespWriter;
+
+/**
+ * ZRANK key member [WITHSCORE]
+ */
+public class ZRANKExecutor implements CommandExecutor {
+
+  @Override
+  public void execute(RespCommand cmd, RespWriter writer) {
+    if (cmd.getArgsSize() != 2 && cmd.getArgsSize() != 3) {
+      writer.writeError("wrong number of arguments for 'zrank' command");
+      return;
+    }
+    boolean withScore = cmd.getArgsSize() == 3;
+    if (withScore && !cmd.getArgs().get(2).equalsIgnoreCase("WITHSCORE")) {
+      writer.writeError("syntax error");
+      return;
+    }
+    SortedSetValue set;
+    try {
+      set = SortedSetLookup.find(cmd.getKey());
+    } catch (ClassCastException e) {
+      writer.writeError("WRONGTYPE Operation against a key holding the wrong kind of value");
+      return;
+    }
+    String member = cmd.getArgs().get(1);
+    long rank;
+    Double score;
+    if (set == null) {
+      rank = -1;
+      score = null;
+    } else {
+      synchronized (set) {
+        rank = set.rank(member, false);
+        score = set.score(member);
+      }
+    }
+    if (rank < 0) {
+      if (withScore) {
+        writer.writeNullArray();
+      } else {
+        writer.writeNull();
+      }
+      return;
+    }
+    if (!withScore) {
+      writer.writeInteger(rank);
+      return;
+    }
+    writer.writeArrayHeader(2);
+    writer.writeInteger(rank);
+    writer.writeBulk(RespUtility.formatDouble(score));
+  }
+}
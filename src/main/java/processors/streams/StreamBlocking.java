@@ -0,0 +1,62 @@
+package processors.streams;
+
+import db.DataStore;
+import db.Propagation;
+import models.StreamEntry;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * Parking shared by the stream reads that support BLOCK.
+ */
+final class StreamBlocking {
+  private StreamBlocking(){}
+
+  /**
+   * Retries the read every time an XADD to one of the keys unparks us, until it returns entries or the timeout
+   * (0 = forever) ends. Inside a transaction, which holds its keys until it ends, it reads only once.
+   *
+   * @param read one non-blocking attempt, returns an empty map when there is nothing to deliver
+   */
+  static Map<String, List<StreamEntry>> await(List<String> streamKeys, long blockMillis,
+                                              Supplier<Map<String, List<StreamEntry>>> read) {
+    Thread currentThread = Thread.currentThread();
+    long deadline = blockMillis == 0 ? 0 : System.nanoTime() + blockMillis * 1_000_000;
+    // Registering before re-checking means an XADD in between still unparks us
+    streamKeys.forEach(key -> DataStore.addStreamWaiter(key, currentThread));
+    try {
+      while (true) {
+        Map<String, List<StreamEntry>> responses = read.get();
+        if (!responses.isEmpty() || currentThread.isInterrupted() || Propagation.isInTransaction()) {
+          return responses;
+        }
+        if (deadline == 0) {
+          LockSupport.park(StreamBlocking.class);
+        } else {
+          long remaining = deadline - System.nanoTime();
+          if (remaining <= 0) {
+            return responses;
+          }
+          LockSupport.parkNanos(StreamBlocking.class, remaining);
+        }
+      }
+    } finally {
+      streamKeys.forEach(key -> DataStore.removeStreamWaiter(key, currentThread));
+    }
+  }
+
+  /**
+   * Index of the STREAMS keyword that ends the options, or -1.
+   */
+  static int indexOfStreams(List<String> args, int from) {
+    for (int i = from; i < args.size(); i++) {
+      if ("STREAMS".equalsIgnoreCase(args.get(i))) {
+        return i;
+      }
+    }
+    return -1;
+  }
+}
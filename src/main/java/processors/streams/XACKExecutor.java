@@ -0,0 +1,46 @@
+package processors.streams;
+
+import db.DataStore;
+import models.ConsumerGroup;
+import models.DataStoreValue;
+import models.RespCommand;
+import models.StreamId;
+import models.StreamLog;
+import processors.CommandExecutor;
+import utility.RespWriter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * XACK key group id [id ...]
+ */
+public class XACKExecutor implements CommandExecutor {
+
+  @Override
+  public void execute(RespCommand cmd, RespWriter writer) {
+    List<String> args = cmd.getArgs();
+    if (args.size() < 3) {
+      writer.writeError("wrong number of arguments for 'xack' command");
+      return;
+    }
+    List<StreamId> ids = new ArrayList<>();
+    try {
+      for (String id : args.subList(2, args.size())) {
+        ids.add(StreamId.parseBound(id, false));
+      }
+    } catch (IllegalArgumentException e) {
+      writer.writeError(e.getMessage());
+      return;
+    }
+
+    DataStoreValue value = DataStore.get(args.get(0));
+    StreamLog stream = value == null ? null : value.getAsStream();
+    if (value != null && stream == null) {
+      writer.writeError("WRONGTYPE Operation against a key holding the wrong kind of value");
+      return;
+    }
+    ConsumerGroup group = stream == null ? null : stream.getGroup(args.get(1));
+    writer.writeInteger(group == null ? 0 : group.acknowledge(ids));
+  }
+}
@@ -1,130 +1,99 @@
 package processors.streams;
 
 import db.DataStore;
+import db.Propagation;
 import models.DataStoreValue;
 import models.RespCommand;
+import models.StreamId;
+import models.StreamLog;
 import processors.CommandExecutor;
-import utility.RespUtility;
+import utility.RespWriter;
 
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
-import java.util.concurrent.ConcurrentNavigableMap;
-import java.util.concurrent.ConcurrentSkipListMap;
 
 public class XADDExecutor implements CommandExecutor {
 
   @Override
-  public String execute(RespCommand cmd) {
-    String key = cmd.getKey();
-    // TODO: Later remove sublist when RespCommand is updated
-    List<String> args = cmd.getArgs().subList(1, cmd.getArgsSize());
-    String entryID = args.get(0);
-    Map<String, String> entryValue = new HashMap<>();
-    for (int i = 1; i < args.size(); i += 2) {
-      entryValue.put(args.get(i), args.get(i + 1));
+  public void execute(RespCommand cmd, RespWriter writer) {
+    if (cmd.getArgsSize() < 4 || cmd.getArgsSize() % 2 != 0) {
+      writer.writeError("wrong number of arguments for 'xadd' command");
+      return;
     }
+    String key = cmd.getKey();
+    String entryID = cmd.getArgs().get(1);
+    List<String> fieldsAndValues = cmd.getArgs().subList(2, cmd.getArgsSize());
 
     DataStoreValue existingData = DataStore.get(key);
-    ConcurrentNavigableMap<String, Map<String, String>> stream;
+    StreamLog stream;
     if (existingData == null) {
-      stream = new ConcurrentSkipListMap<>();
+      stream = new StreamLog();
       DataStore.put(key, new DataStoreValue(stream));
     } else {
-      try {
-        stream = existingData.getAsStream();
-      } catch (Exception e) {
-        return RespUtility.buildErrorResponse(
-            "WRONGTYPE Operation against a key holding the wrong kind of value");
+      stream = existingData.getAsStream();
+      if (stream == null) {
+        writer.writeError("WRONGTYPE Operation against a key holding the wrong kind of value");
+        return;
       }
     }
 
-    String generatedID;
+    StreamId generatedID;
     try {
-      generatedID = generateStreamID(entryID, stream);
+      generatedID = stream.append(lastId -> generateStreamID(entryID, lastId), fieldsAndValues);
     } catch (IllegalArgumentException e) {
-      return RespUtility.buildErrorResponse(e.getMessage());
-    }
-
-    stream.put(generatedID, entryValue);
-    return RespUtility.serializeResponse(generatedID);
-  }
-
-  private void validateStreamID(String entryID, ConcurrentNavigableMap<String, Map<String, String>> stream) {
-    if (!entryID.matches("\\d+-\\d+")) {
-      throw new IllegalArgumentException("invalid stream ID format");
-    }
-
-    String[] parts = entryID.split("-");
-    long ms = Long.parseLong(parts[0]);
-    long seq = Long.parseLong(parts[1]);
-
-    if (ms == 0 && seq == 0) {
-      throw new IllegalArgumentException("The ID specified in XADD must be greater than 0-0");
-    }
-
-    if (!stream.isEmpty()) {
-      String lastId = stream.lastKey();
-      if (!isGreater(entryID, lastId)) {
-        throw new IllegalArgumentException("The ID specified in XADD is equal or smaller than the target stream top item");
-      }
+      writer.writeError(e.getMessage());
+      return;
     }
+    // Replay with the ID that was generated rather than generating a new one
+    List<String> propagated = new ArrayList<>(cmd.getArgsSize() + 1);
+    propagated.add("XADD");
+    propagated.add(key);
+    propagated.add(generatedID.toString());
+    propagated.addAll(fieldsAndValues);
+    Propagation.replaceCommand(List.of(propagated));
+    DataStore.notifyStreamWaiters(key);
+    writer.writeBulk(generatedID.toString());
   }
 
   /**
-   * Compares two IDs of form ms-seq.
+   * Resolves the requested ID (explicit, ms-* or *) against the last ID of the stream.
    */
-  private boolean isGreater(String newId, String oldId) {
-    String[] newParts = newId.split("-");
-    String[] oldParts = oldId.split("-");
-    long newMs = Long.parseLong(newParts[0]);
-    long newSeq = Long.parseLong(newParts[1]);
-    long oldMs = Long.parseLong(oldParts[0]);
-    long oldSeq = Long.parseLong(oldParts[1]);
-
-    return (newMs > oldMs) || (newMs == oldMs && newSeq > oldSeq);
-  }
-
-  private String generateStreamID(String entryID, ConcurrentNavigableMap<String, Map<String, String>> stream) {
-    long ms, seq;
+  private StreamId generateStreamID(String entryID, StreamId lastId) {
     if (entryID.equals("*")) {
-      ms = System.currentTimeMillis();
-      seq = 0;
-      if (!stream.isEmpty()) {
-        String lastId = stream.lastKey();
-        String[] parts = lastId.split("-");
-        long lastMs = Long.parseLong(parts[0]);
-        long lastSeq = Long.parseLong(parts[1]);
-
-        if (lastMs == ms) {
-          seq = lastSeq + 1;
-        }
-      }
-
-      return ms + "-" + seq;
+      long ms = Math.max(System.currentTimeMillis(), lastId.ms());
+      return new StreamId(ms, ms == lastId.ms() ? lastId.seq() + 1 : 0);
     }
 
+    StreamId id;
     if (entryID.endsWith("-*")) {
-      ms = Long.parseLong(entryID.split("-")[0]);
-      seq = ms == 0 ? 1: 0;
-
-      if (!stream.isEmpty()) {
-        String lastId = stream.lastKey();
-        String[] parts = lastId.split("-");
-        long lastMs = Long.parseLong(parts[0]);
-        long lastSeq = Long.parseLong(parts[1]);
-
-        if (lastMs == ms) {
-          seq = lastSeq + 1;
-        }
+      long ms = parseMillis(entryID.substring(0, entryID.length() - 2));
+      long seq = ms == 0 ? 1 : 0;
+      if (ms == lastId.ms()) {
+        seq = lastId.seq() + 1;
+      }
+      id = new StreamId(ms, seq);
+    } else {
+      try {
+        id = StreamId.parse(entryID);
+      } catch (IllegalArgumentException e) {
+        throw new IllegalArgumentException("invalid stream ID format");
       }
+    }
 
-      String newId = ms + "-" + seq;
-      validateStreamID(newId, stream);
-      return newId;
+    if (id.equals(StreamId.MIN)) {
+      throw new IllegalArgumentException("The ID specified in XADD must be greater than 0-0");
     }
+    if (id.compareTo(lastId) <= 0) {
+      throw new IllegalArgumentException("The ID specified in XADD is equal or smaller than the target stream top item");
+    }
+    return id;
+  }
 
-    validateStreamID(entryID, stream);
-    return entryID;
+  private long parseMillis(String text) {
+    try {
+      return StreamId.parseBound(text, false).ms();
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException("invalid stream ID format");
+    }
   }
- }
+}
@@ -0,0 +1,99 @@
+package processors.streams;
+
+import db.DataStore;
+import db.Propagation;
+import models.ConsumerGroup;
+import models.DataStoreValue;
+import models.RespCommand;
+import models.StreamId;
+import models.StreamLog;
+import processors.CommandExecutor;
+import utility.RespWriter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * XAUTOCLAIM key group consumer min-idle-time start [COUNT count] [JUSTID]
+ * <p>
+ * Replies with the cursor to continue from (0-0 once the whole PEL was scanned), the claimed entries and the IDs
+ * that were pending but no longer exist in the stream.
+ */
+public class XAUTOCLAIMExecutor implements CommandExecutor {
+  private static final int DEFAULT_COUNT = 100;
+
+  @Override
+  public void execute(RespCommand cmd, RespWriter writer) {
+    List<String> args = cmd.getArgs();
+    if (args.size() < 5) {
+      writer.writeError("wrong number of arguments for 'xautoclaim' command");
+      return;
+    }
+    String key = args.get(0);
+    String groupName = args.get(1);
+    String consumer = args.get(2);
+
+    long minIdleMillis;
+    StreamId start;
+    int count = DEFAULT_COUNT;
+    boolean justId = false;
+    try {
+      minIdleMillis = Math.max(0, Long.parseLong(args.get(3)));
+      start = StreamId.parseBound(args.get(4), false);
+      for (int i = 5; i < args.size(); i++) {
+        String option = args.get(i).toUpperCase();
+        if (option.equals("JUSTID")) {
+          justId = true;
+        } else if (option.equals("COUNT") && i + 1 < args.size()) {
+          long requested = Long.parseLong(args.get(++i));
+          if (requested < 1 || requested > Integer.MAX_VALUE / 10) {
+            writer.writeError("COUNT must be > 0");
+            return;
+          }
+          count = (int) requested;
+        } else {
+          writer.writeError("syntax error");
+          return;
+        }
+      }
+    } catch (NumberFormatException e) {
+      writer.writeError("value is not an integer or out of range");
+      return;
+    } catch (IllegalArgumentException e) {
+      writer.writeError(e.getMessage());
+      return;
+    }
+
+    DataStoreValue value = DataStore.get(key);
+    StreamLog stream = value == null ? null : value.getAsStream();
+    if (value != null && stream == null) {
+      writer.writeError("WRONGTYPE Operation against a key holding the wrong kind of value");
+      return;
+    }
+    ConsumerGroup group = stream == null ? null : stream.getGroup(groupName);
+    if (group == null) {
+      writer.writeError("NOGROUP", "No such key '" + key + "' or consumer group '" + groupName + "'");
+      return;
+    }
+
+    List<StreamId> claimed = new ArrayList<>();
+    List<StreamId> deleted = new ArrayList<>();
+    StreamId cursor;
+    synchronized (group) {
+      cursor = group.autoClaim(stream, consumer, minIdleMillis, start, count, justId, claimed, deleted);
+      List<List<String>> propagated = XCLAIMExecutor.claimCommands(key, group, consumer, claimed, false);
+      if (!deleted.isEmpty()) {
+        // Without FORCE, claiming an ID gone from the stream drops it from the PEL
+        List<String> dropDeleted = new ArrayList<>(List.of("XCLAIM", key, groupName, consumer, "0"));
+        deleted.forEach(id -> dropDeleted.add(id.toString()));
+        propagated.add(dropDeleted);
+      }
+      Propagation.replaceCommand(propagated);
+    }
+    writer.writeArrayHeader(3);
+    writer.writeBulk(cursor.toString());
+    XCLAIMExecutor.writeClaimed(stream, claimed, justId, writer);
+    writer.writeArrayHeader(deleted.size());
+    deleted.forEach(id -> writer.writeBulk(id.toString()));
+  }
+}
@@ -0,0 +1,190 @@
+package processors.streams;
+
+import db.DataStore;
+import db.Propagation;
+import models.ConsumerGroup;
+import models.DataStoreValue;
+import models.PendingEntry;
+import models.RespCommand;
+import models.StreamEntry;
+import models.StreamId;
+import models.StreamLog;
+import processors.CommandExecutor;
+import utility.RespUtility;
+import utility.RespWriter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * XCLAIM key group consumer min-idle-time id [id ...] [IDLE ms] [TIME unix-ms] [RETRYCOUNT count] [FORCE] [JUSTID]
+ * [LASTID id]
+ */
+public class XCLAIMExecutor implements CommandExecutor {
+
+  @Override
+  public void execute(RespCommand cmd, RespWriter writer) {
+    List<String> args = cmd.getArgs();
+    if (args.size() < 5) {
+      writer.writeError("wrong number of arguments for 'xclaim' command");
+      return;
+    }
+    String key = args.get(0);
+    String groupName = args.get(1);
+    String consumer = args.get(2);
+
+    long now = System.currentTimeMillis();
+    long minIdleMillis;
+    long deliveryTimeMillis = now;
+    long retryCount = -1;
+    boolean force = false;
+    boolean justId = false;
+    StreamId lastId = null;
+    List<StreamId> ids = new ArrayList<>();
+    try {
+      minIdleMillis = Math.max(0, Long.parseLong(args.get(3)));
+      int index = 4;
+      // IDs come first, the first argument that is not an ID starts the options
+      for (; index < args.size(); index++) {
+        try {
+          ids.add(StreamId.parseBound(args.get(index), false));
+        } catch (IllegalArgumentException e) {
+          break;
+        }
+      }
+      if (ids.isEmpty()) {
+        writer.writeError("Invalid stream ID specified as stream command argument");
+        return;
+      }
+      for (; index < args.size(); index++) {
+        String option = args.get(index).toUpperCase();
+        boolean hasValue = index + 1 < args.size();
+        switch (option) {
+          case "FORCE" -> force = true;
+          case "JUSTID" -> justId = true;
+          case "IDLE" -> {
+            if (!hasValue) {
+              writer.writeError("syntax error");
+              return;
+            }
+            deliveryTimeMillis = now - Math.max(0, Long.parseLong(args.get(++index)));
+          }
+          case "TIME" -> {
+            if (!hasValue) {
+              writer.writeError("syntax error");
+              return;
+            }
+            deliveryTimeMillis = Long.parseLong(args.get(++index));
+          }
+          case "RETRYCOUNT" -> {
+            if (!hasValue) {
+              writer.writeError("syntax error");
+              return;
+            }
+            retryCount = Math.max(0, Long.parseLong(args.get(++index)));
+          }
+          case "LASTID" -> {
+            if (!hasValue) {
+              writer.writeError("syntax error");
+              return;
+            }
+            lastId = StreamId.parse(args.get(++index));
+          }
+          default -> {
+            writer.writeError("Unrecognized XCLAIM option '" + args.get(index) + "'");
+            return;
+          }
+        }
+      }
+    } catch (NumberFormatException e) {
+      writer.writeError("Invalid min-idle-time argument for XCLAIM");
+      return;
+    } catch (IllegalArgumentException e) {
+      writer.writeError(e.getMessage());
+      return;
+    }
+
+    DataStoreValue value = DataStore.get(key);
+    StreamLog stream = value == null ? null : value.getAsStream();
+    if (value != null && stream == null) {
+      writer.writeError("WRONGTYPE Operation against a key holding the wrong kind of value");
+      return;
+    }
+    ConsumerGroup group = stream == null ? null : stream.getGroup(groupName);
+    if (group == null) {
+      writer.writeError("NOGROUP", "No such key '" + key + "' or consumer group '" + groupName + "'");
+      return;
+    }
+
+    List<StreamId> claimed;
+    synchronized (group) {
+      if (lastId != null && lastId.compareTo(group.getLastDeliveredId()) > 0) {
+        group.setLastDeliveredId(lastId);
+      }
+      claimed = group.claim(stream, consumer, minIdleMillis, ids, deliveryTimeMillis, retryCount, force, justId);
+      Propagation.replaceCommand(claimCommands(key, group, consumer, claimed, lastId != null));
+    }
+    writeClaimed(stream, claimed, justId, writer);
+  }
+
+  /**
+   * Commands that give the claimed entries the owner, delivery time and delivery count they have now, independent
+   * of idle times and of the clock when replayed. Entries with the same delivery time and count share one XCLAIM.
+   * Shared with XAUTOCLAIM and XREADGROUP, call while holding the group's lock.
+   *
+   * @param withLastId also carry over the group's last delivered ID
+   */
+  static List<List<String>> claimCommands(String key, ConsumerGroup group, String consumer, List<StreamId> claimed,
+                                          boolean withLastId) {
+    List<List<String>> commands = new ArrayList<>();
+    List<String> command = null;
+    PendingEntry previous = null;
+    for (StreamId id : claimed) {
+      PendingEntry pendingEntry = group.getPending(id);
+      if (previous == null || pendingEntry.getDeliveryTimeMillis() != previous.getDeliveryTimeMillis()
+          || pendingEntry.getDeliveryCount() != previous.getDeliveryCount()) {
+        if (command != null) {
+          commands.add(finishClaim(command, previous));
+        }
+        command = new ArrayList<>(List.of("XCLAIM", key, group.getName(), consumer, "0"));
+        previous = pendingEntry;
+      }
+      command.add(id.toString());
+    }
+    if (command != null) {
+      commands.add(finishClaim(command, previous));
+    }
+    if (withLastId) {
+      String lastId = group.getLastDeliveredId().toString();
+      if (commands.isEmpty()) {
+        commands.add(List.of("XGROUP", "SETID", key, group.getName(), lastId));
+      } else {
+        commands.get(commands.size() - 1).addAll(List.of("LASTID", lastId));
+      }
+    }
+    return commands;
+  }
+
+  private static List<String> finishClaim(List<String> command, PendingEntry claimed) {
+    command.addAll(List.of("TIME", String.valueOf(claimed.getDeliveryTimeMillis()),
+        "RETRYCOUNT", String.valueOf(claimed.getDeliveryCount()), "FORCE", "JUSTID"));
+    return command;
+  }
+
+  /**
+   * Writes the claimed entries, or only their IDs for JUSTID. Shared with XAUTOCLAIM.
+   */
+  static void writeClaimed(StreamLog stream, List<StreamId> claimed, boolean justId, RespWriter writer) {
+    if (justId) {
+      writer.writeArrayHeader(claimed.size());
+      claimed.forEach(id -> writer.writeBulk(id.toString()));
+      return;
+    }
+    List<StreamEntry> entries = new ArrayList<>(claimed.size());
+    for (StreamId id : claimed) {
+      StreamEntry entry = stream.get(id);
+      entries.add(entry != null ? entry : new StreamEntry(id, null, null));
+    }
+    RespUtility.writeStreamEntries(entries, writer);
+  }
+}
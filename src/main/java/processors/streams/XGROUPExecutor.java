@@ -0,0 +1,117 @@
+package processors.streams;
+
+import db.DataStore;
+import models.ConsumerGroup;
+import models.DataStoreValue;
+import models.RespCommand;
+import models.StreamId;
+import models.StreamLog;
+import processors.CommandExecutor;
+import utility.RespWriter;
+
+import java.util.List;
+
+/**
+ * Handles XGROUP CREATE, SETID, DESTROY, CREATECONSUMER and DELCONSUMER.
+ */
+public class XGROUPExecutor implements CommandExecutor {
+
+  @Override
+  public void execute(RespCommand cmd, RespWriter writer) {
+    List<String> args = cmd.getArgs();
+    if (args.size() < 3) {
+      writer.writeError("wrong number of arguments for 'xgroup' command");
+      return;
+    }
+    String subcommand = args.get(0).toUpperCase();
+    String key = args.get(1);
+    String groupName = args.get(2);
+
+    DataStoreValue value = DataStore.get(key);
+    StreamLog stream = value == null ? null : value.getAsStream();
+    if (value != null && stream == null) {
+      writer.writeError("WRONGTYPE Operation against a key holding the wrong kind of value");
+      return;
+    }
+
+    if (subcommand.equals("CREATE")) {
+      processCreate(args, key, groupName, stream, writer);
+      return;
+    }
+    if (stream == null) {
+      writer.writeError("The XGROUP subcommand requires the key to exist");
+      return;
+    }
+    ConsumerGroup group = stream.getGroup(groupName);
+    if (group == null && !subcommand.equals("DESTROY")) {
+      writer.writeError("NOGROUP", "No such consumer group '" + groupName + "' for key name '" + key + "'");
+      return;
+    }
+
+    switch (subcommand) {
+      case "SETID" -> {
+        if (args.size() < 4) {
+          writer.writeError("wrong number of arguments for 'xgroup|setid' command");
+          return;
+        }
+        try {
+          group.setLastDeliveredId(parseGroupId(args.get(3), stream));
+        } catch (IllegalArgumentException e) {
+          writer.writeError(e.getMessage());
+          return;
+        }
+        writer.writeSimple("OK");
+      }
+      case "DESTROY" -> writer.writeInteger(stream.destroyGroup(groupName) ? 1 : 0);
+      case "CREATECONSUMER" -> {
+        if (args.size() != 4) {
+          writer.writeError("wrong number of arguments for 'xgroup|createconsumer' command");
+          return;
+        }
+        writer.writeInteger(group.createConsumer(args.get(3)) ? 1 : 0);
+      }
+      case "DELCONSUMER" -> {
+        if (args.size() != 4) {
+          writer.writeError("wrong number of arguments for 'xgroup|delconsumer' command");
+          return;
+        }
+        writer.writeInteger(Math.max(0, group.deleteConsumer(args.get(3))));
+      }
+      default -> writer.writeError("unknown subcommand '" + args.get(0) + "'");
+    }
+  }
+
+  private void processCreate(List<String> args, String key, String groupName, StreamLog stream, RespWriter writer) {
+    if (args.size() < 4) {
+      writer.writeError("wrong number of arguments for 'xgroup|create' command");
+      return;
+    }
+    boolean mkStream = args.subList(4, args.size()).stream().anyMatch("MKSTREAM"::equalsIgnoreCase);
+    if (stream == null) {
+      if (!mkStream) {
+        writer.writeError("The XGROUP subcommand requires the key to exist. "
+            + "Note that for CREATE you may want to use the MKSTREAM option to create an empty stream automatically.");
+        return;
+      }
+      stream = new StreamLog();
+      DataStore.put(key, new DataStoreValue(stream));
+    }
+    StreamId lastDeliveredId;
+    try {
+      lastDeliveredId = parseGroupId(args.get(3), stream);
+    } catch (IllegalArgumentException e) {
+      writer.writeError(e.getMessage());
+      return;
+    }
+    if (!stream.createGroup(groupName, lastDeliveredId)) {
+      writer.writeError("BUSYGROUP", "Consumer Group name already exists");
+      return;
+    }
+    writer.writeSimple("OK");
+  }
+
+  private StreamId parseGroupId(String id, StreamLog stream) {
+    // $ makes the group start with entries added from now on, a bare ms like the common 0 means ms-0
+    return id.equals("$") ? stream.getLastId() : StreamId.parseBound(id, false);
+  }
+}
@@ -0,0 +1,115 @@
+package processors.streams;
+
+import db.DataStore;
+import models.ConsumerGroup;
+import models.DataStoreValue;
+import models.PendingEntry;
+import models.RespCommand;
+import models.StreamId;
+import models.StreamLog;
+import processors.CommandExecutor;
+import utility.RespWriter;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * XPENDING key group [[IDLE min-idle-time] start end count [consumer]]
+ * <p>
+ * Without a range it replies with a summary of the group's pending entries, with one it lists them.
+ */
+public class XPENDINGExecutor implements CommandExecutor {
+
+  @Override
+  public void execute(RespCommand cmd, RespWriter writer) {
+    List<String> args = cmd.getArgs();
+    if (args.size() < 2) {
+      writer.writeError("wrong number of arguments for 'xpending' command");
+      return;
+    }
+    String key = args.get(0);
+    String groupName = args.get(1);
+    DataStoreValue value = DataStore.get(key);
+    StreamLog stream = value == null ? null : value.getAsStream();
+    if (value != null && stream == null) {
+      writer.writeError("WRONGTYPE Operation against a key holding the wrong kind of value");
+      return;
+    }
+    ConsumerGroup group = stream == null ? null : stream.getGroup(groupName);
+    if (group == null) {
+      writer.writeError("NOGROUP", "No such key '" + key + "' or consumer group '" + groupName + "'");
+      return;
+    }
+
+    if (args.size() == 2) {
+      writeSummary(group, writer);
+      return;
+    }
+
+    int index = 2;
+    long minIdleMillis = 0;
+    try {
+      if (args.get(index).equalsIgnoreCase("IDLE")) {
+        if (args.size() < 4) {
+          writer.writeError("syntax error");
+          return;
+        }
+        minIdleMillis = Long.parseLong(args.get(index + 1));
+        index += 2;
+      }
+      if (args.size() - index != 3 && args.size() - index != 4) {
+        writer.writeError("syntax error");
+        return;
+      }
+      StreamId start = StreamId.parseBound(args.get(index), false);
+      StreamId end = StreamId.parseBound(args.get(index + 1), true);
+      long count = Long.parseLong(args.get(index + 2));
+      String consumer = args.size() - index == 4 ? args.get(index + 3) : null;
+
+      List<PendingEntry> entries = count <= 0 ? List.of()
+          : group.getPendingRange(start, end, (int) Math.min(count, Integer.MAX_VALUE), consumer, minIdleMillis);
+      long now = System.currentTimeMillis();
+      writer.writeArrayHeader(entries.size());
+      for (PendingEntry entry : entries) {
+        writer.writeArrayHeader(4);
+        writer.writeBulk(entry.getId().toString());
+        writer.writeBulk(entry.getConsumer());
+        writer.writeInteger(entry.getIdleMillis(now));
+        writer.writeInteger(entry.getDeliveryCount());
+      }
+    } catch (NumberFormatException e) {
+      writer.writeError("value is not an integer or out of range");
+    } catch (IllegalArgumentException e) {
+      writer.writeError(e.getMessage());
+    }
+  }
+
+  private void writeSummary(ConsumerGroup group, RespWriter writer) {
+    long pendingCount;
+    StreamId first;
+    StreamId last;
+    Map<String, Long> perConsumer;
+    synchronized (group) {
+      pendingCount = group.getPendingCount();
+      first = group.getFirstPendingId();
+      last = group.getLastPendingId();
+      perConsumer = group.getPendingPerConsumer();
+    }
+    writer.writeArrayHeader(4);
+    writer.writeInteger(pendingCount);
+    if (pendingCount == 0) {
+      writer.writeNull();
+      writer.writeNull();
+      writer.writeNullArray();
+      return;
+    }
+    writer.writeBulk(first.toString());
+    writer.writeBulk(last.toString());
+    writer.writeArrayHeader(perConsumer.size());
+    perConsumer.forEach((consumer, count) -> {
+      writer.writeArrayHeader(2);
+      writer.writeBulk(consumer);
+      writer.writeBulk(String.valueOf(count));
+    });
+  }
+}
@@ -3,36 +3,43 @@ package processors.streams;
 import db.DataStore;
 import models.DataStoreValue;
 import models.RespCommand;
+import models.StreamId;
+import models.StreamLog;
 import processors.CommandExecutor;
 import utility.RespUtility;
-
-import java.util.Collections;
-import java.util.Map;
-import java.util.concurrent.ConcurrentNavigableMap;
+import utility.RespWriter;
 
 public class XRANGEExecutor implements CommandExecutor {
 
   @Override
-  public String execute(RespCommand cmd) {
+  public void execute(RespCommand cmd, RespWriter writer) {
+    StreamId start;
+    StreamId end;
+    int count;
     try {
       validateCommand(cmd);
+      start = StreamId.parseBound(cmd.getArgs().get(1), false);
+      end = StreamId.parseBound(cmd.getArgs().get(2), true);
+      count = cmd.getArgsSize() == 5 ? Integer.parseInt(cmd.getArgs().get(4)) : 0;
     } catch (IllegalArgumentException e) {
-      return RespUtility.buildErrorResponse(e.getMessage());
+      writer.writeError(e.getMessage());
+      return;
     }
-    String key = cmd.getKey();
-    DataStoreValue value = DataStore.get(key);
-    if (value == null || value.getAsStream().isEmpty()) {
-      return RespUtility.serializeResponse(Collections.emptyList());
+    if (start.compareTo(end) > 0) {
+      writer.writeError("Start greater than end");
+      return;
     }
-
-    ConcurrentNavigableMap<String, Map<String, String>> existingData = value.getAsStream();
-    String start = cmd.getArgs().get(1).equals("-") ? existingData.firstKey() : cmd.getArgs().get(1);
-    String end = cmd.getArgs().get(2).equals("+") ? existingData.lastKey() : cmd.getArgs().get(2);
-    ConcurrentNavigableMap<String, Map<String, String>> output = existingData.subMap(start, true, end, true);
-    if(output.isEmpty()) {
-      return RespUtility.serializeResponse(Collections.emptyList());
+    DataStoreValue value = DataStore.get(cmd.getKey());
+    if (value == null) {
+      writer.writeArrayHeader(0);
+      return;
     }
-    return RespUtility.serializeStreamResponse(output);
+    StreamLog stream = value.getAsStream();
+    if (stream == null) {
+      writer.writeError("WRONGTYPE Operation against a key holding the wrong kind of value");
+      return;
+    }
+    RespUtility.writeStreamEntries(stream.range(start, end, count), writer);
   }
 
   private void validateCommand(RespCommand cmd) {
@@ -40,25 +47,12 @@ public class XRANGEExecutor implements CommandExecutor {
       throw new IllegalArgumentException("Invalid Args - Missing Key");
     }
 
-    if(cmd.getArgsSize() != 3) {
+    if(cmd.getArgsSize() != 3 && cmd.getArgsSize() != 5) {
       throw new IllegalArgumentException("Invalid Args: Missing Start or End");
     }
 
-    String start = cmd.getArgs().get(1);
-    String end = cmd.getArgs().get(2);
-
-    if(start.equals("-") || end.equals("+")) {
-      return;
-    }
-
-    String[] startRange = start.split("-");
-    String[] endRange = end.split("-");
-    if(Long.parseLong(startRange[0]) == Long.parseLong(endRange[0])) {
-      if(Long.parseLong(startRange[1]) > Long.parseLong(endRange[1])) {
-        throw new IllegalArgumentException("Start greater than end");
-      }
-    } else if (Long.parseLong(startRange[0]) > Long.parseLong(endRange[0])) {
-      throw new IllegalArgumentException("Start greater than end");
+    if(cmd.getArgsSize() == 5 && !cmd.getArgs().get(3).equalsIgnoreCase("COUNT")) {
+      throw new IllegalArgumentException("syntax error");
     }
   }
 }
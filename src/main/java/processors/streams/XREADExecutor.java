@@ -3,75 +3,112 @@ package processors.streams;
 import db.DataStore;
 import models.DataStoreValue;
 import models.RespCommand;
+import models.StreamEntry;
+import models.StreamId;
+import models.StreamLog;
 import processors.CommandExecutor;
 import utility.RespUtility;
+import utility.RespWriter;
 
-import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentNavigableMap;
 
 public class XREADExecutor implements CommandExecutor {
 
   @Override
-  public String execute(RespCommand cmd) {
+  public void execute(RespCommand cmd, RespWriter writer) {
     List<String> args = cmd.getArgs();
-    int startOfStreams = getStartOfStreams(args);
+    int startOfStreams = StreamBlocking.indexOfStreams(args, 0);
     if (startOfStreams == -1 || startOfStreams == args.size() - 1) {
-      return RespUtility.buildErrorResponse("ERR syntax error");
+      writer.writeError("ERR syntax error");
+      return;
     }
 
     List<String> streamsAndIDs = args.subList(startOfStreams + 1, args.size());
     if (streamsAndIDs.size() % 2 != 0) {
-      return RespUtility.buildErrorResponse("ERR wrong number of arguments for STREAMS");
+      writer.writeError("ERR wrong number of arguments for STREAMS");
+      return;
+    }
+
+    int count = 0;
+    long blockMillis = -1;
+    try {
+      for (int i = 0; i < startOfStreams; i += 2) {
+        String option = args.get(i).toUpperCase();
+        if (i + 1 >= startOfStreams || (!option.equals("COUNT") && !option.equals("BLOCK"))) {
+          writer.writeError("syntax error");
+          return;
+        }
+        long value = Long.parseLong(args.get(i + 1));
+        if (value < 0) {
+          writer.writeError("timeout is negative");
+          return;
+        }
+        if (option.equals("COUNT")) {
+          count = (int) Math.min(value, Integer.MAX_VALUE);
+        } else {
+          blockMillis = value;
+        }
+      }
+    } catch (NumberFormatException e) {
+      writer.writeError("value is not an integer or out of range");
+      return;
     }
 
     List<String> streamKeys = streamsAndIDs.subList(0, streamsAndIDs.size() / 2);
     List<String> ids = streamsAndIDs.subList(streamsAndIDs.size() / 2, streamsAndIDs.size());
-
-    List<String> responses = new ArrayList<>();
-
+    StreamId[] lastSeen = new StreamId[streamKeys.size()];
     for (int i = 0; i < streamKeys.size(); i++) {
-      String streamKey = streamKeys.get(i);
-      String streamId = ids.get(i);
-
-      DataStoreValue value = DataStore.get(streamKey);
-      if (value == null) {
-        continue;
+      DataStoreValue value = DataStore.get(streamKeys.get(i));
+      if (value != null && value.getAsStream() == null) {
+        writer.writeError("WRONGTYPE Operation against a key holding the wrong kind of value");
+        return;
       }
-
-      ConcurrentNavigableMap<String, Map<String, String>> streamData = value.getAsStream();
-      ConcurrentNavigableMap<String, Map<String, String>> filtered = streamData.tailMap(streamId, false);
-
-      if (!filtered.isEmpty()) {
-        responses.add(encodeResponse(filtered, streamKey));
+      try {
+        // $ only returns entries added after the command arrived
+        lastSeen[i] = ids.get(i).equals("$")
+            ? (value == null ? StreamId.MIN : value.getAsStream().getLastId())
+            : StreamId.parseBound(ids.get(i), false);
+      } catch (IllegalArgumentException e) {
+        writer.writeError(e.getMessage());
+        return;
       }
     }
 
-    if (responses.isEmpty()) {
-      return "*-1\r\n";
+    Map<String, List<StreamEntry>> responses = readNewEntries(streamKeys, lastSeen, count);
+    if (responses.isEmpty() && blockMillis >= 0) {
+      int maxCount = count;
+      responses = StreamBlocking.await(streamKeys, blockMillis, () -> readNewEntries(streamKeys, lastSeen, maxCount));
     }
-    
-    StringBuilder result = new StringBuilder();
-    result.append("*").append(responses.size()).append("\r\n");
-    for (String r : responses) {
-      result.append(r);
+
+    if (responses.isEmpty()) {
+      writer.writeNullArray();
+      return;
     }
-    return result.toString();
+
+    writer.writeArrayHeader(responses.size());
+    responses.forEach((streamKey, entries) -> {
+      writer.writeArrayHeader(2);
+      writer.writeBulk(streamKey);
+      RespUtility.writeStreamEntries(entries, writer);
+    });
   }
 
-  private int getStartOfStreams(List<String> args) {
-    for (int i = 0; i < args.size(); i++) {
-      if ("STREAMS".equalsIgnoreCase(args.get(i))) {
-        return i;
+  private Map<String, List<StreamEntry>> readNewEntries(List<String> streamKeys, StreamId[] lastSeen, int count) {
+    Map<String, List<StreamEntry>> responses = new LinkedHashMap<>();
+    for (int i = 0; i < streamKeys.size(); i++) {
+      String streamKey = streamKeys.get(i);
+      DataStoreValue value = DataStore.get(streamKey);
+      if (value == null || value.getAsStream() == null) {
+        continue;
+      }
+
+      List<StreamEntry> filtered = value.getAsStream().range(lastSeen[i].next(), StreamId.MAX, count);
+      if (!filtered.isEmpty()) {
+        responses.put(streamKey, filtered);
       }
     }
-    return -1;
-  }
-
-  private String encodeResponse(ConcurrentNavigableMap<String, Map<String, String>> output, String key) {
-    return "*2\r\n" +
-        RespUtility.serializeResponse(key) +
-        RespUtility.serializeStreamResponse(output);
+    return responses;
   }
 }
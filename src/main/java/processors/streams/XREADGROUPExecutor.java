@@ -0,0 +1,173 @@
+package processors.streams;
+
+import db.DataStore;
+import db.Propagation;
+import models.ConsumerGroup;
+import models.DataStoreValue;
+import models.RespCommand;
+import models.StreamEntry;
+import models.StreamId;
+import models.StreamLog;
+import processors.CommandExecutor;
+import utility.RespUtility;
+import utility.RespWriter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * XREADGROUP GROUP group consumer [COUNT count] [BLOCK ms] [NOACK] STREAMS key [key ...] id [id ...]
+ * <p>
+ * The > ID delivers entries never delivered to the group and adds them to the consumer's pending entries, any
+ * other ID re-reads the consumer's own pending entries after it. Only > reads block.
+ */
+public class XREADGROUPExecutor implements CommandExecutor {
+
+  @Override
+  public void execute(RespCommand cmd, RespWriter writer) {
+    List<String> args = cmd.getArgs();
+    if (args.size() < 6 || !args.get(0).equalsIgnoreCase("GROUP")) {
+      writer.writeError("syntax error");
+      return;
+    }
+    String groupName = args.get(1);
+    String consumer = args.get(2);
+    int startOfStreams = StreamBlocking.indexOfStreams(args, 3);
+    if (startOfStreams == -1 || (args.size() - startOfStreams - 1) % 2 != 0 || startOfStreams == args.size() - 1) {
+      writer.writeError("Unbalanced 'xreadgroup' list of streams: for each stream key an ID or '>' must be specified.");
+      return;
+    }
+
+    int count = 0;
+    long blockMillis = -1;
+    boolean noAck = false;
+    try {
+      for (int i = 3; i < startOfStreams; i++) {
+        String option = args.get(i).toUpperCase();
+        if (option.equals("NOACK")) {
+          noAck = true;
+        } else if (option.equals("COUNT") && i + 1 < startOfStreams) {
+          count = (int) Math.min(Math.max(0, Long.parseLong(args.get(++i))), Integer.MAX_VALUE);
+        } else if (option.equals("BLOCK") && i + 1 < startOfStreams) {
+          blockMillis = Long.parseLong(args.get(++i));
+          if (blockMillis < 0) {
+            writer.writeError("timeout is negative");
+            return;
+          }
+        } else {
+          writer.writeError("syntax error");
+          return;
+        }
+      }
+    } catch (NumberFormatException e) {
+      writer.writeError("value is not an integer or out of range");
+      return;
+    }
+
+    int noOfStreams = (args.size() - startOfStreams - 1) / 2;
+    List<String> streamKeys = args.subList(startOfStreams + 1, startOfStreams + 1 + noOfStreams);
+    List<String> ids = args.subList(startOfStreams + 1 + noOfStreams, args.size());
+    StreamId[] historyIds = new StreamId[noOfStreams];
+    for (int i = 0; i < noOfStreams; i++) {
+      String key = streamKeys.get(i);
+      DataStoreValue value = DataStore.get(key);
+      StreamLog stream = value == null ? null : value.getAsStream();
+      if (value != null && stream == null) {
+        writer.writeError("WRONGTYPE Operation against a key holding the wrong kind of value");
+        return;
+      }
+      if (stream == null || stream.getGroup(groupName) == null) {
+        writer.writeError("NOGROUP", "No such key '" + key + "' or consumer group '" + groupName
+            + "' in XREADGROUP with GROUP option");
+        return;
+      }
+      try {
+        // null marks the > ID
+        historyIds[i] = ids.get(i).equals(">") ? null : StreamId.parseBound(ids.get(i), false);
+      } catch (IllegalArgumentException e) {
+        writer.writeError(e.getMessage());
+        return;
+      }
+    }
+
+    int maxCount = count;
+    boolean isNoAck = noAck;
+    Map<String, List<StreamEntry>> responses =
+        read(streamKeys, historyIds, groupName, consumer, maxCount, isNoAck);
+    boolean readsHistory = Arrays.stream(historyIds).anyMatch(id -> id != null);
+    if (responses.isEmpty() && blockMillis >= 0 && !readsHistory) {
+      responses = StreamBlocking.await(streamKeys, blockMillis,
+          () -> read(streamKeys, historyIds, groupName, consumer, maxCount, isNoAck));
+    }
+
+    if (responses.isEmpty()) {
+      writer.writeNullArray();
+      return;
+    }
+    writer.writeArrayHeader(responses.size());
+    responses.forEach((streamKey, entries) -> {
+      writer.writeArrayHeader(2);
+      writer.writeBulk(streamKey);
+      RespUtility.writeStreamEntries(entries, writer);
+    });
+  }
+
+  /**
+   * Reads every stream once, in a write section of its own since a read changes the groups. A blocked client calls
+   * it again on each wake up.
+   */
+  private Map<String, List<StreamEntry>> read(List<String> streamKeys, StreamId[] historyIds, String groupName,
+                                              String consumer, int count, boolean noAck) {
+    Map<String, List<StreamEntry>> responses = new LinkedHashMap<>();
+    Propagation.begin(streamKeys, null);
+    try {
+      for (int i = 0; i < streamKeys.size(); i++) {
+        String key = streamKeys.get(i);
+        DataStoreValue value = DataStore.get(key);
+        StreamLog stream = value == null ? null : value.getAsStream();
+        ConsumerGroup group = stream == null ? null : stream.getGroup(groupName);
+        if (group == null) {
+          continue;
+        }
+        synchronized (group) {
+          if (group.createConsumer(consumer)) {
+            Propagation.propagate(List.of("XGROUP", "CREATECONSUMER", key, groupName, consumer));
+          }
+          if (historyIds[i] == null) {
+            List<StreamEntry> entries = group.readNew(stream, consumer, count, noAck);
+            if (!entries.isEmpty()) {
+              responses.put(key, entries);
+              propagateDelivery(key, group, consumer, entries, true, noAck);
+            }
+          } else {
+            // History reads always report the stream, even without pending entries
+            List<StreamEntry> entries = group.readHistory(stream, consumer, historyIds[i], count);
+            responses.put(key, entries);
+            propagateDelivery(key, group, consumer, entries, false, noAck);
+          }
+        }
+      }
+    } finally {
+      Propagation.end(true);
+    }
+    return responses;
+  }
+
+  /**
+   * Propagates a delivery as the claims it made, new entries also move the group's last delivered ID.
+   */
+  private void propagateDelivery(String key, ConsumerGroup group, String consumer, List<StreamEntry> entries,
+                                 boolean isNew, boolean noAck) {
+    if (isNew && noAck) {
+      // Nothing became pending
+      Propagation.propagate(List.of("XGROUP", "SETID", key, group.getName(), group.getLastDeliveredId().toString()));
+      return;
+    }
+    List<StreamId> ids = new ArrayList<>(entries.size());
+    entries.forEach(entry -> ids.add(entry.id()));
+    XCLAIMExecutor.claimCommands(key, group, consumer, ids, isNew).forEach(Propagation::propagate);
+  }
+}
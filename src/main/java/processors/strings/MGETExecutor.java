@@ -0,0 +1,26 @@
+package processors.strings;
+
+import db.DataStore;
+import models.DataStoreValue;
+import models.RespCommand;
+import processors.CommandExecutor;
+import utility.RespWriter;
+
+/**
+ * MGET key [key ...], nil for keys that are missing or do not hold a string.
+ */
+public class MGETExecutor implements CommandExecutor {
+
+  @Override
+  public void execute(RespCommand cmd, RespWriter writer) {
+    if (cmd.areArgsEmpty()) {
+      writer.writeError("wrong number of arguments for 'mget' command");
+      return;
+    }
+    writer.writeArrayHeader(cmd.getArgsSize());
+    for (String key : cmd.getArgs()) {
+      DataStoreValue value = DataStore.get(key);
+      writer.writeBulk(value == null ? null : value.getAsString());
+    }
+  }
+}
@@ -0,0 +1,30 @@
+package processors.strings;
+
+import db.DataStore;
+import models.DataStoreValue;
+import models.RespCommand;
+import processors.CommandExecutor;
+import utility.RespWriter;
+
+import java.util.List;
+
+/**
+ * MSET key value [key value ...]
+ * <p>
+ * Runs in one write section over all its keys, so every other write to them happens before or after all of them.
+ */
+public class MSETExecutor implements CommandExecutor {
+
+  @Override
+  public void execute(RespCommand cmd, RespWriter writer) {
+    List<String> args = cmd.getArgs();
+    if (args.isEmpty() || args.size() % 2 != 0) {
+      writer.writeError("wrong number of arguments for 'mset' command");
+      return;
+    }
+    for (int i = 0; i < args.size(); i += 2) {
+      DataStore.put(args.get(i), new DataStoreValue(args.get(i + 1)));
+    }
+    writer.writeSimple("OK");
+  }
+}
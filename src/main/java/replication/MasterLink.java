@@ -0,0 +1,244 @@
+package replication;
+
+import db.DataStore;
+import functions.Functions;
+import models.RespCommand;
+import persistence.AppendOnlyFile;
+import persistence.SnapshotManager;
+import processors.CommandProcessor;
+import server.ServerConfig;
+import utility.RespParser;
+import utility.RespReplyReader;
+import utility.RespWriter;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Replica side of replication: keeps a connection to the master, syncs over it and applies the stream.
+ * <p>
+ * After a lost connection it reconnects and asks to continue from the offset it reached, so a short outage costs
+ * only the missed part of the stream. The processed offset is acknowledged every second and whenever the master asks
+ * with REPLCONF GETACK.
+ */
+final class MasterLink implements Runnable {
+  private static final long RECONNECT_DELAY_MILLIS = 1000;
+  private static final int ACK_INTERVAL_MILLIS = 1000;
+  private static final int READ_CHUNK_SIZE = 16 * 1024;
+
+  private final String host;
+  private final int port;
+  private volatile String replid = "?";
+  // Offset of the stream processed so far, -1 before the first sync
+  private volatile long offset = -1;
+  private volatile boolean isUp = false;
+
+  MasterLink(String host, int port) {
+    this.host = host;
+    this.port = port;
+  }
+
+  String getHost() {
+    return host;
+  }
+
+  int getPort() {
+    return port;
+  }
+
+  String getReplid() {
+    return replid;
+  }
+
+  long getOffset() {
+    return offset;
+  }
+
+  boolean isUp() {
+    return isUp;
+  }
+
+  @Override
+  public void run() {
+    while (true) {
+      try (Socket socket = new Socket(host, port)) {
+        socket.setTcpNoDelay(true);
+        sync(socket);
+      } catch (IOException e) {
+        System.out.println("Connection with master " + host + ":" + port + " lost: " + e.getMessage());
+      } finally {
+        isUp = false;
+      }
+      try {
+        Thread.sleep(RECONNECT_DELAY_MILLIS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+    }
+  }
+
+  private void sync(Socket socket) throws IOException {
+    InputStream input = new BufferedInputStream(socket.getInputStream());
+    OutputStream output = socket.getOutputStream();
+    request(input, output, "+PONG", "PING");
+    request(input, output, "+OK", "REPLCONF", "listening-port", ServerConfig.get("port"));
+    request(input, output, "+OK", "REPLCONF", "capa", "psync2");
+    send(output, "PSYNC", replid, String.valueOf(offset < 0 ? -1 : offset + 1));
+    String reply = RespReplyReader.readLine(input);
+    if (reply.startsWith("+FULLRESYNC ")) {
+      String[] parts = reply.split(" ");
+      long keys = loadFullCopy(input);
+      replid = parts[1];
+      offset = Long.parseLong(parts[2]);
+      System.out.println("MASTER <-> REPLICA sync: loaded " + keys + " keys, continuing from offset " + offset);
+      if (AppendOnlyFile.isEnabled()) {
+        // The AOF describes the old keyspace, start it over from the new one
+        AppendOnlyFile.backgroundRewrite();
+      }
+    } else if (reply.startsWith("+CONTINUE")) {
+      String[] parts = reply.split(" ");
+      if (parts.length > 1) {
+        replid = parts[1];
+      }
+      System.out.println("MASTER <-> REPLICA sync: partial resynchronization from offset " + offset);
+    } else {
+      throw new IOException("Unexpected reply to PSYNC: " + reply);
+    }
+    isUp = true;
+    socket.setSoTimeout(ACK_INTERVAL_MILLIS);
+    applyStream(input, output);
+  }
+
+  private long loadFullCopy(InputStream input) throws IOException {
+    String header = RespReplyReader.readLine(input);
+    if (!header.startsWith("$")) {
+      throw new IOException("Unexpected snapshot header: " + header);
+    }
+    long length = Long.parseLong(header.substring(1));
+    DataStore.clear();
+    Functions.flush();
+    // Loaded as it arrives rather than buffered whole, the snapshot may be larger than the heap could hold twice
+    SnapshotStream snapshot = new SnapshotStream(input, length);
+    long keys = SnapshotManager.load(snapshot);
+    snapshot.skipRest();
+    return keys;
+  }
+
+  /**
+   * The snapshot's bytes of the connection, ending where the replication stream starts.
+   */
+  private static final class SnapshotStream extends InputStream {
+    private final InputStream input;
+    private long remaining;
+
+    SnapshotStream(InputStream input, long length) {
+      this.input = input;
+      this.remaining = length;
+    }
+
+    @Override
+    public int read() throws IOException {
+      byte[] one = new byte[1];
+      return read(one, 0, 1) == -1 ? -1 : one[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+      if (remaining == 0) {
+        return -1;
+      }
+      int read = input.read(buffer, offset, (int) Math.min(length, remaining));
+      if (read == -1) {
+        throw new EOFException("Connection closed during the snapshot transfer");
+      }
+      remaining -= read;
+      return read;
+    }
+
+    /**
+     * Drops what the loader left of the snapshot, nothing unless something follows the RDB's end.
+     */
+    void skipRest() throws IOException {
+      input.skipNBytes(remaining);
+      remaining = 0;
+    }
+  }
+
+  /**
+   * Applies the commands of the stream as they arrive, until the connection breaks.
+   */
+  private void applyStream(InputStream input, OutputStream output) throws IOException {
+    RespParser parser = new RespParser();
+    CommandProcessor processor = new CommandProcessor(true);
+    RespWriter reply = new RespWriter();
+    ByteBuffer buffer = ByteBuffer.allocate(READ_CHUNK_SIZE);
+    // Bytes of the command being parsed, counted once it is applied
+    long parsed = 0;
+    long lastAck = 0;
+    while (true) {
+      long now = System.currentTimeMillis();
+      if (now - lastAck >= ACK_INTERVAL_MILLIS) {
+        acknowledge(output);
+        lastAck = now;
+      }
+      buffer = parser.ensureWritable(buffer);
+      int read;
+      try {
+        read = input.read(buffer.array(), buffer.position(), buffer.remaining());
+      } catch (SocketTimeoutException e) {
+        continue;
+      }
+      if (read == -1) {
+        throw new EOFException("Connection closed by master");
+      }
+      buffer.position(buffer.position() + read);
+      buffer.flip();
+      while (true) {
+        int before = buffer.position();
+        RespCommand cmd = parser.parse(buffer);
+        parsed += buffer.position() - before;
+        if (cmd == null) {
+          break;
+        }
+        if (cmd.getName().equals("REPLCONF")) {
+          // GETACK, answered with the offset before the request itself
+          acknowledge(output);
+        } else if (!cmd.getName().equals("PING")) {
+          processor.processCommand(cmd, reply);
+          reply.reset();
+        }
+        offset += parsed;
+        parsed = 0;
+      }
+      buffer.compact();
+    }
+  }
+
+  private void acknowledge(OutputStream output) throws IOException {
+    send(output, "REPLCONF", "ACK", String.valueOf(offset));
+  }
+
+  private static void request(InputStream input, OutputStream output, String expected, String... command)
+      throws IOException {
+    send(output, command);
+    String reply = RespReplyReader.readLine(input);
+    if (!reply.startsWith(expected)) {
+      throw new IOException("Unexpected reply to " + command[0] + ": " + reply);
+    }
+  }
+
+  private static void send(OutputStream output, String... command) throws IOException {
+    RespWriter writer = new RespWriter(64);
+    writer.writeBulkArray(List.of(command));
+    writer.writeTo(output);
+    output.flush();
+  }
+}
@@ -0,0 +1,99 @@
+package replication;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Master side of the connection to one replica.
+ * <p>
+ * Writers only copy the stream into the pending buffer, a dedicated sender thread does the socket writes, so a slow
+ * replica never holds up clients. A replica that falls further behind than the output buffer limit is dropped, it
+ * resyncs when it reconnects.
+ */
+final class ReplicaLink {
+  private final Socket socket;
+  private final long outputBufferLimit;
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition hasOutput = lock.newCondition();
+  // Guarded by lock
+  private ByteArrayOutputStream pending = new ByteArrayOutputStream();
+  private ByteArrayOutputStream sending = new ByteArrayOutputStream();
+  private boolean isClosed = false;
+  // Offset the replica reported it processed up to, guarded by ReplicationManager's lock
+  long ackOffset;
+
+  ReplicaLink(Socket socket, long outputBufferLimit) {
+    this.socket = socket;
+    this.outputBufferLimit = outputBufferLimit;
+  }
+
+  Socket getSocket() {
+    return socket;
+  }
+
+  void enqueue(byte[] bytes, int offset, int count) {
+    lock.lock();
+    try {
+      if (isClosed) {
+        return;
+      }
+      if (pending.size() + (long) count > outputBufferLimit) {
+        System.out.println("Replica " + socket.getRemoteSocketAddress()
+            + " closed for overcoming of output buffer limits");
+        close();
+        return;
+      }
+      if (pending.size() == 0) {
+        hasOutput.signal();
+      }
+      pending.write(bytes, offset, count);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Writes the pending stream to the replica until the link is closed or the socket fails.
+   */
+  void runSender(OutputStream output) throws IOException, InterruptedException {
+    while (true) {
+      lock.lock();
+      try {
+        while (pending.size() == 0 && !isClosed) {
+          hasOutput.await();
+        }
+        if (isClosed) {
+          return;
+        }
+        // Swap buffers so writers keep appending while this batch goes out
+        ByteArrayOutputStream batch = pending;
+        pending = sending;
+        sending = batch;
+      } finally {
+        lock.unlock();
+      }
+      sending.writeTo(output);
+      output.flush();
+      sending.reset();
+    }
+  }
+
+  void close() {
+    lock.lock();
+    try {
+      isClosed = true;
+      hasOutput.signal();
+    } finally {
+      lock.unlock();
+    }
+    try {
+      socket.close();
+    } catch (IOException ignored) {
+      // Already closed by the replica
+    }
+  }
+}
@@ -0,0 +1,53 @@
+package replication;
+
+/**
+ * The last bytes of the replication stream in a fixed size ring, so a replica that lost its link can resume from
+ * its offset instead of a full resync, as long as it was not away for longer than the ring holds.
+ * <p>
+ * Not thread safe, {@link ReplicationManager} guards it.
+ */
+final class ReplicationBacklog {
+  private final byte[] ring;
+  // Offset of the stream right after the last byte written
+  private long endOffset;
+  private int length = 0;
+
+  ReplicationBacklog(int capacity, long startOffset) {
+    this.ring = new byte[capacity];
+    this.endOffset = startOffset;
+  }
+
+  void append(byte[] bytes, int offset, int count) {
+    // Only the tail of a write larger than the ring survives anyway
+    if (count > ring.length) {
+      offset += count - ring.length;
+      endOffset += count - ring.length;
+      count = ring.length;
+    }
+    int position = (int) (endOffset % ring.length);
+    int first = Math.min(count, ring.length - position);
+    System.arraycopy(bytes, offset, ring, position, first);
+    System.arraycopy(bytes, offset + first, ring, 0, count - first);
+    endOffset += count;
+    length = Math.min(ring.length, length + count);
+  }
+
+  /**
+   * Tells whether every byte from the offset on is still held.
+   */
+  boolean contains(long offset) {
+    return offset >= endOffset - length && offset <= endOffset;
+  }
+
+  /**
+   * Copy of the bytes from the offset to the end, which must be {@link #contains(long) contained}.
+   */
+  byte[] copyFrom(long offset) {
+    byte[] bytes = new byte[(int) (endOffset - offset)];
+    int position = (int) (offset % ring.length);
+    int first = Math.min(bytes.length, ring.length - position);
+    System.arraycopy(ring, position, bytes, 0, first);
+    System.arraycopy(ring, 0, bytes, first, bytes.length - first);
+    return bytes;
+  }
+}
@@ -0,0 +1,342 @@
+package replication;
+
+import db.Propagation;
+import models.RespCommand;
+import persistence.SnapshotManager;
+import server.ServerConfig;
+import utility.RespParser;
+import utility.RespWriter;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Leader-follower replication, as in Redis.
+ * <p>
+ * A master numbers every byte of its replication stream, the writes propagated by write sections encoded as RESP,
+ * with an offset, and keeps the last repl-backlog-size bytes of it in a {@link ReplicationBacklog}. A replica
+ * connects with PSYNC and the replication ID and offset it has, and gets either the missing part of the stream from
+ * the backlog (+CONTINUE) or a full resync (+FULLRESYNC): a snapshot taken at a known offset, followed by the stream
+ * from that offset on. Replicas acknowledge the offset they processed with REPLCONF ACK, which is what WAIT counts.
+ * <p>
+ * A server started with replicaof is a replica, see {@link MasterLink}. It rejects writes from clients and does not
+ * serve replicas of its own.
+ */
+public final class ReplicationManager {
+  private static final int ACK_READ_CHUNK_SIZE = 1024;
+  private static final byte[] GETACK = new RespWriter()
+      .writeBulkArray(List.of("REPLCONF", "GETACK", "*")).toString().getBytes(StandardCharsets.ISO_8859_1);
+
+  private static final ReentrantLock lock = new ReentrantLock();
+  private static final Condition acknowledged = lock.newCondition();
+  private static final ThreadLocal<RespWriter> encoders = ThreadLocal.withInitial(RespWriter::new);
+  private static final String replid = newReplicationId();
+  // Guarded by lock
+  private static final List<ReplicaLink> links = new ArrayList<>();
+  private static long masterOffset = 0;
+  // Created by the first replica, until then there is no stream to keep
+  private static volatile ReplicationBacklog backlog;
+  private static volatile MasterLink masterLink;
+
+  private ReplicationManager() {
+  }
+
+  /**
+   * Connects to the master when replicaof is set, otherwise starts feeding the replication stream.
+   */
+  public static void start() {
+    String replicaOf = ServerConfig.get("replicaof");
+    if (replicaOf != null && !replicaOf.isBlank()) {
+      String[] parts = replicaOf.trim().split("\\s+");
+      if (parts.length != 2) {
+        throw new IllegalArgumentException("Invalid replicaof option, expected host and port: " + replicaOf);
+      }
+      masterLink = new MasterLink(parts[0], Integer.parseInt(parts[1]));
+      Thread thread = new Thread(masterLink, "replica-link");
+      thread.setDaemon(true);
+      thread.start();
+      return;
+    }
+    Propagation.addListener(ReplicationManager::feed);
+  }
+
+  public static boolean isReplica() {
+    return masterLink != null;
+  }
+
+  /**
+   * Serves a replica that sent PSYNC on this socket, until the link breaks. Called by the connection that received
+   * the command, with nothing else reading or writing the socket anymore.
+   */
+  public static void serveReplica(RespCommand psync, Socket socket) {
+    ReplicaLink link = new ReplicaLink(socket, ServerConfig.getLong("replica-output-buffer-limit"));
+    try {
+      OutputStream output = socket.getOutputStream();
+      if (isReplica() || psync.getArgsSize() != 2) {
+        String error = isReplica() ? "-ERR Chained replication is not supported\r\n"
+            : "-ERR wrong number of arguments for 'psync' command\r\n";
+        output.write(error.getBytes(StandardCharsets.ISO_8859_1));
+        return;
+      }
+      if (tryPartialResync(link, psync.getArgs().get(0), psync.getArgs().get(1))) {
+        output.write(("+CONTINUE " + replid + "\r\n").getBytes(StandardCharsets.ISO_8859_1));
+        System.out.println("Partial resynchronization accepted for replica " + socket.getRemoteSocketAddress());
+      } else {
+        fullResync(link, output);
+      }
+      output.flush();
+      Thread reader = new Thread(() -> readAcks(link), "replica-acks");
+      reader.setDaemon(true);
+      reader.start();
+      link.runSender(output);
+    } catch (IOException e) {
+      System.out.println("Connection with replica " + socket.getRemoteSocketAddress() + " lost: " + e.getMessage());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      lock.lock();
+      try {
+        links.remove(link);
+      } finally {
+        lock.unlock();
+      }
+      link.close();
+    }
+  }
+
+  /**
+   * Registers the link with the rest of the stream queued, when the backlog still holds everything after the offset
+   * the replica asks for.
+   */
+  private static boolean tryPartialResync(ReplicaLink link, String requestedId, String requestedOffset) {
+    long offset;
+    try {
+      // PSYNC asks for the offset of the next byte, counting from 1
+      offset = Long.parseLong(requestedOffset) - 1;
+    } catch (NumberFormatException e) {
+      return false;
+    }
+    lock.lock();
+    try {
+      if (!requestedId.equals(replid) || backlog == null || !backlog.contains(offset)) {
+        return false;
+      }
+      byte[] missing = backlog.copyFrom(offset);
+      link.enqueue(missing, 0, missing.length);
+      link.ackOffset = offset;
+      links.add(link);
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Sends a snapshot and registers the link at the offset the snapshot was taken at, so it accumulates everything
+   * written from then on while the snapshot is being sent. Like Redis' disk-based sync the snapshot goes to a
+   * temporary file first, whose size is the length sent ahead of it, so it never has to fit in memory.
+   */
+  private static void fullResync(ReplicaLink link, OutputStream output) throws IOException, InterruptedException {
+    long started = System.currentTimeMillis();
+    long[] offset = new long[1];
+    Path snapshot = Files.createTempFile(Path.of(ServerConfig.get("dir")), "temp-resync-", ".rdb");
+    try {
+      long keys;
+      try (OutputStream file = new BufferedOutputStream(Files.newOutputStream(snapshot))) {
+        keys = SnapshotManager.writeTo(file, () -> {
+          lock.lock();
+          try {
+            if (backlog == null) {
+              backlog = new ReplicationBacklog(ServerConfig.getInt("repl-backlog-size"), masterOffset);
+            }
+            offset[0] = masterOffset;
+            link.ackOffset = masterOffset;
+            links.add(link);
+          } finally {
+            lock.unlock();
+          }
+        });
+      }
+      long size = Files.size(snapshot);
+      output.write(("+FULLRESYNC " + replid + " " + offset[0] + "\r\n$" + size + "\r\n")
+          .getBytes(StandardCharsets.ISO_8859_1));
+      Files.copy(snapshot, output);
+      System.out.println("Full resynchronization of replica " + link.getSocket().getRemoteSocketAddress() + ": "
+          + keys + " keys, " + size + " bytes in " + (System.currentTimeMillis() - started) + " ms");
+    } finally {
+      Files.deleteIfExists(snapshot);
+    }
+  }
+
+  /**
+   * Reads what the replica sends back, REPLCONF ACK with its offset, until the link closes.
+   */
+  private static void readAcks(ReplicaLink link) {
+    RespParser parser = new RespParser();
+    ByteBuffer buffer = ByteBuffer.allocate(ACK_READ_CHUNK_SIZE);
+    try {
+      InputStream input = link.getSocket().getInputStream();
+      while (true) {
+        buffer = parser.ensureWritable(buffer);
+        int read = input.read(buffer.array(), buffer.position(), buffer.remaining());
+        if (read == -1) {
+          break;
+        }
+        buffer.position(buffer.position() + read);
+        buffer.flip();
+        RespCommand cmd;
+        while ((cmd = parser.parse(buffer)) != null) {
+          if (cmd.getName().equals("REPLCONF") && cmd.getArgsSize() == 2
+              && cmd.getArgs().get(0).equalsIgnoreCase("ACK")) {
+            acknowledge(link, Long.parseLong(cmd.getArgs().get(1)));
+          }
+        }
+        buffer.compact();
+      }
+    } catch (IOException | NumberFormatException e) {
+      System.out.println("Invalid data from replica " + link.getSocket().getRemoteSocketAddress() + ": "
+          + e.getMessage());
+    }
+    link.close();
+  }
+
+  private static void acknowledge(ReplicaLink link, long offset) {
+    lock.lock();
+    try {
+      if (offset > link.ackOffset) {
+        link.ackOffset = offset;
+        acknowledged.signalAll();
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Propagation listener, appends the commands of a write section to the stream.
+   */
+  private static void feed(List<List<String>> commands) {
+    if (backlog == null) {
+      return;
+    }
+    // Encoded before taking the lock, so the lock is only held for the copies
+    RespWriter encoded = encoders.get();
+    for (List<String> command : commands) {
+      encoded.writeBulkArray(command);
+    }
+    ByteBuffer bytes = encoded.view(0);
+    lock.lock();
+    try {
+      appendToStream(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining());
+    } finally {
+      lock.unlock();
+    }
+    encoded.reset();
+  }
+
+  private static void appendToStream(byte[] bytes, int offset, int count) {
+    backlog.append(bytes, offset, count);
+    masterOffset += count;
+    for (ReplicaLink link : links) {
+      link.enqueue(bytes, offset, count);
+    }
+  }
+
+  /**
+   * Waits until at least the given number of replicas acknowledged every write made before the call, or the timeout
+   * passes.
+   *
+   * @param timeoutMillis 0 to wait without a timeout
+   * @return number of replicas that acknowledged
+   */
+  public static int waitForReplicas(int count, long timeoutMillis) throws InterruptedException {
+    lock.lock();
+    try {
+      long target = masterOffset;
+      int acked = countAcked(target);
+      if (acked >= count || acked == links.size()) {
+        return acked;
+      }
+      // Ask for acknowledgements now instead of waiting for the periodic ones
+      appendToStream(GETACK, 0, GETACK.length);
+      long remaining = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+      while ((acked = countAcked(target)) < count) {
+        if (timeoutMillis == 0) {
+          acknowledged.await();
+        } else if (remaining > 0) {
+          remaining = acknowledged.awaitNanos(remaining);
+        } else {
+          break;
+        }
+      }
+      return acked;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private static int countAcked(long offset) {
+    int acked = 0;
+    for (ReplicaLink link : links) {
+      if (link.ackOffset >= offset) {
+        acked++;
+      }
+    }
+    return acked;
+  }
+
+  /**
+   * The replication section of INFO.
+   */
+  public static String info() {
+    StringBuilder info = new StringBuilder("# Replication\r\n");
+    MasterLink master = masterLink;
+    if (master != null) {
+      info.append("role:slave\r\n")
+          .append("master_host:").append(master.getHost()).append("\r\n")
+          .append("master_port:").append(master.getPort()).append("\r\n")
+          .append("master_link_status:").append(master.isUp() ? "up" : "down").append("\r\n")
+          .append("slave_repl_offset:").append(master.getOffset()).append("\r\n")
+          .append("master_replid:").append(master.getReplid()).append("\r\n")
+          .append("master_repl_offset:").append(master.getOffset()).append("\r\n");
+      return info.toString();
+    }
+    lock.lock();
+    try {
+      info.append("role:master\r\n")
+          .append("connected_slaves:").append(links.size()).append("\r\n");
+      for (int i = 0; i < links.size(); i++) {
+        ReplicaLink link = links.get(i);
+        info.append("slave").append(i).append(":ip=").append(link.getSocket().getInetAddress().getHostAddress())
+            .append(",state=online,offset=").append(link.ackOffset).append("\r\n");
+      }
+      info.append("master_replid:").append(replid).append("\r\n")
+          .append("master_repl_offset:").append(masterOffset).append("\r\n")
+          .append("repl_backlog_active:").append(backlog == null ? 0 : 1).append("\r\n")
+          .append("repl_backlog_size:").append(ServerConfig.get("repl-backlog-size")).append("\r\n");
+      return info.toString();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private static String newReplicationId() {
+    byte[] bytes = new byte[20];
+    new SecureRandom().nextBytes(bytes);
+    return HexFormat.of().formatHex(bytes);
+  }
+}
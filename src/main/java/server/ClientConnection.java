@@ -0,0 +1,295 @@
+package server;
+
+import models.RespCommand;
+import persistence.AppendOnlyFile;
+import processors.CommandKeys;
+import processors.CommandProcessor;
+import replication.ReplicationManager;
+import utility.RespParser;
+import utility.RespWriter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+
+/**
+ * State of one client served by an {@link EventLoop}. All methods run on the loop thread.
+ */
+public class ClientConnection {
+  private static final int READ_CHUNK_SIZE = 16 * 1024;
+
+  private final EventLoop loop;
+  private final SocketChannel channel;
+  private final SelectionKey key;
+  private final CommandProcessor commandProcessor;
+  private final RespParser parser = new RespParser();
+  // Replies of the current batch, bytes before flushedOffset already went out on the socket
+  private final RespWriter output = new RespWriter();
+  private int flushedOffset = 0;
+  // Kept in write mode between events
+  private ByteBuffer readBuffer = ByteBuffer.allocate(READ_CHUNK_SIZE);
+  // Set while commands run off the loop thread, blocking ones or a batch on a shard worker, later commands wait for
+  // them to preserve ordering
+  private boolean isBlocked = false;
+  // Parsed but not yet run, when it could not join the commands sent to the shard workers before it
+  private RespCommand nextCommand;
+  private final long outputBufferLimit = ServerConfig.getLong("client-output-buffer-limit");
+
+  public ClientConnection(EventLoop loop, SocketChannel channel, SelectionKey key) {
+    this.loop = loop;
+    this.channel = channel;
+    this.key = key;
+    this.commandProcessor = new CommandProcessor();
+  }
+
+  void onReadable() {
+    try {
+      readBuffer = parser.ensureWritable(readBuffer);
+      if (channel.read(readBuffer) == -1) {
+        close();
+        return;
+      }
+      processBufferedCommands();
+    } catch (IOException e) {
+      System.out.println("IOException: " + e.getMessage());
+      close();
+    }
+  }
+
+  void onWritable() {
+    try {
+      flush();
+      if (!isBlocked && pendingBytes() < outputBufferLimit) {
+        // The client caught up, serve whatever it pipelined while we were throttled
+        processBufferedCommands();
+      }
+    } catch (IOException e) {
+      System.out.println("IOException: " + e.getMessage());
+      close();
+    }
+  }
+
+  /**
+   * Executes every complete command already buffered, in order, then writes all their responses at once.
+   * Stops early while the responses waiting for a slow reader exceed the output buffer limit.
+   */
+  private void processBufferedCommands() throws IOException {
+    boolean isThrottled;
+    do {
+      isThrottled = false;
+      readBuffer.flip();
+      try {
+        while (!isBlocked) {
+          if (pendingBytes() >= outputBufferLimit) {
+            isThrottled = true;
+            break;
+          }
+          RespCommand cmd = nextCommand != null ? nextCommand : parser.parse(readBuffer);
+          nextCommand = null;
+          if (cmd == null) {
+            break;
+          }
+          System.out.println("Executing Command: " + cmd.getStringRepresentation());
+          if (cmd.getName().equals("PSYNC") && !commandProcessor.isInTransaction()) {
+            handOverToReplication(cmd);
+            break;
+          }
+          if (commandProcessor.mayBlock(cmd)) {
+            isBlocked = true;
+            loop.executeBlocking(() -> {
+              RespWriter reply = new RespWriter(64);
+              runCommand(cmd, reply);
+              // The write was appended from this thread, so this is the thread that can wait for it
+              AppendOnlyFile.awaitDurable();
+              return reply;
+            }, this::onBlockingCommandComplete);
+            break;
+          }
+          ShardWorker owner = ownerOf(cmd);
+          if (owner != null) {
+            runOnShards(owner, cmd);
+            break;
+          }
+          runCommand(cmd, output);
+        }
+      } finally {
+        readBuffer.compact();
+      }
+      flush();
+      // Keep going if the socket took the whole batch, otherwise onWritable resumes us
+    } while (isThrottled && pendingBytes() < outputBufferLimit);
+    // Drop buffers grown for a large value once they are drained
+    if (readBuffer.position() == 0 && readBuffer.capacity() > READ_CHUNK_SIZE) {
+      readBuffer = ByteBuffer.allocate(READ_CHUNK_SIZE);
+    }
+  }
+
+  /**
+   * Turns the connection into a replication link, served with blocking IO by a thread of its own from now on.
+   */
+  private void handOverToReplication(RespCommand psync) {
+    commandProcessor.close();
+    key.cancel();
+    // A channel can only be made blocking once its cancelled key is gone from the selector, which happens in the
+    // loop's next select, before it runs tasks
+    loop.execute(() -> {
+      try {
+        channel.configureBlocking(true);
+        while (pendingBytes() > 0) {
+          flushedOffset += channel.write(output.view(flushedOffset));
+        }
+      } catch (IOException e) {
+        System.out.println("IOException: " + e.getMessage());
+        EventLoop.closeQuietly(channel);
+        return;
+      }
+      Thread thread = new Thread(() -> ReplicationManager.serveReplica(psync, channel.socket()), "replica-link");
+      thread.setDaemon(true);
+      thread.start();
+    });
+  }
+
+  /**
+   * The worker to run the command on in sharded mode, null to run it here: without shards, inside MULTI where
+   * commands are only queued, for WATCH, and for commands without keys or with keys of several shards.
+   */
+  private ShardWorker ownerOf(RespCommand cmd) {
+    Shards shards = loop.getShards();
+    // WATCH changes only the connection's own state, which the workers of a squashed pipeline must not share
+    if (shards == null || commandProcessor.isInTransaction() || cmd.getName().equals("WATCH")) {
+      return null;
+    }
+    return shards.ownerOf(CommandKeys.of(cmd));
+  }
+
+  /**
+   * Runs the command on its shard's worker along with the single-shard commands pipelined right after it, and
+   * suspends the connection until all of their replies are in. Like Dragonfly's pipeline squashing, the commands are
+   * split by shard and the shards run their parts in parallel, each part in pipeline order, so commands on the same
+   * key still run in the order they were sent. The replies are put back in that order.
+   */
+  private void runOnShards(ShardWorker firstOwner, RespCommand first) throws IOException {
+    List<RespCommand> commands = new ArrayList<>();
+    Map<ShardWorker, List<Integer>> parts = new LinkedHashMap<>();
+    commands.add(first);
+    parts.computeIfAbsent(firstOwner, owner -> new ArrayList<>()).add(0);
+    // A pending ASKING is for the first command only, which has to run before the others then
+    RespCommand cmd;
+    while (!commandProcessor.isAsking() && (cmd = parser.parse(readBuffer)) != null) {
+      ShardWorker owner = cmd.getName().equals("PSYNC") || commandProcessor.mayBlock(cmd) ? null : ownerOf(cmd);
+      if (owner == null) {
+        nextCommand = cmd;
+        break;
+      }
+      System.out.println("Executing Command: " + cmd.getStringRepresentation());
+      parts.computeIfAbsent(owner, key -> new ArrayList<>()).add(commands.size());
+      commands.add(cmd);
+    }
+    // Where each command's reply is, written by the workers and read once the last of them is done
+    RespWriter[] replies = new RespWriter[commands.size()];
+    int[] replyStarts = new int[commands.size()];
+    int[] replyEnds = new int[commands.size()];
+    AtomicInteger partsLeft = new AtomicInteger(parts.size());
+    isBlocked = true;
+    parts.forEach((owner, indexes) -> owner.submit(() -> {
+      RespWriter reply = new RespWriter(64 * indexes.size());
+      for (int index : indexes) {
+        replies[index] = reply;
+        replyStarts[index] = reply.size();
+        runCommand(commands.get(index), reply);
+        replyEnds[index] = reply.size();
+      }
+      // The writes were appended from the worker, so the worker is the thread that can wait for them
+      AppendOnlyFile.awaitDurable();
+      if (partsLeft.decrementAndGet() == 0) {
+        loop.execute(() -> {
+          if (parts.size() == 1) {
+            onBlockingCommandComplete(reply);
+            return;
+          }
+          RespWriter ordered = new RespWriter(64 * commands.size());
+          for (int i = 0; i < replies.length; i++) {
+            ordered.writeRaw(replies[i], replyStarts[i], replyEnds[i]);
+          }
+          onBlockingCommandComplete(ordered);
+        });
+      }
+    }));
+  }
+
+  /**
+   * Executes the command, turning a bug that throws into an error reply for this client only, instead of taking
+   * down the thread that serves every other client too.
+   */
+  private void runCommand(RespCommand cmd, RespWriter writer) {
+    int replyStart = writer.size();
+    try {
+      commandProcessor.processCommand(cmd, writer);
+    } catch (RuntimeException e) {
+      System.out.println("Error executing " + cmd.getStringRepresentation() + ": " + e);
+      writer.truncate(replyStart);
+      writer.writeError("internal error executing '" + cmd.getName().toLowerCase() + "'");
+    }
+  }
+
+  private void onBlockingCommandComplete(RespWriter reply) {
+    if (!channel.isOpen()) {
+      return;
+    }
+    try {
+      isBlocked = false;
+      output.writeRaw(reply);
+      processBufferedCommands();
+    } catch (IOException e) {
+      System.out.println("IOException: " + e.getMessage());
+      close();
+    }
+  }
+
+  private int pendingBytes() {
+    return output.size() - flushedOffset;
+  }
+
+  /**
+   * Writes all pending responses with a single write.
+   */
+  private void flush() throws IOException {
+    if (pendingBytes() > 0) {
+      // Replies to writes go out only once the writes are as durable as appendfsync promises
+      AppendOnlyFile.awaitDurable();
+      flushedOffset += channel.write(output.view(flushedOffset));
+      if (pendingBytes() == 0) {
+        output.reset();
+        flushedOffset = 0;
+      }
+    }
+    updateInterestOps();
+  }
+
+  private void updateInterestOps() {
+    if (!key.isValid()) {
+      return;
+    }
+    int ops = 0;
+    if (!isBlocked && pendingBytes() < outputBufferLimit) {
+      ops |= SelectionKey.OP_READ;
+    }
+    if (pendingBytes() > 0) {
+      // Socket buffer is full, resume once the channel becomes writable again
+      ops |= SelectionKey.OP_WRITE;
+    }
+    key.interestOps(ops);
+  }
+
+  private void close() {
+    commandProcessor.close();
+    key.cancel();
+    EventLoop.closeQuietly(channel);
+  }
+}
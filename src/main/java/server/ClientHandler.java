@@ -3,12 +3,17 @@ package server;
 import java.lang.*;
 import java.net.Socket;
 import java.io.*;
-import java.util.*;
+import java.nio.ByteBuffer;
 import models.RespCommand;
+import persistence.AppendOnlyFile;
 import processors.CommandProcessor;
-import utility.RespUtility;
+import replication.ReplicationManager;
+import utility.RespParser;
+import utility.RespWriter;
 
 public class ClientHandler implements Runnable {
+  private static final int READ_CHUNK_SIZE = 16 * 1024;
+
   private final Socket clientSocket;
   private final CommandProcessor commandProcessor;
 
@@ -19,23 +24,56 @@ public class ClientHandler implements Runnable {
 
   public void run() {
     try {
-      BufferedReader reader =
-          new BufferedReader(
-              new InputStreamReader(clientSocket.getInputStream()));
-      BufferedWriter writer =
-          new BufferedWriter(
-              new OutputStreamWriter(clientSocket.getOutputStream()));
+      InputStream input = clientSocket.getInputStream();
+      OutputStream output = clientSocket.getOutputStream();
+      // Responses accumulate here until the pipelined input drains or the output buffer limit is reached
+      RespWriter writer = new RespWriter();
+      long outputBufferLimit = ServerConfig.getLong("client-output-buffer-limit");
+      RespParser parser = new RespParser();
+      // Kept in write mode between reads
+      ByteBuffer readBuffer = ByteBuffer.allocate(READ_CHUNK_SIZE);
       while(true) {
-        RespCommand cmd = RespUtility.parseRespCommand(reader);
+        readBuffer.flip();
+        RespCommand cmd = parser.parse(readBuffer);
+        readBuffer.compact();
+        if (cmd == null) {
+          // Everything the client pipelined so far has been answered
+          flush(writer, output);
+          readBuffer = parser.ensureWritable(readBuffer);
+          int read = input.read(readBuffer.array(), readBuffer.position(), readBuffer.remaining());
+          if (read == -1) {
+            break;
+          }
+          readBuffer.position(readBuffer.position() + read);
+          continue;
+        }
         System.out.println("Executing Command: "+ cmd.getStringRepresentation());
-        String response = commandProcessor.processCommand(cmd) ;
-        System.out.println("Response Send :"+ response);
-        writer.write(response);
-        writer.flush();
+        if (cmd.getName().equals("PSYNC") && !commandProcessor.isInTransaction()) {
+          // The connection becomes a replication link, served until the replica goes away
+          flush(writer, output);
+          ReplicationManager.serveReplica(cmd, clientSocket);
+          break;
+        }
+        if (commandProcessor.mayBlock(cmd)) {
+          // Earlier pipelined replies must not wait behind a parked command
+          flush(writer, output);
+        }
+        int replyStart = writer.size();
+        try {
+          commandProcessor.processCommand(cmd, writer);
+        } catch (RuntimeException e) {
+          System.out.println("Error executing " + cmd.getStringRepresentation() + ": " + e);
+          writer.truncate(replyStart);
+          writer.writeError("internal error executing '" + cmd.getName().toLowerCase() + "'");
+        }
+        if (writer.size() >= outputBufferLimit) {
+          flush(writer, output);
+        }
       }
     } catch (IOException e) {
       System.out.println("IOException: " + e.getMessage());
     } finally {
+      commandProcessor.close();
       try {
         if (clientSocket != null) {
           clientSocket.close();
@@ -45,4 +83,14 @@ public class ClientHandler implements Runnable {
       }
     }
   }
+
+  private void flush(RespWriter writer, OutputStream output) throws IOException {
+    if (!writer.isEmpty()) {
+      // Replies to writes go out only once the writes are as durable as appendfsync promises
+      AppendOnlyFile.awaitDurable();
+      writer.writeTo(output);
+      output.flush();
+      writer.reset();
+    }
+  }
 }
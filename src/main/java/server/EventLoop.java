@@ -0,0 +1,114 @@
+package server;
+
+import java.io.IOException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+public class EventLoop implements Runnable {
+  private final Selector selector;
+  private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+  private final ExecutorService blockingExecutor;
+  // Workers owning the keyspace in sharded mode, null otherwise
+  private final Shards shards;
+
+  public EventLoop(ExecutorService blockingExecutor, Shards shards) throws IOException {
+    this.selector = Selector.open();
+    this.blockingExecutor = blockingExecutor;
+    this.shards = shards;
+  }
+
+  Shards getShards() {
+    return shards;
+  }
+
+  /**
+   * Hands a freshly accepted channel over to this loop. Safe to call from any thread.
+   */
+  public void register(SocketChannel channel) {
+    execute(() -> {
+      try {
+        channel.configureBlocking(false);
+        SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+        key.attach(new ClientConnection(this, channel, key));
+      } catch (IOException e) {
+        System.out.println("IOException: " + e.getMessage());
+        closeQuietly(channel);
+      }
+    });
+  }
+
+  /**
+   * Queues a task to run on the loop thread and wakes the selector up.
+   */
+  public void execute(Runnable task) {
+    tasks.add(task);
+    selector.wakeup();
+  }
+
+  /**
+   * Runs work that may park the calling thread outside of the loop and delivers its result back on the loop thread.
+   */
+  public <T> void executeBlocking(Supplier<T> work, Consumer<T> onComplete) {
+    blockingExecutor.execute(() -> {
+      T response = work.get();
+      execute(() -> onComplete.accept(response));
+    });
+  }
+
+  @Override
+  public void run() {
+    while (true) {
+      try {
+        selector.select();
+        runTasks();
+        Iterator<SelectionKey> selectedKeys = selector.selectedKeys().iterator();
+        while (selectedKeys.hasNext()) {
+          SelectionKey key = selectedKeys.next();
+          selectedKeys.remove();
+          ClientConnection connection = (ClientConnection) key.attachment();
+          try {
+            if (key.isValid() && key.isWritable()) {
+              connection.onWritable();
+            }
+            if (key.isValid() && key.isReadable()) {
+              connection.onReadable();
+            }
+          } catch (RuntimeException e) {
+            // Lose this client rather than the loop and every client on it
+            System.out.println("Closing client after error: " + e);
+            key.cancel();
+            closeQuietly((SocketChannel) key.channel());
+          }
+        }
+      } catch (IOException e) {
+        System.out.println("IOException: " + e.getMessage());
+      }
+    }
+  }
+
+  private void runTasks() {
+    Runnable task;
+    while ((task = tasks.poll()) != null) {
+      try {
+        task.run();
+      } catch (RuntimeException e) {
+        System.out.println("Error in event loop task: " + e);
+      }
+    }
+  }
+
+  static void closeQuietly(SocketChannel channel) {
+    try {
+      channel.close();
+    } catch (IOException e) {
+      System.out.println("IOException: " + e.getMessage());
+    }
+  }
+}
@@ -0,0 +1,53 @@
+package server;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Selector based server: the accepting thread hands every new connection to one of N event loops
+ * (round robin), which then serve all of their clients without a dedicated thread per client.
+ * <p>
+ * In sharded mode the loops only do the IO: commands on the keys of one shard run on the worker owning it, see
+ * {@link Shards}.
+ */
+public class EventLoopServer {
+  private final int port;
+  private final EventLoop[] loops;
+
+  /**
+   * @param noOfShards worker threads the keyspace is partitioned over, 0 to run commands on the loops
+   */
+  public EventLoopServer(int port, int noOfLoops, int noOfShards) throws IOException {
+    this.port = port;
+    this.loops = new EventLoop[noOfLoops];
+    // Blocking commands (BLPOP) are parked on virtual threads off the loop so they never stall other clients
+    ExecutorService blockingExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    Shards shards = noOfShards > 0 ? new Shards(noOfShards) : null;
+    for (int i = 0; i < noOfLoops; i++) {
+      loops[i] = new EventLoop(blockingExecutor, shards);
+    }
+  }
+
+  public void start() throws IOException {
+    for (int i = 0; i < loops.length; i++) {
+      new Thread(loops[i], "event-loop-" + i).start();
+    }
+    try (ServerSocketChannel serverChannel = ServerSocketChannel.open()) {
+      serverChannel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+      serverChannel.bind(new InetSocketAddress(port));
+      System.out.println("Redis server active on port " + port + " with " + loops.length + " event loop(s)");
+      int next = 0;
+      while (true) {
+        SocketChannel clientChannel = serverChannel.accept();
+        System.out.println("New client connected: " + clientChannel.getRemoteAddress());
+        loops[next].register(clientChannel);
+        next = (next + 1) % loops.length;
+      }
+    }
+  }
+}
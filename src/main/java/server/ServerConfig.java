@@ -0,0 +1,96 @@
+package server;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class ServerConfig {
+  private static final Map<String, String> values = new ConcurrentHashMap<>();
+
+  static {
+    values.put("port", "6379");
+    // threaded: one platform thread per client, virtual: one virtual thread per client,
+    // eventloop: selector based NIO loops, sharded: NIO loops handing commands to the threads owning their keys
+    values.put("server-mode", "threaded");
+    values.put("event-loop-threads", "1");
+    values.put("shard-threads", String.valueOf(Runtime.getRuntime().availableProcessors()));
+    // Bytes of responses a connection may hold for a slow reader before it stops reading more commands
+    values.put("client-output-buffer-limit", String.valueOf(32 * 1024 * 1024));
+    // Active expiry cycles per second and the share of each cycle they may spend removing keys
+    values.put("hz", "10");
+    values.put("active-expire-cpu-percent", "25");
+    // Hashes up to this many fields, with no field or value longer than the byte limit, use the packed encoding
+    values.put("hash-max-listpack-entries", "128");
+    values.put("hash-max-listpack-value", "64");
+    // Same for sorted sets, by number of members and member length
+    values.put("zset-max-listpack-entries", "128");
+    values.put("zset-max-listpack-value", "64");
+    // Sets of integers only are kept as a sorted long[] up to this many members
+    values.put("set-max-intset-entries", "512");
+    // RDB snapshot location, loaded at startup and written by SAVE, BGSAVE and the save schedule
+    values.put("dir", ".");
+    values.put("dbfilename", "dump.rdb");
+    // Pairs of seconds and changes: save in the background once that many writes happened within that many seconds,
+    // an empty value turns scheduled saves off
+    values.put("save", "3600 1 300 100 60 10000");
+    // Append only file in dir, fsynced on every write (always), once a second (everysec) or when the OS decides (no)
+    values.put("appendonly", "no");
+    values.put("appendfilename", "appendonly.aof");
+    values.put("appendfsync", "everysec");
+    // Rewrite the AOF once it grew by this percentage since the last rewrite and is at least the minimum size in
+    // bytes, a percentage of 0 turns automatic rewrites off
+    values.put("auto-aof-rewrite-percentage", "100");
+    values.put("auto-aof-rewrite-min-size", String.valueOf(64 * 1024 * 1024));
+    // "host port" of the master to replicate, empty for a master
+    values.put("replicaof", "");
+    // Bytes of the replication stream kept for replicas that reconnect to continue from their offset
+    values.put("repl-backlog-size", String.valueOf(1024 * 1024));
+    // Bytes of the stream a replica may fall behind by before it is disconnected
+    values.put("replica-output-buffer-limit", String.valueOf(256 * 1024 * 1024));
+    // Cluster mode, with the node's ID and view of the slots kept in the config file in dir, and the IP other nodes
+    // and redirected clients reach this node at
+    values.put("cluster-enabled", "no");
+    values.put("cluster-config-file", "nodes.conf");
+    values.put("cluster-announce-ip", "127.0.0.1");
+    // Estimated bytes the keyspace may take before write commands evict keys by the policy, 0 for no limit.
+    // Policies: noeviction, allkeys-lru, allkeys-lfu, volatile-lru, volatile-lfu, volatile-ttl
+    values.put("maxmemory", "0");
+    values.put("maxmemory-policy", "noeviction");
+    values.put("maxmemory-samples", "5");
+  }
+
+  private ServerConfig(){}
+
+  /**
+   * Loads options passed as --name value pairs on the command line, e.g.
+   * --port 6380 --server-mode eventloop
+   *
+   * @param args program arguments
+   */
+  public static void load(String[] args) {
+    for (int i = 0; i < args.length; i++) {
+      if (!args[i].startsWith("--")) {
+        throw new IllegalArgumentException("Invalid option: " + args[i]);
+      }
+      if (i + 1 >= args.length) {
+        throw new IllegalArgumentException("Missing value for option: " + args[i]);
+      }
+      values.put(args[i].substring(2).toLowerCase(), args[++i]);
+    }
+  }
+
+  public static String get(String name) {
+    return values.get(name.toLowerCase());
+  }
+
+  public static int getInt(String name) {
+    return Integer.parseInt(get(name));
+  }
+
+  public static long getLong(String name) {
+    return Long.parseLong(get(name));
+  }
+
+  public static void set(String name, String value) {
+    values.put(name.toLowerCase(), value);
+  }
+}
@@ -0,0 +1,56 @@
+package server;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Thread owning one shard of the keyspace in sharded mode. Event loops hand it work through a lock-free queue, it
+ * runs the tasks in arrival order and parks while there are none.
+ */
+final class ShardWorker implements Runnable {
+  private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+  private final Thread thread;
+  // Set just before parking, so producers only pay for an unpark when the worker may be asleep
+  private volatile boolean isIdle = false;
+
+  ShardWorker(String name) {
+    this.thread = new Thread(this, name);
+    this.thread.setDaemon(true);
+  }
+
+  void start() {
+    thread.start();
+  }
+
+  /**
+   * Queues a task to run on the worker. Safe to call from any thread.
+   */
+  void submit(Runnable task) {
+    tasks.add(task);
+    if (isIdle) {
+      LockSupport.unpark(thread);
+    }
+  }
+
+  @Override
+  public void run() {
+    while (true) {
+      Runnable task = tasks.poll();
+      if (task != null) {
+        try {
+          task.run();
+        } catch (RuntimeException e) {
+          System.out.println("Error in shard task: " + e);
+        }
+        continue;
+      }
+      isIdle = true;
+      // A task added before isIdle was visible to its producer is seen here, a later one unparks us
+      if (tasks.isEmpty()) {
+        LockSupport.park(this);
+      }
+      isIdle = false;
+    }
+  }
+}
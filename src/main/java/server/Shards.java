@@ -0,0 +1,45 @@
+package server;
+
+import db.Propagation;
+
+import java.util.List;
+
+/**
+ * Hash partitioning of the keyspace over worker threads for sharded mode, in the style of Dragonfly and KeyDB.
+ * <p>
+ * A command whose keys all belong to one shard runs on that shard's worker, so the values of a shard are only ever
+ * changed by one thread on the hot path. Shards are made of whole lock stripes of {@link Propagation}, so the key
+ * locks a worker takes are never held by another worker. Commands without keys or with keys of several shards still
+ * run on the connection's thread under those locks, which keeps them correct next to the workers.
+ */
+final class Shards {
+  private final ShardWorker[] workers;
+
+  Shards(int count) {
+    workers = new ShardWorker[Math.max(1, Math.min(count, Propagation.KEY_LOCK_STRIPES))];
+    for (int i = 0; i < workers.length; i++) {
+      workers[i] = new ShardWorker("shard-" + i);
+      workers[i].start();
+    }
+  }
+
+  int size() {
+    return workers.length;
+  }
+
+  /**
+   * The worker owning all of the keys, null when there are none or they belong to different shards.
+   */
+  ShardWorker ownerOf(List<String> keys) {
+    if (keys.isEmpty()) {
+      return null;
+    }
+    int shard = Propagation.stripeOf(keys.get(0)) % workers.length;
+    for (int i = 1; i < keys.size(); i++) {
+      if (Propagation.stripeOf(keys.get(i)) % workers.length != shard) {
+        return null;
+      }
+    }
+    return workers[shard];
+  }
+}
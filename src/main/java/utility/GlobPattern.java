@@ -0,0 +1,90 @@
+package utility;
+
+/**
+ * Glob-style matching as used by the MATCH option of the SCAN family: * and ? wildcards, [abc], [^abc] and [a-z]
+ * classes, and \ to escape the next character.
+ */
+public final class GlobPattern {
+
+  private GlobPattern() {
+  }
+
+  public static boolean matches(String pattern, String text) {
+    return matches(pattern, 0, text, 0);
+  }
+
+  private static boolean matches(String pattern, int p, String text, int t) {
+    while (p < pattern.length()) {
+      char c = pattern.charAt(p);
+      switch (c) {
+        case '*' -> {
+          while (p + 1 < pattern.length() && pattern.charAt(p + 1) == '*') {
+            p++;
+          }
+          if (p + 1 == pattern.length()) {
+            return true;
+          }
+          for (int from = t; from <= text.length(); from++) {
+            if (matches(pattern, p + 1, text, from)) {
+              return true;
+            }
+          }
+          return false;
+        }
+        case '?' -> {
+          if (t == text.length()) {
+            return false;
+          }
+          p++;
+          t++;
+        }
+        case '[' -> {
+          if (t == text.length()) {
+            return false;
+          }
+          int end = p + 1;
+          boolean negate = end < pattern.length() && pattern.charAt(end) == '^';
+          if (negate) {
+            end++;
+          }
+          boolean found = false;
+          char ch = text.charAt(t);
+          while (end < pattern.length() && pattern.charAt(end) != ']') {
+            char from = pattern.charAt(end);
+            if (from == '\\' && end + 1 < pattern.length()) {
+              from = pattern.charAt(++end);
+            }
+            if (end + 2 < pattern.length() && pattern.charAt(end + 1) == '-' && pattern.charAt(end + 2) != ']') {
+              char to = pattern.charAt(end + 2);
+              if (Math.min(from, to) <= ch && ch <= Math.max(from, to)) {
+                found = true;
+              }
+              end += 3;
+            } else {
+              if (from == ch) {
+                found = true;
+              }
+              end++;
+            }
+          }
+          if (found == negate) {
+            return false;
+          }
+          p = end + 1;
+          t++;
+        }
+        default -> {
+          if (c == '\\' && p + 1 < pattern.length()) {
+            c = pattern.charAt(++p);
+          }
+          if (t == text.length() || text.charAt(t) != c) {
+            return false;
+          }
+          p++;
+          t++;
+        }
+      }
+    }
+    return t == text.length();
+  }
+}
@@ -0,0 +1,164 @@
+package utility;
+
+import models.RespCommand;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Incremental parser for RESP arrays of bulk strings, e.g. *2\r\n$4\r\nECHO\r\n$2\r\nhi\r\n
+ * <p>
+ * One instance belongs to one connection. Bytes are consumed from the buffer as soon as they are parsed and the
+ * partially built command is kept here, so parsing resumes across partial reads without rescanning.
+ * Bulk lengths are honoured, so values may contain \r\n or any other byte. Values are decoded as ISO-8859-1,
+ * which maps every byte to exactly one char: the data round-trips unchanged when responses are encoded the same
+ * way, and the JVM keeps such strings compact at one byte per char.
+ */
+public class RespParser {
+  private static final int MAX_HEADER_LENGTH = 32;
+  private static final int MAX_BULK_LENGTH = 512 * 1024 * 1024;
+  private static final int MAX_MULTIBULK_LENGTH = 1024 * 1024;
+  private static final long INCOMPLETE = Long.MIN_VALUE;
+
+  // -1 while waiting for the array header
+  private int expectedElements = -1;
+  // -1 while waiting for the next bulk header
+  private int bulkLength = -1;
+  private String commandName;
+  private List<String> args;
+
+  /**
+   * Parses the next command from the readable bytes of the buffer.
+   *
+   * @param buffer buffer in read mode, its position is advanced past every consumed byte
+   * @return the parsed command or null when more input is needed
+   * @throws IOException on malformed input
+   */
+  public RespCommand parse(ByteBuffer buffer) throws IOException {
+    while (true) {
+      if (expectedElements < 0) {
+        long header = readHeader(buffer, '*');
+        if (header == INCOMPLETE) {
+          return null;
+        }
+        if (header <= 0) {
+          continue; // empty and null arrays carry no command
+        }
+        if (header > MAX_MULTIBULK_LENGTH) {
+          throw new IOException("Invalid command - Invalid multibulk length");
+        }
+        expectedElements = (int) header;
+        // Grown as elements arrive, the count is only a claim of the client until they do
+        args = new ArrayList<>();
+      }
+
+      while (commandName == null || args.size() < expectedElements - 1) {
+        if (bulkLength < 0) {
+          long header = readHeader(buffer, '$');
+          if (header == INCOMPLETE) {
+            return null;
+          }
+          if (header < 0 || header > MAX_BULK_LENGTH) {
+            throw new IOException("Invalid command - Invalid bulk length");
+          }
+          bulkLength = (int) header;
+        }
+        if (buffer.remaining() < bulkLength + 2) {
+          return null;
+        }
+        String element = readBulk(buffer, bulkLength);
+        if (buffer.get() != '\r' || buffer.get() != '\n') {
+          throw new IOException("Invalid command - Bulk string not terminated by CRLF");
+        }
+        bulkLength = -1;
+        if (commandName == null) {
+          commandName = element;
+        } else {
+          args.add(element);
+        }
+      }
+
+      RespCommand cmd = new RespCommand(commandName, args);
+      expectedElements = -1;
+      commandName = null;
+      args = null;
+      return cmd;
+    }
+  }
+
+  /**
+   * Makes sure the buffer can take the next read. When a large bulk string is in flight the buffer is grown to
+   * fit it whole, so it is read with as few syscalls as possible.
+   *
+   * @param buffer buffer in write mode
+   * @return the same buffer or a larger copy of it, in write mode
+   */
+  public ByteBuffer ensureWritable(ByteBuffer buffer) {
+    int required = bulkLength < 0 ? 1 : bulkLength + 2 - buffer.position();
+    if (buffer.remaining() >= required) {
+      return buffer;
+    }
+    int capacity = Math.max(buffer.capacity() * 2, buffer.position() + required);
+    ByteBuffer bigger = ByteBuffer.allocate(capacity);
+    buffer.flip();
+    bigger.put(buffer);
+    return bigger;
+  }
+
+  private long readHeader(ByteBuffer buffer, char type) throws IOException {
+    int start = buffer.position();
+    int end = -1;
+    for (int i = start; i < buffer.limit(); i++) {
+      if (buffer.get(i) == '\r') {
+        end = i;
+        break;
+      }
+    }
+    if (end == -1 || end + 1 >= buffer.limit()) {
+      if (buffer.remaining() > MAX_HEADER_LENGTH) {
+        throw new IOException("Invalid command - Header too long");
+      }
+      return INCOMPLETE;
+    }
+    if (buffer.get(start) != type) {
+      throw new IOException("Invalid command - Invalid RESP format: Expected '" + type + "'");
+    }
+    if (buffer.get(end + 1) != '\n') {
+      throw new IOException("Invalid command - Header not terminated by CRLF");
+    }
+    boolean negative = buffer.get(start + 1) == '-';
+    int i = negative ? start + 2 : start + 1;
+    if (i == end) {
+      throw new IOException("Invalid command - Missing length");
+    }
+    long value = 0;
+    for (; i < end; i++) {
+      byte digit = buffer.get(i);
+      // Also refuses lengths that would overflow into a negative one
+      if (digit < '0' || digit > '9' || value > (Long.MAX_VALUE - 9) / 10) {
+        throw new IOException("Invalid command - Invalid length");
+      }
+      value = value * 10 + (digit - '0');
+    }
+    buffer.position(end + 2);
+    return negative ? -value : value;
+  }
+
+  private String readBulk(ByteBuffer buffer, int length) {
+    String element;
+    if (buffer.hasArray()) {
+      // Decode straight from the backing array, no intermediate byte[] copy
+      element = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length,
+          StandardCharsets.ISO_8859_1);
+      buffer.position(buffer.position() + length);
+    } else {
+      byte[] content = new byte[length];
+      buffer.get(content);
+      element = new String(content, StandardCharsets.ISO_8859_1);
+    }
+    return element;
+  }
+}
@@ -0,0 +1,79 @@
+package utility;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Blocking reader for the replies of another server, on the connections this server opens itself: to its master,
+ * to cluster peers and to MIGRATE targets.
+ */
+public final class RespReplyReader {
+
+  /**
+   * An error reply, as opposed to a failure of the connection.
+   */
+  public static final class ErrorReply extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    public ErrorReply(String message) {
+      super(message);
+    }
+  }
+
+  private RespReplyReader() {
+  }
+
+  /**
+   * Reads a simple string, integer or bulk string reply.
+   *
+   * @return its text, null for a null bulk string
+   * @throws ErrorReply for an error reply, with the error as message
+   */
+  public static String read(InputStream input) throws IOException {
+    String line = readLine(input);
+    if (line.isEmpty()) {
+      throw new IOException("Empty reply");
+    }
+    return switch (line.charAt(0)) {
+      case '+', ':' -> line.substring(1);
+      case '-' -> throw new ErrorReply(line.substring(1));
+      case '$' -> {
+        int length = Integer.parseInt(line.substring(1));
+        if (length < 0) {
+          yield null;
+        }
+        byte[] bulk = input.readNBytes(length + 2);
+        if (bulk.length < length + 2) {
+          throw new EOFException("Connection closed mid reply");
+        }
+        yield new String(bulk, 0, length, StandardCharsets.ISO_8859_1);
+      }
+      default -> throw new IOException("Unexpected reply: " + line);
+    };
+  }
+
+  /**
+   * Reads up to the next CRLF.
+   *
+   * @return the line without the CRLF
+   */
+  public static String readLine(InputStream input) throws IOException {
+    ByteArrayOutputStream line = new ByteArrayOutputStream();
+    int previous = -1;
+    while (true) {
+      int next = input.read();
+      if (next == -1) {
+        throw new EOFException("Connection closed");
+      }
+      if (previous == '\r' && next == '\n') {
+        byte[] bytes = line.toByteArray();
+        return new String(bytes, 0, bytes.length - 1, StandardCharsets.ISO_8859_1);
+      }
+      line.write(next);
+      previous = next;
+    }
+  }
+}
@@ -1,97 +1,60 @@
 package utility;
 
-import models.RespCommand;
+import models.ScoredMember;
+import models.StreamEntry;
 
-import java.lang.*;
-import java.io.*;
-import java.util.*;
-import java.util.concurrent.ConcurrentNavigableMap;
-import java.util.stream.Collectors;
+import java.math.BigDecimal;
+import java.util.List;
 
 public class RespUtility {
   private RespUtility(){}
 
   /**
-   * The command format is *<number of elements>\r\n$<number of bytes of first element>\r\n<first element>\r\n$<number of bytes of second element>\r\n<second element>\r\n ....
-   * E.g: *3\r\n$3\r\nSET\r\n$5\r\nmykey\r\n
-   *
-   * @param reader client input stream
-   * @return RespCommand representation
-   * @throws IOException
+   * Writes stream entries as an array of [id, [field, value, ...]] pairs.
    */
-  public static RespCommand parseRespCommand(BufferedReader reader) throws IOException {
-    List<String> args = new ArrayList<>();
-    String header = reader.readLine();
-    if (header == null || !header.startsWith("*")) {
-      throw new IOException("Invalid command - Invalid RESP format: Expected array start '*'");
-    }
-    int noOfElements = Integer.parseInt(header.substring(1));
-    reader.readLine(); // Fetching size of command
-    String commandName = reader.readLine(); //Fetched command name
-    for (int i = 0; i < noOfElements-1; i++) {
-      reader.readLine(); // fetching the bulk size of next content ignoring as we are using BufferedReader
-      String content = reader.readLine();
-      if (content == null) {
-        throw new IOException("Invalid command - Missing argument content");
+  public static void writeStreamEntries(List<StreamEntry> entries, RespWriter writer) {
+    writer.writeArrayHeader(entries.size());
+    for (StreamEntry entry : entries) {
+      writer.writeArrayHeader(2);
+      writer.writeBulk(entry.id().toString());
+      if (entry.fields() == null) {
+        // Pending entry that was deleted from the stream
+        writer.writeNullArray();
+        continue;
+      }
+      writer.writeArrayHeader(entry.fields().length * 2);
+      for (int i = 0; i < entry.fields().length; i++) {
+        writer.writeBulk(entry.fields()[i]);
+        writer.writeBulk(entry.values()[i]);
       }
-      args.add(content);
     }
-
-    return new RespCommand(commandName, args);
-  }
-
-  public static String buildErrorResponse(String message) {
-    return "-ERR "+message+"\r\n";
   }
 
-  public static String buildSimpleResponse(String message) {
-    return "+"+message+"\r\n";
+  /**
+   * Formats a score the way Redis replies with it: integral values without a fraction, everything else in the
+   * shortest form that parses back to the same double, inf and -inf for infinities.
+   */
+  public static String formatDouble(double value) {
+    if (Double.isInfinite(value)) {
+      return value > 0 ? "inf" : "-inf";
+    }
+    if (value == Math.rint(value) && Math.abs(value) < 1e17) {
+      return Long.toString((long) value);
+    }
+    String shortest = Double.toString(value);
+    return shortest.indexOf('E') < 0 ? shortest : new BigDecimal(shortest).toPlainString();
   }
 
-  public static String serializeResponse(Object response) {
-    if (response instanceof String) {
-      return "$" + ((String) response).length() + "\r\n" + (String) response + "\r\n";
-    } else if (response instanceof Integer || response instanceof Long) {
-      return ":" + response + "\r\n";
-    } else if (response instanceof List) {
-      if (((List<?>)response).isEmpty()) return "*0\r\n";
-
-      boolean isPreformatted = ((List<?>)response).stream()
-          .allMatch(item -> item instanceof String &&
-              (((String) item).startsWith("$") || ((String) item).startsWith(":")
-                  || ((String) item).startsWith("-ERR") || ((String) item).startsWith("+")));
-      if(isPreformatted) {
-        List<String> formatted = ((List<?>)response).stream()
-            .map(String::valueOf)
-            .collect(Collectors.toList());
-        return "*" + ((List<?>)response).size() + "\r\n"+String.join("",formatted);
+  /**
+   * Writes members, each followed by its score when withScores is set.
+   */
+  public static void writeScoredMembers(List<ScoredMember> members, boolean withScores, RespWriter writer) {
+    writer.writeArrayHeader(withScores ? members.size() * 2 : members.size());
+    for (ScoredMember member : members) {
+      writer.writeBulk(member.member());
+      if (withScores) {
+        writer.writeBulk(formatDouble(member.score()));
       }
-      List<String> serialized = ((List<?>)response).stream()
-          .map(item -> {
-            String str = String.valueOf(item);
-            return "$" + str.length() + "\r\n" + str + "\r\n";
-          })
-          .collect(Collectors.toList());
-      return "*" + serialized.size() + "\r\n" + String.join("", serialized);
     }
-    return "$-1\r\n"; // default null bulk string response
-  }
-
-  public static String serializeStreamResponse(ConcurrentNavigableMap<String, Map<String, String>> output) {
-    StringBuilder response = new StringBuilder();
-    response.append("*").append(output.size()).append("\r\n");
-
-    output.forEach((k, v) -> {
-      String serialisedKey = serializeResponse(k);
-      List<String> values = new ArrayList<>();
-      v.forEach((field,value) -> {
-        values.add(field);
-        values.add(value);
-      });
-      String serialisedValues = serializeResponse(values);
-      String serialisedEntry = "*2\r\n".concat(serialisedKey).concat(serialisedValues);
-      response.append(serialisedEntry);
-    });
-    return response.toString();
   }
 }
@@ -0,0 +1,226 @@
+package utility;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+
+/**
+ * Encodes RESP replies straight into a growable byte array that a connection reuses for all its replies.
+ * Strings are written as ISO-8859-1, mirroring {@link RespParser}, so every char is exactly one byte.
+ */
+public class RespWriter {
+  private static final byte[] CRLF = {'\r', '\n'};
+  private static final byte[] NULL_BULK = "$-1\r\n".getBytes();
+  private static final byte[] NULL_ARRAY = "*-1\r\n".getBytes();
+  private static final byte[] ERR_PREFIX = "-ERR ".getBytes();
+  // Buffers grown past this by a huge reply are dropped on reset instead of being kept forever
+  private static final int MAX_RETAINED_CAPACITY = 1024 * 1024;
+
+  private final int initialCapacity;
+  private byte[] buffer;
+  private int size = 0;
+
+  public RespWriter() {
+    this(4 * 1024);
+  }
+
+  public RespWriter(int initialCapacity) {
+    this.initialCapacity = initialCapacity;
+    this.buffer = new byte[initialCapacity];
+  }
+
+  public RespWriter writeSimple(String message) {
+    writeByte('+');
+    writeString(message);
+    writeBytes(CRLF);
+    return this;
+  }
+
+  /**
+   * Writes a generic error, the message is prefixed with ERR.
+   */
+  public RespWriter writeError(String message) {
+    writeBytes(ERR_PREFIX);
+    writeString(message);
+    writeBytes(CRLF);
+    return this;
+  }
+
+  /**
+   * Writes an error with its own prefix, e.g. WRONGTYPE or MOVED.
+   */
+  public RespWriter writeError(String prefix, String message) {
+    writeByte('-');
+    writeString(prefix);
+    writeByte(' ');
+    writeString(message);
+    writeBytes(CRLF);
+    return this;
+  }
+
+  public RespWriter writeInteger(long value) {
+    writeByte(':');
+    writeLong(value);
+    writeBytes(CRLF);
+    return this;
+  }
+
+  /**
+   * Writes a bulk string, or the null bulk string when value is null.
+   */
+  public RespWriter writeBulk(String value) {
+    if (value == null) {
+      return writeNull();
+    }
+    writeByte('$');
+    writeLong(value.length());
+    writeBytes(CRLF);
+    writeString(value);
+    writeBytes(CRLF);
+    return this;
+  }
+
+  public RespWriter writeNull() {
+    writeBytes(NULL_BULK);
+    return this;
+  }
+
+  public RespWriter writeNullArray() {
+    writeBytes(NULL_ARRAY);
+    return this;
+  }
+
+  /**
+   * Starts an array, the caller then writes exactly size elements.
+   */
+  public RespWriter writeArrayHeader(int size) {
+    writeByte('*');
+    writeLong(size);
+    writeBytes(CRLF);
+    return this;
+  }
+
+  public RespWriter writeBulkArray(Collection<String> values) {
+    writeArrayHeader(values.size());
+    for (String value : values) {
+      writeBulk(value);
+    }
+    return this;
+  }
+
+  /**
+   * Appends the replies already encoded by another writer.
+   */
+  public RespWriter writeRaw(RespWriter other) {
+    ensureCapacity(other.size);
+    System.arraycopy(other.buffer, 0, buffer, size, other.size);
+    size += other.size;
+    return this;
+  }
+
+  /**
+   * Appends the bytes another writer holds from start to end, e.g. one of several replies it encoded.
+   */
+  public RespWriter writeRaw(RespWriter other, int start, int end) {
+    ensureCapacity(end - start);
+    System.arraycopy(other.buffer, start, buffer, size, end - start);
+    size += end - start;
+    return this;
+  }
+
+  /**
+   * Tells whether the reply starting at the offset is an error.
+   */
+  public boolean isErrorAt(int offset) {
+    return offset < size && buffer[offset] == '-';
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * Discards everything written after the given size, e.g. a reply abandoned halfway.
+   */
+  public void truncate(int newSize) {
+    size = newSize;
+  }
+
+  public void reset() {
+    size = 0;
+    if (buffer.length > MAX_RETAINED_CAPACITY) {
+      buffer = new byte[initialCapacity];
+    }
+  }
+
+  /**
+   * Readable view over the bytes from offset up to the current size, backed by this writer.
+   */
+  public ByteBuffer view(int offset) {
+    return ByteBuffer.wrap(buffer, offset, size - offset);
+  }
+
+  public void writeTo(OutputStream output) throws IOException {
+    output.write(buffer, 0, size);
+  }
+
+  @Override
+  public String toString() {
+    return new String(buffer, 0, size, StandardCharsets.ISO_8859_1);
+  }
+
+  private void writeByte(char value) {
+    ensureCapacity(1);
+    buffer[size++] = (byte) value;
+  }
+
+  private void writeBytes(byte[] bytes) {
+    ensureCapacity(bytes.length);
+    System.arraycopy(bytes, 0, buffer, size, bytes.length);
+    size += bytes.length;
+  }
+
+  @SuppressWarnings("deprecation")
+  private void writeString(String value) {
+    int length = value.length();
+    ensureCapacity(length);
+    // Copies the low byte of every char, which is exactly ISO-8859-1, without an intermediate byte[]
+    value.getBytes(0, length, buffer, size);
+    size += length;
+  }
+
+  private void writeLong(long value) {
+    if (value == Long.MIN_VALUE) {
+      writeString(Long.toString(value));
+      return;
+    }
+    ensureCapacity(20);
+    if (value < 0) {
+      buffer[size++] = '-';
+      value = -value;
+    }
+    int digits = 1;
+    for (long rest = value / 10; rest > 0; rest /= 10) {
+      digits++;
+    }
+    for (int i = size + digits - 1; i >= size; i--) {
+      buffer[i] = (byte) ('0' + value % 10);
+      value /= 10;
+    }
+    size += digits;
+  }
+
+  private void ensureCapacity(int extra) {
+    if (size + extra > buffer.length) {
+      byte[] bigger = new byte[Math.max(buffer.length * 2, size + extra)];
+      System.arraycopy(buffer, 0, bigger, 0, size);
+      buffer = bigger;
+    }
+  }
+}
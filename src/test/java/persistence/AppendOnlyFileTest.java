@@ -0,0 +1,48 @@
+package persistence;
+
+import db.DataStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class AppendOnlyFileTest {
+  private static final String SET_A = "*3\r\n$3\r\nSET\r\n$1\r\na\r\n$1\r\n1\r\n";
+  private static final String TORN_TRANSACTION = "*1\r\n$5\r\nMULTI\r\n*3\r\n$3\r\nSET\r\n$1\r\nb\r\n$1\r\n2\r\n";
+  private static final String SET_C = "*3\r\n$3\r\nSET\r\n$1\r\nc\r\n$1\r\n3\r\n";
+
+  @TempDir
+  Path dir;
+
+  @AfterEach
+  void clear() {
+    DataStore.clear();
+  }
+
+  @Test
+  void loadTruncatesTransactionWithoutExec() throws IOException {
+    Path aof = dir.resolve("appendonly.aof");
+    Files.writeString(aof, SET_A + TORN_TRANSACTION, StandardCharsets.US_ASCII);
+
+    AppendOnlyFile.load(aof);
+    assertEquals(SET_A, Files.readString(aof, StandardCharsets.US_ASCII));
+    assertEquals("1", DataStore.get("a").getAsString());
+    assertNull(DataStore.get("b"));
+
+    // What is appended after the restart must not end up queued in the torn transaction
+    Files.writeString(aof, SET_C, StandardCharsets.US_ASCII, StandardOpenOption.APPEND);
+    DataStore.clear();
+    AppendOnlyFile.load(aof);
+    assertEquals("1", DataStore.get("a").getAsString());
+    assertNull(DataStore.get("b"));
+    assertEquals("3", DataStore.get("c").getAsString());
+  }
+}
@@ -0,0 +1,59 @@
+package processors;
+
+import models.RespCommand;
+import org.junit.jupiter.api.Test;
+import utility.RespWriter;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class TransactionIsolationTest {
+  private static final int TRANSACTIONS = 20_000;
+
+  @Test
+  void readerNeverSeesTransactionHalfApplied() throws InterruptedException {
+    String a = "isolation:a";
+    String b = "isolation:b";
+    AtomicBoolean done = new AtomicBoolean();
+    AtomicReference<String> torn = new AtomicReference<>();
+    Thread reader = new Thread(() -> {
+      CommandProcessor processor = new CommandProcessor();
+      while (!done.get() && torn.get() == null) {
+        String reply = run(processor, "MGET", a, b);
+        List<String> lines = List.of(reply.split("\r\n"));
+        // *2, then each value as $len and data or as $-1 before the first transaction
+        String valueOfA = lines.get(1).equals("$-1") ? null : lines.get(2);
+        String valueOfB = lines.get(lines.size() - 1).equals("$-1") ? null : lines.get(lines.size() - 1);
+        if (valueOfA == null ? valueOfB != null : !valueOfA.equals(valueOfB)) {
+          torn.set(reply);
+        }
+      }
+    });
+    reader.start();
+    CommandProcessor processor = new CommandProcessor();
+    try {
+      for (int i = 0; i < TRANSACTIONS && torn.get() == null; i++) {
+        run(processor, "MULTI");
+        run(processor, "INCR", a);
+        run(processor, "INCR", b);
+        run(processor, "EXEC");
+      }
+    } finally {
+      done.set(true);
+      reader.join();
+    }
+    assertNull(torn.get(), "read a and b apart");
+    String count = String.valueOf(TRANSACTIONS);
+    assertEquals("$" + count.length() + "\r\n" + count + "\r\n", run(processor, "GET", a));
+  }
+
+  private static String run(CommandProcessor processor, String name, String... args) {
+    RespWriter writer = new RespWriter();
+    processor.processCommand(new RespCommand(name, List.of(args)), writer);
+    return writer.toString();
+  }
+}